@@ -0,0 +1,145 @@
+/*
+ * EncodedTags.java
+ * Transform
+ *
+ * Copyright (c) 2009-2010 Flagstone Software Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of Flagstone Software Ltd. nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.flagstone.transform.Movie;
+import com.flagstone.transform.MovieHeader;
+import com.flagstone.transform.MovieTag;
+import com.flagstone.transform.coder.Context;
+import com.flagstone.transform.coder.DecoderRegistry;
+import com.flagstone.transform.coder.SWFDecoder;
+import com.flagstone.transform.coder.SWFEncoder;
+import com.flagstone.transform.coder.SWFFactory;
+
+/**
+ * EncodedTags holds the encoded form of selected types of tag taken from the
+ * reference files so the time taken to decode them can be measured without
+ * including the time taken to read and decode the rest of the movie.
+ */
+final class EncodedTags {
+
+    /** The encoded tags, including the tag header. */
+    private final transient List<byte[]> tags;
+    /** The Flash version of the movie each tag was taken from. */
+    private final transient List<Integer> versions;
+    /** The registry used to decode the tags. */
+    private final transient DecoderRegistry registry;
+    /** The factory used to decode the tags. */
+    private final transient SWFFactory<MovieTag> factory;
+
+    /**
+     * Decode the reference files and encode each of the tags that is an
+     * instance of one of the given classes.
+     *
+     * @param types the classes of tag to select.
+     *
+     * @throws Exception if an error occurs decoding or encoding the files.
+     */
+    EncodedTags(final Class<?>... types) throws Exception {
+        tags = new ArrayList<byte[]>();
+        versions = new ArrayList<Integer>();
+        registry = DecoderRegistry.getDefault();
+        factory = registry.getMovieDecoder();
+
+        for (File file : ReferenceFiles.movies()) {
+            final Movie movie = new Movie();
+            movie.decodeFromFile(file);
+
+            final List<MovieTag> objects = movie.getObjects();
+            final int version = ((MovieHeader) objects.get(0)).getVersion();
+
+            for (MovieTag tag : objects) {
+                for (Class<?> type : types) {
+                    if (type.isInstance(tag)) {
+                        tags.add(encode(tag, version));
+                        versions.add(version);
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Decode all the tags.
+     *
+     * @param hole used to consume the decoded tags.
+     *
+     * @throws IOException if an error occurs decoding a tag.
+     */
+    void decode(final Blackhole hole) throws IOException {
+        final List<MovieTag> list = new ArrayList<MovieTag>(1);
+
+        for (int i = 0; i < tags.size(); i++) {
+            final SWFDecoder coder = new SWFDecoder(
+                    ByteBuffer.wrap(tags.get(i)));
+            final Context context = new Context();
+            context.setRegistry(registry);
+            context.put(Context.VERSION, versions.get(i).intValue());
+
+            list.clear();
+            factory.getObject(list, coder, context);
+            hole.consume(list.get(0));
+        }
+    }
+
+    /**
+     * Encode a tag.
+     *
+     * @param tag the tag to encode.
+     * @param version the Flash version of the movie containing the tag.
+     * @return the encoded tag, including the tag header.
+     *
+     * @throws IOException if an error occurs encoding the tag.
+     */
+    private static byte[] encode(final MovieTag tag, final int version)
+            throws IOException {
+        final Context context = new Context();
+        context.put(Context.VERSION, version);
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final SWFEncoder coder = new SWFEncoder(out);
+        tag.prepareToEncode(context);
+        tag.encode(coder, context);
+        coder.flush();
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * MovieBenchmark.java
+ * Transform
+ *
+ * Copyright (c) 2009-2010 Flagstone Software Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of Flagstone Software Ltd. nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.flagstone.transform.Movie;
+
+/**
+ * MovieBenchmark measures the time taken to decode, encode and copy all the
+ * movies in the reference files, using either copy() or copyOnWrite(). The
+ * files are read into memory when the benchmark is set up so the time taken
+ * to access the file system is not included.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class MovieBenchmark {
+
+    /** The contents of the reference files. */
+    private List<byte[]> files;
+    /** The movies decoded from the reference files. */
+    private List<Movie> movies;
+
+    @Setup
+    public void setup() throws Exception {
+        files = new ArrayList<byte[]>();
+        movies = new ArrayList<Movie>();
+
+        for (File file : ReferenceFiles.movies()) {
+            final byte[] data = ReferenceFiles.read(file);
+            final Movie movie = new Movie();
+            movie.decodeFromStream(new ByteArrayInputStream(data));
+            files.add(data);
+            movies.add(movie);
+        }
+    }
+
+    @Benchmark
+    public void decode(final Blackhole hole) throws Exception {
+        for (byte[] data : files) {
+            final Movie movie = new Movie();
+            movie.decodeFromStream(new ByteArrayInputStream(data));
+            hole.consume(movie);
+        }
+    }
+
+    @Benchmark
+    public void encode(final Blackhole hole) throws Exception {
+        for (Movie movie : movies) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            movie.encodeToStream(out);
+            hole.consume(out);
+        }
+    }
+
+    @Benchmark
+    public void copy(final Blackhole hole) {
+        for (Movie movie : movies) {
+            hole.consume(movie.copy());
+        }
+    }
+
+    @Benchmark
+    public void copyOnWrite(final Blackhole hole) {
+        for (Movie movie : movies) {
+            hole.consume(movie.copyOnWrite());
+        }
+    }
+
+    @Benchmark
+    public void roundTrip(final Blackhole hole) throws Exception {
+        for (byte[] data : files) {
+            final Movie movie = new Movie();
+            movie.decodeFromStream(new ByteArrayInputStream(data));
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            movie.encodeToStream(out);
+            hole.consume(out);
+        }
+    }
+}
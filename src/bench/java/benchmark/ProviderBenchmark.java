@@ -0,0 +1,153 @@
+/*
+ * ProviderBenchmark.java
+ * Transform
+ *
+ * Copyright (c) 2009-2010 Flagstone Software Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of Flagstone Software Ltd. nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.flagstone.transform.util.font.TTFDecoder;
+import com.flagstone.transform.util.image.JPGDecoder;
+import com.flagstone.transform.util.image.PNGDecoder;
+import com.flagstone.transform.util.sound.MP3Decoder;
+
+/**
+ * ProviderBenchmark measures the time taken by the decoders in the util
+ * packages to read the reference images, sounds and fonts and generate the
+ * corresponding definitions. Files that the decoders do not support are
+ * skipped when the benchmark is set up.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ProviderBenchmark {
+
+    /** The contents of the PNG reference files. */
+    private List<byte[]> pngFiles;
+    /** The contents of the JPEG reference files. */
+    private List<byte[]> jpgFiles;
+    /** The contents of the MP3 reference files. */
+    private List<byte[]> mp3Files;
+    /** The contents of the TrueType reference files. */
+    private List<byte[]> ttfFiles;
+
+    @Setup
+    public void setup() throws Exception {
+        pngFiles = new ArrayList<byte[]>();
+        jpgFiles = new ArrayList<byte[]>();
+        mp3Files = new ArrayList<byte[]>();
+        ttfFiles = new ArrayList<byte[]>();
+
+        for (File file : ReferenceFiles.list("png-reference", ".png")) {
+            final byte[] data = ReferenceFiles.read(file);
+            try {
+                decodePNG(data);
+                pngFiles.add(data);
+            } catch (Exception e) {
+                // Skip files that are invalid or not supported.
+            }
+        }
+        for (File file : ReferenceFiles.list("jpg-reference", ".jpg")) {
+            jpgFiles.add(ReferenceFiles.read(file));
+        }
+        for (File file : ReferenceFiles.list("mp3-reference", ".mp3")) {
+            mp3Files.add(ReferenceFiles.read(file));
+        }
+        for (File file : ReferenceFiles.list("ttf-reference", ".ttf")) {
+            ttfFiles.add(ReferenceFiles.read(file));
+        }
+    }
+
+    @Benchmark
+    public void png(final Blackhole hole) throws Exception {
+        for (byte[] data : pngFiles) {
+            hole.consume(decodePNG(data));
+        }
+    }
+
+    @Benchmark
+    public void jpg(final Blackhole hole) throws Exception {
+        for (byte[] data : jpgFiles) {
+            final JPGDecoder decoder = new JPGDecoder();
+            decoder.read(new ByteArrayInputStream(data));
+            hole.consume(decoder.defineImage(1));
+        }
+    }
+
+    @Benchmark
+    public void mp3(final Blackhole hole) throws Exception {
+        for (byte[] data : mp3Files) {
+            final MP3Decoder decoder = new MP3Decoder();
+            decoder.read(new ByteArrayInputStream(data));
+            hole.consume(decoder.defineSound(1));
+        }
+    }
+
+    @Benchmark
+    public void ttf(final Blackhole hole) throws Exception {
+        for (byte[] data : ttfFiles) {
+            final TTFDecoder decoder = new TTFDecoder();
+            decoder.read(new ByteArrayInputStream(data));
+            hole.consume(decoder.getFonts());
+        }
+    }
+
+    /**
+     * Decode a PNG image and generate the image definition.
+     *
+     * @param data the contents of the PNG file.
+     * @return the image definition.
+     * @throws Exception if the image cannot be decoded.
+     */
+    private Object decodePNG(final byte[] data) throws Exception {
+        final PNGDecoder decoder = new PNGDecoder();
+        decoder.read(new ByteArrayInputStream(data));
+        return decoder.defineImage(1);
+    }
+}
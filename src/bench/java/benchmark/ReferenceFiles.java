@@ -0,0 +1,130 @@
+/*
+ * ReferenceFiles.java
+ * Transform
+ *
+ * Copyright (c) 2009-2010 Flagstone Software Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of Flagstone Software Ltd. nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * ReferenceFiles lists the files used as the input for the benchmarks. The
+ * directory of Flash files defaults to the reference suite but can be changed
+ * using the test.suite system property, in the same way as the integration
+ * tests.
+ */
+final class ReferenceFiles {
+
+    /** The directory containing the reference files. */
+    private static final String RESOURCES = "src/test/resources/";
+    /** The default directory containing the Flash files. */
+    private static final String DEFAULT_SUITE = RESOURCES + "swf-reference";
+    /** Size of the buffer used to read files. */
+    private static final int BUFFER_SIZE = 4096;
+
+    /**
+     * List the Flash files in the suite used for the benchmarks.
+     *
+     * @return the files found in the suite directory.
+     */
+    static File[] movies() {
+        return list(new File(System.getProperty("test.suite", DEFAULT_SUITE)),
+                ".swf");
+    }
+
+    /**
+     * List the files, in name order, in one of the reference directories
+     * in src/test/resources.
+     *
+     * @param name the name of the directory, for example "png-reference".
+     * @param extension the file extension, for example ".png".
+     *
+     * @return the files found in the directory.
+     */
+    static File[] list(final String name, final String extension) {
+        return list(new File(RESOURCES + name), extension);
+    }
+
+    /**
+     * Read the contents of a file.
+     *
+     * @param file the file to read.
+     *
+     * @return the contents of the file.
+     *
+     * @throws IOException if an error occurs reading the file.
+     */
+    static byte[] read(final File file) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final InputStream in = new FileInputStream(file);
+        try {
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
+            }
+        } finally {
+            in.close();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * List the files, in name order, with the given extension.
+     *
+     * @param dir the directory containing the files.
+     * @param extension the file extension.
+     *
+     * @return the files found in the directory.
+     */
+    private static File[] list(final File dir, final String extension) {
+        final File[] files = dir.listFiles(new FilenameFilter() {
+            public boolean accept(final File directory, final String name) {
+                return name.endsWith(extension);
+            }
+        });
+
+        if (files == null) {
+            throw new IllegalArgumentException(dir.getPath());
+        }
+        Arrays.sort(files);
+        return files;
+    }
+
+    /** Private constructor for utility class. */
+    private ReferenceFiles() {
+        // Utility class
+    }
+}
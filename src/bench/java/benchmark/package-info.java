@@ -0,0 +1,13 @@
+/**
+ * Benchmarks, written using JMH, for measuring the time taken and the memory
+ * allocated when decoding, encoding and copying the Flash files in the
+ * reference suites and when generating definitions for the images, sounds
+ * and fonts in src/test/resources. Run with:
+ *
+ * <pre>
+ * mvn -P benchmark test-compile exec:exec -Dbenchmark=MovieBenchmark
+ * </pre>
+ *
+ * The results include the allocation rate, reported by the JMH GC profiler.
+ */
+package benchmark;
@@ -32,6 +32,7 @@
 package com.flagstone.transform;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 import com.flagstone.transform.coder.Coder;
@@ -58,7 +59,7 @@ public final class DoABC implements MovieTag {
     /** Is loading deferred until the script is called. */
     private int deferred;
     /** The encoded actionscript 3 bytes codes. */
-    private byte[] data;
+    private ByteBuffer data;
 
     /** The length of the object, minus the header, when it is encoded. */
     private transient int length;
@@ -81,7 +82,7 @@ public final class DoABC implements MovieTag {
         coder.mark();
         deferred = coder.readInt();
         name = coder.readString();
-        data = coder.readBytes(new byte[length - coder.bytesRead()]);
+        data = coder.readBuffer(length - coder.bytesRead());
         coder.check(length);
         coder.unmark();
     }
@@ -170,7 +171,7 @@ public final class DoABC implements MovieTag {
      * @return a copy of the encoded actionscript.
      */
     public byte[] getData() {
-        return Arrays.copyOf(data, data.length);
+        return Coder.toByteArray(data);
     }
 
     /**
@@ -183,7 +184,7 @@ public final class DoABC implements MovieTag {
         if (bytes == null) {
             throw new IllegalArgumentException();
         }
-        data = Arrays.copyOf(bytes, bytes.length);
+        data = ByteBuffer.wrap(Arrays.copyOf(bytes, bytes.length));
     }
 
     /** {@inheritDoc} */
@@ -193,13 +194,13 @@ public final class DoABC implements MovieTag {
 
     @Override
     public String toString() {
-        return String.format(FORMAT, name, deferred, data.length);
+        return String.format(FORMAT, name, deferred, data.remaining());
     }
 
     /** {@inheritDoc} */
     public int prepareToEncode(final Context context) {
         // CHECKSTYLE:OFF
-        length = 4 + context.strlen(name) + data.length;
+        length = 4 + context.strlen(name) + data.remaining();
 
         return (length > Coder.HEADER_LIMIT ? Coder.LONG_HEADER
                 : Coder.SHORT_HEADER) + length;
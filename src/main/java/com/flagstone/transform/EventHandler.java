@@ -255,7 +255,7 @@ public final class EventHandler implements Action {
         events = EnumSet.noneOf(Event.class);
 
         if (context.contains(Context.TYPE)
-                && context.get(Context.TYPE) == MovieTypes.DEFINE_BUTTON_2) {
+                && context.getInt(Context.TYPE) == MovieTypes.DEFINE_BUTTON_2) {
             length = value;
             final int eventKey = coder.readUnsignedShort();
             eventCode = eventKey & EVENT_MASK;
@@ -465,7 +465,7 @@ public final class EventHandler implements Action {
         eventCode = 0;
 
         if (context.contains(Context.TYPE)
-                && context.get(Context.TYPE) == MovieTypes.DEFINE_BUTTON_2) {
+                && context.getInt(Context.TYPE) == MovieTypes.DEFINE_BUTTON_2) {
             if (context.contains(Context.MENU_BUTTON)) {
                 for (Event event : events) {
                     eventCode |= MENU_CODES.get(event);
@@ -490,7 +490,7 @@ public final class EventHandler implements Action {
                 eventCode |= CLIP_CODES.get(event);
             }
 
-            if (context.get(Context.VERSION) >= EVENTS_VERSION) {
+            if (context.getInt(Context.VERSION) >= EVENTS_VERSION) {
                 length = 8;
             } else {
                 length = 6;
@@ -515,11 +515,11 @@ public final class EventHandler implements Action {
             coder.mark();
         }
         if (context.contains(Context.TYPE)
-                && context.get(Context.TYPE) == MovieTypes.DEFINE_BUTTON_2) {
+                && context.getInt(Context.TYPE) == MovieTypes.DEFINE_BUTTON_2) {
             coder.writeShort(offset + 2);
             coder.writeShort((key << KEY_OFFSET) | eventCode);
         } else {
-            if (context.get(Context.VERSION) >= EVENTS_VERSION) {
+            if (context.getInt(Context.VERSION) >= EVENTS_VERSION) {
                 coder.writeInt(eventCode);
             } else {
                 coder.writeShort(eventCode);
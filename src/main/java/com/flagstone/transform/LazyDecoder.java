@@ -0,0 +1,109 @@
+/*
+ * LazyDecoder.java
+ * Transform
+ *
+ * Copyright (c) 2010 Flagstone Software Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of Flagstone Software Ltd. nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package com.flagstone.transform;
+
+import java.io.IOException;
+import java.util.List;
+
+import com.flagstone.transform.coder.Coder;
+import com.flagstone.transform.coder.Context;
+import com.flagstone.transform.coder.SWFDecoder;
+import com.flagstone.transform.coder.SWFFactory;
+
+/**
+ * LazyDecoder is used to defer decoding of the objects in a movie until they
+ * are needed. Only the header of each tag is decoded. The body is kept in its
+ * encoded form in a LazyTag which decodes it, using the factory wrapped by the
+ * LazyDecoder, the first time LazyTag.getTag() is called.
+ *
+ * <p>
+ * Lazy decoding is enabled by adding a LazyDecoder to the registry used to
+ * decode a movie:
+ * </p>
+ *
+ * <pre>
+ * DecoderRegistry registry = DecoderRegistry.getDefault();
+ * registry.setMovieDecoder(new LazyDecoder(registry.getMovieDecoder()));
+ * movie.setRegistry(registry);
+ * movie.decodeFromFile(file);
+ * </pre>
+ *
+ * <p>
+ * ShowFrame and PathsArePostscript objects are always decoded immediately,
+ * since they are used to count frames and to set the Context used to decode
+ * the shapes and fonts that follow.
+ * </p>
+ */
+public final class LazyDecoder implements SWFFactory<MovieTag> {
+
+    /** The factory used to decode the tags. */
+    private final transient SWFFactory<MovieTag> factory;
+
+    /**
+     * Creates a LazyDecoder that uses a factory to decode the tags when they
+     * are accessed.
+     *
+     * @param decoder
+     *            the factory used to decode the tags. Must not be null.
+     */
+    public LazyDecoder(final SWFFactory<MovieTag> decoder) {
+        if (decoder == null) {
+            throw new IllegalArgumentException();
+        }
+        factory = decoder;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void getObject(final List<MovieTag> list, final SWFDecoder coder,
+            final Context context) throws IOException {
+
+        final int type = coder.scanUnsignedShort() >>> Coder.LENGTH_FIELD_SIZE;
+
+        if (type == MovieTypes.SHOW_FRAME
+                || type == MovieTypes.PATHS_ARE_POSTSCRIPT) {
+            factory.getObject(list, coder, context);
+        } else {
+            final int offset = coder.mark();
+            coder.unmark();
+
+            int length = coder.readUnsignedShort() & Coder.LENGTH_FIELD;
+            final boolean extended = length == Coder.IS_EXTENDED;
+            if (extended) {
+                length = coder.readInt();
+            }
+            list.add(new LazyTag(type, offset, extended,
+                    coder.readBuffer(length), factory, context));
+        }
+    }
+}
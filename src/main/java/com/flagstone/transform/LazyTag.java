@@ -0,0 +1,291 @@
+/*
+ * LazyTag.java
+ * Transform
+ *
+ * Copyright (c) 2010 Flagstone Software Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of Flagstone Software Ltd. nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package com.flagstone.transform;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.flagstone.transform.coder.Coder;
+import com.flagstone.transform.coder.Context;
+import com.flagstone.transform.coder.DecoderRegistry;
+import com.flagstone.transform.coder.SWFDecoder;
+import com.flagstone.transform.coder.SWFEncoder;
+import com.flagstone.transform.coder.SWFFactory;
+
+/**
+ * LazyTag is a proxy for a MovieTag that has been read from a movie but not
+ * yet decoded. LazyTags are created by a LazyDecoder.
+ *
+ * <p>
+ * The encoded body of the tag is held until getTag() is called. The tag is
+ * then decoded using the factory and the settings from the Context that were
+ * in effect when the tag was read. If the tag is never decoded then the
+ * original bytes are written, unchanged, when the movie is encoded. This is
+ * the same approach used by ShapeData and ActionData to avoid decoding shapes
+ * and actions, extended to any type of MovieTag.
+ * </p>
+ */
+public final class LazyTag implements MovieTag {
+
+    /** Format string used in toString() method. */
+    private static final String FORMAT = "LazyTag: { type=%d;"
+            + " data=byte<%d> ...}";
+
+    /** The type identifying the MovieTag. */
+    private final transient int type;
+    /** The location of the tag in the encoded data. */
+    private final transient int offset;
+    /** Whether the tag was encoded with a long header. */
+    private final transient boolean extended;
+    /** The length of the body of the tag. */
+    private final transient int size;
+    /** The encoded body of the tag, null once the tag is decoded. */
+    private transient ByteBuffer data;
+    /** The factory used to decode the tag. */
+    private final transient SWFFactory<MovieTag> factory;
+    /** The registry used when the tag was read. */
+    private final transient DecoderRegistry registry;
+    /** The character encoding used when the tag was read. */
+    private final transient String encoding;
+    /** The Flash version of the movie the tag was read from. */
+    private final transient Integer version;
+    /** Whether the PathsArePostscript tag preceded this tag. */
+    private final transient boolean postscript;
+    /** The decoded tag. */
+    private transient MovieTag tag;
+
+    /**
+     * Creates a LazyTag for the encoded body of a tag.
+     *
+     * @param aType
+     *            the type that identifies the encoded MovieTag.
+     * @param location
+     *            the location of the start of the tag in the encoded data.
+     * @param longHeader
+     *            whether the tag was encoded with a long header.
+     * @param body
+     *            the encoded data that make up the body of the tag.
+     * @param decoder
+     *            the factory used to decode the tag.
+     * @param context
+     *            the Context in effect when the tag was read.
+     */
+    LazyTag(final int aType, final int location, final boolean longHeader,
+            final ByteBuffer body, final SWFFactory<MovieTag> decoder,
+            final Context context) {
+        type = aType;
+        offset = location;
+        extended = longHeader;
+        size = body.remaining();
+        data = body;
+        factory = decoder;
+        registry = context.getRegistry();
+        encoding = context.getEncoding();
+        version = context.get(Context.VERSION);
+        postscript = context.contains(Context.POSTSCRIPT);
+    }
+
+    /**
+     * Creates and initialises a LazyTag object using the values copied
+     * from another LazyTag object. If the tag was decoded then the copy
+     * contains a copy of the decoded tag, otherwise the encoded data is
+     * shared.
+     *
+     * @param object
+     *            a LazyTag object from which the values will be
+     *            copied.
+     */
+    public LazyTag(final LazyTag object) {
+        synchronized (object) {
+            type = object.type;
+            offset = object.offset;
+            extended = object.extended;
+            size = object.size;
+            data = object.data;
+            factory = object.factory;
+            registry = object.registry;
+            encoding = object.encoding;
+            version = object.version;
+            postscript = object.postscript;
+            if (object.tag != null) {
+                tag = object.tag.copy();
+            }
+        }
+    }
+
+    /**
+     * Get the type that identifies the object when it is encoded.
+     *
+     * @return the type that identifies the encoded data structure.
+     */
+    public int getType() {
+        return type;
+    }
+
+    /**
+     * Get the location of the tag in the data it was decoded from. For tags
+     * read by a MovieReader this is the number of bytes from the end of the
+     * signature, version and length fields at the start of the file.
+     *
+     * @return the location of the start of the tag.
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * Get the length of the body of the tag, when it was read.
+     *
+     * @return the number of bytes following the tag header.
+     */
+    public int getLength() {
+        return size;
+    }
+
+    /**
+     * Has the tag been decoded.
+     *
+     * @return true if getTag() has been called, false if the tag is still
+     * held in its encoded form.
+     */
+    public synchronized boolean isDecoded() {
+        return tag != null;
+    }
+
+    /**
+     * Get the tag, decoding it the first time this method is called.
+     *
+     * @return the decoded MovieTag.
+     *
+     * @throws IOException
+     *             if an error occurs while decoding the tag.
+     */
+    public synchronized MovieTag getTag() throws IOException {
+        if (tag == null) {
+            tag = decode();
+            data = null;
+        }
+        return tag;
+    }
+
+    /**
+     * Decode the tag using the settings recorded when it was read.
+     *
+     * @return the decoded MovieTag.
+     *
+     * @throws IOException
+     *             if an error occurs while decoding the tag.
+     */
+    private MovieTag decode() throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(
+                (extended ? Coder.LONG_HEADER : Coder.SHORT_HEADER) + size);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        if (extended) {
+            buffer.putShort((short) ((type << Coder.LENGTH_FIELD_SIZE)
+                    | Coder.IS_EXTENDED));
+            buffer.putInt(size);
+        } else {
+            buffer.putShort((short) ((type << Coder.LENGTH_FIELD_SIZE)
+                    | size));
+        }
+        buffer.put(data.duplicate());
+        buffer.flip();
+
+        final Context context = new Context();
+        context.setRegistry(registry);
+        context.setEncoding(encoding);
+        if (version != null) {
+            context.put(Context.VERSION, version.intValue());
+        }
+        if (postscript) {
+            context.put(Context.POSTSCRIPT, 1);
+        }
+
+        final SWFDecoder coder = new SWFDecoder(buffer);
+        coder.setEncoding(encoding);
+
+        final List<MovieTag> list = new ArrayList<MovieTag>(1);
+        factory.getObject(list, coder, context);
+        return list.get(0);
+    }
+
+    /** {@inheritDoc} */
+    public LazyTag copy() {
+        return new LazyTag(this);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized String toString() {
+        String str;
+        if (tag == null) {
+            str = String.format(FORMAT, type, size);
+        } else {
+            str = tag.toString();
+        }
+        return str;
+    }
+
+    /** {@inheritDoc} */
+    public synchronized int prepareToEncode(final Context context) {
+        int count;
+        if (tag == null) {
+            count = (extended ? Coder.LONG_HEADER : Coder.SHORT_HEADER) + size;
+        } else {
+            count = tag.prepareToEncode(context);
+        }
+        return count;
+    }
+
+    /** {@inheritDoc} */
+    public synchronized void encode(final SWFEncoder coder,
+            final Context context) throws IOException {
+        if (tag == null) {
+            if (extended) {
+                coder.writeShort((type
+                        << Coder.LENGTH_FIELD_SIZE) | Coder.IS_EXTENDED);
+                coder.writeInt(size);
+            } else {
+                coder.writeShort((type
+                        << Coder.LENGTH_FIELD_SIZE) | size);
+            }
+            coder.writeBytes(data);
+        } else {
+            tag.encode(coder, context);
+        }
+    }
+}
@@ -31,29 +31,34 @@
 
 package com.flagstone.transform;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.net.URL;
 import java.net.URLConnection;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.zip.DataFormatException;
 import java.util.zip.DeflaterOutputStream;
-import java.util.zip.InflaterInputStream;
 
 import com.flagstone.transform.coder.Coder;
 import com.flagstone.transform.coder.Context;
 import com.flagstone.transform.coder.Copyable;
 import com.flagstone.transform.coder.DecoderRegistry;
-import com.flagstone.transform.coder.SWFDecoder;
 import com.flagstone.transform.coder.SWFEncoder;
-import com.flagstone.transform.coder.SWFFactory;
+import com.flagstone.transform.shape.PathsArePostscript;
 
 /**
  * Movie is a container class for the objects that represents the data
@@ -79,16 +84,39 @@ import com.flagstone.transform.coder.SWFFactory;
  * decoded. This allows new objects to be added and ensures that the identifier
  * does not conflict with an existing object.
  * </p>
+ *
+ * <p>
+ * If an ExecutorService is set then the objects that are expensive to
+ * decode - shapes, morphing shapes, fonts, actions and movie clips - are
+ * decoded concurrently. A single thread reads the file, splitting it into the
+ * encoded data for each object, and submits them to the executor. The decoded
+ * objects are added to the movie in the order they appear in the file.
+ * </p>
+ *
+ * <p>
+ * The executor is also used when encoding a movie. The list of objects is
+ * divided into runs of consecutive objects which are encoded into separate
+ * buffers then written to the file in order. Since objects in different runs
+ * may be encoded at the same time, the same object should not be added to the
+ * movie more than once.
+ * </p>
+ *
+ * <p>
+ * copyOnWrite() creates a copy of a movie that shares the objects with the
+ * original rather than copying them, so movies generated from a template need
+ * only allocate memory for the objects that are changed. An object must be
+ * fetched using edit() before it is changed. The first call for a shared
+ * object replaces it with a copy, which is then owned by the movie. Shared
+ * objects are locked while they are encoded so movies that share objects can
+ * be encoded at the same time. The objects are shared by the original movie
+ * as well as the copy, so edit() must also be used to change the original.
+ * </p>
  */
 public final class Movie implements Copyable<Movie> {
 
     /** The version of Flash supported. */
     public static final int VERSION = 10;
 
-    /** Length in bytes of the magic number used to identify the file type. */
-    private static final int SIGNATURE_LENGTH = 3;
-    /** Length in bytes of the signature and length fields. */
-    private static final int HEADER_LENGTH = 8;
     /** Signature identifying Flash (SWF) files. */
     public static final byte[] FWS = new byte[] {0x46, 0x57, 0x53 };
     /** Signature identifying Compressed Flash (SWF) files. */
@@ -96,12 +124,20 @@ public final class Movie implements Copyable<Movie> {
 
     /** Format string used in toString() method. */
     private static final String FORMAT = "Movie: { objects=%s}";
+    /** The number of objects encoded by each task when using an executor. */
+    private static final int RUN_LENGTH = 16;
     /** The registry for the different types of decoder. */
     private transient DecoderRegistry registry;
     /** The character encoding used for strings. */
     private transient CharacterEncoding encoding;
     /** The list of objects that make up the movie. */
     private List<MovieTag> objects;
+    /** The executor used to decode objects concurrently. */
+    private transient ExecutorService executor;
+    /** The objects that are shared with another movie. */
+    private transient Set<MovieTag> shared;
+    /** Whether uncompressed files are mapped into memory when decoded. */
+    private transient boolean mapped;
 
     /**
      * Creates a new Movie.
@@ -110,6 +146,7 @@ public final class Movie implements Copyable<Movie> {
         registry = DecoderRegistry.getDefault();
         encoding = CharacterEncoding.UTF8;
         objects = new ArrayList<MovieTag>();
+        shared = Collections.emptySet();
     }
 
     /**
@@ -122,12 +159,52 @@ public final class Movie implements Copyable<Movie> {
             registry = movie.registry.copy();
         }
         encoding = movie.encoding;
+        mapped = movie.mapped;
+        executor = movie.executor;
 
         objects = new ArrayList<MovieTag>(movie.objects.size());
 
         for (final MovieTag tag : movie.objects) {
             objects.add(tag.copy());
         }
+        shared = Collections.emptySet();
+    }
+
+    /**
+     * Creates a copy of a movie that shares the objects with the original.
+     *
+     * @param movie the Movie to copy.
+     * @param share a marker to distinguish this constructor from the one
+     * that creates a complete copy.
+     */
+    private Movie(final Movie movie, final boolean share) {
+        if (movie.registry != null) {
+            registry = movie.registry.copy();
+        }
+        encoding = movie.encoding;
+        mapped = movie.mapped;
+        executor = movie.executor;
+
+        objects = new ArrayList<MovieTag>(movie.objects);
+        shared = Collections.newSetFromMap(
+                new IdentityHashMap<MovieTag, Boolean>());
+
+        if (movie.shared.isEmpty()) {
+            movie.shared = Collections.newSetFromMap(
+                    new IdentityHashMap<MovieTag, Boolean>());
+        }
+
+        for (int i = 0; i < objects.size(); i++) {
+            final MovieTag tag = objects.get(i);
+            // The header is updated when the movie is encoded.
+            if (tag instanceof MovieHeader) {
+                objects.set(i, tag.copy());
+            } else if (!(tag instanceof ShowFrame
+                    || tag instanceof PathsArePostscript)) {
+                shared.add(tag);
+                movie.shared.add(tag);
+            }
+        }
     }
 
     /**
@@ -151,6 +228,51 @@ public final class Movie implements Copyable<Movie> {
         encoding = enc;
     }
 
+    /**
+     * Are uncompressed files mapped into memory when they are decoded.
+     *
+     * @return true if files are mapped, false if they are read through a
+     * stream, the default.
+     */
+    public boolean isMapped() {
+        return mapped;
+    }
+
+    /**
+     * Sets whether uncompressed files are mapped into memory when they are
+     * decoded. The images, sounds and other binary data in the objects decoded
+     * then share the contents of the file rather than copying them, so the
+     * file must not be changed, for example by encoding the movie to the same
+     * file, while the objects are in use.
+     *
+     * @param map true if files are mapped, false if they are read through a
+     * stream.
+     */
+    public void setMapped(final boolean map) {
+        mapped = map;
+    }
+
+    /**
+     * Get the executor used to decode objects concurrently.
+     *
+     * @return the ExecutorService or null if objects are decoded by the
+     * calling thread.
+     */
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Sets the executor used to decode objects concurrently. The executor is
+     * not shut down by the Movie.
+     *
+     * @param service the ExecutorService used to decode objects. May be null
+     * to decode all the objects using the calling thread.
+     */
+    public void setExecutor(final ExecutorService service) {
+        executor = service;
+    }
+
     /**
      * Get the list of objects contained in the Movie.
      *
@@ -194,6 +316,46 @@ public final class Movie implements Copyable<Movie> {
         return new Movie(this);
     }
 
+    /**
+     * Creates a copy of this movie that shares the objects it contains. Only
+     * the MovieHeader is copied. Objects, in either movie, must be fetched
+     * using edit() before they are changed.
+     *
+     * @return a copy of this movie which shares its objects.
+     */
+    public synchronized Movie copyOnWrite() {
+        return new Movie(this, true);
+    }
+
+    /**
+     * Indicates whether an object is shared with another movie.
+     *
+     * @param index
+     *            the position of the object in the list of objects.
+     * @return true if the object is shared and must be fetched using edit()
+     * before it is changed.
+     */
+    public synchronized boolean isShared(final int index) {
+        return shared.contains(objects.get(index));
+    }
+
+    /**
+     * Get an object so it can be changed. If the object is shared with
+     * another movie it is replaced by a copy, which is returned.
+     *
+     * @param index
+     *            the position of the object in the list of objects.
+     * @return the object, owned by this movie, at the given position.
+     */
+    public synchronized MovieTag edit(final int index) {
+        MovieTag tag = objects.get(index);
+        if (shared.remove(tag)) {
+            tag = tag.copy();
+            objects.set(index, tag);
+        }
+        return tag;
+    }
+
     /** {@inheritDoc} */
     @Override
     public String toString() {
@@ -212,7 +374,7 @@ public final class Movie implements Copyable<Movie> {
      */
     public void decodeFromFile(final File file) throws DataFormatException,
             IOException {
-        decodeFromStream(new FileInputStream(file));
+        decode(new MovieReader(file, registry, encoding, mapped));
     }
 
     /**
@@ -254,77 +416,397 @@ public final class Movie implements Copyable<Movie> {
     public void decodeFromStream(final InputStream stream)
             throws DataFormatException, IOException {
 
-        InputStream streamIn = null;
+        decode(new MovieReader(stream, registry, encoding));
+    }
 
+    /**
+     * Replace the objects in the movie with the objects decoded by a
+     * MovieReader. The reader is closed once all the objects are decoded.
+     *
+     * @param reader
+     *            the MovieReader used to decode the file or stream.
+     *
+     * @throws IOException
+     *             if an I/O error occurs while reading the objects.
+     */
+    private void decode(final MovieReader reader) throws IOException {
         try {
-            final Context context = new Context();
-            context.setRegistry(registry);
-            context.setEncoding(encoding.getEncoding());
+            objects.clear();
+            objects.add(reader.getHeader());
+
+            if (executor == null) {
+                MovieTag tag;
+                while ((tag = reader.read()) != null) {
+                    objects.add(tag);
+                }
+            } else {
+                decodeConcurrently(reader);
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Decode the objects using the executor. The reader only splits the
+     * movie into LazyTags. The objects that take the most time to decode are
+     * submitted to the executor while the remainder are decoded as they are
+     * read.
+     *
+     * @param reader
+     *            the MovieReader used to decode the file or stream.
+     *
+     * @throws IOException
+     *             if an I/O error occurs while reading the objects.
+     */
+    private void decodeConcurrently(final MovieReader reader)
+            throws IOException {
+
+        final List<Future<MovieTag>> tasks = new ArrayList<Future<MovieTag>>();
+        final List<Integer> indices = new ArrayList<Integer>();
+
+        reader.setDecoder(new LazyDecoder(registry.getMovieDecoder()));
+
+        try {
+            MovieTag tag;
+            LazyTag lazy;
+
+            while ((tag = reader.read()) != null) {
+                if (tag instanceof LazyTag) {
+                    lazy = (LazyTag) tag;
+                    if (isConcurrent(lazy.getType())) {
+                        indices.add(objects.size());
+                        tasks.add(executor.submit(new DecodeTask(lazy)));
+                    } else {
+                        tag = lazy.getTag();
+                    }
+                }
+                objects.add(tag);
+            }
+
+            for (int i = 0; i < tasks.size(); i++) {
+                objects.set(indices.get(i), tasks.get(i).get());
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (final ExecutionException e) {
+            rethrow(e);
+        } finally {
+            for (final Future<MovieTag> task : tasks) {
+                task.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Is an object decoded by the executor rather than the thread reading the
+     * movie.
+     *
+     * @param type
+     *            the type identifying the encoded object.
+     *
+     * @return true if the object should be decoded concurrently.
+     */
+    private static boolean isConcurrent(final int type) {
+        boolean concurrent;
+
+        switch (type) {
+        case MovieTypes.DEFINE_SHAPE:
+        case MovieTypes.DEFINE_SHAPE_2:
+        case MovieTypes.DEFINE_SHAPE_3:
+        case MovieTypes.DEFINE_SHAPE_4:
+        case MovieTypes.DEFINE_MORPH_SHAPE:
+        case MovieTypes.DEFINE_MORPH_SHAPE_2:
+        case MovieTypes.DEFINE_FONT_2:
+        case MovieTypes.DEFINE_FONT_3:
+        case MovieTypes.DO_ACTION:
+        case MovieTypes.DEFINE_MOVIE_CLIP:
+            concurrent = true;
+            break;
+        default:
+            concurrent = false;
+            break;
+        }
+        return concurrent;
+    }
 
-            final byte[] signature = new byte[SIGNATURE_LENGTH];
-            if (stream.read(signature) != signature.length) {
-                throw new DataFormatException("Could not read file signature");
+    /**
+     * Encode the objects using the executor. Each run of objects is encoded
+     * by a separate task with a Context initialised with the version,
+     * character encoding and whether a PathsArePostscript object precedes the
+     * run. The encoded runs are then written to the stream in order.
+     *
+     * @param stream
+     *            the output stream that the movie will be encoded to.
+     *
+     * @throws IOException
+     *             if an I/O error occurs while encoding the file.
+     */
+    private void encodeConcurrently(final OutputStream stream)
+            throws IOException {
+
+        final MovieHeader header = (MovieHeader) objects.get(0);
+        final List<Future<byte[]>> tasks = new ArrayList<Future<byte[]>>();
+        OutputStream streamOut = null;
+
+        final List<MovieTag> list = encodable();
+        int frameCount = 0;
+        boolean postscript = false;
+        int start = 0;
+        MovieTag tag;
+
+        // The header is encoded in the first run so the number of frames
+        // must be set before any run is submitted.
+        for (final MovieTag object : list) {
+            if (object instanceof ShowFrame) {
+                frameCount++;
+            }
+        }
+        header.setFrameCount(frameCount);
+
+        for (int i = 0; i < list.size(); i++) {
+            tag = list.get(i);
+            if (i - start == RUN_LENGTH) {
+                tasks.add(executor.submit(new EncodeTask(
+                        list.subList(start, i), header.getVersion(),
+                        postscript)));
+                start = i;
+            }
+            if (tag instanceof PathsArePostscript) {
+                postscript = true;
+            }
+        }
+
+        try {
+            tasks.add(executor.submit(new EncodeTask(
+                    list.subList(start, list.size()),
+                    header.getVersion(), postscript)));
+
+            final List<byte[]> runs = new ArrayList<byte[]>(tasks.size());
+            // length of signature, version, length and end
+            // CHECKSTYLE IGNORE MagicNumberCheck FOR NEXT 1 LINES
+            int length = 10;
+
+            for (final Future<byte[]> task : tasks) {
+                runs.add(task.get());
+                length += runs.get(runs.size() - 1).length;
             }
 
-            if (Arrays.equals(CWS, signature)) {
-                streamIn = new InflaterInputStream(stream);
-                context.put(Context.COMPRESSED, 1);
-            } else if (Arrays.equals(FWS, signature)) {
-                streamIn = stream;
-                context.put(Context.COMPRESSED, 0);
+            if (header.isCompressed()) {
+                stream.write(CWS);
             } else {
-                throw new DataFormatException();
+                stream.write(FWS);
             }
 
-            context.put(Context.VERSION, stream.read());
+            stream.write(header.getVersion());
+            stream.write(length);
+            stream.write(length >>> Coder.ALIGN_BYTE1);
+            stream.write(length >>> Coder.ALIGN_BYTE2);
+            stream.write(length >>> Coder.ALIGN_BYTE3);
 
-            int length = stream.read();
-            length |= stream.read() << Coder.ALIGN_BYTE1;
-            length |= stream.read() << Coder.ALIGN_BYTE2;
-            length |= stream.read() << Coder.ALIGN_BYTE3;
+            if (header.isCompressed()) {
+                streamOut = new DeflaterOutputStream(stream);
+            } else {
+                streamOut = stream;
+            }
 
-            /*
-             * If the file is shorter than the default buffer size then set the
-             * buffer size to be the file size - this gets around a bug in Java
-             * where the end of ZLIB streams are not detected correctly.
-             */
-            SWFDecoder decoder;
+            for (int i = 0; i < runs.size(); i++) {
+                streamOut.write(runs.get(i));
+                runs.set(i, null);
+            }
+            streamOut.write(0);
+            streamOut.write(0);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (final ExecutionException e) {
+            rethrow(e);
+        } finally {
+            for (final Future<byte[]> task : tasks) {
+                task.cancel(false);
+            }
+            if (streamOut != null) {
+                streamOut.close();
+            }
+        }
+    }
 
-            if (length < SWFDecoder.BUFFER_SIZE) {
-                decoder = new SWFDecoder(streamIn, length - HEADER_LENGTH);
+    /**
+     * Get the list of objects to encode. Any objects shared with another
+     * movie are wrapped in a SharedTag so they are locked while they are
+     * encoded.
+     *
+     * @return the list of objects to encode.
+     */
+    private synchronized List<MovieTag> encodable() {
+        if (shared.isEmpty()) {
+            return objects;
+        }
+        final List<MovieTag> list = new ArrayList<MovieTag>(objects.size());
+        for (final MovieTag tag : objects) {
+            if (shared.contains(tag)) {
+                list.add(new SharedTag(tag));
             } else {
-                decoder = new SWFDecoder(streamIn);
+                list.add(tag);
             }
+        }
+        return list;
+    }
 
-            decoder.setEncoding(encoding);
+    /**
+     * Re-throw the exception that caused a task to fail.
+     *
+     * @param e
+     *            the exception thrown when getting the result of the task.
+     *
+     * @throws IOException
+     *             the IOException thrown by the task or an IOException
+     *             wrapping any other checked exception.
+     */
+    private static void rethrow(final ExecutionException e)
+            throws IOException {
+        final Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+            throw (IOException) cause;
+        } else if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        } else if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        throw new IOException(cause);
+    }
 
-            objects.clear();
+    /**
+     * EncodeTask encodes a run of objects into a separate buffer so it can be
+     * submitted to an ExecutorService.
+     */
+    private final class EncodeTask implements Callable<byte[]> {
+        /** The objects to encode. */
+        private final transient List<MovieTag> tags;
+        /** The Flash version of the movie. */
+        private final transient int version;
+        /** Whether a PathsArePostscript object precedes the objects. */
+        private final transient boolean postscript;
+
+        /**
+         * Create a task to encode a list of objects.
+         *
+         * @param list the objects to encode.
+         * @param flashVersion the Flash version of the movie.
+         * @param paths whether a PathsArePostscript object precedes the
+         * objects.
+         */
+        EncodeTask(final List<MovieTag> list, final int flashVersion,
+                final boolean paths) {
+            tags = list;
+            version = flashVersion;
+            postscript = paths;
+        }
 
-            final SWFFactory<MovieTag> factory = registry.getMovieDecoder();
+        /** {@inheritDoc} */
+        public byte[] call() throws IOException {
+            final Context context = new Context();
+            context.setEncoding(encoding.getEncoding());
+            context.put(Context.VERSION, version);
+            if (postscript) {
+                context.put(Context.POSTSCRIPT, 1);
+            }
 
-            final MovieHeader header = new MovieHeader(decoder, context);
-            objects.add(header);
+            final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            final SWFEncoder coder = new SWFEncoder(buffer);
+            coder.setEncoding(encoding);
 
-            while (decoder.scanUnsignedShort() >>> Coder.LENGTH_FIELD_SIZE
-                    != MovieTypes.END) {
-                factory.getObject(objects, decoder, context);
+            for (final MovieTag tag : tags) {
+                tag.prepareToEncode(context);
+                tag.encode(coder, context);
             }
+            coder.flush();
+            return buffer.toByteArray();
+        }
+    }
 
-            decoder.readUnsignedShort();
+    /**
+     * SharedTag is used to encode an object that is shared with other movies.
+     * The encoding methods save intermediate results in the object so the
+     * object is locked while it is prepared and encoded, and the encoded data
+     * is saved until it is written.
+     */
+    private final class SharedTag implements MovieTag {
+        /** The shared object. */
+        private final transient MovieTag tag;
+        /** The encoded object. */
+        private transient byte[] data;
+
+        /**
+         * Create a SharedTag to encode a shared object.
+         *
+         * @param object the shared object.
+         */
+        SharedTag(final MovieTag object) {
+            tag = object;
+        }
 
-            header.setVersion(context.get(Context.VERSION));
-            header.setCompressed(context.get(Context.COMPRESSED) == 1);
+        /** {@inheritDoc} */
+        public SharedTag copy() {
+            return new SharedTag(tag.copy());
+        }
 
-        } finally {
-            if (streamIn != null) {
-                streamIn.close();
+        /** {@inheritDoc} */
+        public int prepareToEncode(final Context context) {
+            final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            final SWFEncoder coder = new SWFEncoder(buffer);
+            coder.setEncoding(encoding);
+            synchronized (tag) {
+                tag.prepareToEncode(context);
+                try {
+                    tag.encode(coder, context);
+                    coder.flush();
+                } catch (final IOException e) {
+                    // Not thrown when writing to a ByteArrayOutputStream.
+                    throw new IllegalStateException(e);
+                }
             }
+            data = buffer.toByteArray();
+            return data.length;
+        }
+
+        /** {@inheritDoc} */
+        public void encode(final SWFEncoder coder, final Context context)
+                throws IOException {
+            coder.writeBytes(data);
+            data = null;
+        }
+    }
+
+    /**
+     * DecodeTask decodes a LazyTag so it can be submitted to an
+     * ExecutorService.
+     */
+    private static final class DecodeTask implements Callable<MovieTag> {
+        /** The tag to decode. */
+        private final transient LazyTag tag;
+
+        /**
+         * Create a task to decode a tag.
+         *
+         * @param lazy the LazyTag to decode.
+         */
+        DecodeTask(final LazyTag lazy) {
+            tag = lazy;
+        }
+
+        /** {@inheritDoc} */
+        public MovieTag call() throws IOException {
+            return tag.getTag();
         }
     }
 
     /**
      * Encodes the list of objects and writes the data to the specified file.
      * If an error occurs while encoding the file then an exception is thrown.
+     * The objects are encoded in a single pass with the length of the file
+     * updated once all the objects have been written.
      *
      * @param file
      *            the Flash file that the movie will be encoded to.
@@ -336,7 +818,37 @@ public final class Movie implements Copyable<Movie> {
      */
     public void encodeToFile(final File file) throws IOException,
             DataFormatException {
-        encodeToStream(new FileOutputStream(file));
+
+        if (executor != null) {
+            final OutputStream stream = new FileOutputStream(file);
+            try {
+                encodeToStream(stream);
+            } finally {
+                stream.close();
+            }
+            return;
+        }
+
+        final MovieHeader header = (MovieHeader) objects.get(0);
+        int frameCount = 0;
+
+        for (final MovieTag tag : objects) {
+            if (tag instanceof ShowFrame) {
+                frameCount++;
+            }
+        }
+        header.setFrameCount(frameCount);
+
+        final List<MovieTag> list = encodable();
+        final MovieStreamWriter writer = new MovieStreamWriter(file, header,
+                encoding);
+        try {
+            for (final MovieTag tag : list.subList(1, list.size())) {
+                writer.write(tag);
+            }
+        } finally {
+            writer.close();
+        }
     }
 
     /**
@@ -354,6 +866,11 @@ public final class Movie implements Copyable<Movie> {
     public void encodeToStream(final OutputStream stream)
             throws DataFormatException, IOException {
 
+        if (executor != null) {
+            encodeConcurrently(stream);
+            return;
+        }
+
         OutputStream streamOut = null;
 
         try {
@@ -363,12 +880,14 @@ public final class Movie implements Copyable<Movie> {
             context.setEncoding(encoding.getEncoding());
             context.put(Context.VERSION, header.getVersion());
 
+            final List<MovieTag> list = encodable();
+
             // length of signature, version, length and end
             // CHECKSTYLE IGNORE MagicNumberCheck FOR NEXT 1 LINES
             int length = 10;
             int frameCount = 0;
 
-            for (final MovieTag tag : objects) {
+            for (final MovieTag tag : list) {
                 length += tag.prepareToEncode(context);
 
                 if (tag instanceof ShowFrame) {
@@ -399,7 +918,7 @@ public final class Movie implements Copyable<Movie> {
             final SWFEncoder coder = new SWFEncoder(streamOut);
             coder.setEncoding(encoding);
 
-            for (final MovieTag tag : objects) {
+            for (final MovieTag tag : list) {
                 tag.encode(coder, context);
             }
             coder.writeShort(0);
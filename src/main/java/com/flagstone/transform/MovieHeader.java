@@ -78,8 +78,8 @@ public final class MovieHeader implements MovieTag {
      */
     public MovieHeader(final SWFDecoder coder, final Context context)
             throws IOException {
-        version = context.get(Context.VERSION);
-        compressed = context.get(Context.COMPRESSED) == 1;
+        version = context.getInt(Context.VERSION);
+        compressed = context.getInt(Context.COMPRESSED) == 1;
         frameSize = new Bounds(coder);
         frameRate = coder.readUnsignedShort();
         frameCount = coder.readUnsignedShort();
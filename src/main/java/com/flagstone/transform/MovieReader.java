@@ -0,0 +1,428 @@
+/*
+ * MovieReader.java
+ * Transform
+ *
+ * Copyright (c) 2010 Flagstone Software Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of Flagstone Software Ltd. nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.flagstone.transform;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.zip.DataFormatException;
+import java.util.zip.InflaterInputStream;
+
+import com.flagstone.transform.coder.Coder;
+import com.flagstone.transform.coder.Context;
+import com.flagstone.transform.coder.DecoderRegistry;
+import com.flagstone.transform.coder.SWFDecoder;
+import com.flagstone.transform.coder.SWFFactory;
+
+/**
+ * MovieReader decodes the objects in a Flash file one at a time rather than
+ * building the complete list of objects that make up a Movie.
+ *
+ * <p>
+ * The MovieHeader is decoded when the reader is created. Each call to read()
+ * (or next() when the reader is used as an Iterator) then decodes the next
+ * tag from the underlying stream. Once a tag has been processed it can be
+ * discarded so even very large files containing sounds, images or video can
+ * be processed using a constant amount of memory.
+ * </p>
+ *
+ * <pre>
+ * MovieReader reader = new MovieReader(new FileInputStream(file));
+ * try {
+ *     MovieTag tag;
+ *     while ((tag = reader.read()) != null) {
+ *         ...
+ *     }
+ * } finally {
+ *     reader.close();
+ * }
+ * </pre>
+ *
+ * <p>
+ * An uncompressed movie read from a File can be mapped into memory rather
+ * than being read through a stream. Objects that contain large blocks of
+ * binary data such as images, sounds and video frames then share the mapped
+ * contents rather than copying them. Since the objects depend on the file, it
+ * must not be changed or overwritten while they are in use, so mapping must
+ * be selected explicitly. Compressed movies must be inflated so they are
+ * always read through a stream.
+ * </p>
+ *
+ * <p>
+ * Since the Iterator methods cannot throw checked exceptions, any IOException
+ * raised when decoding a tag through hasNext() or next() is re-thrown wrapped
+ * in an IllegalStateException.
+ * </p>
+ */
+public final class MovieReader implements Iterator<MovieTag> {
+
+    /** Length in bytes of the magic number used to identify the file type. */
+    private static final int SIGNATURE_LENGTH = 3;
+    /** Length in bytes of the signature and length fields. */
+    private static final int HEADER_LENGTH = 8;
+
+    /** The stream the encoded movie is read from. */
+    private final transient InputStream streamIn;
+    /** The decoder wrapping the stream. */
+    private final transient SWFDecoder decoder;
+    /** The Context shared by all the objects decoded. */
+    private final transient Context context;
+    /** The factory used to decode each tag. */
+    private transient SWFFactory<MovieTag> factory;
+    /** The header decoded from the start of the movie. */
+    private final transient MovieHeader header;
+    /** The length of the movie taken from the file header. */
+    private final transient int length;
+    /** The tags decoded but not yet returned. */
+    private final transient List<MovieTag> tags;
+    /** The tag read-ahead by hasNext(). */
+    private transient MovieTag pending;
+    /** Indicates the End tag has been decoded. */
+    private transient boolean finished;
+
+    /**
+     * Creates a MovieReader that uses the default decoders and UTF-8 for
+     * strings.
+     *
+     * @param stream
+     *            an InputStream from which the objects will be decoded.
+     *
+     * @throws DataFormatException
+     *             if the stream does not contain Flash data.
+     * @throws IOException
+     *             if an I/O error occurs while reading the header.
+     */
+    public MovieReader(final InputStream stream)
+            throws DataFormatException, IOException {
+        this(stream, DecoderRegistry.getDefault(), CharacterEncoding.UTF8);
+    }
+
+    /**
+     * Creates a MovieReader for a file that uses the default decoders and
+     * UTF-8 for strings.
+     *
+     * @param file
+     *            the Flash file from which the objects will be decoded.
+     *
+     * @throws DataFormatException
+     *             if the file does not contain Flash data.
+     * @throws IOException
+     *             if an I/O error occurs while reading the header.
+     */
+    public MovieReader(final File file)
+            throws DataFormatException, IOException {
+        this(file, DecoderRegistry.getDefault(), CharacterEncoding.UTF8);
+    }
+
+    /**
+     * Creates a MovieReader for a file and decodes the header. The file is
+     * read through a stream.
+     *
+     * @param file
+     *            the Flash file from which the objects will be decoded.
+     * @param registry
+     *            the registry containing the decoders for each type of object.
+     * @param encoding
+     *            the character encoding used for strings.
+     *
+     * @throws DataFormatException
+     *             if the file does not contain Flash data.
+     * @throws IOException
+     *             if an I/O error occurs while reading the header.
+     */
+    public MovieReader(final File file, final DecoderRegistry registry,
+            final CharacterEncoding encoding)
+            throws DataFormatException, IOException {
+        this(file, registry, encoding, false);
+    }
+
+    /**
+     * Creates a MovieReader for a file and decodes the header, optionally
+     * mapping an uncompressed file into memory. The objects decoded from a
+     * mapped file share its contents so the file must not be changed, for
+     * example by encoding a movie to the same file, while they are in use.
+     *
+     * @param file
+     *            the Flash file from which the objects will be decoded.
+     * @param registry
+     *            the registry containing the decoders for each type of object.
+     * @param encoding
+     *            the character encoding used for strings.
+     * @param mapped
+     *            true if an uncompressed file is mapped into memory, false if
+     *            it is read through a stream.
+     *
+     * @throws DataFormatException
+     *             if the file does not contain Flash data.
+     * @throws IOException
+     *             if an I/O error occurs while reading the header.
+     */
+    public MovieReader(final File file, final DecoderRegistry registry,
+            final CharacterEncoding encoding, final boolean mapped)
+            throws DataFormatException, IOException {
+        this(new FileInputStream(file), mapped, registry, encoding);
+    }
+
+    /**
+     * Creates a MovieReader and decodes the header from the start of the
+     * stream.
+     *
+     * @param stream
+     *            an InputStream from which the objects will be decoded.
+     * @param registry
+     *            the registry containing the decoders for each type of object.
+     * @param encoding
+     *            the character encoding used for strings.
+     *
+     * @throws DataFormatException
+     *             if the stream does not contain Flash data.
+     * @throws IOException
+     *             if an I/O error occurs while reading the header.
+     */
+    public MovieReader(final InputStream stream,
+            final DecoderRegistry registry, final CharacterEncoding encoding)
+            throws DataFormatException, IOException {
+        this(stream, false, registry, encoding);
+    }
+
+    /**
+     * Creates a MovieReader and decodes the header.
+     *
+     * @param stream
+     *            an InputStream from which the objects will be decoded.
+     * @param mappable
+     *            true if the stream is a FileInputStream opened at the start
+     *            of the file so an uncompressed movie can be mapped into
+     *            memory.
+     * @param registry
+     *            the registry containing the decoders for each type of object.
+     * @param encoding
+     *            the character encoding used for strings.
+     *
+     * @throws DataFormatException
+     *             if the stream does not contain Flash data.
+     * @throws IOException
+     *             if an I/O error occurs while reading the header.
+     */
+    private MovieReader(final InputStream stream, final boolean mappable,
+            final DecoderRegistry registry, final CharacterEncoding encoding)
+            throws DataFormatException, IOException {
+
+        context = new Context();
+        context.setRegistry(registry);
+        context.setEncoding(encoding.getEncoding());
+
+        final byte[] signature = new byte[SIGNATURE_LENGTH];
+        if (stream.read(signature) != signature.length) {
+            stream.close();
+            throw new DataFormatException("Could not read file signature");
+        }
+
+        if (Arrays.equals(Movie.CWS, signature)) {
+            streamIn = new InflaterInputStream(stream);
+            context.put(Context.COMPRESSED, 1);
+        } else if (Arrays.equals(Movie.FWS, signature)) {
+            streamIn = stream;
+            context.put(Context.COMPRESSED, 0);
+        } else {
+            stream.close();
+            throw new DataFormatException();
+        }
+
+        try {
+            context.put(Context.VERSION, stream.read());
+
+            int size = stream.read();
+            size |= stream.read() << Coder.ALIGN_BYTE1;
+            size |= stream.read() << Coder.ALIGN_BYTE2;
+            size |= stream.read() << Coder.ALIGN_BYTE3;
+            length = size;
+
+            /*
+             * If the file is shorter than the default buffer size then set the
+             * buffer size to be the file size - this gets around a bug in Java
+             * where the end of ZLIB streams are not detected correctly.
+             */
+            if (mappable && streamIn == stream) {
+                decoder = new SWFDecoder(map((FileInputStream) stream));
+            } else if (length < SWFDecoder.BUFFER_SIZE) {
+                decoder = new SWFDecoder(streamIn, length - HEADER_LENGTH);
+            } else {
+                decoder = new SWFDecoder(streamIn);
+            }
+
+            decoder.setEncoding(encoding);
+
+            factory = registry.getMovieDecoder();
+            tags = new ArrayList<MovieTag>(1);
+            header = new MovieHeader(decoder, context);
+        } catch (IOException e) {
+            streamIn.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Map the contents of an uncompressed file, following the signature and
+     * length fields, into memory. The mapping remains valid once the
+     * stream is closed.
+     *
+     * @param stream
+     *            the stream for the file.
+     *
+     * @return a read-only buffer containing the encoded movie header and
+     *         objects.
+     *
+     * @throws IOException
+     *             if an I/O error occurs while mapping the file.
+     */
+    private MappedByteBuffer map(final FileInputStream stream)
+            throws IOException {
+        final FileChannel channel = stream.getChannel();
+        final MappedByteBuffer buffer = channel.map(
+                FileChannel.MapMode.READ_ONLY, 0,
+                Math.min(length, channel.size()));
+        buffer.position(HEADER_LENGTH);
+        return buffer;
+    }
+
+    /**
+     * Get the header decoded from the start of the movie.
+     *
+     * @return the MovieHeader containing the frame size, rate, etc.
+     */
+    public MovieHeader getHeader() {
+        return header;
+    }
+
+    /**
+     * Sets the factory used to decode the tags, replacing the movie decoder
+     * from the registry. The registry is still used to decode objects
+     * nested inside a tag.
+     *
+     * @param decoder
+     *            the factory used to decode the tags that follow.
+     */
+    void setDecoder(final SWFFactory<MovieTag> decoder) {
+        factory = decoder;
+    }
+
+    /**
+     * Get the length of the uncompressed movie in bytes, as recorded in the
+     * file header.
+     *
+     * @return the length of the movie including the signature and header.
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Decode the next object from the movie.
+     *
+     * @return the next MovieTag or null if the end of the movie was reached.
+     *
+     * @throws IOException
+     *             if an I/O error occurs or the tag could not be decoded.
+     */
+    public MovieTag read() throws IOException {
+        if (pending != null) {
+            final MovieTag tag = pending;
+            pending = null;
+            return tag;
+        }
+
+        while (tags.isEmpty()) {
+            if (finished) {
+                return null;
+            }
+            if (decoder.scanUnsignedShort() >>> Coder.LENGTH_FIELD_SIZE
+                    == MovieTypes.END) {
+                decoder.readUnsignedShort();
+                header.setVersion(context.getInt(Context.VERSION));
+                header.setCompressed(context.getInt(Context.COMPRESSED) == 1);
+                finished = true;
+            } else {
+                factory.getObject(tags, decoder, context);
+            }
+        }
+        return tags.remove(0);
+    }
+
+    /** {@inheritDoc} */
+    public boolean hasNext() {
+        if (pending == null) {
+            try {
+                pending = read();
+            } catch (final IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return pending != null;
+    }
+
+    /** {@inheritDoc} */
+    public MovieTag next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final MovieTag tag = pending;
+        pending = null;
+        return tag;
+    }
+
+    /**
+     * Tags are read from a stream so they cannot be removed.
+     *
+     * @throws UnsupportedOperationException always.
+     */
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Close the underlying stream.
+     *
+     * @throws IOException if an I/O error occurs closing the stream.
+     */
+    public void close() throws IOException {
+        streamIn.close();
+    }
+}
@@ -0,0 +1,389 @@
+/*
+ * MovieStreamWriter.java
+ * Transform
+ *
+ * Copyright (c) 2010 Flagstone Software Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of Flagstone Software Ltd. nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.flagstone.transform;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import com.flagstone.transform.coder.Coder;
+import com.flagstone.transform.coder.Context;
+import com.flagstone.transform.coder.SWFEncoder;
+
+/**
+ * MovieStreamWriter encodes the objects in a movie as they are added rather
+ * than requiring the complete list of objects to be held in a Movie.
+ *
+ * <p>
+ * The length of the file, which is stored in the header, is only known once
+ * all the objects have been encoded. When writing to a File the header is
+ * written with a placeholder which is overwritten when the writer is closed.
+ * When writing to an OutputStream the encoded data is buffered until close()
+ * is called. If the movie is compressed only the compressed data is buffered.
+ * </p>
+ *
+ * <p>
+ * The number of frames is updated when writing uncompressed movies. For
+ * compressed movies the frame count is encoded in the compressed part of the
+ * file so the value must be set in the MovieHeader before the writer is
+ * created.
+ * </p>
+ *
+ * <pre>
+ * MovieStreamWriter writer = new MovieStreamWriter(file, header);
+ * try {
+ *     writer.write(tag);
+ *     ...
+ * } finally {
+ *     writer.close();
+ * }
+ * </pre>
+ */
+public final class MovieStreamWriter {
+
+    /** Length in bytes of the signature, version and length fields. */
+    private static final int HEADER_LENGTH = 8;
+    /** Length in bytes of the signature and version fields. */
+    private static final int LENGTH_OFFSET = 4;
+    /** Length in bytes of the End tag that terminates the movie. */
+    private static final int END_LENGTH = 2;
+    /** Length in bytes of the frame count field in the MovieHeader. */
+    private static final int COUNT_LENGTH = 2;
+
+    /** The stream where the movie will be written. */
+    private final transient OutputStream stream;
+    /** The channel used to update the header of a file. */
+    private final transient FileChannel channel;
+    /** Buffer for the encoded data when the stream is not seekable. */
+    private final transient ByteArrayOutputStream buffer;
+    /** The compressor used for compressed movies, null otherwise. */
+    private final transient Deflater deflater;
+    /** The stream that the encoded tags are written to. */
+    private final transient OutputStream streamOut;
+    /** The encoder used for the tags. */
+    private final transient SWFEncoder coder;
+    /** The Context shared by all the tags encoded. */
+    private final transient Context context;
+    /** The header written at the start of the movie. */
+    private final transient MovieHeader header;
+    /** The location of the frame count field in an uncompressed movie. */
+    private final transient int frameCountOffset;
+    /** The number of bytes encoded so far. */
+    private transient int length;
+    /** The number of ShowFrame objects written so far. */
+    private transient int frameCount;
+
+    /**
+     * Creates a MovieStreamWriter that writes a movie to a file using UTF-8
+     * to encode strings.
+     *
+     * @param file
+     *            the Flash file that the movie will be encoded to.
+     * @param movieHeader
+     *            the header containing the version, compression, frame size
+     *            and frame rate for the movie.
+     *
+     * @throws IOException
+     *             if an I/O error occurs while writing the header.
+     */
+    public MovieStreamWriter(final File file, final MovieHeader movieHeader)
+            throws IOException {
+        this(file, movieHeader, CharacterEncoding.UTF8);
+    }
+
+    /**
+     * Creates a MovieStreamWriter that writes a movie to a file.
+     *
+     * @param file
+     *            the Flash file that the movie will be encoded to.
+     * @param movieHeader
+     *            the header containing the version, compression, frame size
+     *            and frame rate for the movie.
+     * @param encoding
+     *            the character encoding used for strings.
+     *
+     * @throws IOException
+     *             if an I/O error occurs while writing the header.
+     */
+    public MovieStreamWriter(final File file, final MovieHeader movieHeader,
+            final CharacterEncoding encoding) throws IOException {
+        this(open(file, movieHeader, encoding), true, movieHeader, encoding);
+    }
+
+    /**
+     * Creates a MovieStreamWriter that writes a movie to a stream using UTF-8
+     * to encode strings.
+     *
+     * @param target
+     *            the output stream that the movie will be encoded to.
+     * @param movieHeader
+     *            the header containing the version, compression, frame size
+     *            and frame rate for the movie.
+     *
+     * @throws IOException
+     *             if an I/O error occurs while writing the header.
+     */
+    public MovieStreamWriter(final OutputStream target,
+            final MovieHeader movieHeader) throws IOException {
+        this(target, false, movieHeader, CharacterEncoding.UTF8);
+    }
+
+    /**
+     * Creates a MovieStreamWriter that writes a movie to a stream.
+     *
+     * @param target
+     *            the output stream that the movie will be encoded to.
+     * @param movieHeader
+     *            the header containing the version, compression, frame size
+     *            and frame rate for the movie.
+     * @param encoding
+     *            the character encoding used for strings.
+     *
+     * @throws IOException
+     *             if an I/O error occurs while writing the header.
+     */
+    public MovieStreamWriter(final OutputStream target,
+            final MovieHeader movieHeader, final CharacterEncoding encoding)
+            throws IOException {
+        this(target, false, movieHeader, encoding);
+    }
+
+    /**
+     * Creates a MovieStreamWriter and encodes the header.
+     *
+     * @param target
+     *            the output stream that the movie will be encoded to.
+     * @param seekable
+     *            true if the target is a FileOutputStream that can be updated
+     *            when the writer is closed.
+     * @param movieHeader
+     *            the header for the movie.
+     * @param encoding
+     *            the character encoding used for strings.
+     *
+     * @throws IOException
+     *             if an I/O error occurs while writing the header.
+     */
+    private MovieStreamWriter(final OutputStream target,
+            final boolean seekable, final MovieHeader movieHeader,
+            final CharacterEncoding encoding) throws IOException {
+
+        if (movieHeader == null) {
+            throw new IllegalArgumentException();
+        }
+
+        stream = target;
+        header = movieHeader;
+
+        OutputStream out = null;
+        Deflater compressor = null;
+        boolean encoded = false;
+
+        try {
+            context = new Context();
+            context.setEncoding(encoding.getEncoding());
+            context.put(Context.VERSION, header.getVersion());
+
+            final int headerLength = header.prepareToEncode(context);
+            length = HEADER_LENGTH + END_LENGTH + headerLength;
+            frameCountOffset = HEADER_LENGTH + headerLength - COUNT_LENGTH;
+
+            if (seekable) {
+                channel = ((FileOutputStream) target).getChannel();
+                buffer = null;
+                writeSignature(0);
+                out = target;
+            } else {
+                channel = null;
+                buffer = new ByteArrayOutputStream();
+                out = buffer;
+            }
+
+            if (header.isCompressed()) {
+                compressor = new Deflater();
+                out = new DeflaterOutputStream(out, compressor);
+            }
+            coder = new SWFEncoder(out);
+            coder.setEncoding(encoding);
+            header.encode(coder, context);
+            encoded = true;
+        } finally {
+            // The file was opened by this object so it must be closed if
+            // the header could not be written.
+            if (!encoded) {
+                if (compressor != null) {
+                    compressor.end();
+                }
+                if (seekable) {
+                    target.close();
+                }
+            }
+        }
+        deflater = compressor;
+        streamOut = out;
+    }
+
+    /**
+     * Open the file where a movie will be written, once the arguments have
+     * been checked, so an invalid header does not leave an empty file.
+     *
+     * @param file
+     *            the Flash file that the movie will be encoded to.
+     * @param movieHeader
+     *            the header for the movie.
+     * @param encoding
+     *            the character encoding used for strings.
+     * @return the stream used to write the file.
+     *
+     * @throws IOException
+     *             if the file cannot be opened.
+     */
+    private static FileOutputStream open(final File file,
+            final MovieHeader movieHeader, final CharacterEncoding encoding)
+            throws IOException {
+        if (file == null || movieHeader == null || encoding == null) {
+            throw new IllegalArgumentException();
+        }
+        return new FileOutputStream(file);
+    }
+
+    /**
+     * Get the number of ShowFrame objects written so far.
+     *
+     * @return the number of frames in the movie.
+     */
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * Encode an object and add it to the movie.
+     *
+     * @param tag
+     *            the object to be encoded. Must not be null.
+     *
+     * @throws IOException
+     *             if an I/O error occurs while encoding the object.
+     */
+    public void write(final MovieTag tag) throws IOException {
+        if (tag == null) {
+            throw new IllegalArgumentException();
+        }
+        length += tag.prepareToEncode(context);
+        tag.encode(coder, context);
+
+        if (tag instanceof ShowFrame) {
+            frameCount++;
+        }
+    }
+
+    /**
+     * Terminate the movie, update the header then close the underlying
+     * stream.
+     *
+     * @throws IOException
+     *             if an I/O error occurs while writing the movie.
+     */
+    public void close() throws IOException {
+        try {
+            coder.writeShort(0);
+            coder.flush();
+
+            if (deflater != null) {
+                ((DeflaterOutputStream) streamOut).finish();
+            }
+
+            if (!header.isCompressed()) {
+                header.setFrameCount(frameCount);
+            }
+
+            if (channel == null) {
+                final byte[] data = buffer.toByteArray();
+                if (!header.isCompressed()) {
+                    data[frameCountOffset - HEADER_LENGTH] = (byte) frameCount;
+                    data[frameCountOffset - HEADER_LENGTH + 1] =
+                        (byte) (frameCount >>> Coder.ALIGN_BYTE1);
+                }
+                writeSignature(length);
+                stream.write(data);
+            } else {
+                stream.flush();
+                channel.write(ByteBuffer.wrap(new byte[] {
+                        (byte) length,
+                        (byte) (length >>> Coder.ALIGN_BYTE1),
+                        (byte) (length >>> Coder.ALIGN_BYTE2),
+                        (byte) (length >>> Coder.ALIGN_BYTE3)
+                        }), LENGTH_OFFSET);
+                if (!header.isCompressed()) {
+                    channel.write(ByteBuffer.wrap(new byte[] {
+                            (byte) frameCount,
+                            (byte) (frameCount >>> Coder.ALIGN_BYTE1)
+                            }), frameCountOffset);
+                }
+            }
+        } finally {
+            // The compressed stream is not closed since that would close
+            // the file before the header is updated.
+            if (deflater != null) {
+                deflater.end();
+            }
+            stream.close();
+        }
+    }
+
+    /**
+     * Write the signature, version and length fields to the underlying stream.
+     *
+     * @param size the length of the movie in bytes.
+     *
+     * @throws IOException
+     *             if an I/O error occurs while writing the fields.
+     */
+    private void writeSignature(final int size) throws IOException {
+        if (header.isCompressed()) {
+            stream.write(Movie.CWS);
+        } else {
+            stream.write(Movie.FWS);
+        }
+        stream.write(header.getVersion());
+        stream.write(size);
+        stream.write(size >>> Coder.ALIGN_BYTE1);
+        stream.write(size >>> Coder.ALIGN_BYTE2);
+        stream.write(size >>> Coder.ALIGN_BYTE3);
+    }
+}
@@ -314,7 +314,7 @@ public final class Place2 implements MovieTag {
 
             coder.readUnsignedShort();
 
-            if (context.get(Context.VERSION) > STANDARD_EVENTS) {
+            if (context.getInt(Context.VERSION) > STANDARD_EVENTS) {
                 coder.readInt();
 
                 while ((event = coder.readInt()) != 0) {
@@ -690,7 +690,7 @@ public final class Place2 implements MovieTag {
         if (!events.isEmpty()) {
             int eventSize;
 
-            if (context.get(Context.VERSION) > STANDARD_EVENTS) {
+            if (context.getInt(Context.VERSION) > STANDARD_EVENTS) {
                 eventSize = 4;
             } else {
                 eventSize = 2;
@@ -782,7 +782,7 @@ public final class Place2 implements MovieTag {
 
             coder.writeShort(0);
 
-            if (context.get(Context.VERSION) > STANDARD_EVENTS) {
+            if (context.getInt(Context.VERSION) > STANDARD_EVENTS) {
                 coder.writeInt(eventMask);
                 for (final EventHandler handler : events) {
                     handler.encode(coder, context);
@@ -633,10 +633,11 @@ public final class Place3 implements MovieTag {
     /**
      * Get the blend that describes how the object will be rendered in relation
      * to the background.
-     * @return the Blend that describes how the object is composited.
+     * @return the Blend that describes how the object is composited or null
+     * if the blend is not set.
      */
     public Blend getBlend() {
-        return Blend.fromInt(blend);
+        return blend == null ? null : Blend.fromInt(blend);
     }
 
     /**
@@ -1,5 +1,7 @@
 package com.flagstone.transform.coder;
 
+import java.nio.ByteBuffer;
+
 /**
  * Coder contains constants and utility functions used by the various classes
  * for encoding and decoding.
@@ -224,6 +226,21 @@ public final class Coder {
         return size;
     }
 
+    /**
+     * Copy the remaining bytes in a buffer to a new array. The position of
+     * the buffer is not changed.
+     *
+     * @param buffer
+     *            the buffer containing the bytes to copy.
+     *
+     * @return an array containing a copy of the bytes.
+     */
+    public static byte[] toByteArray(final ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
     /** Private constructor. */
     private Coder() {
         // Private Constructor
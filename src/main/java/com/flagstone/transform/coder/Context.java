@@ -42,6 +42,13 @@ import com.flagstone.transform.CharacterEncoding;
 /**
  * Contexts are used to pass information between objects when they are being
  * encoded or decoded.
+ *
+ * <p>
+ * The variables identified by the constants defined in this class are stored
+ * in an array indexed by the constant so they can be accessed without
+ * creating Integer objects or looking up a hash table. Other keys are stored
+ * in a table which is only created when one is used.
+ * </p>
  */
 public class Context {
     /** Flash Version. */
@@ -75,19 +82,26 @@ public class Context {
     /** Indicates a definition is for menu button. */
     public static final int MENU_BUTTON = 18;
 
+    /** The number of variables stored in the slot table. */
+    private static final int SLOT_COUNT = MENU_BUTTON + 1;
+
     /** The character encoding used for strings. */
     private String encoding;
     /** The registry containing the objects that perform the decoding. */
     private DecoderRegistry registry;
-    /** A table of variables used to pass information between objects. */
-    private final transient Map<Integer, Integer> variables;
+    /** The values of the variables used to pass information between objects. */
+    private final transient int[] slots;
+    /** Bit mask with a bit set for each slot that contains a variable. */
+    private transient int present;
+    /** A table of any variables not defined in this class. */
+    private transient Map<Integer, Integer> variables;
 
     /**
      * Create a Context object.
      */
     public Context() {
         encoding = CharacterEncoding.UTF8.toString();
-        variables = new LinkedHashMap<Integer, Integer>();
+        slots = new int[SLOT_COUNT];
     }
 
     /**
@@ -152,13 +166,42 @@ public class Context {
         registry = decoderRegistry;
     }
 
+    /**
+     * Is a variable set.
+     * @param key the name of the variable.
+     * @return true if the variable is set, false if not.
+     */
+    public final boolean contains(final int key) {
+        boolean found;
+        if (key >= 0 && key < SLOT_COUNT) {
+            found = (present & (1 << key)) != 0;
+        } else {
+            found = variables != null && variables.containsKey(key);
+        }
+        return found;
+    }
+
     /**
      * Is a variable set.
      * @param key the name of the variable.
      * @return true if the variable is set, false if not.
      */
     public final boolean contains(final Integer key) {
-        return variables.containsKey(key);
+        return contains(key.intValue());
+    }
+
+    /**
+     * Delete the context variable.
+     *
+     * @param key the identifier for the variable.
+     */
+    public final void remove(final int key) {
+        if (key >= 0 && key < SLOT_COUNT) {
+            present &= ~(1 << key);
+            slots[key] = 0;
+        } else if (variables != null) {
+            variables.remove(key);
+        }
     }
 
     /**
@@ -167,16 +210,38 @@ public class Context {
      * @param key the identifier for the variable.
      */
     public final void remove(final Integer key) {
-        variables.remove(key);
+        remove(key.intValue());
     }
 
     /**
      * Get the value of a variable.
      * @param key the name of the variable.
-     * @return the variable value.
+     * @return the variable value or 0 if the variable is not set.
+     */
+    public final int getInt(final int key) {
+        int value;
+        if (key >= 0 && key < SLOT_COUNT) {
+            value = slots[key];
+        } else {
+            final Integer entry = variables == null ? null : variables.get(key);
+            value = entry == null ? 0 : entry;
+        }
+        return value;
+    }
+
+    /**
+     * Get the value of a variable.
+     * @param key the name of the variable.
+     * @return the variable value or null if the variable is not set.
      */
     public final Integer get(final Integer key) {
-        return variables.get(key);
+        Integer value;
+        if (contains(key.intValue())) {
+            value = getInt(key.intValue());
+        } else {
+            value = null;
+        }
+        return value;
     }
 
     /**
@@ -185,8 +250,32 @@ public class Context {
      * @param value the variable value.
      * @return this object.
      */
+    public final Context put(final int key, final int value) {
+        if (key >= 0 && key < SLOT_COUNT) {
+            slots[key] = value;
+            present |= 1 << key;
+        } else {
+            if (variables == null) {
+                variables = new LinkedHashMap<Integer, Integer>();
+            }
+            variables.put(key, value);
+        }
+        return this;
+    }
+
+    /**
+     * Set a variable.
+     * @param key the name of the variable.
+     * @param value the variable value, the variable is deleted if the value
+     * is null.
+     * @return this object.
+     */
     public final Context put(final Integer key, final Integer value) {
-        variables.put(key, value);
+        if (value == null) {
+            remove(key.intValue());
+        } else {
+            put(key.intValue(), value.intValue());
+        }
         return this;
     }
 }
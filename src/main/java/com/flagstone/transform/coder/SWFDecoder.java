@@ -33,6 +33,7 @@ package com.flagstone.transform.coder;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Stack;
 
@@ -43,6 +44,13 @@ import com.flagstone.transform.CharacterEncoding;
  * SWFDecoder wraps an InputStream with a buffer to reduce the amount of
  * memory required to decode a movie and to improve efficiency by reading
  * data from a file or external source in blocks.
+ *
+ * <p>
+ * A SWFDecoder can also be created for data already held in a ByteBuffer, for
+ * example an uncompressed file mapped into memory. The internal buffer is
+ * then filled using bulk copies and blocks of data returned by readBuffer()
+ * share the contents of the ByteBuffer rather than being copied.
+ * </p>
  */
 @SuppressWarnings("PMD.TooManyMethods")
 public final class SWFDecoder {
@@ -59,17 +67,27 @@ public final class SWFDecoder {
     private static final int TO_BYTE2 = 16;
     /** Number of bits to shift when aligning a value to the fourth byte. */
     private static final int TO_BYTE3 = 24;
-    /** Number of bits in an int. */
-    private static final int BITS_PER_INT = 32;
+    /** Number of bits in a long. */
+    private static final int BITS_PER_LONG = 64;
+    /** Number of bytes in a long. */
+    private static final int BYTES_PER_LONG = 8;
+    /** Bit mask applied to bytes when assembling a long. */
+    private static final long BYTE_MASK_LONG = 255L;
+    /** Divisor used to convert fixed point bit fields to floats. */
+    private static final float FIXED_SCALE = 65536.0f;
     /** Number of bits in a byte. */
     private static final int BITS_PER_BYTE = 8;
     /** Right shift to convert number of bits to number of bytes. */
     private static final int BITS_TO_BYTES = 3;
     /** Left shift to convert number of bytes to number of bits. */
     private static final int BYTES_TO_BITS = 3;
+    /** Value for windowIndex when the window does not contain valid data. */
+    private static final int NO_WINDOW = Integer.MAX_VALUE >>> BYTES_TO_BITS;
 
     /** The underlying input stream. */
     private final transient InputStream stream;
+    /** The underlying data when decoding from a ByteBuffer. */
+    private final transient ByteBuffer source;
     /** The buffer for data read from the stream. */
     private final transient byte[] buffer;
     /** A buffer used for reading null terminated strings. */
@@ -92,6 +110,10 @@ public final class SWFDecoder {
     private transient int expected;
     /** The difference from the expected number. */
     private transient int delta;
+    /** The next 64 bits from the buffer, used to read bit fields. */
+    private transient long window;
+    /** The location in the buffer of the first byte in window. */
+    private transient int windowIndex;
 
     /**
      * Create a new SWFDecoder for the underlying InputStream with the
@@ -102,10 +124,12 @@ public final class SWFDecoder {
      */
     public SWFDecoder(final InputStream streamIn, final int length) {
         stream = streamIn;
+        source = null;
         buffer = new byte[length];
         stringBuffer = new byte[STR_BUFFER_SIZE];
         encoding = CharacterEncoding.UTF8.getEncoding();
         locations = new Stack<Integer>();
+        windowIndex = NO_WINDOW;
     }
 
     /**
@@ -116,10 +140,28 @@ public final class SWFDecoder {
      */
     public SWFDecoder(final InputStream streamIn) {
         stream = streamIn;
+        source = null;
+        buffer = new byte[BUFFER_SIZE];
+        stringBuffer = new byte[BUFFER_SIZE];
+        encoding = CharacterEncoding.UTF8.getEncoding();
+        locations = new Stack<Integer>();
+        windowIndex = NO_WINDOW;
+    }
+
+    /**
+     * Create a new SWFDecoder for the remaining bytes in a ByteBuffer. The
+     * position of the ByteBuffer is not changed.
+     *
+     * @param data the buffer containing the data to be decoded.
+     */
+    public SWFDecoder(final ByteBuffer data) {
+        stream = null;
+        source = data.slice();
         buffer = new byte[BUFFER_SIZE];
         stringBuffer = new byte[BUFFER_SIZE];
         encoding = CharacterEncoding.UTF8.getEncoding();
         locations = new Stack<Integer>();
+        windowIndex = NO_WINDOW;
     }
 
     /**
@@ -145,17 +187,24 @@ public final class SWFDecoder {
 
         index = diff;
         size = diff;
+        windowIndex = NO_WINDOW;
 
-        do {
-            bytesRead = stream.read(buffer, index, bytesToRead);
-            if (bytesRead == -1) {
-                bytesToRead = 0;
-            } else {
-                index += bytesRead;
-                size += bytesRead;
-                bytesToRead -= bytesRead;
-            }
-        } while (bytesToRead > 0);
+        if (source == null) {
+            do {
+                bytesRead = stream.read(buffer, index, bytesToRead);
+                if (bytesRead == -1) {
+                    bytesToRead = 0;
+                } else {
+                    index += bytesRead;
+                    size += bytesRead;
+                    bytesToRead -= bytesRead;
+                }
+            } while (bytesToRead > 0);
+        } else {
+            bytesRead = Math.min(bytesToRead, source.remaining());
+            source.get(buffer, index, bytesRead);
+            size += bytesRead;
+        }
 
         index = 0;
     }
@@ -262,6 +311,17 @@ public final class SWFDecoder {
      * input stream.
      */
     public void skip(final int count) throws IOException {
+        if (source != null && count > size - index) {
+            final int target = pos + index + count;
+            if (target > source.limit()) {
+                throw new ArrayIndexOutOfBoundsException();
+            }
+            source.position(target);
+            pos = target;
+            index = 0;
+            size = 0;
+            return;
+        }
         if (size - index == 0) {
             fill();
         }
@@ -303,43 +363,73 @@ public final class SWFDecoder {
      */
     public int readBits(final int numberOfBits, final boolean signed)
             throws IOException {
-
-        int pointer = (index << BYTES_TO_BITS) + offset;
-
-        if (((size << BYTES_TO_BITS) - pointer) < numberOfBits) {
-            fill();
-            pointer = (index << BYTES_TO_BITS) + offset;
+        if (signed) {
+            return readSB(numberOfBits);
+        } else {
+            return readUB(numberOfBits);
         }
+    }
 
+    /**
+     * Read an unsigned bit field.
+     *
+     * @param numberOfBits
+     *            the number of bits to read, in the range 0..32.
+     *
+     * @return the value read.
+     *
+     * @throws IOException if an error occurs reading from the underlying
+     * input stream.
+     */
+    public int readUB(final int numberOfBits) throws IOException {
         int value = 0;
-
         if (numberOfBits > 0) {
-
-            if (pointer + numberOfBits > (size << BYTES_TO_BITS)) {
-                throw new ArrayIndexOutOfBoundsException();
-            }
-
-            for (int i = BITS_PER_INT; (i > 0)
-                    && (index < buffer.length); i -= BITS_PER_BYTE) {
-                value |= (buffer[index++] & BYTE_MASK) << (i - BITS_PER_BYTE);
-            }
-
-            value <<= offset;
-
-            if (signed) {
-                value >>= BITS_PER_INT - numberOfBits;
-            } else {
-                value >>>= BITS_PER_INT - numberOfBits;
-            }
-
-            pointer += numberOfBits;
-            index = pointer >>> BITS_TO_BYTES;
-            offset = pointer & Coder.LOWEST3;
+            final int shift = windowShift(numberOfBits);
+            value = (int) ((window << shift)
+                    >>> (BITS_PER_LONG - numberOfBits));
+            skipBits(numberOfBits);
         }
+        return value;
+    }
 
+    /**
+     * Read a signed bit field.
+     *
+     * @param numberOfBits
+     *            the number of bits to read, in the range 0..32.
+     *
+     * @return the value read, sign extended to 32 bits.
+     *
+     * @throws IOException if an error occurs reading from the underlying
+     * input stream.
+     */
+    public int readSB(final int numberOfBits) throws IOException {
+        int value = 0;
+        if (numberOfBits > 0) {
+            final int shift = windowShift(numberOfBits);
+            value = (int) ((window << shift)
+                    >> (BITS_PER_LONG - numberOfBits));
+            skipBits(numberOfBits);
+        }
         return value;
     }
 
+    /**
+     * Read a signed, fixed point bit field, with 16 bits for the fractional
+     * part.
+     *
+     * @param numberOfBits
+     *            the number of bits to read, in the range 0..32.
+     *
+     * @return the value read.
+     *
+     * @throws IOException if an error occurs reading from the underlying
+     * input stream.
+     */
+    public float readFB(final int numberOfBits) throws IOException {
+        return readSB(numberOfBits) / FIXED_SCALE;
+    }
+
     /**
      * Read-ahead a bit field.
      *
@@ -357,39 +447,93 @@ public final class SWFDecoder {
     public int scanBits(final int numberOfBits, final boolean signed)
             throws IOException {
 
+        int value = 0;
+
+        if (numberOfBits > 0) {
+            final int shift = windowShift(numberOfBits);
+            final long bits = window << shift;
+            if (signed) {
+                value = (int) (bits >> (BITS_PER_LONG - numberOfBits));
+            } else {
+                value = (int) (bits >>> (BITS_PER_LONG - numberOfBits));
+            }
+        }
+
+        return value;
+    }
+
+    /**
+     * Make sure the window contains the next bit field, refilling the buffer
+     * from the stream and reloading the window if necessary.
+     *
+     * @param numberOfBits
+     *            the number of bits that will be read.
+     *
+     * @return the number of bits in the window before the start of the field.
+     *
+     * @throws IOException if an error occurs reading from the underlying
+     * input stream.
+     */
+    private int windowShift(final int numberOfBits) throws IOException {
+
         int pointer = (index << BYTES_TO_BITS) + offset;
 
         if (((size << BYTES_TO_BITS) - pointer) < numberOfBits) {
             fill();
             pointer = (index << BYTES_TO_BITS) + offset;
-        }
-
-        int value = 0;
-
-        if (numberOfBits > 0) {
 
             if (pointer + numberOfBits > (size << BYTES_TO_BITS)) {
                 throw new ArrayIndexOutOfBoundsException();
             }
+        }
 
-            for (int i = BITS_PER_INT; (i > 0)
-                    && (index < buffer.length); i -= BITS_PER_BYTE) {
-                value |= (buffer[index++] & BYTE_MASK) << (i - BITS_PER_BYTE);
-            }
+        int shift = pointer - (windowIndex << BYTES_TO_BITS);
 
-            value <<= offset;
+        if (shift < 0 || shift + numberOfBits > BITS_PER_LONG) {
+            loadWindow();
+            shift = offset;
+        }
+        return shift;
+    }
 
-            if (signed) {
-                value >>= BITS_PER_INT - numberOfBits;
-            } else {
-                value >>>= BITS_PER_INT - numberOfBits;
-            }
+    /**
+     * Load the next 64 bits from the buffer, starting at the current byte,
+     * into the window. Any bytes past the end of the buffer are zero. Bits
+     * past the number of bytes available are ignored since windowShift()
+     * checks that a field lies within the buffer before it is read.
+     */
+    private void loadWindow() {
+        int pos = index;
 
-            index = pointer >>> BITS_TO_BYTES;
-            offset = pointer & Coder.LOWEST3;
+        if (pos + BYTES_PER_LONG <= buffer.length) {
+            window = (((long) buffer[pos++]) << 56)
+                | ((buffer[pos++] & BYTE_MASK_LONG) << 48)
+                | ((buffer[pos++] & BYTE_MASK_LONG) << 40)
+                | ((buffer[pos++] & BYTE_MASK_LONG) << 32)
+                | ((buffer[pos++] & BYTE_MASK_LONG) << 24)
+                | ((buffer[pos++] & BYTE_MASK_LONG) << 16)
+                | ((buffer[pos++] & BYTE_MASK_LONG) << 8)
+                | (buffer[pos] & BYTE_MASK_LONG);
+        } else {
+            window = 0;
+            for (int i = BITS_PER_LONG - BITS_PER_BYTE; (i >= 0)
+                    && (pos < buffer.length); i -= BITS_PER_BYTE) {
+                window |= (buffer[pos++] & BYTE_MASK_LONG) << i;
+            }
         }
+        windowIndex = index;
+    }
 
-        return value;
+    /**
+     * Advance the position by a number of bits.
+     *
+     * @param numberOfBits
+     *            the number of bits to skip.
+     */
+    private void skipBits(final int numberOfBits) {
+        final int pointer = (index << BYTES_TO_BITS) + offset + numberOfBits;
+        index = pointer >>> BITS_TO_BYTES;
+        offset = pointer & Coder.LOWEST3;
     }
 
     /**
@@ -458,13 +602,55 @@ public final class SWFDecoder {
             index += available;
             dest += available;
 
-            if (index == size) {
+            if (source != null && wanted - read > buffer.length) {
+                remaining = wanted - read;
+                if (remaining > source.remaining()) {
+                    throw new ArrayIndexOutOfBoundsException();
+                }
+                source.get(bytes, dest, remaining);
+                pos += size + remaining;
+                index = 0;
+                size = 0;
+                read = wanted;
+            } else if (index == size) {
                 fill();
             }
         }
         return bytes;
     }
 
+    /**
+     * Reads a block of bytes. If the decoder was created for a ByteBuffer then
+     * the returned buffer shares its contents with the data being decoded,
+     * otherwise the bytes are read into a new array.
+     *
+     * @param length
+     *            the number of bytes to read.
+     *
+     * @return a read-only buffer containing the bytes read.
+     *
+     * @throws IOException if an error occurs reading from the underlying
+     * input stream.
+     */
+    public ByteBuffer readBuffer(final int length) throws IOException {
+        ByteBuffer slice;
+
+        if (source == null) {
+            slice = ByteBuffer.wrap(readBytes(new byte[length]));
+        } else {
+            final int start = pos + index;
+            if (length < 0 || start + length > source.limit()) {
+                throw new ArrayIndexOutOfBoundsException();
+            }
+            slice = source.duplicate();
+            slice.limit(start + length);
+            slice.position(start);
+            slice = slice.slice();
+            skip(length);
+        }
+        return slice.asReadOnlyBuffer();
+    }
+
     /**
      * Sets the character encoding scheme used when encoding or decoding
      * strings.
@@ -476,6 +662,17 @@ public final class SWFDecoder {
         encoding = enc.getEncoding();
     }
 
+    /**
+     * Sets the character encoding scheme used when encoding or decoding
+     * strings.
+     *
+     * @param charSet
+     *            the name of the character set used to encode strings.
+     */
+    public void setEncoding(final String charSet) {
+        encoding = charSet;
+    }
+
     /**
      * Read a string using the default character set defined in the decoder.
      *
@@ -33,6 +33,8 @@ package com.flagstone.transform.coder;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Stack;
 
 import com.flagstone.transform.CharacterEncoding;
@@ -266,6 +268,43 @@ public final class SWFEncoder {
         return bytes.length;
     }
 
+    /**
+     * Write the remaining bytes in a buffer. The position of the buffer is
+     * not changed.
+     *
+     * @param bytes
+     *            the buffer containing the bytes to be written.
+     *
+     * @return the number of bytes written.
+     * @throws IOException if there is an error reading data from the underlying
+     * stream.
+     */
+    public int writeBytes(final ByteBuffer bytes) throws IOException {
+        final ByteBuffer data = bytes.duplicate();
+        final int count = data.remaining();
+
+        if (index + count < buffer.length) {
+            data.get(buffer, index, count);
+            index += count;
+        } else {
+            flush();
+            if (data.hasArray()) {
+                stream.write(data.array(), data.arrayOffset()
+                        + data.position(), count);
+            } else {
+                int block;
+                while (data.hasRemaining()) {
+                    block = Math.min(data.remaining(), buffer.length);
+                    data.get(buffer, 0, block);
+                    stream.write(buffer, 0, block);
+                }
+                Arrays.fill(buffer, (byte) 0);
+            }
+            pos += count;
+        }
+        return count;
+    }
+
     /**
      * Write a string using the default character set defined in the encoder.
      *
@@ -142,11 +142,11 @@ public final class Bounds implements SWFEncodeable {
      *             if an error occurs while decoding the data.
      */
     public Bounds(final SWFDecoder coder) throws IOException {
-        size = coder.readBits(FIELD_SIZE, false);
-        minX = coder.readBits(size, true);
-        maxX = coder.readBits(size, true);
-        minY = coder.readBits(size, true);
-        maxY = coder.readBits(size, true);
+        size = coder.readUB(FIELD_SIZE);
+        minX = coder.readSB(size);
+        maxX = coder.readSB(size);
+        minY = coder.readSB(size);
+        maxY = coder.readSB(size);
         coder.alignToByte();
     }
 
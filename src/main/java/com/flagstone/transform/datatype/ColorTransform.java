@@ -185,17 +185,17 @@ public final class ColorTransform implements SWFEncodeable {
             throws IOException {
 
         hasAlpha = context.contains(Context.TRANSPARENT);
-        hasAdd = coder.readBits(1, false) != 0;
-        hasMultiply = coder.readBits(1, false) != 0;
-        size = coder.readBits(FIELD_SIZE, false);
+        hasAdd = coder.readUB(1) != 0;
+        hasMultiply = coder.readUB(1) != 0;
+        size = coder.readUB(FIELD_SIZE);
 
         if (hasMultiply) {
-            multiplyRed = coder.readBits(size, true);
-            multiplyGreen = coder.readBits(size, true);
-            multiplyBlue = coder.readBits(size, true);
+            multiplyRed = coder.readSB(size);
+            multiplyGreen = coder.readSB(size);
+            multiplyBlue = coder.readSB(size);
 
             if (hasAlpha) {
-                multiplyAlpha = coder.readBits(size, true);
+                multiplyAlpha = coder.readSB(size);
             } else {
                 multiplyAlpha = DEFAULT_MULTIPLY;
             }
@@ -207,12 +207,12 @@ public final class ColorTransform implements SWFEncodeable {
         }
 
         if (hasAdd) {
-            addRed = coder.readBits(size, true);
-            addGreen = coder.readBits(size, true);
-            addBlue = coder.readBits(size, true);
+            addRed = coder.readSB(size);
+            addGreen = coder.readSB(size);
+            addBlue = coder.readSB(size);
 
             if (hasAlpha) {
-                addAlpha = coder.readBits(size, true);
+                addAlpha = coder.readSB(size);
             } else {
                 addAlpha = DEFAULT_ADD;
             }
@@ -255,31 +255,31 @@ public final class CoordTransform implements SWFEncodeable {
 
         coder.alignToByte();
 
-        hasScale = coder.readBits(1, false) != 0;
+        hasScale = coder.readUB(1) != 0;
 
         if (hasScale) {
-            scaleSize = coder.readBits(FIELD_SIZE, false);
-            scaleX = coder.readBits(scaleSize, true);
-            scaleY = coder.readBits(scaleSize, true);
+            scaleSize = coder.readUB(FIELD_SIZE);
+            scaleX = coder.readSB(scaleSize);
+            scaleY = coder.readSB(scaleSize);
         } else {
             scaleX = DEFAULT_INT_SCALE;
             scaleY = DEFAULT_INT_SCALE;
         }
 
-        hasShear = coder.readBits(1, false) != 0;
+        hasShear = coder.readUB(1) != 0;
 
         if (hasShear) {
-            shearSize = coder.readBits(FIELD_SIZE, false);
-            shearX = coder.readBits(shearSize, true);
-            shearY = coder.readBits(shearSize, true);
+            shearSize = coder.readUB(FIELD_SIZE);
+            shearX = coder.readSB(shearSize);
+            shearY = coder.readSB(shearSize);
         } else {
             shearX = DEFAULT_INT_SHEAR;
             shearY = DEFAULT_INT_SHEAR;
         }
 
-        transSize = coder.readBits(FIELD_SIZE, false);
-        translateX = coder.readBits(transSize, true);
-        translateY = coder.readBits(transSize, true);
+        transSize = coder.readUB(FIELD_SIZE);
+        translateX = coder.readSB(transSize);
+        translateY = coder.readSB(transSize);
 
         coder.alignToByte();
     }
@@ -167,7 +167,7 @@ public final class BitmapFill implements FillStyle {
      * @return true if the image is tiled, false otherwise.
      */
     public boolean isTiled() {
-        return (type & CLIPPED_MASK) != 0;
+        return (type & CLIPPED_MASK) == 0;
     }
 
     /**
@@ -187,7 +187,7 @@ public final class BitmapFill implements FillStyle {
      * @return true if the image is smoothed, false otherwise.
      */
     public boolean isSmoothed() {
-        return (type & SMOOTHED_MASK) != 0;
+        return (type & SMOOTHED_MASK) == 0;
     }
 
     /**
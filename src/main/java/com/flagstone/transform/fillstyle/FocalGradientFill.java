@@ -257,7 +257,7 @@ public final class FocalGradientFill implements FillStyle {
         if (list == null) {
             throw new IllegalArgumentException();
         }
-        if (gradients.size() > Gradient.MAX_GRADIENTS) {
+        if (list.size() > Gradient.MAX_GRADIENTS) {
             throw new IllegalStateException(
                     "Maximum number of gradients exceeded.");
         }
@@ -177,7 +177,7 @@ public final class MorphBitmapFill implements FillStyle {
      * filled, false otherwise.
      */
     public boolean isTiled() {
-        return (type & CLIPPED_MASK) != 0;
+        return (type & CLIPPED_MASK) == 0;
     }
 
     /**
@@ -199,7 +199,7 @@ public final class MorphBitmapFill implements FillStyle {
      * applied to increase performance.
      */
     public boolean isSmoothed() {
-        return (type & SMOOTHED_MASK) != 0;
+        return (type & SMOOTHED_MASK) == 0;
     }
 
     /**
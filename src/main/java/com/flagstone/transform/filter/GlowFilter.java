@@ -99,6 +99,9 @@ public final class GlowFilter implements Filter {
             case INNER:
                 mode = Coder.BIT7;
                 break;
+            case TOP:
+                mode = 0;
+                break;
             default:
                 throw new IllegalArgumentException();
             }
@@ -239,10 +242,12 @@ public final class GlowFilter implements Filter {
             value = FilterMode.KNOCKOUT;
             break;
         case Coder.BIT7:
+        case Coder.BIT7 | Coder.BIT6:
             value = FilterMode.INNER;
             break;
         default:
-            throw new IllegalStateException();
+            value = FilterMode.TOP;
+            break;
         }
         return value;
     }
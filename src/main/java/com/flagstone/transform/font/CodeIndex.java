@@ -0,0 +1,146 @@
+/*
+ * CodeIndex.java
+ * Transform
+ *
+ * Copyright (c) 2010 Flagstone Software Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of Flagstone Software Ltd. nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package com.flagstone.transform.font;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * CodeIndex is a table that maps the character codes in a font definition
+ * to the index of the corresponding glyph. It is created once for each
+ * font definition and shared by the classes that lay out or display text,
+ * avoiding the cost of creating a map of boxed values for each use.
+ * </p>
+ *
+ * <p>
+ * The table uses open addressing with linear probing over arrays of
+ * primitive values. If a code appears more than once in the font then the
+ * last glyph with that code is used. A CodeIndex is immutable so it can be
+ * shared between threads.
+ * </p>
+ */
+public final class CodeIndex {
+
+    /** Value used to mark an empty slot in the table. */
+    private static final int EMPTY = -1;
+    /** Multiplier used to spread the codes across the table. */
+    private static final int HASH = 0x9E3779B9;
+    /** The number of bits in an int. */
+    private static final int INT_SIZE = 32;
+    /** The minimum number of bits used to index the table. */
+    private static final int MIN_BITS = 2;
+
+    /** The character codes, or EMPTY. */
+    private final transient int[] keys;
+    /** The glyph index for each code. */
+    private final transient int[] glyphs;
+    /** The shift applied to the hash to get a slot in the table. */
+    private final transient int shift;
+    /** The bit mask used to wrap the slot when probing. */
+    private final transient int mask;
+    /** The number of distinct codes in the table. */
+    private final transient int size;
+
+    /**
+     * Create an index for the codes in a font definition. The position of
+     * each code is the index of the glyph it maps to. Negative values are
+     * ignored.
+     *
+     * @param codes the character codes for each glyph. Must not be null.
+     */
+    public CodeIndex(final int[] codes) {
+        this(codes, codes.length);
+    }
+
+    /**
+     * Create an index for the first codes in an array.
+     *
+     * @param codes the character codes for each glyph.
+     * @param count the number of codes in the array.
+     */
+    CodeIndex(final int[] codes, final int count) {
+        int bits = MIN_BITS;
+        while ((1 << bits) < count * 2) {
+            bits++;
+        }
+        keys = new int[1 << bits];
+        glyphs = new int[1 << bits];
+        shift = INT_SIZE - bits;
+        mask = (1 << bits) - 1;
+        Arrays.fill(keys, EMPTY);
+
+        int distinct = 0;
+        int slot;
+        for (int i = 0; i < count; i++) {
+            if (codes[i] >= 0) {
+                slot = (codes[i] * HASH) >>> shift;
+                while (keys[slot] != EMPTY && keys[slot] != codes[i]) {
+                    slot = (slot + 1) & mask;
+                }
+                if (keys[slot] == EMPTY) {
+                    keys[slot] = codes[i];
+                    distinct++;
+                }
+                glyphs[slot] = i;
+            }
+        }
+        size = distinct;
+    }
+
+    /**
+     * Get the index of the glyph for a character code.
+     *
+     * @param code the character code.
+     * @return the index of the glyph or -1 if the font does not contain a
+     * glyph for the code.
+     */
+    public int glyphForCode(final int code) {
+        int slot = (code * HASH) >>> shift;
+        int key;
+        while ((key = keys[slot]) != EMPTY) {
+            if (key == code) {
+                return glyphs[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return EMPTY;
+    }
+
+    /**
+     * Get the number of distinct character codes in the index.
+     * @return the number of codes.
+     */
+    public int size() {
+        return size;
+    }
+}
@@ -94,7 +94,7 @@ public final class DefineFont2 implements DefineTag {
     /** The list of font glyphs. */
     private List<Shape> shapes;
     /** The list of character codes that map to each glyph - ascending order. */
-    private List<Integer> codes;
+    private IntegerList codes;
     /** Height of the font above the baseline. */
     private int ascent;
     /** Height of the font below the baseline. */
@@ -102,7 +102,11 @@ public final class DefineFont2 implements DefineTag {
     /** Spacing between successive lines. */
     private int leading;
     /** Advances for each glyph. */
-    private List<Integer> advances;
+    private IntegerList advances;
+    /** The table mapping character codes to glyphs. */
+    private transient CodeIndex codeIndex;
+    /** The version of the codes used to create the table. */
+    private transient int indexVersion;
     /** Bounding boxes for each glyph. */
     private List<Bounds> bounds;
     /** Kernings for selected pairs of glyphs. */
@@ -141,8 +145,8 @@ public final class DefineFont2 implements DefineTag {
         coder.mark();
         identifier = coder.readUnsignedShort();
         shapes = new ArrayList<Shape>();
-        codes = new ArrayList<Integer>();
-        advances = new ArrayList<Integer>();
+        codes = new IntegerList();
+        advances = new IntegerList();
         bounds = new ArrayList<Bounds>();
         kernings = new ArrayList<Kerning>();
 
@@ -208,11 +212,11 @@ public final class DefineFont2 implements DefineTag {
 
         if (wideCodes) {
             for (int i = 0; i < glyphCount; i++) {
-                codes.add(coder.readUnsignedShort());
+                codes.addInt(coder.readUnsignedShort());
             }
         } else {
             for (int i = 0; i < glyphCount; i++) {
-                codes.add(coder.readByte());
+                codes.addInt(coder.readByte());
             }
         }
 
@@ -222,7 +226,7 @@ public final class DefineFont2 implements DefineTag {
             leading = coder.readSignedShort();
 
             for (int i = 0; i < glyphCount; i++) {
-                advances.add(coder.readSignedShort());
+                advances.addInt(coder.readSignedShort());
             }
 
             for (int i = 0; i < glyphCount; i++) {
@@ -266,8 +270,8 @@ public final class DefineFont2 implements DefineTag {
         setName(fontName);
 
         shapes = new ArrayList<Shape>();
-        codes = new ArrayList<Integer>();
-        advances = new ArrayList<Integer>();
+        codes = new IntegerList();
+        advances = new IntegerList();
         bounds = new ArrayList<Bounds>();
         kernings = new ArrayList<Kerning>();
     }
@@ -295,8 +299,8 @@ public final class DefineFont2 implements DefineTag {
         for (final Shape shape : object.shapes) {
             shapes.add(shape.copy());
         }
-        codes = new ArrayList<Integer>(object.codes);
-        advances = new ArrayList<Integer>(object.advances);
+        codes = new IntegerList(object.codes);
+        advances = new IntegerList(object.advances);
         bounds = new ArrayList<Bounds>(object.bounds);
         kernings = new ArrayList<Kerning>(object.kernings);
     }
@@ -331,7 +335,7 @@ public final class DefineFont2 implements DefineTag {
             throw new IllegalArgumentRangeException(
                     0, Coder.USHORT_MAX, code);
         }
-        codes.add(code);
+        codes.addInt(code);
 
         if (obj == null) {
             throw new IllegalArgumentException();
@@ -356,7 +360,7 @@ public final class DefineFont2 implements DefineTag {
             throw new IllegalArgumentRangeException(
                     Coder.SHORT_MIN, Coder.SHORT_MAX, anAdvance);
         }
-        advances.add(anAdvance);
+        advances.addInt(anAdvance);
         return this;
     }
 
@@ -518,6 +522,33 @@ public final class DefineFont2 implements DefineTag {
         return codes;
     }
 
+    /**
+     * Get the character code for a glyph without creating an Integer object.
+     *
+     * @param index
+     *            the index of the glyph in the font.
+     * @return the character code for the glyph.
+     */
+    public int getCode(final int index) {
+        return codes.getInt(index);
+    }
+
+    /**
+     * Get the table that maps character codes to the index of the
+     * corresponding glyph. The table is created when it is first used and
+     * again only if the codes are changed, so it can be shared by all the
+     * objects that display text using the font.
+     *
+     * @return the index of the glyph for each character code.
+     */
+    public CodeIndex getCodeIndex() {
+        if (codeIndex == null || indexVersion != codes.getVersion()) {
+            codeIndex = new CodeIndex(codes.toIntArray());
+            indexVersion = codes.getVersion();
+        }
+        return codeIndex;
+    }
+
     /**
      * Get the ascent for the font in twips.
      *
@@ -555,6 +586,17 @@ public final class DefineFont2 implements DefineTag {
         return advances;
     }
 
+    /**
+     * Get the advance for a glyph without creating an Integer object.
+     *
+     * @param index
+     *            the index of the glyph in the font.
+     * @return the advance for the glyph.
+     */
+    public int getAdvance(final int index) {
+        return advances.getInt(index);
+    }
+
     /**
      * Returns the list of bounding rectangles defined for each glyph in the
      * font.
@@ -655,13 +697,14 @@ public final class DefineFont2 implements DefineTag {
      *
      * @param list
      *            sets the code table that maps a particular glyph to a
-     *            character code. Must not be null.
+     *            character code. Must not be null. The codes are copied.
      */
     public void setCodes(final List<Integer> list) {
         if (list == null) {
             throw new IllegalArgumentException();
         }
-        codes = list;
+        codes = new IntegerList(list);
+        codeIndex = null;
     }
 
     /**
@@ -714,13 +757,13 @@ public final class DefineFont2 implements DefineTag {
      *
      * @param list
      *            of Integer objects that define the spacing between glyphs.
-     *            Must not be null.
+     *            Must not be null. The advances are copied.
      */
     public void setAdvances(final List<Integer> list) {
         if (list == null) {
             throw new IllegalArgumentException();
         }
-        advances = list;
+        advances = new IntegerList(list);
     }
 
     /**
@@ -768,7 +811,7 @@ public final class DefineFont2 implements DefineTag {
     @SuppressWarnings("PMD.NPathComplexity")
     public int prepareToEncode(final Context context) {
         // CHECKSTYLE:OFF
-        wideCodes = (context.get(Context.VERSION) > 5)
+        wideCodes = (context.getInt(Context.VERSION) > 5)
                 || encoding != 1;
 
         context.put(Context.FILL_SIZE, 1);
@@ -782,30 +825,31 @@ public final class DefineFont2 implements DefineTag {
         final int count = shapes.size();
         int index = 0;
         int tableEntry;
-        int shapeLength;
-
-        if (wideOffsets) {
-            tableEntry = (count << 2) + 4;
-        } else {
-            tableEntry = (count << 1) + 2;
-        }
 
         table = new int[count + 1];
 
         int glyphLength = 0;
 
         for (final Shape shape : shapes) {
-            table[index++] = tableEntry;
-            shapeLength = shape.prepareToEncode(context);
-            glyphLength += shapeLength;
-            tableEntry += shapeLength;
+            table[index++] = glyphLength;
+            glyphLength += shape.prepareToEncode(context);
         }
 
-        table[index++] = tableEntry;
+        table[index++] = glyphLength;
 
         wideOffsets = (shapes.size() * 2 + glyphLength)
                 > Coder.USHORT_MAX;
 
+        if (wideOffsets) {
+            tableEntry = (count << 2) + 4;
+        } else {
+            tableEntry = (count << 1) + 2;
+        }
+
+        for (int i = 0; i < table.length; i++) {
+            table[i] += tableEntry;
+        }
+
         length = 5;
         length += context.strlen(name);
         length += 2;
@@ -881,7 +925,7 @@ public final class DefineFont2 implements DefineTag {
         bits |= bold ? Coder.BIT0 : 0;
         coder.writeByte(bits);
 
-        coder.writeByte(context.get(Context.VERSION)
+        coder.writeByte(context.getInt(Context.VERSION)
                 > LANGUAGE_VERSION ? language : 0);
         coder.writeByte(context.strlen(name));
 
@@ -903,12 +947,12 @@ public final class DefineFont2 implements DefineTag {
         }
 
         if (wideCodes) {
-            for (final Integer code : codes) {
-                coder.writeShort(code.intValue());
+            for (int i = 0; i < codes.size(); i++) {
+                coder.writeShort(codes.getInt(i));
             }
         } else {
-            for (final Integer code : codes) {
-                coder.writeByte(code.intValue());
+            for (int i = 0; i < codes.size(); i++) {
+                coder.writeByte(codes.getInt(i));
             }
         }
 
@@ -917,8 +961,8 @@ public final class DefineFont2 implements DefineTag {
             coder.writeShort(descent);
             coder.writeShort(leading);
 
-            for (final Integer advance : advances) {
-                coder.writeShort(advance.intValue());
+            for (int i = 0; i < advances.size(); i++) {
+                coder.writeShort(advances.getInt(i));
             }
 
             for (final Bounds bound : bounds) {
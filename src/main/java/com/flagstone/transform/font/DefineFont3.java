@@ -82,7 +82,7 @@ public final class DefineFont3 implements DefineTag {
     /** The list of font glyphs. */
     private List<Shape> shapes;
     /** The list of character codes that map to each glyph - ascending order. */
-    private List<Integer> codes;
+    private IntegerList codes;
     /** Height of the font above the baseline. */
     private int ascent;
     /** Height of the font below the baseline. */
@@ -90,7 +90,11 @@ public final class DefineFont3 implements DefineTag {
     /** Spacing between successive lines. */
     private int leading;
     /** Advances for each glyph. */
-    private List<Integer> advances;
+    private IntegerList advances;
+    /** The table mapping character codes to glyphs. */
+    private transient CodeIndex codeIndex;
+    /** The version of the codes used to create the table. */
+    private transient int indexVersion;
     /** Bounding boxes for each glyph. */
     private List<Bounds> bounds;
     /** Kernings for selected pairs of glyphs. */
@@ -129,8 +133,8 @@ public final class DefineFont3 implements DefineTag {
         coder.mark();
         identifier = coder.readUnsignedShort();
         shapes = new ArrayList<Shape>();
-        codes = new ArrayList<Integer>();
-        advances = new ArrayList<Integer>();
+        codes = new IntegerList();
+        advances = new IntegerList();
         bounds = new ArrayList<Bounds>();
         kernings = new ArrayList<Kerning>();
 
@@ -202,11 +206,11 @@ public final class DefineFont3 implements DefineTag {
 
         if (wideCodes) {
             for (int i = 0; i < glyphCount; i++) {
-                codes.add(coder.readUnsignedShort());
+                codes.addInt(coder.readUnsignedShort());
             }
         } else {
             for (int i = 0; i < glyphCount; i++) {
-                codes.add(coder.readByte());
+                codes.addInt(coder.readByte());
             }
         }
 
@@ -216,7 +220,7 @@ public final class DefineFont3 implements DefineTag {
             leading = coder.readSignedShort();
 
             for (int i = 0; i < glyphCount; i++) {
-                advances.add(coder.readSignedShort());
+                advances.addInt(coder.readSignedShort());
             }
 
             for (int i = 0; i < glyphCount; i++) {
@@ -261,8 +265,8 @@ public final class DefineFont3 implements DefineTag {
 
         encoding = 0;
         shapes = new ArrayList<Shape>();
-        codes = new ArrayList<Integer>();
-        advances = new ArrayList<Integer>();
+        codes = new IntegerList();
+        advances = new IntegerList();
         bounds = new ArrayList<Bounds>();
         kernings = new ArrayList<Kerning>();
     }
@@ -290,8 +294,8 @@ public final class DefineFont3 implements DefineTag {
         for (final Shape shape : object.shapes) {
             shapes.add(shape.copy());
         }
-        codes = new ArrayList<Integer>(object.codes);
-        advances = new ArrayList<Integer>(object.advances);
+        codes = new IntegerList(object.codes);
+        advances = new IntegerList(object.advances);
         bounds = new ArrayList<Bounds>(object.bounds);
         kernings = new ArrayList<Kerning>(object.kernings);
     }
@@ -328,7 +332,7 @@ public final class DefineFont3 implements DefineTag {
             throw new IllegalArgumentRangeException(0,
                     Coder.USHORT_MAX, code);
         }
-        codes.add(code);
+        codes.addInt(code);
 
         if (obj == null) {
             throw new IllegalArgumentException();
@@ -353,7 +357,7 @@ public final class DefineFont3 implements DefineTag {
             throw new IllegalArgumentRangeException(
                     Coder.SHORT_MIN, Coder.SHORT_MAX, anAdvance);
         }
-        advances.add(anAdvance);
+        advances.addInt(anAdvance);
         return this;
     }
 
@@ -515,6 +519,33 @@ public final class DefineFont3 implements DefineTag {
         return codes;
     }
 
+    /**
+     * Get the character code for a glyph without creating an Integer object.
+     *
+     * @param index
+     *            the index of the glyph in the font.
+     * @return the character code for the glyph.
+     */
+    public int getCode(final int index) {
+        return codes.getInt(index);
+    }
+
+    /**
+     * Get the table that maps character codes to the index of the
+     * corresponding glyph. The table is created when it is first used and
+     * again only if the codes are changed, so it can be shared by all the
+     * objects that display text using the font.
+     *
+     * @return the index of the glyph for each character code.
+     */
+    public CodeIndex getCodeIndex() {
+        if (codeIndex == null || indexVersion != codes.getVersion()) {
+            codeIndex = new CodeIndex(codes.toIntArray());
+            indexVersion = codes.getVersion();
+        }
+        return codeIndex;
+    }
+
     /**
      * Returns the ascent for the font in twips.
      *
@@ -552,6 +583,17 @@ public final class DefineFont3 implements DefineTag {
         return advances;
     }
 
+    /**
+     * Get the advance for a glyph without creating an Integer object.
+     *
+     * @param index
+     *            the index of the glyph in the font.
+     * @return the advance for the glyph.
+     */
+    public int getAdvance(final int index) {
+        return advances.getInt(index);
+    }
+
     /**
      * Returns the list of bounding rectangles defined for each glyph in the
      * font.
@@ -652,13 +694,14 @@ public final class DefineFont3 implements DefineTag {
      *
      * @param list
      *            sets the code table that maps a particular glyph to a
-     *            character code. Must not be null.
+     *            character code. Must not be null. The codes are copied.
      */
     public void setCodes(final List<Integer> list) {
         if (list == null) {
             throw new IllegalArgumentException();
         }
-        codes = list;
+        codes = new IntegerList(list);
+        codeIndex = null;
     }
 
     /**
@@ -711,13 +754,13 @@ public final class DefineFont3 implements DefineTag {
      *
      * @param list
      *            of Integer objects that define the spacing between glyphs.
-     *            Must not be null.
+     *            Must not be null. The advances are copied.
      */
     public void setAdvances(final List<Integer> list) {
         if (list == null) {
             throw new IllegalArgumentException();
         }
-        advances = list;
+        advances = new IntegerList(list);
     }
 
     /**
@@ -766,7 +809,7 @@ public final class DefineFont3 implements DefineTag {
 	@SuppressWarnings("PMD.NPathComplexity")
     public int prepareToEncode(final Context context) {
         // CHECKSTYLE:OFF
-        wideCodes = (context.get(Context.VERSION) > 5)
+        wideCodes = (context.getInt(Context.VERSION) > 5)
                 || encoding != 1;
 
         context.put(Context.FILL_SIZE, 1);
@@ -779,30 +822,31 @@ public final class DefineFont3 implements DefineTag {
         final int count = shapes.size();
         int index = 0;
         int tableEntry;
-        int shapeLength;
-
-        if (wideOffsets) {
-            tableEntry = (count << 2) + 4;
-        } else {
-            tableEntry = (count << 1) + 2;
-        }
 
         table = new int[count + 1];
 
         int glyphLength = 0;
 
         for (final Shape shape : shapes) {
-            table[index++] = tableEntry;
-            shapeLength = shape.prepareToEncode(context);
-            glyphLength += shapeLength;
-            tableEntry += shapeLength;
+            table[index++] = glyphLength;
+            glyphLength += shape.prepareToEncode(context);
         }
 
-        table[index++] = tableEntry;
+        table[index++] = glyphLength;
 
         wideOffsets = (shapes.size() * 2 + glyphLength)
                 > Coder.USHORT_MAX;
 
+        if (wideOffsets) {
+            tableEntry = (count << 2) + 4;
+        } else {
+            tableEntry = (count << 1) + 2;
+        }
+
+        for (int i = 0; i < table.length; i++) {
+            table[i] += tableEntry;
+        }
+
         length = 5;
         length += context.strlen(name);
         length += 2;
@@ -898,12 +942,12 @@ public final class DefineFont3 implements DefineTag {
         }
 
         if (wideCodes) {
-            for (final Integer code : codes) {
-                coder.writeShort(code.intValue());
+            for (int i = 0; i < codes.size(); i++) {
+                coder.writeShort(codes.getInt(i));
             }
         } else {
-            for (final Integer code : codes) {
-                coder.writeByte(code.intValue());
+            for (int i = 0; i < codes.size(); i++) {
+                coder.writeByte(codes.getInt(i));
             }
         }
 
@@ -912,8 +956,8 @@ public final class DefineFont3 implements DefineTag {
             coder.writeShort(descent);
             coder.writeShort(leading);
 
-            for (final Integer advance : advances) {
-                coder.writeShort(advance.intValue());
+            for (int i = 0; i < advances.size(); i++) {
+                coder.writeShort(advances.getInt(i));
             }
 
             for (final Bounds bound : bounds) {
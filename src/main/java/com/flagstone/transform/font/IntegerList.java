@@ -0,0 +1,182 @@
+/*
+ * IntegerList.java
+ * Transform
+ *
+ * Copyright (c) 2010 Flagstone Software Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of Flagstone Software Ltd. nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package com.flagstone.transform.font;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.RandomAccess;
+
+/**
+ * IntegerList is a list of integers backed by an array of primitive values.
+ * It is used to store the codes and advances in font definitions so the
+ * values are not boxed when fonts are decoded, encoded or used to lay out
+ * text, while still presenting the values as a List for compatibility.
+ */
+final class IntegerList extends AbstractList<Integer>
+        implements RandomAccess {
+
+    /** The initial capacity of an empty list. */
+    private static final int CAPACITY = 16;
+
+    /** The values in the list. */
+    private transient int[] values;
+    /** The number of values in the list. */
+    private transient int count;
+    /** Counter incremented each time any value is changed. */
+    private transient int version;
+
+    /**
+     * Create an empty list.
+     */
+    IntegerList() {
+        values = new int[CAPACITY];
+    }
+
+    /**
+     * Create a list containing the values from a collection.
+     * @param list the values added to the list. Must not contain nulls.
+     */
+    IntegerList(final Collection<Integer> list) {
+        if (list instanceof IntegerList) {
+            final IntegerList other = (IntegerList) list;
+            values = Arrays.copyOf(other.values,
+                    Math.max(other.count, CAPACITY));
+            count = other.count;
+        } else {
+            values = new int[Math.max(list.size(), CAPACITY)];
+            for (final Integer value : list) {
+                values[count++] = value;
+            }
+        }
+    }
+
+    /**
+     * Get a value without boxing it.
+     * @param index the position of the value in the list.
+     * @return the value.
+     */
+    int getInt(final int index) {
+        if (index >= count) {
+            throw new IndexOutOfBoundsException(String.valueOf(index));
+        }
+        return values[index];
+    }
+
+    /**
+     * Add a value to the end of the list without boxing it.
+     * @param value the value to add.
+     */
+    void addInt(final int value) {
+        ensureCapacity(count + 1);
+        values[count++] = value;
+        modCount++;
+        version++;
+    }
+
+    /**
+     * Get the counter that is incremented each time the list is changed so
+     * tables derived from the values can be updated.
+     * @return the number of changes made to the list.
+     */
+    int getVersion() {
+        return version;
+    }
+
+    /**
+     * Get a copy of the values.
+     * @return an array containing the values in the list.
+     */
+    int[] toIntArray() {
+        return Arrays.copyOf(values, count);
+    }
+
+    @Override
+    public Integer get(final int index) {
+        return getInt(index);
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    @Override
+    public Integer set(final int index, final Integer value) {
+        final int previous = getInt(index);
+        values[index] = value;
+        version++;
+        return previous;
+    }
+
+    @Override
+    public void add(final int index, final Integer value) {
+        if (index < 0 || index > count) {
+            throw new IndexOutOfBoundsException(String.valueOf(index));
+        }
+        final int val = value;
+        ensureCapacity(count + 1);
+        System.arraycopy(values, index, values, index + 1, count - index);
+        values[index] = val;
+        count++;
+        modCount++;
+        version++;
+    }
+
+    @Override
+    public Integer remove(final int index) {
+        final int previous = getInt(index);
+        System.arraycopy(values, index + 1, values, index, count - index - 1);
+        count--;
+        modCount++;
+        version++;
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        count = 0;
+        modCount++;
+        version++;
+    }
+
+    /**
+     * Increase the size of the array so it can hold a number of values.
+     * @param size the number of values.
+     */
+    private void ensureCapacity(final int size) {
+        if (size > values.length) {
+            values = Arrays.copyOf(values, Math.max(size, values.length * 2));
+        }
+    }
+}
@@ -32,6 +32,7 @@
 package com.flagstone.transform.image;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 import com.flagstone.transform.Constants;
@@ -58,7 +59,7 @@ public final class DefineJPEGImage2 implements ImageTag {
     /** The unique identifier for this object. */
     private int identifier;
     /** The JPEG encoded image. */
-    private byte[] image;
+    private ByteBuffer image;
 
     /** The length of the object, minus the header, when it is encoded. */
     private transient int length;
@@ -84,7 +85,7 @@ public final class DefineJPEGImage2 implements ImageTag {
         }
         coder.mark();
         identifier = coder.readUnsignedShort();
-        image = coder.readBytes(new byte[length - 2]);
+        image = coder.readBuffer(length - 2);
         decodeInfo();
         coder.check(length);
         coder.unmark();
@@ -158,7 +159,7 @@ public final class DefineJPEGImage2 implements ImageTag {
      * @return  a copy of the data.
      */
     public byte[] getImage() {
-        return Arrays.copyOf(image, image.length);
+        return Coder.toByteArray(image);
     }
 
     /**
@@ -171,7 +172,7 @@ public final class DefineJPEGImage2 implements ImageTag {
         if (bytes == null) {
             throw new IllegalArgumentException();
         }
-        image = Arrays.copyOf(bytes, bytes.length);
+        image = ByteBuffer.wrap(Arrays.copyOf(bytes, bytes.length));
         decodeInfo();
     }
 
@@ -183,12 +184,12 @@ public final class DefineJPEGImage2 implements ImageTag {
     /** {@inheritDoc} */
     @Override
     public String toString() {
-        return String.format(FORMAT, identifier, image.length);
+        return String.format(FORMAT, identifier, image.remaining());
     }
 
     /** {@inheritDoc} */
     public int prepareToEncode(final Context context) {
-        length = 2 + image.length;
+        length = 2 + image.remaining();
 
         return (length > Coder.HEADER_LIMIT ? Coder.LONG_HEADER
                 : Coder.SHORT_HEADER) + length;
@@ -32,6 +32,7 @@
 package com.flagstone.transform.image;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 import com.flagstone.transform.Constants;
@@ -62,9 +63,9 @@ public final class DefineJPEGImage3 implements ImageTag {
     /** The unique identifier for this object. */
     private int identifier;
     /** The JPEG encoded image. */
-    private byte[] image;
+    private ByteBuffer image;
     /** The zlib compressed transparency values for the image. */
-    private byte[] alpha;
+    private ByteBuffer alpha;
 
     /** The length of the object, minus the header, when it is encoded. */
     private transient int length;
@@ -91,9 +92,9 @@ public final class DefineJPEGImage3 implements ImageTag {
         coder.mark();
         identifier = coder.readUnsignedShort();
         final int offset = coder.readInt();
-        image = coder.readBytes(new byte[offset]);
+        image = coder.readBuffer(offset);
         // CHECKSTYLE IGNORE MagicNumberCheck FOR NEXT 1 LINES
-        alpha = coder.readBytes(new byte[length - offset - 6]);
+        alpha = coder.readBuffer(length - offset - 6);
         decodeInfo();
         coder.check(length);
         coder.unmark();
@@ -173,7 +174,7 @@ public final class DefineJPEGImage3 implements ImageTag {
      * @return  a copy of the data.
      */
     public byte[] getImage() {
-        return Arrays.copyOf(image, image.length);
+        return Coder.toByteArray(image);
     }
 
     /**
@@ -182,7 +183,7 @@ public final class DefineJPEGImage3 implements ImageTag {
      * @return  a copy of the data.
      */
     public byte[] getAlpha() {
-        return Arrays.copyOf(alpha, alpha.length);
+        return Coder.toByteArray(alpha);
     }
 
     /**
@@ -193,7 +194,7 @@ public final class DefineJPEGImage3 implements ImageTag {
      *            null.
      */
     public void setImage(final byte[] bytes) {
-        image = Arrays.copyOf(bytes, bytes.length);
+        image = ByteBuffer.wrap(Arrays.copyOf(bytes, bytes.length));
         decodeInfo();
     }
 
@@ -205,7 +206,7 @@ public final class DefineJPEGImage3 implements ImageTag {
      *            be null.
      */
     public void setAlpha(final byte[] bytes) {
-        alpha = Arrays.copyOf(bytes, bytes.length);
+        alpha = ByteBuffer.wrap(Arrays.copyOf(bytes, bytes.length));
     }
 
     /** {@inheritDoc} */
@@ -216,15 +217,16 @@ public final class DefineJPEGImage3 implements ImageTag {
     /** {@inheritDoc} */
     @Override
     public String toString() {
-        return String.format(FORMAT, identifier, image.length, alpha.length);
+        return String.format(FORMAT, identifier, image.remaining(),
+                alpha.remaining());
     }
 
     /** {@inheritDoc} */
     public int prepareToEncode(final Context context) {
         // CHECKSTYLE IGNORE MagicNumberCheck FOR NEXT 1 LINES
         length = 6;
-        length += image.length;
-        length += alpha.length;
+        length += image.remaining();
+        length += alpha.remaining();
 
         return (length > Coder.HEADER_LIMIT ? Coder.LONG_HEADER
                 : Coder.SHORT_HEADER) + length;
@@ -246,7 +248,7 @@ public final class DefineJPEGImage3 implements ImageTag {
             coder.mark();
         }
         coder.writeShort(identifier);
-        coder.writeInt(image.length);
+        coder.writeInt(image.remaining());
         coder.writeBytes(image);
         coder.writeBytes(alpha);
         if (Constants.DEBUG) {
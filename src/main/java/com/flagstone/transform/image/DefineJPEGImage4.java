@@ -32,6 +32,7 @@
 package com.flagstone.transform.image;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 import com.flagstone.transform.Constants;
@@ -58,9 +59,9 @@ public final class DefineJPEGImage4 implements ImageTag {
     /** Parameter passed to Flash Player deblocking filter. */
     private int deblocking;
     /** The JPEG encoded image. */
-    private byte[] image;
+    private ByteBuffer image;
     /** The zlib compressed transparency values for the image. */
-    private byte[] alpha;
+    private ByteBuffer alpha;
 
     /** The length of the object, minus the header, when it is encoded. */
     private transient int length;
@@ -88,9 +89,9 @@ public final class DefineJPEGImage4 implements ImageTag {
         identifier = coder.readUnsignedShort();
         final int size = coder.readInt();
         deblocking = coder.readSignedShort();
-        image = coder.readBytes(new byte[size]);
+        image = coder.readBuffer(size);
         // CHECKSTYLE IGNORE MagicNumberCheck FOR NEXT 1 LINES
-        alpha = coder.readBytes(new byte[length - size - 8]);
+        alpha = coder.readBuffer(length - size - 8);
         decodeInfo();
         coder.check(length);
         coder.unmark();
@@ -189,7 +190,7 @@ public final class DefineJPEGImage4 implements ImageTag {
      * @return  a copy of the data.
      */
     public byte[] getImage() {
-        return Arrays.copyOf(image, image.length);
+        return Coder.toByteArray(image);
     }
 
     /**
@@ -198,7 +199,7 @@ public final class DefineJPEGImage4 implements ImageTag {
      * @return a copy of the alpha data.
      */
     public byte[] getAlpha() {
-        return Arrays.copyOf(alpha, alpha.length);
+        return Coder.toByteArray(alpha);
     }
 
     /**
@@ -209,7 +210,7 @@ public final class DefineJPEGImage4 implements ImageTag {
      *            null.
      */
     public void setImage(final byte[] bytes) {
-        image = Arrays.copyOf(bytes, bytes.length);
+        image = ByteBuffer.wrap(Arrays.copyOf(bytes, bytes.length));
         decodeInfo();
     }
 
@@ -221,7 +222,7 @@ public final class DefineJPEGImage4 implements ImageTag {
      *            be null.
      */
     public void setAlpha(final byte[] bytes) {
-        alpha = Arrays.copyOf(bytes, bytes.length);
+        alpha = ByteBuffer.wrap(Arrays.copyOf(bytes, bytes.length));
     }
 
     /** {@inheritDoc} */
@@ -233,15 +234,15 @@ public final class DefineJPEGImage4 implements ImageTag {
     @Override
     public String toString() {
         return String.format(FORMAT, identifier, getDeblocking(),
-                image.length, alpha.length);
+                image.remaining(), alpha.remaining());
     }
 
     /** {@inheritDoc} */
     public int prepareToEncode(final Context context) {
         // CHECKSTYLE IGNORE MagicNumberCheck FOR NEXT 1 LINES
         length = 8;
-        length += image.length;
-        length += alpha.length;
+        length += image.remaining();
+        length += alpha.remaining();
 
         return (length > Coder.HEADER_LIMIT ? Coder.LONG_HEADER
                 : Coder.SHORT_HEADER) + length;
@@ -263,7 +264,7 @@ public final class DefineJPEGImage4 implements ImageTag {
             coder.mark();
         }
         coder.writeShort(identifier);
-        coder.writeInt(image.length);
+        coder.writeInt(image.remaining());
         coder.writeShort(deblocking);
         coder.writeBytes(image);
         coder.writeBytes(alpha);
@@ -31,6 +31,8 @@
 
 package com.flagstone.transform.image;
 
+import java.nio.ByteBuffer;
+
 import com.flagstone.transform.coder.Coder;
 
 
@@ -98,29 +100,41 @@ public final class JPEGInfo {
      * @param image the image data.
      */
     public void decode(final byte[] image) {
-        final int limit = image.length - 2;
+        decode(ByteBuffer.wrap(image));
+    }
+
+    /**
+     * Decode a JPEG encoded image. The remaining bytes in the buffer are
+     * decoded and the position of the buffer is not changed.
+     *
+     * @param image the image data.
+     */
+    public void decode(final ByteBuffer image) {
+        final int limit = image.limit() - 2;
         int marker;
         int length;
-        int index = 0;
+        int index = image.position();
 
         while (index < limit) {
-            marker = ((image[index++] & BYTE_MASK) << Coder.TO_UPPER_BYTE)
-                | (image[index++] & BYTE_MASK);
+            marker = ((image.get(index++) & BYTE_MASK) << Coder.TO_UPPER_BYTE)
+                | (image.get(index++) & BYTE_MASK);
 
             if (marker == SOI || marker == EOI) {
                 continue;
             }
 
-            length = ((image[index++] & BYTE_MASK) << Coder.TO_UPPER_BYTE)
-                | (image[index++] & BYTE_MASK);
+            length = ((image.get(index++) & BYTE_MASK) << Coder.TO_UPPER_BYTE)
+                | (image.get(index++) & BYTE_MASK);
 
             if (marker >= SOF0 && marker <= SOFF
                     && marker != DHT && marker != JPG) {
                 index++;
-                height = ((image[index++] & BYTE_MASK) << Coder.TO_UPPER_BYTE)
-                    | (image[index++] & BYTE_MASK);
-                width = ((image[index++] & BYTE_MASK) << Coder.TO_UPPER_BYTE)
-                    | (image[index++] & BYTE_MASK);
+                height = ((image.get(index++) & BYTE_MASK)
+                        << Coder.TO_UPPER_BYTE)
+                    | (image.get(index++) & BYTE_MASK);
+                width = ((image.get(index++) & BYTE_MASK)
+                        << Coder.TO_UPPER_BYTE)
+                    | (image.get(index++) & BYTE_MASK);
                 break;
             } else {
                 index += length - 2;
@@ -91,11 +91,11 @@ public final class Curve implements ShapeRecord {
      *             if an error occurs while decoding the data.
      */
    public Curve(final SWFDecoder coder) throws IOException {
-        size = coder.readBits(SIZE_WIDTH, false) + 2;
-        controlX = coder.readBits(size, true);
-        controlY = coder.readBits(size, true);
-        anchorX = coder.readBits(size, true);
-        anchorY = coder.readBits(size, true);
+        size = coder.readUB(SIZE_WIDTH) + 2;
+        controlX = coder.readSB(size);
+        controlY = coder.readSB(size);
+        anchorX = coder.readSB(size);
+        anchorY = coder.readSB(size);
     }
 
     /**
@@ -235,7 +235,7 @@ public final class Curve implements ShapeRecord {
         numberOfBits += size << 2;
 
         context.put(Context.SHAPE_SIZE,
-                context.get(Context.SHAPE_SIZE) + numberOfBits);
+                context.getInt(Context.SHAPE_SIZE) + numberOfBits);
 
         return numberOfBits;
     }
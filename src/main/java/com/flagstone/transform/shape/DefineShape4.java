@@ -446,7 +446,7 @@ public final class DefineShape4 implements ShapeTag {
             length += style.prepareToEncode(context);
         }
 
-        scaling = context.get(Context.SCALING_STROKE);
+        scaling = context.getInt(Context.SCALING_STROKE);
 
         context.put(Context.ARRAY_EXTENDED, 1);
         context.put(Context.FILL_SIZE, fillBits);
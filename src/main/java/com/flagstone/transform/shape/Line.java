@@ -74,19 +74,19 @@ public final class Line implements ShapeRecord {
 
     public Line(final SWFDecoder coder) throws IOException {
         // CHECKSTYLE IGNORE MagicNumberCheck FOR NEXT 1 LINES
-        size = coder.readBits(4, false) + 2;
+        size = coder.readUB(4) + 2;
 
-        if (coder.readBits(1, false) == 0) {
-            if (coder.readBits(1, false) == 0) {
-                xCoord = coder.readBits(size, true);
+        if (coder.readUB(1) == 0) {
+            if (coder.readUB(1) == 0) {
+                xCoord = coder.readSB(size);
                 yCoord = 0;
             } else {
                 xCoord = 0;
-                yCoord = coder.readBits(size, true);
+                yCoord = coder.readSB(size);
             }
         } else {
-            xCoord = coder.readBits(size, true);
-            yCoord = coder.readBits(size, true);
+            xCoord = coder.readSB(size);
+            yCoord = coder.readSB(size);
         }
     }
 
@@ -184,7 +184,7 @@ public final class Line implements ShapeRecord {
             numberOfBits += 1 + size;
         }
 
-        context.put(Context.SHAPE_SIZE, context.get(Context.SHAPE_SIZE)
+        context.put(Context.SHAPE_SIZE, context.getInt(Context.SHAPE_SIZE)
                 + numberOfBits);
 
         return numberOfBits;
@@ -39,6 +39,7 @@ import java.util.List;
 import com.flagstone.transform.coder.Coder;
 import com.flagstone.transform.coder.Context;
 import com.flagstone.transform.coder.Copyable;
+import com.flagstone.transform.coder.DecoderRegistry;
 import com.flagstone.transform.coder.SWFDecoder;
 import com.flagstone.transform.coder.SWFEncodeable;
 import com.flagstone.transform.coder.SWFEncoder;
@@ -81,6 +82,7 @@ public final class Shape implements SWFEncodeable, Copyable<Shape> {
         final ByteArrayInputStream stream = new ByteArrayInputStream(data);
         final SWFDecoder coder = new SWFDecoder(stream);
         final Context context = new Context();
+        context.setRegistry(DecoderRegistry.getDefault());
         return new Shape(coder, context);
     }
 
@@ -120,7 +122,7 @@ public final class Shape implements SWFEncodeable, Copyable<Shape> {
         while (coder.scanBits(6, false) != 0) {
             decoder.getObject(objects, coder, context);
         }
-        coder.readBits(6, false);
+        coder.readUB(6);
         coder.alignToByte();
     }
 
@@ -234,8 +236,8 @@ public final class Shape implements SWFEncodeable, Copyable<Shape> {
         if (isEncoded) {
             objects.get(0).encode(coder, context);
         } else {
-            int bits = context.get(Context.FILL_SIZE) << Coder.TO_UPPER_NIB;
-            bits |= context.get(Context.LINE_SIZE);
+            int bits = context.getInt(Context.FILL_SIZE) << Coder.TO_UPPER_NIB;
+            bits |= context.getInt(Context.LINE_SIZE);
             coder.writeByte(bits);
 
             for (final ShapeRecord record : objects) {
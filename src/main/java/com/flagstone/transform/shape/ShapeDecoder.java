@@ -49,7 +49,7 @@ public final class ShapeDecoder implements SWFFactory<ShapeRecord> {
     public void getObject(final List<ShapeRecord> list, final SWFDecoder coder,
             final Context context) throws IOException {
 
-        final int type = coder.readBits(2, false);
+        final int type = coder.readUB(2);
         ShapeRecord record = null;
 
         if (type == Coder.BIT1) {
@@ -59,9 +59,9 @@ public final class ShapeDecoder implements SWFFactory<ShapeRecord> {
         } else {
             // CHECKSTYLE IGNORE MagicNumberCheck FOR NEXT 2 LINES
             final int flags = (type << Coder.TO_UPPER_NIB)
-                    + coder.readBits(4, false);
+                    + coder.readUB(4);
 
-            final int tag = context.get(Context.TYPE);
+            final int tag = context.getInt(Context.TYPE);
             if (tag == MovieTypes.DEFINE_SHAPE_4
                     || tag == MovieTypes.DEFINE_MORPH_SHAPE_2) {
                 record = new ShapeStyle2(flags, coder, context);
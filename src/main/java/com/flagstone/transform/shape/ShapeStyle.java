@@ -143,8 +143,8 @@ public final class ShapeStyle implements ShapeRecord {
 
     public ShapeStyle(final int flags, final SWFDecoder coder,
             final Context context) throws IOException {
-        int numberOfFillBits = context.get(Context.FILL_SIZE);
-        int numberOfLineBits = context.get(Context.LINE_SIZE);
+        int numberOfFillBits = context.getInt(Context.FILL_SIZE);
+        int numberOfLineBits = context.getInt(Context.LINE_SIZE);
 
         hasStyles = (flags & Coder.BIT4) != 0;
         hasLine = (flags & Coder.BIT3) != 0;
@@ -153,21 +153,21 @@ public final class ShapeStyle implements ShapeRecord {
         hasMove = (flags & Coder.BIT0) != 0;
 
         if (hasMove) {
-            final int moveFieldSize = coder.readBits(5, false);
-            moveX = coder.readBits(moveFieldSize, true);
-            moveY = coder.readBits(moveFieldSize, true);
+            final int moveFieldSize = coder.readUB(5);
+            moveX = coder.readSB(moveFieldSize);
+            moveY = coder.readSB(moveFieldSize);
         }
         fillStyles = new ArrayList<FillStyle>();
         lineStyles = new ArrayList<LineStyle1>();
 
         if (hasFill) {
-            fillStyle = coder.readBits(numberOfFillBits, false);
+            fillStyle = coder.readUB(numberOfFillBits);
         }
         if (hasAlt) {
-            altFillStyle = coder.readBits(numberOfFillBits, false);
+            altFillStyle = coder.readUB(numberOfFillBits);
         }
         if (hasLine) {
-            lineStyle = coder.readBits(numberOfLineBits, false);
+            lineStyle = coder.readUB(numberOfLineBits);
         }
 
         if (hasStyles) {
@@ -516,11 +516,11 @@ public final class ShapeStyle implements ShapeRecord {
             numberOfBits += 5 + fieldSize * 2;
         }
 
-        numberOfBits += hasFill ? context.get(Context.FILL_SIZE) : 0;
-        numberOfBits += hasAlt ? context.get(Context.FILL_SIZE) : 0;
-        numberOfBits += (hasLine) ? context.get(Context.LINE_SIZE) : 0;
+        numberOfBits += hasFill ? context.getInt(Context.FILL_SIZE) : 0;
+        numberOfBits += hasAlt ? context.getInt(Context.FILL_SIZE) : 0;
+        numberOfBits += (hasLine) ? context.getInt(Context.LINE_SIZE) : 0;
 
-        context.put(Context.SHAPE_SIZE, context.get(Context.SHAPE_SIZE)
+        context.put(Context.SHAPE_SIZE, context.getInt(Context.SHAPE_SIZE)
                 + numberOfBits);
 
         if (hasStyles) {
@@ -541,7 +541,7 @@ public final class ShapeStyle implements ShapeRecord {
                     .contains(Context.ARRAY_EXTENDED);
 
             int numberOfStyleBits = 0;
-            final int flushBits = context.get(Context.SHAPE_SIZE);
+            final int flushBits = context.getInt(Context.SHAPE_SIZE);
 
             numberOfStyleBits += (flushBits % 8 > 0)
                     ? 8 - (flushBits % 8) : 0;
@@ -563,7 +563,7 @@ public final class ShapeStyle implements ShapeRecord {
 
             context.put(Context.FILL_SIZE, numberOfFillBits);
             context.put(Context.LINE_SIZE, numberOfLineBits);
-            context.put(Context.SHAPE_SIZE, context.get(Context.SHAPE_SIZE)
+            context.put(Context.SHAPE_SIZE, context.getInt(Context.SHAPE_SIZE)
                     + numberOfStyleBits);
 
             numberOfBits += numberOfStyleBits;
@@ -594,15 +594,15 @@ public final class ShapeStyle implements ShapeRecord {
         }
 
         if (hasFill) {
-            coder.writeBits(fillStyle, context.get(Context.FILL_SIZE));
+            coder.writeBits(fillStyle, context.getInt(Context.FILL_SIZE));
         }
 
         if (hasAlt) {
-            coder.writeBits(altFillStyle, context.get(Context.FILL_SIZE));
+            coder.writeBits(altFillStyle, context.getInt(Context.FILL_SIZE));
         }
 
         if (hasLine) {
-            coder.writeBits(lineStyle, context.get(Context.LINE_SIZE));
+            coder.writeBits(lineStyle, context.getInt(Context.LINE_SIZE));
         }
 
         if (hasStyles) {
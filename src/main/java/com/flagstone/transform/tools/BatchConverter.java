@@ -0,0 +1,578 @@
+/*
+ * BatchConverter.java
+ * Transform
+ *
+ * Copyright (c) 2010 Flagstone Software Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of Flagstone Software Ltd. nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package com.flagstone.transform.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.DataFormatException;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+import com.flagstone.transform.Movie;
+import com.flagstone.transform.MovieTag;
+import com.flagstone.transform.ShowFrame;
+import com.flagstone.transform.exception.IllegalArgumentRangeException;
+import com.flagstone.transform.util.pdf.PDFConverter;
+
+/**
+ * <p>
+ * BatchConverter converts a set of Flash files into PDF documents, and
+ * optionally encodes each movie again, using a pool of threads so several
+ * files are converted at the same time. It can be run from the command
+ * line:
+ * </p>
+ *
+ * <pre>
+ * java com.flagstone.transform.tools.BatchConverter [-threads n]
+ *     [-files n] [-out dir] [-swf] [-all] [-resolution dpi] file|dir ...
+ * </pre>
+ *
+ * <p>
+ * Directories are searched for files ending in ".swf". Each file is a
+ * separate job. The number of jobs waiting to be run is limited to twice
+ * the number of threads so a large directory does not fill the queue and
+ * the number of files open at the same time is limited separately, so the
+ * threads do not exhaust the file handles available when reading and
+ * writing.
+ * </p>
+ *
+ * <p>
+ * For each file a line containing a JSON object is written with the time
+ * taken, in milliseconds, to decode, convert and write the file, the heap
+ * in use once the movie and document are in memory and the number of each
+ * type of tag in the movie, for example:
+ * </p>
+ *
+ * <pre>
+ * {"file":"a.swf","status":"ok","bytes":1024,"frames":2,"decode":12,
+ *  "convert":40,"write":8,"encode":0,"heap":5242880,
+ *  "tags":{"DefineShape":1,"Place2":2,"ShowFrame":2}}
+ * </pre>
+ *
+ * <p>
+ * When files are converted concurrently the heap figure includes the
+ * memory used by the other jobs running at the same time, so it is only an
+ * upper bound for the memory needed by an individual file.
+ * </p>
+ */
+public final class BatchConverter {
+
+    /** The suffix of the files converted in a directory. */
+    private static final String SWF = ".swf";
+    /** The suffix of the PDF documents. */
+    private static final String PDF = ".pdf";
+    /** The suffix added to files that are encoded again. */
+    private static final String COPY = "-copy" + SWF;
+    /** The number of jobs waiting for each thread. */
+    private static final int JOBS_PER_THREAD = 2;
+
+    /**
+     * Convert the files or directories listed on the command line.
+     *
+     * @param args the options followed by the names of the files or
+     * directories to convert.
+     * @throws InterruptedException if the thread is interrupted while
+     * waiting for the conversions to finish.
+     */
+    public static void main(final String[] args)
+            throws InterruptedException {
+        final BatchConverter batch = new BatchConverter();
+        final List<File> files = new ArrayList<File>();
+        int index = 0;
+
+        try {
+            while (index < args.length && args[index].startsWith("-")) {
+                final String option = args[index++];
+                if ("-swf".equals(option)) {
+                    batch.setEncodeMovie(true);
+                } else if ("-all".equals(option)) {
+                    batch.getConverter().setAllFrames(true);
+                } else if (index == args.length) {
+                    throw new IllegalArgumentException(option);
+                } else if ("-threads".equals(option)) {
+                    batch.setThreads(Integer.parseInt(args[index++]));
+                } else if ("-files".equals(option)) {
+                    batch.setOpenFiles(Integer.parseInt(args[index++]));
+                } else if ("-out".equals(option)) {
+                    batch.setDirectory(new File(args[index++]));
+                } else if ("-resolution".equals(option)) {
+                    batch.getConverter().setResolution(
+                            Integer.parseInt(args[index++]));
+                } else {
+                    throw new IllegalArgumentException(option);
+                }
+            }
+        } catch (final IllegalArgumentException e) {
+            usage();
+            return;
+        }
+
+        for (; index < args.length; index++) {
+            find(new File(args[index]), files);
+        }
+
+        if (files.isEmpty()) {
+            usage();
+            return;
+        }
+
+        final PrintWriter writer = new PrintWriter(
+                new OutputStreamWriter(System.out));
+        final int failed = batch.convert(files, writer);
+        writer.flush();
+
+        if (failed > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Display the options accepted on the command line and exit.
+     */
+    private static void usage() {
+        System.err.println("Usage: BatchConverter [-threads n] [-files n]"
+                + " [-out dir] [-swf] [-all] [-resolution dpi]"
+                + " file|dir ...");
+        System.exit(1);
+    }
+
+    /**
+     * Add a file or the Flash files in a directory, and its
+     * sub-directories, to a list.
+     *
+     * @param file a file or directory.
+     * @param files the list where the files are added.
+     */
+    static void find(final File file, final List<File> files) {
+        if (file.isDirectory()) {
+            final File[] entries = file.listFiles();
+            if (entries != null) {
+                Arrays.sort(entries);
+                for (final File entry : entries) {
+                    if (entry.isDirectory()
+                            || entry.getName().toLowerCase().endsWith(SWF)) {
+                        find(entry, files);
+                    }
+                }
+            }
+        } else {
+            files.add(file);
+        }
+    }
+
+    /**
+     * Append a string to a JSON object, adding the quotes and escaping
+     * the characters that are not allowed.
+     *
+     * @param builder the StringBuilder containing the object.
+     * @param value the string.
+     */
+    private static void quote(final StringBuilder builder,
+            final String value) {
+        builder.append('"');
+        for (final char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                builder.append('\\').append(c);
+            } else if (c < ' ') {
+                builder.append(String.format("\\u%04x", (int) c));
+            } else {
+                builder.append(c);
+            }
+        }
+        builder.append('"');
+    }
+
+    /**
+     * Get the number of bytes currently used on the heap.
+     *
+     * @return the heap size minus the free memory.
+     */
+    private static long heap() {
+        final Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /** The number of files converted at the same time. */
+    private transient int threads;
+    /** The maximum number of files open at the same time. */
+    private transient int openFiles;
+    /** The directory for the converted files, null to use the input's. */
+    private transient File directory;
+    /** Whether each movie is encoded again. */
+    private transient boolean encodeMovie;
+    /** The converter shared by the threads. */
+    private final transient PDFConverter converter;
+
+    /**
+     * Create a BatchConverter that uses one thread for each processor.
+     */
+    public BatchConverter() {
+        threads = Runtime.getRuntime().availableProcessors();
+        openFiles = threads * 2;
+        converter = new PDFConverter();
+    }
+
+    /**
+     * Get the PDFConverter used to convert each file so the frames
+     * converted, the resolution of images and the memory used can be set.
+     * The converter is shared by all the threads. Since the files are
+     * already converted concurrently an executor is rarely needed to draw
+     * the pages as well.
+     *
+     * @return the PDFConverter.
+     */
+    public PDFConverter getConverter() {
+        return converter;
+    }
+
+    /**
+     * Get the number of files converted at the same time.
+     *
+     * @return the number of threads.
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Set the number of files converted at the same time.
+     *
+     * @param count the number of threads, must be at least 1.
+     * @return this object.
+     */
+    public BatchConverter setThreads(final int count) {
+        if (count < 1) {
+            throw new IllegalArgumentRangeException(1, Integer.MAX_VALUE,
+                    count);
+        }
+        threads = count;
+        return this;
+    }
+
+    /**
+     * Get the maximum number of files open at the same time.
+     *
+     * @return the number of files.
+     */
+    public int getOpenFiles() {
+        return openFiles;
+    }
+
+    /**
+     * Set the maximum number of files open at the same time. Threads wait
+     * when the limit is reached before reading or writing a file.
+     *
+     * @param count the number of files, must be at least 1.
+     * @return this object.
+     */
+    public BatchConverter setOpenFiles(final int count) {
+        if (count < 1) {
+            throw new IllegalArgumentRangeException(1, Integer.MAX_VALUE,
+                    count);
+        }
+        openFiles = count;
+        return this;
+    }
+
+    /**
+     * Get the directory where the converted files are written.
+     *
+     * @return the directory or null if each file is written to the same
+     * directory as the movie.
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Set the directory where the converted files are written. Files with
+     * the same name, from different directories, replace each other.
+     *
+     * @param dir the directory or null to write each file to the same
+     * directory as the movie.
+     * @return this object.
+     */
+    public BatchConverter setDirectory(final File dir) {
+        directory = dir;
+        return this;
+    }
+
+    /**
+     * Does the converter encode each movie again, as well as converting it.
+     *
+     * @return true if the movies are encoded.
+     */
+    public boolean isEncodeMovie() {
+        return encodeMovie;
+    }
+
+    /**
+     * Set whether each movie is encoded again, as well as being converted.
+     * The file is written with "-copy.swf" replacing the ".swf" suffix.
+     *
+     * @param encode true if the movies are encoded.
+     * @return this object.
+     */
+    public BatchConverter setEncodeMovie(final boolean encode) {
+        encodeMovie = encode;
+        return this;
+    }
+
+    /**
+     * Convert a list of files, writing the metrics for each file to a
+     * Writer, one line per file, as they finish. Errors are reported in
+     * the metrics so the remaining files are still converted.
+     *
+     * @param files the files to convert.
+     * @param writer the Writer where the metrics are written.
+     * @return the number of files that could not be converted.
+     * @throws InterruptedException if the thread is interrupted while
+     * waiting for the conversions to finish.
+     */
+    public int convert(final List<File> files, final Writer writer)
+            throws InterruptedException {
+        final int capacity = threads * JOBS_PER_THREAD;
+        final Semaphore pending = new Semaphore(capacity);
+        final Semaphore handles = new Semaphore(openFiles);
+        final AtomicInteger failed = new AtomicInteger();
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(threads,
+                threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(capacity));
+
+        try {
+            for (final File file : files) {
+                pending.acquire();
+                executor.execute(new Job(file, writer, pending, handles,
+                        failed));
+            }
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        }
+        return failed.get();
+    }
+
+    /**
+     * Get the file where a converted file is written.
+     *
+     * @param file the movie.
+     * @param suffix the suffix that replaces the ".swf" suffix.
+     * @return the file.
+     */
+    private File output(final File file, final String suffix) {
+        String name = file.getName();
+        if (name.toLowerCase().endsWith(SWF)) {
+            name = name.substring(0, name.length() - SWF.length());
+        }
+        return new File(directory == null ? file.getParentFile() : directory,
+                name + suffix);
+    }
+
+    /**
+     * Job converts a single file and writes its metrics.
+     */
+    private final class Job implements Runnable {
+        /** The movie to convert. */
+        private final transient File file;
+        /** The Writer for the metrics. */
+        private final transient Writer writer;
+        /** The permits for jobs waiting to be run. */
+        private final transient Semaphore pending;
+        /** The permits for open files. */
+        private final transient Semaphore handles;
+        /** The number of files that could not be converted. */
+        private final transient AtomicInteger failed;
+
+        /**
+         * Create a Job.
+         *
+         * @param movie the file to convert.
+         * @param metrics the Writer for the metrics.
+         * @param jobs the permits for jobs waiting to be run, released when
+         * the job finishes.
+         * @param files the permits for open files.
+         * @param failures the count of files that could not be converted.
+         */
+        Job(final File movie, final Writer metrics, final Semaphore jobs,
+                final Semaphore files, final AtomicInteger failures) {
+            file = movie;
+            writer = metrics;
+            pending = jobs;
+            handles = files;
+            failed = failures;
+        }
+
+        /**
+         * Convert the file and write its metrics. Any error is recorded in
+         * the metrics and counted as a failure before it is thrown again.
+         */
+        public void run() {
+            final StringBuilder builder = new StringBuilder();
+            Error error = null;
+            builder.append("{\"file\":");
+            quote(builder, file.getPath());
+            try {
+                convert(builder);
+            } catch (final Throwable e) {
+                if (e instanceof Error) {
+                    error = (Error) e;
+                }
+                failed.incrementAndGet();
+                builder.setLength(0);
+                builder.append("{\"file\":");
+                quote(builder, file.getPath());
+                builder.append(",\"status\":\"error\",\"error\":");
+                quote(builder, String.valueOf(e));
+            } finally {
+                pending.release();
+            }
+            builder.append('}');
+            synchronized (writer) {
+                try {
+                    writer.write(builder.toString());
+                    writer.write('\n');
+                    writer.flush();
+                } catch (final IOException e) {
+                    failed.incrementAndGet();
+                }
+            }
+            if (error != null) {
+                throw error;
+            }
+        }
+
+        /**
+         * Convert the file, appending the metrics to a JSON object.
+         *
+         * @param builder the StringBuilder containing the object.
+         * @throws IOException if an error occurs reading or writing a file.
+         * @throws DataFormatException if the file is not a Flash file or
+         * the movie cannot be encoded.
+         * @throws InterruptedException if the thread is interrupted while
+         * waiting to open a file.
+         */
+        private void convert(final StringBuilder builder) throws IOException,
+                DataFormatException, InterruptedException {
+            final Movie movie = new Movie();
+            long start = System.currentTimeMillis();
+
+            handles.acquire();
+            try {
+                movie.decodeFromFile(file);
+            } finally {
+                handles.release();
+            }
+            final long decoded = System.currentTimeMillis() - start;
+            long peak = heap();
+
+            final SortedMap<String, Integer> tags =
+                new TreeMap<String, Integer>();
+            int frames = 0;
+            String name;
+            Integer count;
+            for (final MovieTag tag : movie.getObjects()) {
+                if (tag instanceof ShowFrame) {
+                    frames++;
+                }
+                name = tag.getClass().getSimpleName();
+                count = tags.get(name);
+                tags.put(name, count == null ? 1 : count + 1);
+            }
+
+            start = System.currentTimeMillis();
+            final PDDocument document = converter.convert(movie);
+            final long converted;
+            final long written;
+            try {
+                converted = System.currentTimeMillis() - start;
+                peak = Math.max(peak, heap());
+                start = System.currentTimeMillis();
+                handles.acquire();
+                try {
+                    document.save(output(file, PDF));
+                } finally {
+                    handles.release();
+                }
+                written = System.currentTimeMillis() - start;
+            } finally {
+                document.close();
+            }
+
+            long encoded = 0;
+            if (encodeMovie) {
+                start = System.currentTimeMillis();
+                handles.acquire();
+                try {
+                    movie.encodeToFile(output(file, COPY));
+                } finally {
+                    handles.release();
+                }
+                encoded = System.currentTimeMillis() - start;
+            }
+
+            builder.append(",\"status\":\"ok\",\"bytes\":")
+                .append(file.length())
+                .append(",\"frames\":").append(frames)
+                .append(",\"decode\":").append(decoded)
+                .append(",\"convert\":").append(converted)
+                .append(",\"write\":").append(written)
+                .append(",\"encode\":").append(encoded)
+                .append(",\"heap\":").append(peak)
+                .append(",\"tags\":{");
+            boolean first = true;
+            for (final Map.Entry<String, Integer> entry : tags.entrySet()) {
+                if (!first) {
+                    builder.append(',');
+                }
+                quote(builder, entry.getKey());
+                builder.append(':').append(entry.getValue());
+                first = false;
+            }
+            builder.append('}');
+        }
+    }
+}
@@ -1,4 +1,5 @@
 /**
- * Convenience tools for displaying the contents of files.
+ * Convenience tools for displaying the contents of files and converting
+ * batches of files.
  */
 package com.flagstone.transform.tools;
\ No newline at end of file
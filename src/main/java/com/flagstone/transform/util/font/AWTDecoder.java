@@ -36,8 +36,10 @@ import java.awt.font.GlyphVector;
 import java.awt.font.LineMetrics;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.PathIterator;
+import java.awt.geom.Point2D;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.zip.DataFormatException;
 
@@ -48,7 +50,19 @@ import com.flagstone.transform.shape.Shape;
 import com.flagstone.transform.util.shape.Canvas;
 
 /**
+ * <p>
  * AWTDecoder decodes Java AWT Fonts so they can be used in a Flash file.
+ * </p>
+ *
+ * <p>
+ * By default the glyph for every character the font can display is
+ * converted when the font is read. For fonts with a large number of glyphs,
+ * such as CJK fonts, this takes a long time and a large amount of memory, so
+ * the decoder can be set to load fonts lazily: the glyphs are only
+ * converted when characters are first used, for example when a font
+ * definition is created for a set of characters, and are then kept in the
+ * Font so they are converted only once.
+ * </p>
  */
 public final class AWTDecoder {
     /** Number of edge points from a PathIterator segment. */
@@ -82,6 +96,27 @@ public final class AWTDecoder {
 
     /** The list of fonts decoded. */
     private final transient List<Font>fonts = new ArrayList<Font>();
+    /** Whether glyphs are converted only when characters are used. */
+    private transient boolean lazy;
+
+    /**
+     * Are glyphs converted only when the characters are first used.
+     * @return true if fonts are loaded lazily, false if all the glyphs are
+     * converted when the font is read.
+     */
+    public boolean isLazy() {
+        return lazy;
+    }
+
+    /**
+     * Set whether glyphs are converted only when the characters are first
+     * used or when the font is read.
+     * @param load true if fonts are loaded lazily, false if all the glyphs
+     * are converted when the font is read.
+     */
+    public void setLazy(final boolean load) {
+        lazy = load;
+    }
 
     /**
      * Decode an AWT Font.
@@ -92,7 +127,11 @@ public final class AWTDecoder {
      */
     public void read(final java.awt.Font font)
             throws IOException, DataFormatException {
-        decode(font);
+        if (lazy) {
+            decodeLazily(font);
+        } else {
+            decode(font);
+        }
     }
 
     /**
@@ -148,8 +187,9 @@ public final class AWTDecoder {
         java.awt.Shape outline = glyphVector.getGlyphOutline(0);
         int advance = (int) (glyphVector.getGlyphMetrics(0).getAdvance());
 
-        font.addGlyph((char) missingGlyph, new Glyph(convertShape(outline),
-                new Bounds(0, 0, 0, 0), advance));
+        font.addGlyph((char) missingGlyph, new Glyph(
+                convertShape(outline, null), new Bounds(0, 0, 0, 0),
+                advance));
 
         index = 1;
 
@@ -171,8 +211,9 @@ public final class AWTDecoder {
                 outline = glyphVector.getGlyphOutline(0);
                 advance = (int) (glyphVector.getGlyphMetrics(0).getAdvance());
 
-                font.addGlyph(character,  new Glyph(convertShape(outline),
-                        new Bounds(0, 0, 0, 0), advance));
+                font.addGlyph(character,  new Glyph(
+                        convertShape(outline, null), new Bounds(0, 0, 0, 0),
+                        advance));
 
                 if (!awtFont.hasUniformLineMetrics()) {
                     final LineMetrics lineMetrics = awtFont.getLineMetrics(
@@ -197,13 +238,118 @@ public final class AWTDecoder {
         fonts.add(font);
     }
 
+    /**
+     * Decode the AWT font, creating a Font that converts the glyphs when the
+     * characters are first used. Only the missing glyph and the metrics for
+     * the font are generated here.
+     * @param aFont an AWT Font.
+     */
+    private void decodeLazily(final java.awt.Font aFont) {
+        final FontRenderContext fontContext = new FontRenderContext(
+                new AffineTransform(), true, true);
+        final java.awt.Font awtFont = aFont.deriveFont(1.0f)
+                .deriveFont(AffineTransform.getTranslateInstance(0, 0))
+                .deriveFont(EM_SQUARE_SIZE);
+
+        final Font font = new Font();
+
+        font.setFace(new FontFace(awtFont.getName(),
+                awtFont.isBold(), awtFont.isItalic()));
+        font.setEncoding(CharacterFormat.UCS2);
+
+        final int missingGlyph = awtFont.getMissingGlyphCode();
+
+        font.setMissingGlyph(missingGlyph);
+        font.setNumberOfGlyphs(Math.max(awtFont.getNumGlyphs(),
+                missingGlyph + 1));
+        font.setHighestChar((char) Coder.USHORT_MAX);
+
+        final GlyphVector glyphVector = awtFont.createGlyphVector(
+                fontContext, new int[] {missingGlyph});
+        font.setGlyph((char) missingGlyph, missingGlyph, new Glyph(
+                convertShape(glyphVector.getGlyphOutline(0), null),
+                new Bounds(0, 0, 0, 0),
+                (int) glyphVector.getGlyphMetrics(0).getAdvance()));
+
+        final LineMetrics lineMetrics = awtFont.getLineMetrics("",
+                fontContext);
+        font.setAscent((int) lineMetrics.getAscent());
+        font.setDescent((int) lineMetrics.getDescent());
+        font.setLeading((int) lineMetrics.getLeading());
+
+        font.setLoader(new AWTGlyphLoader(awtFont, fontContext));
+        fonts.add(font);
+    }
+
+    /**
+     * AWTGlyphLoader converts the glyphs for the characters requested from
+     * a Font, using a single GlyphVector for each set of characters.
+     */
+    private static final class AWTGlyphLoader implements GlyphLoader {
+        /** The AWT font, scaled to the EM square. */
+        private final transient java.awt.Font awtFont;
+        /** The context used to generate the glyphs. */
+        private final transient FontRenderContext fontContext;
+
+        /**
+         * Create an AWTGlyphLoader.
+         * @param aFont the AWT font scaled to the EM square.
+         * @param context the context used to generate the glyphs.
+         */
+        AWTGlyphLoader(final java.awt.Font aFont,
+                final FontRenderContext context) {
+            awtFont = aFont;
+            fontContext = context;
+        }
+
+        /** {@inheritDoc} */
+        public void load(final Font font, final char[] codes) {
+            final char[] chars = new char[codes.length];
+            int count = 0;
+
+            for (final char code : codes) {
+                if (awtFont.canDisplay(code)) {
+                    chars[count++] = code;
+                } else {
+                    font.addMissingGlyph(code);
+                }
+            }
+
+            if (count == 0) {
+                return;
+            }
+
+            final GlyphVector glyphVector = awtFont.createGlyphVector(
+                    fontContext, Arrays.copyOf(chars, count));
+            int index;
+            Point2D origin;
+
+            for (int i = 0; i < count; i++) {
+                index = glyphVector.getGlyphCode(i);
+                if (font.hasGlyph(index)) {
+                    font.setGlyph(chars[i], index, null);
+                } else {
+                    origin = glyphVector.getGlyphPosition(i);
+                    font.setGlyph(chars[i], index, new Glyph(
+                            convertShape(glyphVector.getGlyphOutline(i),
+                                AffineTransform.getTranslateInstance(
+                                    -origin.getX(), -origin.getY())),
+                            new Bounds(0, 0, 0, 0), (int) glyphVector
+                                .getGlyphMetrics(i).getAdvance()));
+                }
+            }
+        }
+    }
+
     /**
      * Trace the outline of the glyph.
      * @param glyph an AWT Shape.
+     * @param transform the transform applied to the outline, may be null.
      * @return a Flash Shape.
      */
-    private Shape convertShape(final java.awt.Shape glyph) {
-        final PathIterator pathIter = glyph.getPathIterator(null);
+    private static Shape convertShape(final java.awt.Shape glyph,
+            final AffineTransform transform) {
+        final PathIterator pathIter = glyph.getPathIterator(transform);
         final Canvas path = new Canvas();
 
         final double[] coords = new double[SEGMENT_COUNT];
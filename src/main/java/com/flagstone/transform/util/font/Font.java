@@ -32,6 +32,8 @@
 package com.flagstone.transform.util.font;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
 
 import com.flagstone.transform.coder.Coder;
@@ -88,6 +90,12 @@ import com.flagstone.transform.shape.Shape;
  * AWT or TrueType font is significant (sometimes several seconds) so creating
  * libraries of "pre-parsed" flash fonts is the preferred way of use fonts.
  * </p>
+ *
+ * <p>
+ * Decoders may also create fonts where the glyphs are only generated when the
+ * characters are first used, either to define a font or to look up a glyph.
+ * Fonts are then safe to share between threads once they have been decoded.
+ * </p>
  */
 public final class Font {
 
@@ -119,6 +127,10 @@ public final class Font {
     private transient char highestChar;
     /** List of kernings for selected pairs of characters. */
     private final transient List<Kerning> kernings = new ArrayList<Kerning>();
+    /** Generates glyphs on demand, null if all glyphs have been added. */
+    private transient GlyphLoader loader;
+    /** The characters that have been passed to the loader. */
+    private transient BitSet loaded;
 
     /**
      * Get the FontFace that contains the font name and style.
@@ -292,9 +304,10 @@ public final class Font {
     /**
      * Get the glyph from the specified position in the table.
      * @param index the index of the glyph.
-     * @return the corresponding glyph.
+     * @return the corresponding glyph or null if the font generates glyphs
+     * on demand and no character that uses the glyph has been used yet.
      */
-    public Glyph getGlyph(final int index) {
+    public synchronized Glyph getGlyph(final int index) {
         return glyphTable[index];
     }
 
@@ -319,6 +332,89 @@ public final class Font {
         charToGlyph[code] = missingGlyph;
     }
 
+    /**
+     * Set the object used to generate glyphs when characters are first used
+     * rather than adding all the glyphs when the font is decoded. The tables
+     * must already have been sized using setNumberOfGlyphs() and
+     * setHighestChar().
+     * @param glyphLoader the GlyphLoader that adds the glyphs to the font.
+     */
+    void setLoader(final GlyphLoader glyphLoader) {
+        loader = glyphLoader;
+        loaded = new BitSet();
+    }
+
+    /**
+     * Has a glyph been added at a given position in the table. This allows
+     * loaders to generate glyphs shared by several characters only once.
+     * @param index the index of the glyph.
+     * @return true if the glyph has been added.
+     */
+    boolean hasGlyph(final int index) {
+        return glyphTable[index] != null;
+    }
+
+    /**
+     * Add the glyph displayed for a character at a given position in the
+     * table, rather than the next free position.
+     * @param code the character.
+     * @param index the index of the glyph.
+     * @param glyph the glyph or null if it has already been added.
+     */
+    void setGlyph(final char code, final int index, final Glyph glyph) {
+        if (glyph != null) {
+            glyphTable[index] = glyph;
+        }
+        glyphToChar[index] = code;
+        charToGlyph[code] = index;
+    }
+
+    /**
+     * Pass the characters that have not been used before to the loader so
+     * the glyphs are added to the font.
+     * @param characters the characters that will be used.
+     */
+    private void load(final List<Character> characters) {
+        if (loader == null) {
+            return;
+        }
+        final char[] codes = new char[characters.size()];
+        int count = 0;
+
+        for (final Character character : characters) {
+            if (character < charToGlyph.length && !loaded.get(character)) {
+                loaded.set(character);
+                codes[count++] = character;
+            }
+        }
+
+        if (count > 0) {
+            boolean added = false;
+            try {
+                loader.load(this, Arrays.copyOf(codes, count));
+                added = true;
+            } finally {
+                if (!added) {
+                    for (int i = 0; i < count; i++) {
+                        loaded.clear(codes[i]);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Pass a character to the loader if it has not been used before.
+     * @param character the character that will be used.
+     */
+    private void load(final char character) {
+        if (loader != null && !loaded.get(character)) {
+            final List<Character> list = new ArrayList<Character>(1);
+            list.add(character);
+            load(list);
+        }
+    }
+
     /**
      * Create and return a DefineFont2 object that contains information to
      * display a set of characters.
@@ -334,9 +430,11 @@ public final class Font {
      * @return a font definition that contains information for all the glyphs in
      *         the set of characters.
      */
-    public DefineFont2 defineFont(final int identifier,
+    public synchronized DefineFont2 defineFont(final int identifier,
             final List<Character> characters) {
 
+        load(characters);
+
         DefineFont2 fontDefinition = null;
         final int count = characters.size();
 
@@ -383,9 +481,18 @@ public final class Font {
      * @return the index of the character that cannot be displayed or -1 if all
      *         characters have corresponding glyphs.
      */
-    public int canDisplay(final String aString) {
+    public synchronized int canDisplay(final String aString) {
         int firstMissingChar = -1;
 
+        if (loader != null) {
+            final List<Character> list = new ArrayList<Character>(
+                    aString.length());
+            for (int i = 0; i < aString.length(); i++) {
+                list.add(aString.charAt(i));
+            }
+            load(list);
+        }
+
         for (int i = 0; i < aString.length(); i++) {
             if (!canDisplay(aString.charAt(i))) {
                 firstMissingChar = i;
@@ -407,9 +514,11 @@ public final class Font {
      *         is no corresponding glyph and the missing character glyph will be
      *         displayed.
      */
-    public boolean canDisplay(final char character) {
+    public synchronized boolean canDisplay(final char character) {
         boolean canDisplay;
 
+        load(character);
+
         if ((character < charToGlyph.length)
                 && ((character == ' ') || (charToGlyph[character] != 0))) {
             canDisplay = true;
@@ -428,7 +537,8 @@ public final class Font {
      *
      * @return the Glyph object which contains the layout information.
      */
-    public int glyphForCharacter(final char character) {
+    public synchronized int glyphForCharacter(final char character) {
+        load(character);
         return charToGlyph[character];
     }
 
@@ -442,7 +552,7 @@ public final class Font {
      *
      * @return the character code for the glyph.
      */
-    public char characterForGlyph(final int index) {
+    public synchronized char characterForGlyph(final int index) {
         return (char) glyphToChar[index];
     }
 
@@ -456,7 +566,8 @@ public final class Font {
      *            the character code.
      * @return the advance in twips to the next character.
      */
-    public int advanceForCharacter(final char character) {
+    public synchronized int advanceForCharacter(final char character) {
+        load(character);
         return glyphTable[charToGlyph[character]].getAdvance();
     }
 }
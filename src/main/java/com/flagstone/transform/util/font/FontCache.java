@@ -0,0 +1,557 @@
+/*
+ * FontCache.java
+ * Transform
+ *
+ * Copyright (c) 2010 Flagstone Software Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of Flagstone Software Ltd. nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package com.flagstone.transform.util.font;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+
+import com.flagstone.transform.datatype.Bounds;
+import com.flagstone.transform.exception.IllegalArgumentRangeException;
+import com.flagstone.transform.font.CharacterFormat;
+import com.flagstone.transform.font.DefineFont2;
+import com.flagstone.transform.font.Kerning;
+import com.flagstone.transform.shape.Shape;
+
+/**
+ * <p>
+ * FontCache is a process-wide cache of the fonts decoded using the
+ * FontRegistry and of the font definitions generated from them, so that
+ * applications which display text with the same few fonts do not decode
+ * the same files and create the same definitions each time.
+ * </p>
+ *
+ * <p>
+ * Fonts read from files are identified by the path, the time the file was
+ * last modified and its length so a file that is changed is decoded again.
+ * Fonts read from file URLs are identified in the same way. Other URLs are
+ * identified by the URL alone, so finding the fonts does not need a request
+ * to the server, and are only decoded again once the entry is discarded or
+ * the cache is cleared. AWT fonts are identified by the font name, style and
+ * size.
+ * Font definitions are identified by the Font, the set of characters, in
+ * order, and the encoding of the font.
+ * </p>
+ *
+ * <p>
+ * Both tables hold a limited number of entries and discard the least
+ * recently used entry when full. The number of hits and misses are recorded
+ * for each table so the sizes can be tuned. All methods are thread-safe.
+ * Fonts are shared so they must not be modified after they are returned.
+ * </p>
+ */
+public final class FontCache {
+
+    /** The default maximum number of entries in the table of fonts. */
+    private static final int DEFAULT_FONTS = 32;
+    /** The default maximum number of font definitions. */
+    private static final int DEFAULT_DEFINITIONS = 1024;
+    /** The initial capacity of the tables. */
+    private static final int CAPACITY = 16;
+    /** The load factor for the tables. */
+    private static final float LOAD_FACTOR = 0.75f;
+
+    /** The fonts decoded from each source, least recently used first. */
+    private static final LinkedHashMap<String, List<Font>> FONTS =
+        new LinkedHashMap<String, List<Font>>(CAPACITY, LOAD_FACTOR, true);
+    /** The font definitions generated, least recently used first. */
+    private static final LinkedHashMap<Definition, DefineFont2> DEFINITIONS =
+        new LinkedHashMap<Definition, DefineFont2>(CAPACITY, LOAD_FACTOR,
+                true);
+
+    /** The maximum number of entries in the table of fonts. */
+    private static int maxFonts = DEFAULT_FONTS;
+    /** The number of times a font was found in the cache. */
+    private static long fontHits;
+    /** The number of times a font was decoded. */
+    private static long fontMisses;
+
+    /** The maximum number of entries in the table of definitions. */
+    private static int maxDefinitions = DEFAULT_DEFINITIONS;
+    /** The number of times a font definition was found in the cache. */
+    private static long definitionHits;
+    /** The number of times a font definition was generated. */
+    private static long definitionMisses;
+
+    /**
+     * Get the fonts decoded from a file. The file is only decoded, using the
+     * decoder registered with the FontRegistry, if it has not been read
+     * before or has been modified since.
+     *
+     * @param file the file containing the fonts.
+     * @return the list of fonts decoded from the file.
+     * @throws IOException if there is an error reading the file.
+     * @throws DataFormatException if there is a problem decoding the font,
+     * either it is in an unsupported format or an error occurred while
+     * decoding the font data.
+     */
+    public static List<Font> getFonts(final File file)
+            throws IOException, DataFormatException {
+        if (file == null) {
+            throw new IllegalArgumentException();
+        }
+        if (!file.isFile()) {
+            throw new FileNotFoundException(file.getPath());
+        }
+        final String key = "file:" + file.getCanonicalPath() + ":"
+            + file.lastModified() + ":" + file.length();
+
+        List<Font> fonts = getFonts(key);
+
+        if (fonts == null) {
+            final FontFactory factory = new FontFactory();
+            factory.read(file);
+            fonts = putFonts(key, factory.getFonts());
+        }
+        return fonts;
+    }
+
+    /**
+     * Get the fonts decoded from a file referenced by a URL. The file is only
+     * decoded, using the decoder registered with the FontRegistry, if it has
+     * not been read before. A file URL is treated as a File, so the fonts are
+     * decoded again if the file is modified.
+     *
+     * @param url the Uniform Resource Locator referencing the file.
+     * @return the list of fonts decoded from the file.
+     * @throws IOException if there is an error reading the file.
+     * @throws DataFormatException if there is a problem decoding the font,
+     * either it is in an unsupported format or an error occurred while
+     * decoding the font data.
+     */
+    public static List<Font> getFonts(final URL url)
+            throws IOException, DataFormatException {
+        if (url == null) {
+            throw new IllegalArgumentException();
+        }
+        if ("file".equals(url.getProtocol())) {
+            final File file = localFile(url);
+            if (file != null) {
+                return getFonts(file);
+            }
+        }
+        final String key = "url:" + url.toExternalForm();
+
+        List<Font> fonts = getFonts(key);
+
+        if (fonts == null) {
+            final FontFactory factory = new FontFactory();
+            factory.read(url);
+            fonts = putFonts(key, factory.getFonts());
+        }
+        return fonts;
+    }
+
+    /**
+     * Get the local file referenced by a file URL.
+     *
+     * @param url the Uniform Resource Locator referencing the file.
+     * @return the file or null if the URL does not identify a local file.
+     */
+    private static File localFile(final URL url) {
+        File file;
+        try {
+            file = new File(url.toURI());
+        } catch (final URISyntaxException e) {
+            file = null;
+        } catch (final IllegalArgumentException e) {
+            file = null;
+        }
+        return file;
+    }
+
+    /**
+     * Get the font decoded from an AWT font. The glyphs are converted
+     * lazily, when the characters are first used.
+     *
+     * @param font the AWT font.
+     * @return the decoded font.
+     * @throws IOException if an error occurs decoding the font data.
+     * @throws DataFormatException if the font is in a format not supported
+     * by the decoder.
+     */
+    public static Font getFont(final java.awt.Font font)
+            throws IOException, DataFormatException {
+        if (font == null) {
+            throw new IllegalArgumentException();
+        }
+        final String key = "awt:" + font.getFontName() + ":"
+            + font.getStyle() + ":" + font.getSize2D();
+
+        List<Font> fonts = getFonts(key);
+
+        if (fonts == null) {
+            final AWTDecoder decoder = new AWTDecoder();
+            decoder.setLazy(true);
+            decoder.read(font);
+            fonts = putFonts(key, decoder.getFonts());
+        }
+        return fonts.get(0);
+    }
+
+    /**
+     * Create a font definition for a set of characters. The characters are
+     * sorted and duplicates removed, since the codes in a font definition
+     * must be in ascending order. The definition is only generated if the
+     * same characters have not been used with the font and encoding before.
+     * A new object is returned each time but the glyph outlines are shared,
+     * as they are with Font.defineFont(), so they must not be modified.
+     *
+     * @param font the font containing the glyphs.
+     * @param identifier the unique identifier for the font definition.
+     * @param characters the characters the definition must contain glyphs
+     * for.
+     * @return a font definition containing the glyphs for the characters.
+     */
+    public static DefineFont2 defineFont(final Font font,
+            final int identifier, final List<Character> characters) {
+        if (font == null || characters == null) {
+            throw new IllegalArgumentException();
+        }
+        final char[] codes = new char[characters.size()];
+        int count = 0;
+        for (final Character character : characters) {
+            codes[count++] = character;
+        }
+        Arrays.sort(codes);
+        count = 0;
+        for (int i = 0; i < codes.length; i++) {
+            if (i == 0 || codes[i] != codes[i - 1]) {
+                codes[count++] = codes[i];
+            }
+        }
+
+        final Definition key = new Definition(font,
+                new String(codes, 0, count), font.getEncoding());
+        DefineFont2 definition;
+
+        synchronized (DEFINITIONS) {
+            definition = DEFINITIONS.get(key);
+            if (definition == null) {
+                definitionMisses++;
+            } else {
+                definitionHits++;
+            }
+        }
+
+        if (definition == null) {
+            final List<Character> list = new ArrayList<Character>(count);
+            for (int i = 0; i < count; i++) {
+                list.add(codes[i]);
+            }
+            definition = font.defineFont(identifier, list);
+
+            synchronized (DEFINITIONS) {
+                DEFINITIONS.put(key, definition);
+                evict(DEFINITIONS, maxDefinitions);
+            }
+        }
+        return share(definition, identifier);
+    }
+
+    /**
+     * Get the maximum number of sources for which the decoded fonts are
+     * cached.
+     * @return the maximum number of font files, URLs or AWT fonts.
+     */
+    public static int getMaxFonts() {
+        synchronized (FONTS) {
+            return maxFonts;
+        }
+    }
+
+    /**
+     * Set the maximum number of sources for which the decoded fonts are
+     * cached. If the cache is larger the least recently used entries are
+     * discarded.
+     * @param size the maximum number of font files, URLs or AWT fonts. Must
+     * be at least 1.
+     */
+    public static void setMaxFonts(final int size) {
+        if (size < 1) {
+            throw new IllegalArgumentRangeException(1, Integer.MAX_VALUE,
+                    size);
+        }
+        synchronized (FONTS) {
+            maxFonts = size;
+            evict(FONTS, maxFonts);
+        }
+    }
+
+    /**
+     * Get the maximum number of font definitions cached.
+     * @return the maximum number of font definitions.
+     */
+    public static int getMaxDefinitions() {
+        synchronized (DEFINITIONS) {
+            return maxDefinitions;
+        }
+    }
+
+    /**
+     * Set the maximum number of font definitions cached. If the cache is
+     * larger the least recently used entries are discarded.
+     * @param size the maximum number of font definitions. Must be at least 1.
+     */
+    public static void setMaxDefinitions(final int size) {
+        if (size < 1) {
+            throw new IllegalArgumentRangeException(1, Integer.MAX_VALUE,
+                    size);
+        }
+        synchronized (DEFINITIONS) {
+            maxDefinitions = size;
+            evict(DEFINITIONS, maxDefinitions);
+        }
+    }
+
+    /**
+     * Get the number of sources for which the decoded fonts are cached.
+     * @return the number of font files, URLs or AWT fonts.
+     */
+    public static int getFontCount() {
+        synchronized (FONTS) {
+            return FONTS.size();
+        }
+    }
+
+    /**
+     * Get the number of times fonts were found in the cache.
+     * @return the number of hits.
+     */
+    public static long getFontHits() {
+        synchronized (FONTS) {
+            return fontHits;
+        }
+    }
+
+    /**
+     * Get the number of times fonts were not found in the cache and had to
+     * be decoded.
+     * @return the number of misses.
+     */
+    public static long getFontMisses() {
+        synchronized (FONTS) {
+            return fontMisses;
+        }
+    }
+
+    /**
+     * Get the number of font definitions cached.
+     * @return the number of font definitions.
+     */
+    public static int getDefinitionCount() {
+        synchronized (DEFINITIONS) {
+            return DEFINITIONS.size();
+        }
+    }
+
+    /**
+     * Get the number of times font definitions were found in the cache.
+     * @return the number of hits.
+     */
+    public static long getDefinitionHits() {
+        synchronized (DEFINITIONS) {
+            return definitionHits;
+        }
+    }
+
+    /**
+     * Get the number of times font definitions were not found in the cache
+     * and had to be generated.
+     * @return the number of misses.
+     */
+    public static long getDefinitionMisses() {
+        synchronized (DEFINITIONS) {
+            return definitionMisses;
+        }
+    }
+
+    /**
+     * Discard all the fonts and font definitions in the cache and reset the
+     * number of hits and misses.
+     */
+    public static void clear() {
+        synchronized (FONTS) {
+            FONTS.clear();
+            fontHits = 0;
+            fontMisses = 0;
+        }
+        synchronized (DEFINITIONS) {
+            DEFINITIONS.clear();
+            definitionHits = 0;
+            definitionMisses = 0;
+        }
+    }
+
+    /**
+     * Look up the fonts decoded from a source and update the number of hits
+     * and misses.
+     * @param key the key identifying the source.
+     * @return the fonts or null if the source has not been decoded.
+     */
+    private static List<Font> getFonts(final String key) {
+        synchronized (FONTS) {
+            final List<Font> fonts = FONTS.get(key);
+            if (fonts == null) {
+                fontMisses++;
+            } else {
+                fontHits++;
+            }
+            return fonts;
+        }
+    }
+
+    /**
+     * Add the fonts decoded from a source. If another thread decoded the
+     * same source at the same time then the fonts already added are used
+     * so all callers share the same objects.
+     * @param key the key identifying the source.
+     * @param fonts the decoded fonts.
+     * @return the fonts held in the cache.
+     */
+    private static List<Font> putFonts(final String key,
+            final List<Font> fonts) {
+        synchronized (FONTS) {
+            List<Font> list = FONTS.get(key);
+            if (list == null) {
+                list = Collections.unmodifiableList(
+                        new ArrayList<Font>(fonts));
+                FONTS.put(key, list);
+                evict(FONTS, maxFonts);
+            }
+            return list;
+        }
+    }
+
+    /**
+     * Discard the least recently used entries in a table.
+     * @param table the table, which must be locked by the caller.
+     * @param size the maximum number of entries.
+     */
+    private static void evict(final Map<?, ?> table, final int size) {
+        final Iterator<?> iter = table.values().iterator();
+        while (table.size() > size) {
+            iter.next();
+            iter.remove();
+        }
+    }
+
+    /**
+     * Create a font definition that shares the glyphs of a cached one.
+     * @param definition the cached font definition.
+     * @param identifier the unique identifier for the font definition.
+     * @return a new font definition.
+     */
+    private static DefineFont2 share(final DefineFont2 definition,
+            final int identifier) {
+        final DefineFont2 font = new DefineFont2(identifier,
+                definition.getName());
+
+        font.setEncoding(definition.getEncoding());
+        font.setSmall(definition.isSmall());
+        font.setItalic(definition.isItalic());
+        font.setBold(definition.isBold());
+        font.setLanguage(definition.getLanguage());
+        font.setAscent(definition.getAscent());
+        font.setDescent(definition.getDescent());
+        font.setLeading(definition.getLeading());
+        font.setShapes(new ArrayList<Shape>(definition.getShapes()));
+        font.setCodes(new ArrayList<Integer>(definition.getCodes()));
+        font.setAdvances(new ArrayList<Integer>(definition.getAdvances()));
+        font.setBounds(new ArrayList<Bounds>(definition.getBounds()));
+        font.setKernings(new ArrayList<Kerning>(definition.getKernings()));
+
+        return font;
+    }
+
+    /**
+     * Definition is the key used to identify font definitions.
+     */
+    private static final class Definition {
+        /** The font containing the glyphs. */
+        private final transient Font font;
+        /** The characters, sorted and with no duplicates. */
+        private final transient String codes;
+        /** The encoding of the font. */
+        private final transient CharacterFormat encoding;
+
+        /**
+         * Create a key for a font definition.
+         * @param fnt the font containing the glyphs.
+         * @param chars the characters in the definition.
+         * @param enc the encoding of the font.
+         */
+        Definition(final Font fnt, final String chars,
+                final CharacterFormat enc) {
+            font = fnt;
+            codes = chars;
+            encoding = enc;
+        }
+
+        @Override
+        public boolean equals(final Object object) {
+            boolean result;
+            Definition key;
+
+            if (object instanceof Definition) {
+                key = (Definition) object;
+                result = font == key.font && codes.equals(key.codes)
+                        && encoding == key.encoding;
+            } else {
+                result = false;
+            }
+            return result;
+        }
+
+        @Override
+        public int hashCode() {
+            return (System.identityHashCode(font) * 31 + codes.hashCode())
+                * 31 + (encoding == null ? 0 : encoding.ordinal());
+        }
+    }
+
+    /** Private constructor for the cache. */
+    private FontCache() {
+        // Cache is shared.
+    }
+}
@@ -213,7 +213,7 @@ public final class SWFFontDecoder implements FontProvider, FontDecoder {
 
         final int glyphCount = object.getShapes().size();
         final int codeCount = object.getCodes().size();
-        final int highest = object.getCodes().get(codeCount - 1);
+        final int highest = object.getCode(codeCount - 1);
 
         font.setMissingGlyph(0);
         font.setNumberOfGlyphs(glyphCount);
@@ -235,9 +235,9 @@ public final class SWFFontDecoder implements FontProvider, FontDecoder {
                 if (object.getAdvances() == null) {
                     advance = 0;
                 } else {
-                    advance = object.getAdvances().get(i);
+                    advance = object.getAdvance(i);
                 }
-                code = object.getCodes().get(i);
+                code = object.getCode(i);
 
                 font.addGlyph((char) code, new Glyph(shape, bounds, advance));
             }
@@ -267,7 +267,7 @@ public final class SWFFontDecoder implements FontProvider, FontDecoder {
         font.setLeading(object.getLeading());
 
         final int glyphCount = object.getShapes().size();
-        final int highest = object.getCodes().get(glyphCount - 1);
+        final int highest = object.getCode(glyphCount - 1);
 
         font.setMissingGlyph(0);
         font.setNumberOfGlyphs(glyphCount);
@@ -289,9 +289,9 @@ public final class SWFFontDecoder implements FontProvider, FontDecoder {
                 if (object.getAdvances() == null) {
                     advance = 0;
                 } else {
-                    advance = object.getAdvances().get(i);
+                    advance = object.getAdvance(i);
                 }
-                code = object.getCodes().get(i);
+                code = object.getCode(i);
 
                 font.addGlyph((char) code, new Glyph(shape, bounds, advance));
             }
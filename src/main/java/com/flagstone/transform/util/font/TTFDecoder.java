@@ -32,14 +32,18 @@
 package com.flagstone.transform.util.font;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
 import java.io.UnsupportedEncodingException;
 import java.net.URL;
 import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedHashMap;
@@ -58,8 +62,21 @@ import com.flagstone.transform.shape.ShapeRecord;
 import com.flagstone.transform.util.shape.Canvas;
 
 /**
+ * <p>
  * TTFDecoder decodes TrueType or OpenType Fonts so they can be used in a
  * Flash file.
+ * </p>
+ *
+ * <p>
+ * By default all the tables are loaded and every glyph is decoded when the
+ * font is read. The decoder can also be set to load fonts lazily: files are
+ * mapped into memory rather than copied, only the tables containing the
+ * metrics and the mapping from characters to glyphs are decoded, and the
+ * outlines of glyphs, including composite glyphs, are only decoded when the
+ * characters are first used, for example to define a font for a set of
+ * characters. This avoids paying for the whole font when only a few
+ * characters from a large Unicode font are displayed.
+ * </p>
  */
 @SuppressWarnings({"PMD.ExcessiveClassLength",
 	"PMD.TooManyFields",
@@ -252,6 +269,14 @@ public final class TTFDecoder implements FontProvider, FontDecoder {
     private static final int HAVE_2X2 = 0x80;
     /** The outline of the glyph has more points to be decoded. */
     private static final int HAS_MORE = 0x10;
+    /** Bit mask used to convert a byte to an unsigned value. */
+    private static final int BYTE_MASK = 0xFF;
+    /** The size of the header of the table directory. */
+    private static final int DIRECTORY_HEADER = 12;
+    /** The size of an entry in the table directory. */
+    private static final int DIRECTORY_ENTRY = 16;
+    /** The maximum depth of composite glyphs decoded lazily. */
+    private static final int MAX_NESTING = 16;
 
     /** The name of the font. */
     private transient String name;
@@ -292,6 +317,13 @@ public final class TTFDecoder implements FontProvider, FontDecoder {
     private final transient Map<Integer, TableEntry> table
             = new LinkedHashMap<Integer, TableEntry>();
 
+    /** The advance for each glyph. */
+    private transient int[] advances;
+    /** The glyf table, for fonts decoded lazily. */
+    private transient ByteBuffer glyphData;
+    /** Whether glyphs are decoded only when characters are used. */
+    private transient boolean lazy;
+
     /** Table of fonts decoded from the font definition. */
     private final transient List<Font>fonts = new ArrayList<Font>();
 
@@ -304,6 +336,17 @@ public final class TTFDecoder implements FontProvider, FontDecoder {
     /** {@inheritDoc} */
     @Override
 	public void read(final File file) throws IOException, DataFormatException {
+        if (lazy) {
+            final RandomAccessFile source = new RandomAccessFile(file, "r");
+            try {
+                final FileChannel channel = source.getChannel();
+                read(channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                        channel.size()));
+            } finally {
+                source.close();
+            }
+            return;
+        }
         final FileInputStream stream = new FileInputStream(file);
         try {
             read(stream);
@@ -341,12 +384,41 @@ public final class TTFDecoder implements FontProvider, FontDecoder {
         return fonts;
     }
 
+    /**
+     * Are glyphs decoded only when the characters are first used.
+     * @return true if fonts are loaded lazily, false if all the glyphs are
+     * decoded when the font is read.
+     */
+    public boolean isLazy() {
+        return lazy;
+    }
+
+    /**
+     * Set whether glyphs are decoded only when the characters are first used
+     * or when the font is read.
+     * @param load true if fonts are loaded lazily, false if all the glyphs
+     * are decoded when the font is read.
+     */
+    public void setLazy(final boolean load) {
+        lazy = load;
+    }
+
     /**
      * Read a font from an input stream.
      * @param stream the stream containing the font data.
      * @throws IOException if there is an error reading the font data.
      */
     public void read(final InputStream stream) throws IOException {
+        if (lazy) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[BigDecoder.BUFFER_SIZE];
+            int count;
+            while ((count = stream.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
+            }
+            read(ByteBuffer.wrap(out.toByteArray()));
+            return;
+        }
         loadTables(stream);
         decodeTables();
 
@@ -368,6 +440,233 @@ public final class TTFDecoder implements FontProvider, FontDecoder {
         fonts.add(font);
     }
 
+    /**
+     * Read a font lazily from a buffer containing the font file. A separate
+     * decoder is used for each font since it holds the tables used to decode
+     * the glyphs when they are needed.
+     * @param buffer the contents of the file.
+     * @throws IOException if there is an error decoding the font data.
+     */
+    private void read(final ByteBuffer buffer) throws IOException {
+        final TTFDecoder decoder = new TTFDecoder();
+        decoder.mapTables(buffer);
+        fonts.add(decoder.createLazyFont());
+    }
+
+    /**
+     * Load the tables needed to create a font lazily. The glyf table is not
+     * copied, only a view of the buffer is kept, and tables that are not
+     * used are ignored.
+     * @param buffer the contents of the file.
+     * @throws IOException if the directory refers to data outside the file.
+     */
+    private void mapTables(final ByteBuffer buffer) throws IOException {
+        final int tableCount = buffer.getShort(4) & Coder.USHORT_MAX;
+        int start;
+        TableEntry entry;
+        ByteBuffer data;
+        byte[] bytes;
+
+        for (int i = 0; i < tableCount; i++) {
+            start = DIRECTORY_HEADER + i * DIRECTORY_ENTRY;
+            entry = new TableEntry();
+            entry.type = buffer.getInt(start);
+            entry.offset = buffer.getInt(start + 8);
+            entry.length = buffer.getInt(start + 12);
+
+            if (entry.offset < 0 || entry.length < 0
+                    || entry.offset > buffer.limit() - entry.length) {
+                throw new IOException("Table outside file");
+            }
+
+            data = buffer.duplicate();
+            data.position(entry.offset);
+            data.limit(entry.offset + entry.length);
+
+            if (entry.type == GLYF) {
+                glyphData = data.slice();
+            } else if (entry.type == MAXP || entry.type == OS_2
+                    || entry.type == HEAD || entry.type == HHEA
+                    || entry.type == NAME || entry.type == LOCA
+                    || entry.type == HMTX || entry.type == CMAP) {
+                bytes = new byte[entry.length];
+                data.get(bytes);
+                entry.setData(bytes);
+                table.put(entry.type, entry);
+            }
+        }
+        if (glyphData == null) {
+            throw new IOException("No glyf table");
+        }
+    }
+
+    /**
+     * Decode the tables, except the glyphs, and create a font that decodes
+     * the glyphs when the characters are first used.
+     * @return the font.
+     * @throws IOException if there is an error decoding the table data.
+     */
+    private Font createLazyFont() throws IOException {
+        decodeMAXP(table.get(MAXP));
+        decodeOS2(table.get(OS_2));
+        decodeHEAD(table.get(HEAD));
+        decodeHHEA(table.get(HHEA));
+        decodeNAME(table.get(NAME));
+        decodeLOCA(table.get(LOCA));
+        decodeHMTX(table.get(HMTX));
+        decodeCMAP(table.get(CMAP));
+        table.clear();
+
+        final Font font = new Font();
+
+        font.setFace(new FontFace(name, bold, italic));
+        font.setEncoding(encoding);
+        font.setAscent((int) ascent);
+        font.setDescent((int) descent);
+        font.setLeading((int) leading);
+        font.setNumberOfGlyphs(glyphCount);
+        font.setMissingGlyph(missingGlyph);
+        font.setHighestChar(maxChar);
+        font.setGlyph((char) glyphToChar[missingGlyph], missingGlyph,
+                decodeGlyph(missingGlyph, 0));
+        font.setLoader(new TTFGlyphLoader());
+
+        return font;
+    }
+
+    /**
+     * TTFGlyphLoader decodes the glyphs for the characters requested from a
+     * Font using the tables held by the decoder that created the font.
+     */
+    private final class TTFGlyphLoader implements GlyphLoader {
+        /** {@inheritDoc} */
+        public void load(final Font font, final char[] codes) {
+            int index;
+            try {
+                for (final char code : codes) {
+                    index = code < charToGlyph.length ? charToGlyph[code] : 0;
+                    if (index <= 0 || index >= glyphCount) {
+                        font.addMissingGlyph(code);
+                    } else if (font.hasGlyph(index)) {
+                        font.setGlyph(code, index, null);
+                    } else {
+                        font.setGlyph(code, index, decodeGlyph(index, 0));
+                    }
+                }
+            } catch (final IOException e) {
+                throw new IllegalStateException(e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Decode a single glyph from the glyf table of a font loaded lazily.
+     * The components of composite glyphs are decoded first.
+     * @param index the index of the glyph.
+     * @param nesting the number of composite glyphs that contain the glyph.
+     * @return the decoded glyph.
+     * @throws IOException if an error occurs reading the glyph data.
+     */
+    private TrueTypeGlyph decodeGlyph(final int index, final int nesting)
+            throws IOException {
+        if (glyphTable[index] == null && nesting < MAX_NESTING) {
+            final BigDecoder coder = glyphDecoder(index);
+            final int numberOfContours = coder.readShort();
+
+            if (numberOfContours >= 0) {
+                decodeSimpleGlyph(coder, index, numberOfContours);
+            } else if (offsets[index] != 0 && numberOfContours == -1) {
+                for (final int component : components(coder)) {
+                    decodeGlyph(component, nesting + 1);
+                }
+                final BigDecoder composite = glyphDecoder(index);
+                composite.readShort(); // number of contours
+                decodeCompositeGlyph(composite, index);
+            }
+        }
+        if (glyphTable[index] == null) {
+            glyphTable[index] = new TrueTypeGlyph(
+                    new Shape(new ArrayList<ShapeRecord>()),
+                    new Bounds(0, 0, 0, 0), 0);
+        }
+        glyphTable[index].setAdvance(advances[index]);
+        return glyphTable[index];
+    }
+
+    /**
+     * Get a decoder for the data of a glyph, positioned at the number of
+     * contours.
+     * @param index the index of the glyph.
+     * @return a decoder that reads from the glyf table.
+     * @throws IOException if the glyph is outside the table.
+     */
+    private BigDecoder glyphDecoder(final int index) throws IOException {
+        final int start = offsets[index] >> BYTES_TO_BITS;
+        if (start >= glyphData.limit()) {
+            throw new IOException("Glyph outside table");
+        }
+        final ByteBuffer data = glyphData.duplicate();
+        data.position(start);
+        return new BigDecoder(new InputStream() {
+            @Override
+            public int read() {
+                return data.hasRemaining() ? data.get() & BYTE_MASK : -1;
+            }
+
+            @Override
+            public int read(final byte[] bytes, final int off,
+                    final int len) {
+                if (!data.hasRemaining()) {
+                    return -1;
+                }
+                final int count = Math.min(len, data.remaining());
+                data.get(bytes, off, count);
+                return count;
+            }
+        });
+    }
+
+    /**
+     * Get the indices of the glyphs used in a composite glyph.
+     * @param coder the decoder positioned after the number of contours.
+     * @return the indices of the component glyphs.
+     * @throws IOException if an error occurs reading the glyph data.
+     */
+    private List<Integer> components(final BigDecoder coder)
+            throws IOException {
+        final List<Integer> list = new ArrayList<Integer>();
+        int flags;
+        int component;
+
+        coder.readShort(); // xMin
+        coder.readShort(); // yMin
+        coder.readShort(); // xMax
+        coder.readShort(); // yMax
+
+        do {
+            flags = coder.readUnsignedShort();
+            component = coder.readUnsignedShort();
+            if (component < glyphCount) {
+                list.add(component);
+            }
+            if ((flags & ARGS_ARE_WORDS) > 0) {
+                coder.readInt();
+            } else {
+                coder.readUnsignedShort();
+            }
+            if ((flags & HAVE_SCALE) > 0) {
+                coder.readShort();
+            } else if ((flags & HAVE_XYSCALE) > 0) {
+                coder.readInt();
+            } else if ((flags & HAVE_2X2) > 0) {
+                coder.readInt();
+                coder.readInt();
+            }
+        } while ((flags & HAS_MORE) > 0);
+
+        return list;
+    }
+
     /**
      * Load the tables from the TrueType table directory.
      * @param stream the InputStream containing the font data.
@@ -417,6 +716,10 @@ public final class TTFDecoder implements FontProvider, FontDecoder {
         decodeGlyphs(table.get(GLYF));
         decodeHMTX(table.get(HMTX));
         decodeCMAP(table.get(CMAP));
+
+        for (int i = 0; i < glyphCount; i++) {
+            glyphTable[i].setAdvance(advances[i]);
+        }
     }
 
     /**
@@ -696,15 +999,17 @@ public final class TTFDecoder implements FontProvider, FontDecoder {
         final BigDecoder coder = new BigDecoder(stream, data.length);
         int index = 0;
 
+        advances = new int[glyphCount];
+
         for (index = 0; index < metrics; index++) {
-            glyphTable[index].setAdvance((coder.readUnsignedShort() / scale));
+            advances[index] = coder.readUnsignedShort() / scale;
             coder.readShort(); // left side bearing
         }
 
-        final int advance = glyphTable[index - 1].getAdvance();
+        final int advance = advances[index - 1];
 
         while (index < glyphCount) {
-            glyphTable[index++].setAdvance(advance);
+            advances[index++] = advance;
         }
 
         while (index < glyphCount) {
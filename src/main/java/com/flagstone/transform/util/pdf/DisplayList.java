@@ -0,0 +1,158 @@
+/*
+ * DisplayList.java
+ * Transform
+ *
+ * Copyright (c) 2010 Flagstone Software Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of Flagstone Software Ltd. nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.flagstone.transform.util.pdf;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import com.flagstone.transform.MovieTag;
+import com.flagstone.transform.Place;
+import com.flagstone.transform.Place2;
+import com.flagstone.transform.Place3;
+import com.flagstone.transform.PlaceType;
+import com.flagstone.transform.Remove;
+import com.flagstone.transform.Remove2;
+import com.flagstone.transform.ShowFrame;
+import com.flagstone.transform.datatype.Blend;
+import com.flagstone.transform.datatype.ColorTransform;
+import com.flagstone.transform.datatype.CoordTransform;
+import com.flagstone.transform.filter.Filter;
+import com.flagstone.transform.movieclip.DefineMovieClip;
+
+/**
+ * DisplayList tracks the objects displayed on each layer as the Place and
+ * Remove commands in a movie, or movie clip, are executed.
+ */
+final class DisplayList {
+
+    /**
+     * Get the objects displayed in the first frame of a movie clip.
+     *
+     * @param clip the movie clip.
+     * @return the objects displayed, in layer order.
+     */
+    static List<Placement> getFirstFrame(final DefineMovieClip clip) {
+        final DisplayList displayList = new DisplayList();
+        for (final MovieTag tag : clip.getObjects()) {
+            if (tag instanceof ShowFrame) {
+                break;
+            }
+            displayList.update(tag);
+        }
+        return displayList.getPlacements();
+    }
+
+    /** The objects displayed, sorted by layer. */
+    private final transient SortedMap<Integer, Placement> layers;
+
+    /**
+     * Create an empty DisplayList.
+     */
+    DisplayList() {
+        layers = new TreeMap<Integer, Placement>();
+    }
+
+    /**
+     * Update the display list. Commands other than those that add, update or
+     * remove objects are ignored.
+     *
+     * @param tag a command from a movie or movie clip.
+     */
+    void update(final MovieTag tag) {
+        if (tag instanceof Place) {
+            final Place place = (Place) tag;
+            layers.put(place.getLayer(), new Placement(place.getLayer(),
+                    place.getIdentifier(), place.getTransform(),
+                    place.getColorTransform(), null));
+        } else if (tag instanceof Place2) {
+            final Place2 place = (Place2) tag;
+            place(place.getType(), place.getLayer(), place.getIdentifier(),
+                    place.getTransform(), place.getColorTransform(),
+                    place.getDepth(), null, null);
+        } else if (tag instanceof Place3) {
+            final Place3 place = (Place3) tag;
+            place(place.getType(), place.getLayer(), place.getIdentifier(),
+                    place.getTransform(), place.getColorTransform(),
+                    place.getDepth(), place.getFilters(), place.getBlend());
+        } else if (tag instanceof Remove) {
+            layers.remove(((Remove) tag).getLayer());
+        } else if (tag instanceof Remove2) {
+            layers.remove(((Remove2) tag).getLayer());
+        }
+    }
+
+    /**
+     * Add, replace or modify the object on a layer. Attributes that are not
+     * specified when an object is modified or replaced are kept.
+     *
+     * @param type whether the object is added, replaced or modified.
+     * @param layer the layer number.
+     * @param identifier the unique identifier of the object.
+     * @param transform the coordinate transform or null.
+     * @param color the colour transform or null.
+     * @param depth the clipping depth or null.
+     * @param filters the filters applied to the object, empty or null if
+     * none are specified.
+     * @param blend the blend mode or null.
+     */
+    private void place(final PlaceType type, final int layer,
+            final int identifier, final CoordTransform transform,
+            final ColorTransform color, final Integer depth,
+            final List<Filter> filters, final Blend blend) {
+        final Placement current = layers.get(layer);
+
+        if (type == PlaceType.NEW || current == null) {
+            layers.put(layer, new Placement(layer, identifier, transform,
+                    color, depth, filters, blend));
+        } else {
+            layers.put(layer, new Placement(layer,
+                    type == PlaceType.MODIFY ? current.getIdentifier()
+                            : identifier,
+                    transform == null ? current.getTransform() : transform,
+                    color == null ? current.getColorTransform() : color,
+                    depth == null ? current.getDepth() : depth,
+                    filters == null || filters.isEmpty()
+                            ? current.getFilters() : filters,
+                    blend == null ? current.getBlend() : blend));
+        }
+    }
+
+    /**
+     * Get the objects currently displayed.
+     * @return a copy of the entries in the display list, in layer order.
+     */
+    List<Placement> getPlacements() {
+        return new ArrayList<Placement>(layers.values());
+    }
+}
@@ -0,0 +1,343 @@
+/*
+ * FilterKernel.java
+ * Transform
+ *
+ * Copyright (c) 2010 Flagstone Software Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of Flagstone Software Ltd. nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package com.flagstone.transform.util.pdf;
+
+/**
+ * <p>
+ * FilterKernel contains the image processing used to apply the filters from
+ * a Place3 object to an object that has been rasterized. Images are arrays of
+ * 32-bit pixels in premultiplied ARGB format, the same layout used by a
+ * BufferedImage of type TYPE_INT_ARGB_PRE.
+ * </p>
+ *
+ * <p>
+ * Blurs are separable box filters applied along each row then each column,
+ * using a running sum so the cost does not depend on the size of the blur.
+ * None of the methods allocate memory: the caller supplies the buffers so
+ * they can be reused for each filter applied to an image.
+ * </p>
+ */
+final class FilterKernel {
+
+    /** The maximum value for a colour channel. */
+    private static final int MAX_LEVEL = 255;
+    /** Half the maximum level, used to round divisions. */
+    private static final int HALF_LEVEL = 128;
+    /** Shift for the alpha channel. */
+    private static final int ALPHA = 24;
+    /** Shift for the red channel. */
+    private static final int RED = 16;
+    /** Shift for the green channel. */
+    private static final int GREEN = 8;
+    /** Mask for a single channel. */
+    private static final int MASK = 0xFF;
+    /** The number of columns in a colour matrix. */
+    private static final int COLUMNS = 5;
+    /** Offset to the coefficients for alpha in a colour matrix. */
+    private static final int ALPHA_ROW = 15;
+    /** Offset to the coefficients for green in a colour matrix. */
+    private static final int GREEN_ROW = 5;
+    /** Offset to the coefficients for blue in a colour matrix. */
+    private static final int BLUE_ROW = 10;
+
+    /**
+     * Multiply two levels, where 255 represents 1.0.
+     *
+     * @param level the first level, 0 - 255.
+     * @param scale the second level, 0 - 255.
+     * @return the product, 0 - 255.
+     */
+    private static int multiply(final int level, final int scale) {
+        final int product = level * scale + HALF_LEVEL;
+        return (product + (product >>> GREEN)) >>> GREEN;
+    }
+
+    /**
+     * Clamp a value to the range of a colour channel.
+     * @param value the value.
+     * @return the value rounded and limited to the range 0 - 255.
+     */
+    private static int clamp(final float value) {
+        return Math.max(0, Math.min(MAX_LEVEL, Math.round(value)));
+    }
+
+    /**
+     * Blur an image with a box filter.
+     *
+     * @param pixels the pixels of the image, updated in place.
+     * @param width the width of the image in pixels.
+     * @param height the height of the image in pixels.
+     * @param radiusX the number of pixels on each side of a pixel that are
+     * averaged horizontally.
+     * @param radiusY the number of pixels on each side of a pixel that are
+     * averaged vertically.
+     * @param passes the number of times the filter is applied.
+     * @param line a buffer large enough to hold a row or column of the
+     * image.
+     */
+    static void blur(final int[] pixels, final int width, final int height,
+            final int radiusX, final int radiusY, final int passes,
+            final int[] line) {
+        for (int pass = 0; pass < passes; pass++) {
+            if (radiusX > 0) {
+                for (int row = 0; row < height; row++) {
+                    blur(pixels, row * width, 1, width, radiusX, line);
+                }
+            }
+            if (radiusY > 0) {
+                for (int column = 0; column < width; column++) {
+                    blur(pixels, column, width, height, radiusY, line);
+                }
+            }
+        }
+    }
+
+    /**
+     * Blur a single row or column of an image. The pixels outside the image
+     * are treated as transparent.
+     *
+     * @param pixels the pixels of the image.
+     * @param offset the index of the first pixel.
+     * @param stride the distance between successive pixels.
+     * @param length the number of pixels.
+     * @param radius the number of pixels on each side that are averaged.
+     * @param line a buffer used to hold a copy of the pixels.
+     */
+    private static void blur(final int[] pixels, final int offset,
+            final int stride, final int length, final int radius,
+            final int[] line) {
+        final int size = 2 * radius + 1;
+        final int half = size / 2;
+        int alpha = 0;
+        int red = 0;
+        int green = 0;
+        int blue = 0;
+        int pixel;
+
+        for (int i = 0, index = offset; i < length; i++, index += stride) {
+            line[i] = pixels[index];
+        }
+        for (int i = 0; i < radius && i < length; i++) {
+            pixel = line[i];
+            alpha += pixel >>> ALPHA;
+            red += (pixel >> RED) & MASK;
+            green += (pixel >> GREEN) & MASK;
+            blue += pixel & MASK;
+        }
+        for (int i = 0, index = offset; i < length; i++, index += stride) {
+            if (i + radius < length) {
+                pixel = line[i + radius];
+                alpha += pixel >>> ALPHA;
+                red += (pixel >> RED) & MASK;
+                green += (pixel >> GREEN) & MASK;
+                blue += pixel & MASK;
+            }
+            pixels[index] = ((alpha + half) / size) << ALPHA
+                    | ((red + half) / size) << RED
+                    | ((green + half) / size) << GREEN
+                    | (blue + half) / size;
+            if (i - radius >= 0) {
+                pixel = line[i - radius];
+                alpha -= pixel >>> ALPHA;
+                red -= (pixel >> RED) & MASK;
+                green -= (pixel >> GREEN) & MASK;
+                blue -= pixel & MASK;
+            }
+        }
+    }
+
+    /**
+     * Transform the colours of an image using the 4x5 matrix from a
+     * ColorMatrixFilter. The matrix is applied to the colours before they
+     * are premultiplied by the alpha channel.
+     *
+     * @param pixels the pixels of the image, updated in place.
+     * @param matrix the colour matrix, in row order: red, green, blue and
+     * alpha, with the offset in the last column of each row.
+     */
+    static void transform(final int[] pixels, final float[] matrix) {
+        int pixel;
+        int alpha;
+        int red;
+        int green;
+        int blue;
+        int level;
+
+        for (int i = 0; i < pixels.length; i++) {
+            pixel = pixels[i];
+            alpha = pixel >>> ALPHA;
+            if (alpha == 0) {
+                red = 0;
+                green = 0;
+                blue = 0;
+            } else {
+                red = (((pixel >> RED) & MASK) * MAX_LEVEL + alpha / 2)
+                        / alpha;
+                green = (((pixel >> GREEN) & MASK) * MAX_LEVEL + alpha / 2)
+                        / alpha;
+                blue = ((pixel & MASK) * MAX_LEVEL + alpha / 2) / alpha;
+            }
+            level = clamp(row(matrix, ALPHA_ROW, red, green, blue, alpha));
+            pixels[i] = level << ALPHA
+                | multiply(clamp(row(matrix, 0, red, green, blue, alpha)),
+                        level) << RED
+                | multiply(clamp(row(matrix, GREEN_ROW, red, green, blue,
+                        alpha)), level) << GREEN
+                | multiply(clamp(row(matrix, BLUE_ROW, red, green, blue,
+                        alpha)), level);
+        }
+    }
+
+    /**
+     * Calculate one row of a colour matrix.
+     *
+     * @param matrix the colour matrix.
+     * @param start the index of the first coefficient in the row.
+     * @param red the red channel.
+     * @param green the green channel.
+     * @param blue the blue channel.
+     * @param alpha the alpha channel.
+     * @return the new value for the channel, before it is clamped.
+     */
+    private static float row(final float[] matrix, final int start,
+            final int red, final int green, final int blue, final int alpha) {
+        return matrix[start] * red + matrix[start + 1] * green
+                + matrix[start + 2] * blue + matrix[start + 3] * alpha
+                + matrix[start + COLUMNS - 1];
+    }
+
+    /**
+     * Draw a shadow or glow using the outline of an image. The alpha
+     * channel of the image is offset, blurred and scaled by the strength to
+     * give the coverage of the shadow, which is then combined with the
+     * image. An outer shadow is drawn behind the image and an inner shadow,
+     * generated from the transparent areas, is drawn on top. In knockout
+     * mode only the shadow is kept.
+     *
+     * @param pixels the pixels of the image, updated in place.
+     * @param shadow a buffer, the same size as the image, used to generate
+     * the shadow.
+     * @param width the width of the image in pixels.
+     * @param height the height of the image in pixels.
+     * @param color the colour of the shadow, in ARGB format without
+     * premultiplied alpha.
+     * @param offsetX the horizontal offset of the shadow in pixels.
+     * @param offsetY the vertical offset of the shadow in pixels.
+     * @param radiusX the horizontal blur radius in pixels.
+     * @param radiusY the vertical blur radius in pixels.
+     * @param passes the number of times the blur is applied.
+     * @param strength the factor used to scale the coverage of the shadow.
+     * @param inner true if the shadow is drawn inside the image.
+     * @param knockout true if the image is removed, leaving only the shadow.
+     * @param line a buffer large enough to hold a row or column of the
+     * image.
+     */
+    static void shadow(final int[] pixels, final int[] shadow,
+            final int width, final int height, final int color,
+            final int offsetX, final int offsetY, final int radiusX,
+            final int radiusY, final int passes, final float strength,
+            final boolean inner, final boolean knockout, final int[] line) {
+        int xCoord;
+        int yCoord;
+        int level;
+
+        for (int row = 0, index = 0; row < height; row++) {
+            yCoord = row - offsetY;
+            for (int column = 0; column < width; column++, index++) {
+                xCoord = column - offsetX;
+                if (xCoord < 0 || xCoord >= width || yCoord < 0
+                        || yCoord >= height) {
+                    level = 0;
+                } else {
+                    level = pixels[yCoord * width + xCoord] >>> ALPHA;
+                }
+                shadow[index] = (inner ? MAX_LEVEL - level : level) << ALPHA;
+            }
+        }
+
+        blur(shadow, width, height, radiusX, radiusY, passes, line);
+
+        final int alpha = color >>> ALPHA;
+        final int red = (color >> RED) & MASK;
+        final int green = (color >> GREEN) & MASK;
+        final int blue = color & MASK;
+        int pixel;
+        int coverage;
+        int below;
+
+        for (int i = 0; i < pixels.length; i++) {
+            pixel = pixels[i];
+            coverage = multiply(clamp((shadow[i] >>> ALPHA) * strength),
+                    alpha);
+            if (inner) {
+                coverage = multiply(coverage, pixel >>> ALPHA);
+            } else if (knockout) {
+                coverage = multiply(coverage, MAX_LEVEL - (pixel >>> ALPHA));
+            }
+            level = coverage << ALPHA | multiply(red, coverage) << RED
+                    | multiply(green, coverage) << GREEN
+                    | multiply(blue, coverage);
+
+            if (knockout) {
+                pixels[i] = level;
+            } else if (inner) {
+                pixels[i] = over(level, pixel);
+            } else {
+                pixels[i] = over(pixel, level);
+            }
+        }
+    }
+
+    /**
+     * Composite one premultiplied pixel over another.
+     *
+     * @param top the pixel in front.
+     * @param bottom the pixel behind.
+     * @return the combined pixel.
+     */
+    private static int over(final int top, final int bottom) {
+        final int remainder = MAX_LEVEL - (top >>> ALPHA);
+        return ((top >>> ALPHA) + multiply(bottom >>> ALPHA, remainder))
+                << ALPHA
+            | (((top >> RED) & MASK)
+                + multiply((bottom >> RED) & MASK, remainder)) << RED
+            | (((top >> GREEN) & MASK)
+                + multiply((bottom >> GREEN) & MASK, remainder)) << GREEN
+            | ((top & MASK) + multiply(bottom & MASK, remainder));
+    }
+
+    /** FilterKernel only contains static methods. */
+    private FilterKernel() {
+        // Private constructor
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * FontCache.java
+ * Transform
+ *
+ * Copyright (c) 2010 Flagstone Software Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of Flagstone Software Ltd. nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.flagstone.transform.util.pdf;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import com.flagstone.transform.DefineTag;
+import com.flagstone.transform.coder.Context;
+import com.flagstone.transform.coder.SWFEncoder;
+import com.flagstone.transform.font.DefineFont;
+import com.flagstone.transform.font.DefineFont2;
+import com.flagstone.transform.font.DefineFont3;
+import com.flagstone.transform.shape.Shape;
+
+/**
+ * <p>
+ * FontCache shares the glyph procedures generated for a font between all
+ * the documents converted by the process. Movies produced by the same
+ * application usually embed the same fonts so converting the outlines once
+ * avoids repeating the work for every document in a batch.
+ * </p>
+ *
+ * <p>
+ * Fonts are identified by a SHA-1 digest of the name, the encoded glyph
+ * outlines, the advances and the size of the EM square, rather than the
+ * identifier, which is only unique within a movie. The cache holds a fixed
+ * number of fonts, discarding the least recently used when it is full.
+ * </p>
+ */
+final class FontCache {
+
+    /** The maximum number of fonts held in the cache. */
+    private static final int MAX_FONTS = 64;
+    /** The size of the EM square for the glyphs in most fonts. */
+    private static final float GLYPH_EM = 1024.0f;
+    /** The size of the EM square for the glyphs in DefineFont3 fonts. */
+    private static final float FONT3_EM = 20480.0f;
+    /** The initial capacity of the table of fonts. */
+    private static final int CAPACITY = 16;
+    /** The load factor for the table of fonts. */
+    private static final float LOAD_FACTOR = 0.75f;
+    /** The radix used to convert a digest into a key. */
+    private static final int HEX = 16;
+
+    /** The glyph tables for each font, in order of the least recently used. */
+    private static final LinkedHashMap<String, GlyphTable> FONTS =
+        new LinkedHashMap<String, GlyphTable>(CAPACITY, LOAD_FACTOR, true);
+
+    /**
+     * Get the glyph table for a font. The table is created the first time a
+     * font with the same contents is used.
+     *
+     * @param font the font definition.
+     * @return the glyph table or null if the object is not a font that
+     * contains glyphs.
+     * @throws IOException if the glyph outlines cannot be encoded.
+     */
+    static GlyphTable getGlyphs(final DefineTag font) throws IOException {
+        final String name;
+        final List<Shape> shapes;
+        final List<Integer> advances;
+        final float emSize;
+
+        if (font instanceof DefineFont) {
+            name = "";
+            shapes = ((DefineFont) font).getShapes();
+            advances = Collections.emptyList();
+            emSize = GLYPH_EM;
+        } else if (font instanceof DefineFont2) {
+            name = ((DefineFont2) font).getName();
+            shapes = ((DefineFont2) font).getShapes();
+            advances = ((DefineFont2) font).getAdvances();
+            emSize = GLYPH_EM;
+        } else if (font instanceof DefineFont3) {
+            name = ((DefineFont3) font).getName();
+            shapes = ((DefineFont3) font).getShapes();
+            advances = ((DefineFont3) font).getAdvances();
+            emSize = FONT3_EM;
+        } else {
+            return null;
+        }
+
+        final String key = digest(name, shapes, advances, emSize);
+        GlyphTable table;
+
+        synchronized (FONTS) {
+            table = FONTS.get(key);
+            if (table == null) {
+                table = new GlyphTable(shapes, advances, emSize);
+                FONTS.put(key, table);
+
+                final Iterator<GlyphTable> iter = FONTS.values().iterator();
+                while (FONTS.size() > MAX_FONTS) {
+                    iter.next();
+                    iter.remove();
+                }
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Get the number of fonts in the cache.
+     * @return the number of glyph tables cached.
+     */
+    static int size() {
+        synchronized (FONTS) {
+            return FONTS.size();
+        }
+    }
+
+    /**
+     * Discard all the fonts in the cache.
+     */
+    static void clear() {
+        synchronized (FONTS) {
+            FONTS.clear();
+        }
+    }
+
+    /**
+     * Generate the key used to identify a font from its contents.
+     *
+     * @param name the name of the font.
+     * @param shapes the glyph outlines.
+     * @param advances the advance for each glyph.
+     * @param emSize the size of the EM square.
+     * @return the digest of the font, in hexadecimal.
+     * @throws IOException if the glyph outlines cannot be encoded.
+     */
+    private static String digest(final String name, final List<Shape> shapes,
+            final List<Integer> advances, final float emSize)
+            throws IOException {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        final SWFEncoder coder = new SWFEncoder(new DigestOutputStream(
+                new NullStream(), digest));
+        final Context context = new Context();
+        context.put(Context.FILL_SIZE, 1);
+        context.put(Context.LINE_SIZE, 0);
+
+        coder.writeString(name == null ? "" : name);
+        coder.writeInt(Float.floatToIntBits(emSize));
+        coder.writeInt(shapes.size());
+        for (final Shape shape : shapes) {
+            coder.writeInt(shape.prepareToEncode(context));
+            shape.encode(coder, context);
+        }
+        coder.writeInt(advances.size());
+        for (final Integer advance : advances) {
+            coder.writeInt(advance);
+        }
+        coder.flush();
+
+        return new BigInteger(1, digest.digest()).toString(HEX);
+    }
+
+    /**
+     * NullStream discards the bytes written, leaving the digest.
+     */
+    private static final class NullStream extends OutputStream {
+        @Override
+        public void write(final int value) {
+            // discarded
+        }
+
+        @Override
+        public void write(final byte[] bytes, final int off, final int len) {
+            // discarded
+        }
+    }
+
+    /** FontCache only contains static methods. */
+    private FontCache() {
+        // Private constructor
+    }
+}
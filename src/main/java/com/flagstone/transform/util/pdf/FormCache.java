@@ -0,0 +1,730 @@
+/*
+ * FormCache.java
+ * Transform
+ *
+ * Copyright (c) 2010 Flagstone Software Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of Flagstone Software Ltd. nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.flagstone.transform.util.pdf;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import javax.imageio.ImageIO;
+
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.graphics.blend.BlendMode;
+import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
+import org.apache.pdfbox.pdmodel.graphics.image.LosslessFactory;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.apache.pdfbox.pdmodel.graphics.shading.PDShading;
+import org.apache.pdfbox.pdmodel.graphics.state.PDExtendedGraphicsState;
+
+import com.flagstone.transform.Constants;
+import com.flagstone.transform.DefineTag;
+import com.flagstone.transform.datatype.Blend;
+import com.flagstone.transform.datatype.ColorTransform;
+import com.flagstone.transform.image.DefineImage;
+import com.flagstone.transform.image.DefineImage2;
+import com.flagstone.transform.image.DefineJPEGImage;
+import com.flagstone.transform.image.DefineJPEGImage2;
+import com.flagstone.transform.image.DefineJPEGImage3;
+import com.flagstone.transform.image.DefineJPEGImage4;
+import com.flagstone.transform.image.JPEGEncodingTable;
+import com.flagstone.transform.shape.ShapeTag;
+import com.flagstone.transform.text.GlyphIndex;
+import com.flagstone.transform.text.StaticTextTag;
+import com.flagstone.transform.text.TextSpan;
+
+/**
+ * <p>
+ * FormCache contains the definitions of the objects in a movie and the Form
+ * XObjects generated for the shapes and static text. Each object is drawn
+ * once, in its own coordinate space, and the form is reused every time the
+ * object is displayed, on any page of the document, by drawing it with the
+ * placement's coordinate transform. Since the colour transform changes the
+ * colours written into the form, the forms are keyed by both the identifier
+ * of the object and the colour transform applied to it.
+ * </p>
+ *
+ * <p>
+ * Forms are kept until the document is closed. A form is referenced by every
+ * page that displays it and is only written when the document is saved, so
+ * discarding it earlier would release no memory and generating it again
+ * would only add a duplicate to the document. The content streams of the
+ * forms are held in the scratch file, if one is used by the document.
+ * </p>
+ *
+ * <p>
+ * FormCache may be shared by threads drawing different pages of the same
+ * document. A form that is requested while another thread is drawing it is
+ * not generated twice: the second thread waits for the first to finish.
+ * </p>
+ *
+ * <p>
+ * The images displayed by bitmap fills are added to the document once, the
+ * first time they are used, and are never discarded. JPEG images are
+ * embedded without being decoded and lossless images are converted in a
+ * single pass as they are decompressed. The shadings used to draw gradients
+ * are also shared, so identical gradients displayed by different shapes are
+ * only added to the document once.
+ * </p>
+ */
+final class FormCache {
+
+    /** The signature at the start of a PNG image. */
+    private static final byte[] PNG = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n',
+        0x1A, '\n'};
+    /** The signature at the start of a GIF image. */
+    private static final byte[] GIF = {'G', 'I', 'F', '8'};
+    /** The number of levels in a colour channel. */
+    private static final int LEVELS = 256;
+    /** The maximum value for a colour channel. */
+    private static final float MAX_LEVEL = 255.0f;
+    /**
+     * Half the size of the soft masks for gradients, in the coordinates of
+     * the gradient square. The masks must cover the area filled even when
+     * the gradient is scaled down to a small fraction of the shape.
+     */
+    private static final float MASK_EXTENT = 256 * GradientShading.EXTENT;
+
+    /**
+     * Key identifies a form by the object drawn and the colour transform.
+     */
+    private static final class Key {
+        /** The unique identifier of the object. */
+        private final transient int identifier;
+        /** The colour transform, may be null. */
+        private final transient ColorTransform color;
+
+        /**
+         * Create a Key.
+         * @param uid the unique identifier of the object.
+         * @param transform the colour transform, may be null.
+         */
+        Key(final int uid, final ColorTransform transform) {
+            identifier = uid;
+            color = transform;
+        }
+
+        @Override
+        public boolean equals(final Object object) {
+            boolean result;
+            Key key;
+
+            if (object == this) {
+                result = true;
+            } else if (object instanceof Key) {
+                key = (Key) object;
+                result = identifier == key.identifier
+                        && (color == null ? key.color == null
+                                : color.equals(key.color));
+            } else {
+                result = false;
+            }
+            return result;
+        }
+
+        @Override
+        public int hashCode() {
+            return identifier * Constants.PRIME
+                    + (color == null ? 0 : color.hashCode());
+        }
+    }
+
+    /** The document that will contain the forms. */
+    private final transient PDDocument document;
+    /** The definitions of the objects in the movie. */
+    private final transient Map<Integer, DefineTag> symbols;
+    /** The forms generated for the shapes and static text. */
+    private final transient Map<Key, Future<PDFormXObject>> forms;
+    /** The Type 3 fonts generated for each font. */
+    private final transient Map<Integer, Type3Font> fonts;
+    /** The images added to the document, null if an image is not drawn. */
+    private final transient Map<Integer, PDImageXObject> images;
+    /** The shadings used to draw gradients. */
+    private final transient Map<GradientShading, PDShading> shadings;
+    /** The graphics states that set the soft masks for gradients. */
+    private final transient Map<GradientShading, PDExtendedGraphicsState>
+        masks;
+    /** The graphics states used to set each blend mode. */
+    private final transient Map<Blend, PDExtendedGraphicsState> blends;
+    /** The encoding tables shared by DefineJPEGImage objects. */
+    private transient JPEGEncodingTable encodingTable;
+    /** The graphics states used to set each level of transparency. */
+    private final transient PDExtendedGraphicsState[] alphas;
+
+    /**
+     * Create a FormCache.
+     *
+     * @param pdf the document that will contain the forms.
+     * @param dictionary the definitions of the objects in the movie, keyed
+     * by their unique identifier.
+     */
+    FormCache(final PDDocument pdf,
+            final Map<Integer, DefineTag> dictionary) {
+        document = pdf;
+        symbols = dictionary;
+        forms = new HashMap<Key, Future<PDFormXObject>>();
+        fonts = new HashMap<Integer, Type3Font>();
+        images = new HashMap<Integer, PDImageXObject>();
+        shadings = new HashMap<GradientShading, PDShading>();
+        masks = new HashMap<GradientShading, PDExtendedGraphicsState>();
+        blends = new EnumMap<Blend, PDExtendedGraphicsState>(Blend.class);
+        alphas = new PDExtendedGraphicsState[LEVELS];
+    }
+
+    /**
+     * Get the definition of an object.
+     *
+     * @param identifier the unique identifier of the object.
+     * @return the definition or null if the object is not defined.
+     */
+    DefineTag getDefinition(final int identifier) {
+        return symbols.get(identifier);
+    }
+
+    /**
+     * Get the form used to draw a shape or block of static text, generating
+     * it the first time the object is displayed.
+     *
+     * @param definition the definition of the object.
+     * @param color the colour transform applied to the object, may be null.
+     * @return the form or null if the object is not a shape or static text.
+     * @throws IOException if an error occurs generating the form.
+     */
+    PDFormXObject getForm(final DefineTag definition,
+            final ColorTransform color) throws IOException {
+        if (!(definition instanceof ShapeTag
+                || definition instanceof StaticTextTag)) {
+            return null;
+        }
+
+        final Key key = new Key(definition.getIdentifier(), color);
+        final FutureTask<PDFormXObject> created;
+        Future<PDFormXObject> task;
+
+        synchronized (forms) {
+            task = forms.get(key);
+            if (task == null) {
+                created = new FutureTask<PDFormXObject>(new FormTask(
+                        definition, color));
+                task = created;
+                forms.put(key, task);
+            } else {
+                created = null;
+            }
+        }
+
+        if (created != null) {
+            created.run();
+        }
+
+        try {
+            return task.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (final ExecutionException e) {
+            synchronized (forms) {
+                if (forms.get(key) == task) {
+                    forms.remove(key);
+                }
+            }
+            throw rethrow(e);
+        }
+    }
+
+    /**
+     * Draw a shape or block of static text into a new form.
+     *
+     * @param definition the definition of the object.
+     * @param color the colour transform applied to the object, may be null.
+     * @return the form.
+     * @throws IOException if an error occurs generating the form.
+     */
+    private PDFormXObject createForm(final DefineTag definition,
+            final ColorTransform color) throws IOException {
+        final PDFormXObject form = new PDFormXObject(document);
+        form.setResources(new PDResources());
+
+        final PDPageContentStream stream = new PDPageContentStream(
+                document, form, form.getContentStream()
+                        .createOutputStream(COSName.FLATE_DECODE));
+        final Painter painter = new Painter(stream,
+                form.getResources(), this);
+
+        try {
+            if (definition instanceof ShapeTag) {
+                painter.drawShape(getPath((ShapeTag) definition), color);
+            } else {
+                addGlyphs((StaticTextTag) definition);
+                painter.drawText((StaticTextTag) definition, color);
+            }
+        } finally {
+            stream.close();
+        }
+        form.setBBox(painter.getBounds());
+
+        return form;
+    }
+
+    /**
+     * Convert the exception thrown by a task into the exception that will be
+     * thrown by the method that waited for it.
+     *
+     * @param e the exception thrown by the task.
+     * @return the IOException to throw if the cause is not an unchecked
+     * exception.
+     */
+    static IOException rethrow(final ExecutionException e) {
+        final Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+            return (IOException) cause;
+        } else if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        } else if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new IOException(cause);
+    }
+
+    /**
+     * FormTask draws a form so it can be shared by all the threads that
+     * display the same object while it is being generated.
+     */
+    private final class FormTask implements Callable<PDFormXObject> {
+        /** The definition of the object. */
+        private final transient DefineTag definition;
+        /** The colour transform, may be null. */
+        private final transient ColorTransform color;
+
+        /**
+         * Create a FormTask.
+         * @param tag the definition of the object.
+         * @param transform the colour transform, may be null.
+         */
+        FormTask(final DefineTag tag, final ColorTransform transform) {
+            definition = tag;
+            color = transform;
+        }
+
+        /** {@inheritDoc} */
+        public PDFormXObject call() throws IOException {
+            return createForm(definition, color);
+        }
+    }
+
+    /**
+     * Generate the path for a shape.
+     *
+     * @param definition the shape definition.
+     * @return the path for the shape.
+     * @throws IOException if the shape cannot be decoded.
+     */
+    ShapePath getPath(final ShapeTag definition) throws IOException {
+        return new ShapePath(definition.getFillStyles(),
+                definition.getLineStyles(), definition.getShape());
+    }
+
+    /**
+     * Get the Type 3 fonts generated for a font, creating them the first time
+     * the font is used. The fonts contain the glyphs displayed by all the
+     * static text defined so far so they can be shared by all the forms.
+     *
+     * @param identifier the unique identifier of the font.
+     * @return the fonts or null if the identifier does not refer to a font
+     * that contains glyphs.
+     * @throws IOException if the glyphs cannot be decoded.
+     */
+    synchronized Type3Font getFont(final int identifier) throws IOException {
+        Type3Font font = fonts.get(identifier);
+
+        if (font == null) {
+            final GlyphTable table = FontCache.getGlyphs(
+                    symbols.get(identifier));
+            if (table == null) {
+                return null;
+            }
+            font = new Type3Font(document, table, getGlyphsUsed(identifier));
+            fonts.put(identifier, font);
+        }
+        return font;
+    }
+
+    /**
+     * Find the glyphs from a font that are displayed by the static text
+     * defined so far.
+     *
+     * @param identifier the unique identifier of the font.
+     * @return the positions of the glyphs in the font.
+     */
+    private Set<Integer> getGlyphsUsed(final int identifier) {
+        final Set<Integer> used = new HashSet<Integer>();
+        boolean selected;
+
+        for (final DefineTag definition : symbols.values()) {
+            if (definition instanceof StaticTextTag) {
+                selected = false;
+                for (final TextSpan span
+                        : ((StaticTextTag) definition).getSpans()) {
+                    if (span.getIdentifier() != null) {
+                        selected = span.getIdentifier() == identifier;
+                    }
+                    if (selected) {
+                        for (final GlyphIndex index : span.getCharacters()) {
+                            used.add(index.getGlyphIndex());
+                        }
+                    }
+                }
+            }
+        }
+        return used;
+    }
+
+    /**
+     * Add the glyphs displayed by a block of text to the fonts it uses. The
+     * text may have been defined after the fonts were created when a movie
+     * is converted as it is read.
+     *
+     * @param text the text definition.
+     * @throws IOException if the glyphs cannot be decoded.
+     */
+    private synchronized void addGlyphs(final StaticTextTag text)
+            throws IOException {
+        final Map<Integer, Set<Integer>> used =
+            new HashMap<Integer, Set<Integer>>();
+        Set<Integer> glyphs = null;
+
+        for (final TextSpan span : text.getSpans()) {
+            if (span.getIdentifier() != null) {
+                glyphs = used.get(span.getIdentifier());
+                if (glyphs == null) {
+                    glyphs = new HashSet<Integer>();
+                    used.put(span.getIdentifier(), glyphs);
+                }
+            }
+            if (glyphs != null) {
+                for (final GlyphIndex index : span.getCharacters()) {
+                    glyphs.add(index.getGlyphIndex());
+                }
+            }
+        }
+
+        Type3Font font;
+        for (final Map.Entry<Integer, Set<Integer>> entry : used.entrySet()) {
+            font = getFont(entry.getKey());
+            if (font != null) {
+                font.add(entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Set the encoding tables used by the DefineJPEGImage objects in the
+     * movie.
+     *
+     * @param table the JPEGEncodingTable from the movie.
+     */
+    synchronized void setEncodingTable(final JPEGEncodingTable table) {
+        encodingTable = table;
+    }
+
+    /**
+     * Get the image used for a bitmap fill, adding it to the document the
+     * first time it is used.
+     *
+     * @param identifier the unique identifier of the image.
+     * @return the image or null if the identifier does not refer to an image
+     * that can be drawn.
+     * @throws IOException if an error occurs writing the image.
+     */
+    synchronized PDImageXObject getImage(final int identifier)
+            throws IOException {
+        if (images.containsKey(identifier)) {
+            return images.get(identifier);
+        }
+        final PDImageXObject image = createImage(symbols.get(identifier));
+        images.put(identifier, image);
+        return image;
+    }
+
+    /**
+     * Create the image XObject for an image definition. The JPEG data is
+     * copied into the document unchanged and the transparency from
+     * DefineJPEGImage3 and DefineJPEGImage4 is used as the soft mask. The
+     * PNG and GIF images that DefineJPEGImage2, DefineJPEGImage3 and
+     * DefineJPEGImage4 may contain in movies for Flash 8 or later are decoded
+     * and written as lossless images. The pixels from DefineImage and
+     * DefineImage2 are converted by LosslessImage.
+     *
+     * @param definition the image definition, may be null.
+     * @return the image or null if the definition is not an image that can
+     * be drawn.
+     * @throws IOException if an error occurs writing the image.
+     */
+    private PDImageXObject createImage(final DefineTag definition)
+            throws IOException {
+        PDImageXObject image = null;
+        JPEGImage jpeg = null;
+        byte[] data = null;
+        byte[] alpha = null;
+
+        if (definition instanceof DefineImage) {
+            image = LosslessImage.createImage(document,
+                    (DefineImage) definition);
+        } else if (definition instanceof DefineImage2) {
+            image = LosslessImage.createImage(document,
+                    (DefineImage2) definition);
+        } else if (definition instanceof DefineJPEGImage) {
+            jpeg = JPEGImage.merge(encodingTable == null ? null
+                    : encodingTable.getTable(),
+                    ((DefineJPEGImage) definition).getImage());
+        } else if (definition instanceof DefineJPEGImage2) {
+            data = ((DefineJPEGImage2) definition).getImage();
+            jpeg = JPEGImage.merge(null, data);
+        } else if (definition instanceof DefineJPEGImage3) {
+            data = ((DefineJPEGImage3) definition).getImage();
+            jpeg = JPEGImage.merge(null, data);
+            alpha = ((DefineJPEGImage3) definition).getAlpha();
+        } else if (definition instanceof DefineJPEGImage4) {
+            data = ((DefineJPEGImage4) definition).getImage();
+            jpeg = JPEGImage.merge(null, data);
+            alpha = ((DefineJPEGImage4) definition).getAlpha();
+        }
+        if (jpeg != null) {
+            image = jpeg.createImage(document, alpha);
+        } else if (data != null && (startsWith(data, PNG)
+                || startsWith(data, GIF))) {
+            image = decodeImage(data, alpha);
+        }
+        return image;
+    }
+
+    /**
+     * Decode a PNG or GIF image and add it to the document as a lossless
+     * image. The transparency, if any, in the image is used as the soft
+     * mask, otherwise the transparency from the definition is used.
+     *
+     * @param data the encoded image.
+     * @param alpha the zlib compressed transparency for each pixel, may be
+     * null or empty.
+     * @return the image or null if the image cannot be decoded.
+     * @throws IOException if an error occurs writing the image.
+     */
+    private PDImageXObject decodeImage(final byte[] data, final byte[] alpha)
+            throws IOException {
+        final BufferedImage buffer = ImageIO.read(
+                new ByteArrayInputStream(data));
+        if (buffer == null) {
+            return null;
+        }
+        final PDImageXObject image = LosslessFactory.createFromImage(
+                document, buffer);
+        if (!buffer.getColorModel().hasAlpha()) {
+            JPEGImage.setMask(document, image, alpha);
+        }
+        return image;
+    }
+
+    /**
+     * Check whether a block of data starts with a signature.
+     *
+     * @param data the data.
+     * @param signature the bytes identifying the format of the data.
+     * @return true if the data starts with the signature.
+     */
+    private static boolean startsWith(final byte[] data,
+            final byte[] signature) {
+        boolean result = data.length >= signature.length;
+        for (int i = 0; result && i < signature.length; i++) {
+            result = data[i] == signature[i];
+        }
+        return result;
+    }
+
+    /**
+     * Get the shading that draws the colours of a gradient, adding it to the
+     * document the first time it is used.
+     *
+     * @param gradient the gradient.
+     * @return the shading.
+     * @throws IOException if the shading cannot be created.
+     */
+    synchronized PDShading getShading(final GradientShading gradient)
+            throws IOException {
+        PDShading shading = shadings.get(gradient);
+        if (shading == null) {
+            shading = PDShading.create(gradient.createShading());
+            shadings.put(gradient, shading);
+        }
+        return shading;
+    }
+
+    /**
+     * Get the graphics state that sets the soft mask containing the alpha
+     * levels of a gradient, adding it to the document the first time it is
+     * used. The mask is a transparency group that draws the alpha levels
+     * as a greyscale shading in the coordinates of the gradient square.
+     *
+     * @param gradient the gradient.
+     * @return the graphics state.
+     * @throws IOException if an error occurs writing the mask.
+     */
+    synchronized PDExtendedGraphicsState getMask(
+            final GradientShading gradient) throws IOException {
+        PDExtendedGraphicsState state = masks.get(gradient);
+        if (state == null) {
+            final PDFormXObject form = new PDFormXObject(document);
+            form.setResources(new PDResources());
+            form.setBBox(new PDRectangle(-MASK_EXTENT, -MASK_EXTENT,
+                    2 * MASK_EXTENT, 2 * MASK_EXTENT));
+
+            final COSDictionary group = new COSDictionary();
+            group.setItem(COSName.S, COSName.TRANSPARENCY);
+            group.setItem(COSName.CS, COSName.DEVICEGRAY);
+            form.getCOSObject().setItem(COSName.GROUP, group);
+
+            final PDPageContentStream stream = new PDPageContentStream(
+                    document, form, form.getContentStream()
+                            .createOutputStream(COSName.FLATE_DECODE));
+            try {
+                stream.shadingFill(PDShading.create(gradient.createMask()));
+            } finally {
+                stream.close();
+            }
+
+            final COSDictionary mask = new COSDictionary();
+            mask.setItem(COSName.TYPE, COSName.MASK);
+            mask.setItem(COSName.S, COSName.LUMINOSITY);
+            mask.setItem(COSName.G, form);
+
+            state = new PDExtendedGraphicsState();
+            state.getCOSObject().setItem(COSName.SMASK, mask);
+            masks.put(gradient, state);
+        }
+        return state;
+    }
+
+    /**
+     * Get the graphics state used to set a level of transparency. The state
+     * for each level is created once and shared by all the forms.
+     *
+     * @param level the alpha level, 0 - 255.
+     * @return the graphics state.
+     */
+    synchronized PDExtendedGraphicsState getAlpha(final int level) {
+        PDExtendedGraphicsState state = alphas[level];
+        if (state == null) {
+            state = new PDExtendedGraphicsState();
+            state.setNonStrokingAlphaConstant(level / MAX_LEVEL);
+            state.setStrokingAlphaConstant(level / MAX_LEVEL);
+            alphas[level] = state;
+        }
+        return state;
+    }
+
+    /**
+     * Get the graphics state used to set a blend mode. Only the modes that
+     * have an equivalent in PDF are supported, the others are drawn
+     * normally.
+     *
+     * @param mode the blend mode, may be null.
+     * @return the graphics state or null if the object is drawn normally.
+     */
+    synchronized PDExtendedGraphicsState getBlend(final Blend mode) {
+        final BlendMode blendMode = blendMode(mode);
+        if (blendMode == null) {
+            return null;
+        }
+        PDExtendedGraphicsState state = blends.get(mode);
+        if (state == null) {
+            state = new PDExtendedGraphicsState();
+            state.setBlendMode(blendMode);
+            blends.put(mode, state);
+        }
+        return state;
+    }
+
+    /**
+     * Convert a blend mode into the equivalent mode in PDF.
+     *
+     * @param mode the blend mode, may be null.
+     * @return the PDF blend mode or null if there is no equivalent or the
+     * object is drawn normally.
+     */
+    private static BlendMode blendMode(final Blend mode) {
+        final BlendMode value;
+        if (mode == null) {
+            value = null;
+        } else {
+            switch (mode) {
+            case MULTIPLY:
+                value = BlendMode.MULTIPLY;
+                break;
+            case SCREEN:
+                value = BlendMode.SCREEN;
+                break;
+            case LIGHTEN:
+                value = BlendMode.LIGHTEN;
+                break;
+            case DARKEN:
+                value = BlendMode.DARKEN;
+                break;
+            case DIFFERENCE:
+                value = BlendMode.DIFFERENCE;
+                break;
+            case OVERLAY:
+                value = BlendMode.OVERLAY;
+                break;
+            case HARDLIGHT:
+                value = BlendMode.HARD_LIGHT;
+                break;
+            default:
+                value = null;
+                break;
+            }
+        }
+        return value;
+    }
+}
@@ -0,0 +1,308 @@
+/*
+ * GlyphTable.java
+ * Transform
+ *
+ * Copyright (c) 2010 Flagstone Software Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of Flagstone Software Ltd. nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.flagstone.transform.util.pdf;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.List;
+
+import com.flagstone.transform.fillstyle.FillStyle;
+import com.flagstone.transform.linestyle.LineStyle;
+import com.flagstone.transform.shape.Shape;
+
+/**
+ * <p>
+ * GlyphTable contains the glyph procedures for the characters in a font,
+ * ready to be added to the CharProcs dictionary of a PDF Type 3 font. Each
+ * procedure sets the advance and bounding box of the glyph, with the d1
+ * operator so the glyph is painted in the colour selected for the text, and
+ * fills the outline.
+ * </p>
+ *
+ * <p>
+ * The outlines are converted the first time a glyph is requested. Tables are
+ * shared by all the documents that use the same font, see FontCache, so the
+ * methods that convert the glyphs are synchronized.
+ * </p>
+ */
+final class GlyphTable {
+
+    /** The character set used for the operators in a content stream. */
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+    /** Factor for rounding coordinates to two decimal places. */
+    private static final float HUNDREDTHS = 100.0f;
+    /** The initial size of the buffer for a glyph procedure. */
+    private static final int BUFFER_SIZE = 256;
+
+    /**
+     * Glyph contains the procedure and bounding box for a character.
+     */
+    static final class Glyph {
+        /** The content stream that draws the glyph. */
+        private final transient byte[] procedure;
+        /** The bounding box: min x, min y, max x, max y. */
+        private final transient int[] bounds;
+
+        /**
+         * Create a Glyph.
+         * @param data the glyph procedure.
+         * @param box the bounding box of the outline.
+         */
+        Glyph(final byte[] data, final int[] box) {
+            procedure = data;
+            bounds = box;
+        }
+
+        /**
+         * Get the glyph procedure.
+         * @return the operators that draw the glyph, encoded as ASCII.
+         */
+        byte[] getProcedure() {
+            return procedure;
+        }
+
+        /**
+         * Get the bounding box of the outline.
+         * @return an array containing the min x, min y, max x and max y
+         * coordinates, in font units.
+         */
+        int[] getBounds() {
+            return bounds.clone();
+        }
+    }
+
+    /**
+     * GlyphWriter writes the operators that draw the outline of a glyph and
+     * records the area covered.
+     */
+    private static final class GlyphWriter implements PathSink {
+        /** Fraction of the distance to the control point of a cubic. */
+        private static final float TWO_THIRDS = 2.0f / 3.0f;
+
+        /** The operators for the path. */
+        private final transient StringBuilder path;
+        /** The area covered: min x, min y, max x, max y. */
+        private final transient int[] extent;
+        /** The x-coordinate of the current point. */
+        private transient int currentX;
+        /** The y-coordinate of the current point. */
+        private transient int currentY;
+
+        /** Create a GlyphWriter. */
+        GlyphWriter() {
+            path = new StringBuilder(BUFFER_SIZE);
+            extent = new int[] {Integer.MAX_VALUE, Integer.MAX_VALUE,
+                    Integer.MIN_VALUE, Integer.MIN_VALUE};
+        }
+
+        /** {@inheritDoc} */
+        public void moveTo(final int xCoord, final int yCoord) {
+            point(xCoord, yCoord);
+            path.append(" m\n");
+        }
+
+        /** {@inheritDoc} */
+        public void lineTo(final int xCoord, final int yCoord) {
+            point(xCoord, yCoord);
+            path.append(" l\n");
+        }
+
+        /** {@inheritDoc} */
+        public void quadTo(final int controlX, final int controlY,
+                final int anchorX, final int anchorY) {
+            include(controlX, controlY);
+            append(currentX + TWO_THIRDS * (controlX - currentX));
+            path.append(' ');
+            append(currentY + TWO_THIRDS * (controlY - currentY));
+            path.append(' ');
+            append(anchorX + TWO_THIRDS * (controlX - anchorX));
+            path.append(' ');
+            append(anchorY + TWO_THIRDS * (controlY - anchorY));
+            path.append(' ');
+            point(anchorX, anchorY);
+            path.append(" c\n");
+        }
+
+        /** {@inheritDoc} */
+        public void closePath() {
+            path.append("h\n");
+        }
+
+        /**
+         * Write a point and make it the current point.
+         * @param xCoord the x-coordinate.
+         * @param yCoord the y-coordinate.
+         */
+        private void point(final int xCoord, final int yCoord) {
+            include(xCoord, yCoord);
+            path.append(xCoord).append(' ').append(yCoord);
+            currentX = xCoord;
+            currentY = yCoord;
+        }
+
+        /**
+         * Write a coordinate, rounded to two decimal places.
+         * @param value the coordinate.
+         */
+        private void append(final float value) {
+            final int rounded = Math.round(value * HUNDREDTHS);
+            if (rounded % (int) HUNDREDTHS == 0) {
+                path.append(rounded / (int) HUNDREDTHS);
+            } else {
+                path.append(rounded / HUNDREDTHS);
+            }
+        }
+
+        /**
+         * Expand the area covered to include a point.
+         * @param xCoord the x-coordinate.
+         * @param yCoord the y-coordinate.
+         */
+        private void include(final int xCoord, final int yCoord) {
+            extent[0] = Math.min(extent[0], xCoord);
+            extent[1] = Math.min(extent[1], yCoord);
+            extent[2] = Math.max(extent[2], xCoord);
+            extent[3] = Math.max(extent[3], yCoord);
+        }
+
+        /**
+         * Generate the glyph procedure.
+         * @param advance the advance for the glyph, in font units.
+         * @return the glyph.
+         */
+        Glyph getGlyph(final int advance) {
+            final int[] bounds = extent[0] > extent[2] ? new int[4] : extent;
+            final StringBuilder builder = new StringBuilder(
+                    path.length() + BUFFER_SIZE);
+
+            builder.append(advance).append(" 0 ").append(bounds[0])
+                .append(' ').append(bounds[1]).append(' ').append(bounds[2])
+                .append(' ').append(bounds[3]).append(" d1\n");
+
+            if (path.length() > 0) {
+                builder.append(path).append("f\n");
+            }
+            return new Glyph(builder.toString().getBytes(ASCII), bounds);
+        }
+    }
+
+    /** The outlines of the glyphs. */
+    private final transient List<Shape> shapes;
+    /** The advance for each glyph, in font units. */
+    private final transient int[] advances;
+    /** The size of the EM square, in font units. */
+    private final transient float emSize;
+    /** The glyphs converted so far. */
+    private final transient Glyph[] glyphs;
+
+    /**
+     * Create a GlyphTable.
+     *
+     * @param outlines the shapes that define the outline of each glyph.
+     * @param layout the advance for each glyph. May be empty if the font
+     * does not contain layout information, in which case the advances are
+     * zero.
+     * @param size the size of the EM square in font units.
+     */
+    GlyphTable(final List<Shape> outlines, final List<Integer> layout,
+            final float size) {
+        shapes = outlines;
+        advances = new int[layout.size()];
+        for (int i = 0; i < advances.length; i++) {
+            advances[i] = layout.get(i);
+        }
+        emSize = size;
+        glyphs = new Glyph[outlines.size()];
+    }
+
+    /**
+     * Get the number of glyphs in the font.
+     * @return the number of glyphs.
+     */
+    int size() {
+        return glyphs.length;
+    }
+
+    /**
+     * Get the size of the EM square used to define the glyphs.
+     * @return the size of the EM square in font units.
+     */
+    float getEmSize() {
+        return emSize;
+    }
+
+    /**
+     * Get the advance for a glyph.
+     *
+     * @param index the position of the glyph in the font.
+     * @return the advance in font units or zero if the font does not contain
+     * layout information.
+     */
+    int getAdvance(final int index) {
+        return index < advances.length ? advances[index] : 0;
+    }
+
+    /**
+     * Get a glyph, converting the outline the first time it is requested.
+     *
+     * @param index the position of the glyph in the font.
+     * @return the glyph.
+     * @throws IOException if the outline cannot be decoded.
+     */
+    synchronized Glyph getGlyph(final int index) throws IOException {
+        Glyph glyph = glyphs[index];
+        if (glyph == null) {
+            final List<FillStyle> noFills = Collections.emptyList();
+            final List<LineStyle> noLines = Collections.emptyList();
+            final GlyphWriter writer = new GlyphWriter();
+            new ShapePath(noFills, noLines, shapes.get(index)).outline(writer);
+            glyph = writer.getGlyph(getAdvance(index));
+            glyphs[index] = glyph;
+        }
+        return glyph;
+    }
+
+    /**
+     * Trace the outline of a glyph. Unlike the glyph procedure, the outline
+     * is not stored, so it is generated again each time it is traced.
+     *
+     * @param index the position of the glyph in the font.
+     * @param sink the PathSink that receives the outline, in font units.
+     * @throws IOException if the outline cannot be decoded.
+     */
+    void outline(final int index, final PathSink sink) throws IOException {
+        final List<FillStyle> noFills = Collections.emptyList();
+        final List<LineStyle> noLines = Collections.emptyList();
+        new ShapePath(noFills, noLines, shapes.get(index)).outline(sink);
+    }
+}
@@ -0,0 +1,549 @@
+/*
+ * GradientShading.java
+ * Transform
+ *
+ * Copyright (c) 2010 Flagstone Software Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of Flagstone Software Ltd. nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package com.flagstone.transform.util.pdf;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBoolean;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSFloat;
+import org.apache.pdfbox.cos.COSInteger;
+import org.apache.pdfbox.cos.COSName;
+
+import com.flagstone.transform.Constants;
+import com.flagstone.transform.datatype.Color;
+import com.flagstone.transform.datatype.ColorTransform;
+import com.flagstone.transform.datatype.CoordTransform;
+import com.flagstone.transform.fillstyle.FillStyle;
+import com.flagstone.transform.fillstyle.FocalGradientFill;
+import com.flagstone.transform.fillstyle.Gradient;
+import com.flagstone.transform.fillstyle.GradientFill;
+import com.flagstone.transform.fillstyle.GradientType;
+import com.flagstone.transform.fillstyle.Interpolation;
+import com.flagstone.transform.fillstyle.Spread;
+
+/**
+ * <p>
+ * GradientShading describes the axial or radial shading used to draw a
+ * linear, radial or focal gradient fill. The shading is defined in the
+ * coordinate space of the gradient square, 32768 twips on each side and
+ * centred on the origin, so it does not depend on the fill's coordinate
+ * transform. Objects are compared by value so identical gradients, used by
+ * different shapes, can share the same shading in a document.
+ * </p>
+ *
+ * <p>
+ * The colour of each control point, with the colour transform applied, is
+ * interpolated by a stitching function. Gradients that repeat or reflect
+ * outside the gradient square are drawn by repeating the function for a
+ * fixed number of periods on each side, beyond which the colours are padded.
+ * Gradients interpolated in linear RGB space are approximated by adding
+ * control points between the ones defined in the movie. Since shadings do
+ * not support transparency, the alpha channel is described by a separate
+ * greyscale shading that is used as a soft mask.
+ * </p>
+ */
+final class GradientShading {
+
+    /** Half the width of the gradient square in twips. */
+    static final float EXTENT = 16384.0f;
+
+    /** The number of periods drawn on each side of the gradient square. */
+    private static final int REPEATS = 8;
+    /** The number of steps used to approximate linear RGB interpolation. */
+    private static final int STEPS = 8;
+    /** The largest ratio for a control point. */
+    private static final float MAX_RATIO = 255.0f;
+    /** The maximum value for a colour channel. */
+    private static final float MAX_LEVEL = 255.0f;
+    /** The opaque alpha level. */
+    private static final int OPAQUE = 255;
+    /** The number of channels for each control point. */
+    private static final int CHANNELS = 4;
+    /** The index of the alpha channel. */
+    private static final int ALPHA = 3;
+    /** The PDF shading type for axial shadings. */
+    private static final int AXIAL = 2;
+    /** The PDF shading type for radial shadings. */
+    private static final int RADIAL = 3;
+    /** The PDF function type for exponential interpolation. */
+    private static final int EXPONENTIAL = 2;
+    /** The PDF function type for stitching functions. */
+    private static final int STITCHING = 3;
+    /** Limit below which sRGB levels are scaled linearly. */
+    private static final float SRGB_LIMIT = 0.04045f;
+    /** Limit below which linear levels are scaled linearly. */
+    private static final float LINEAR_LIMIT = 0.0031308f;
+    /** Scale for levels in the linear part of the sRGB curve. */
+    private static final float SRGB_SCALE = 12.92f;
+    /** Offset for levels in the curved part of the sRGB curve. */
+    private static final float SRGB_OFFSET = 0.055f;
+    /** Exponent for the curved part of the sRGB curve. */
+    private static final float SRGB_GAMMA = 2.4f;
+
+    /**
+     * Create the shading for a fill style.
+     *
+     * @param style the fill style.
+     * @param color the colour transform applied to the shape, may be null.
+     * @return the shading or null if the style is not a gradient or has no
+     * control points.
+     */
+    static GradientShading create(final FillStyle style,
+            final ColorTransform color) {
+        final GradientShading shading;
+        if (style instanceof GradientFill) {
+            final GradientFill fill = (GradientFill) style;
+            shading = new GradientShading(fill.getType() == GradientType.RADIAL,
+                    0.0f, fill.getSpread(), fill.getInterpolation(),
+                    fill.getGradients(), color);
+        } else if (style instanceof FocalGradientFill) {
+            final FocalGradientFill fill = (FocalGradientFill) style;
+            shading = new GradientShading(true, fill.getFocalPoint(),
+                    fill.getSpread(), fill.getInterpolation(),
+                    fill.getGradients(), color);
+        } else {
+            shading = null;
+        }
+        return shading == null || shading.ratios.length == 0 ? null
+                : shading;
+    }
+
+    /**
+     * Get the coordinate transform that maps the gradient square onto the
+     * shape.
+     *
+     * @param style the fill style.
+     * @return the coordinate transform or null if the style is not a
+     * gradient or does not define a transform.
+     */
+    static CoordTransform getTransform(final FillStyle style) {
+        final CoordTransform transform;
+        if (style instanceof GradientFill) {
+            transform = ((GradientFill) style).getTransform();
+        } else if (style instanceof FocalGradientFill) {
+            transform = ((FocalGradientFill) style).getTransform();
+        } else {
+            transform = null;
+        }
+        return transform;
+    }
+
+    /**
+     * Convert an sRGB level to linear RGB.
+     * @param level the level, 0.0 - 1.0.
+     * @return the linear level.
+     */
+    private static float toLinear(final float level) {
+        final float value;
+        if (level <= SRGB_LIMIT) {
+            value = level / SRGB_SCALE;
+        } else {
+            value = (float) Math.pow((level + SRGB_OFFSET)
+                    / (1.0f + SRGB_OFFSET), SRGB_GAMMA);
+        }
+        return value;
+    }
+
+    /**
+     * Convert a linear RGB level to sRGB.
+     * @param level the level, 0.0 - 1.0.
+     * @return the sRGB level.
+     */
+    private static float fromLinear(final float level) {
+        final float value;
+        if (level <= LINEAR_LIMIT) {
+            value = level * SRGB_SCALE;
+        } else {
+            value = (1.0f + SRGB_OFFSET) * (float) Math.pow(level,
+                    1.0f / SRGB_GAMMA) - SRGB_OFFSET;
+        }
+        return value;
+    }
+
+    /** Whether the gradient is radial. */
+    private final transient boolean radial;
+    /** The position of the focal point, -1.0 - 1.0. */
+    private final transient float focus;
+    /** How the colours are drawn outside of the gradient square. */
+    private final transient Spread spread;
+    /** The position of each control point, 0.0 - 1.0. */
+    private final transient float[] ratios;
+    /** The red, green, blue and alpha levels, 0.0 - 1.0, of each point. */
+    private final transient float[] colors;
+
+    /**
+     * Create a GradientShading.
+     *
+     * @param isRadial whether the gradient is radial.
+     * @param focalPoint the position of the focal point for radial
+     * gradients.
+     * @param spreadType how the colours are drawn outside the gradient
+     * square.
+     * @param interpolation whether the colours are interpolated in sRGB or
+     * linear RGB space.
+     * @param gradients the control points.
+     * @param color the colour transform, may be null.
+     */
+    private GradientShading(final boolean isRadial, final float focalPoint,
+            final Spread spreadType, final Interpolation interpolation,
+            final List<Gradient> gradients, final ColorTransform color) {
+        radial = isRadial;
+        focus = radial ? focalPoint : 0.0f;
+        spread = spreadType == null ? Spread.PAD : spreadType;
+
+        final List<float[]> points = new ArrayList<float[]>();
+        float[] point;
+        float[] last = null;
+        Color level;
+
+        for (final Gradient gradient : gradients) {
+            level = gradient.getColor();
+            point = new float[] {gradient.getRatio() / MAX_RATIO,
+                    transform(level.getRed(), color, 0),
+                    transform(level.getGreen(), color, 1),
+                    transform(level.getBlue(), color, 2),
+                    transform(level.getAlpha(), color, ALPHA)};
+            if (last != null && point[0] < last[0]) {
+                point[0] = last[0];
+            }
+            if (last != null && interpolation == Interpolation.LINEAR) {
+                for (int i = 1; i < STEPS; i++) {
+                    points.add(blend(last, point, (float) i / STEPS));
+                }
+            }
+            points.add(point);
+            last = point;
+        }
+
+        ratios = new float[points.size()];
+        colors = new float[points.size() * CHANNELS];
+        for (int i = 0; i < ratios.length; i++) {
+            ratios[i] = points.get(i)[0];
+            System.arraycopy(points.get(i), 1, colors, i * CHANNELS,
+                    CHANNELS);
+        }
+    }
+
+    /**
+     * Apply the colour transform to a colour channel.
+     *
+     * @param level the value of the channel, 0 - 255.
+     * @param color the colour transform, may be null.
+     * @param channel the index of the channel: red, green, blue or alpha.
+     * @return the transformed level, 0.0 - 1.0.
+     */
+    private static float transform(final int level,
+            final ColorTransform color, final int channel) {
+        final int value;
+        if (color == null) {
+            value = level;
+        } else if (channel == 0) {
+            value = Painter.channel(level, color.getMultiplyRed(),
+                    color.getAddRed());
+        } else if (channel == 1) {
+            value = Painter.channel(level, color.getMultiplyGreen(),
+                    color.getAddGreen());
+        } else if (channel == 2) {
+            value = Painter.channel(level, color.getMultiplyBlue(),
+                    color.getAddBlue());
+        } else {
+            value = Painter.channel(level, color.getMultiplyAlpha(),
+                    color.getAddAlpha());
+        }
+        return value / MAX_LEVEL;
+    }
+
+    /**
+     * Interpolate between two control points in linear RGB space.
+     *
+     * @param start the first control point.
+     * @param end the second control point.
+     * @param fraction the distance between the points, 0.0 - 1.0.
+     * @return the control point at that position.
+     */
+    private static float[] blend(final float[] start, final float[] end,
+            final float fraction) {
+        final float[] point = new float[CHANNELS + 1];
+        point[0] = start[0] + (end[0] - start[0]) * fraction;
+        for (int i = 1; i <= ALPHA; i++) {
+            point[i] = fromLinear(toLinear(start[i])
+                    + (toLinear(end[i]) - toLinear(start[i])) * fraction);
+        }
+        point[CHANNELS] = start[CHANNELS]
+                + (end[CHANNELS] - start[CHANNELS]) * fraction;
+        return point;
+    }
+
+    /**
+     * Get the transparency of the gradient if all the control points have
+     * the same alpha level.
+     *
+     * @return the alpha level, 0 - 255, or -1 if the level varies and a
+     * soft mask is needed.
+     */
+    int getAlpha() {
+        final float level = colors[ALPHA];
+        for (int i = ALPHA; i < colors.length; i += CHANNELS) {
+            if (colors[i] != level) {
+                return -1;
+            }
+        }
+        return Math.round(level * MAX_LEVEL);
+    }
+
+    /**
+     * Create the shading dictionary that draws the colours of the gradient.
+     * @return the shading, using the DeviceRGB colour space.
+     */
+    COSDictionary createShading() {
+        return createShading(false);
+    }
+
+    /**
+     * Create the shading dictionary that draws the alpha levels of the
+     * gradient, used as a luminosity soft mask.
+     * @return the shading, using the DeviceGray colour space.
+     */
+    COSDictionary createMask() {
+        return createShading(true);
+    }
+
+    /**
+     * Create a shading dictionary.
+     *
+     * @param alpha true if the shading contains the alpha levels, false if
+     * it contains the colours.
+     * @return the shading dictionary.
+     */
+    private COSDictionary createShading(final boolean alpha) {
+        final int periods = spread == Spread.PAD ? 1
+                : (radial ? REPEATS + 1 : 2 * REPEATS + 1);
+        final float length = EXTENT * (radial ? periods : 2 * periods);
+        final COSDictionary shading = new COSDictionary();
+        final COSArray coords;
+
+        shading.setInt(COSName.SHADING_TYPE, radial ? RADIAL : AXIAL);
+        shading.setItem(COSName.COLORSPACE, alpha ? COSName.DEVICEGRAY
+                : COSName.DEVICERGB);
+        if (radial) {
+            coords = array(focus * EXTENT, 0.0f, 0.0f, 0.0f, 0.0f, length);
+        } else {
+            coords = array(-length / 2, 0.0f, length / 2, 0.0f);
+        }
+        shading.setItem(COSName.COORDS, coords);
+        shading.setItem(COSName.FUNCTION, createFunction(alpha, periods));
+
+        final COSArray extend = new COSArray();
+        extend.add(COSBoolean.TRUE);
+        extend.add(COSBoolean.TRUE);
+        shading.setItem(COSName.EXTEND, extend);
+        return shading;
+    }
+
+    /**
+     * Create the function that maps the position in the shading to a colour
+     * or alpha level. Each period repeats the segments between the control
+     * points, in reverse order for the odd periods of reflected gradients.
+     * The segments are shared by every period.
+     *
+     * @param alpha true if the function returns alpha levels, false if it
+     * returns colours.
+     * @param periods the number of times the gradient is repeated.
+     * @return the function dictionary.
+     */
+    private COSDictionary createFunction(final boolean alpha,
+            final int periods) {
+        final List<COSDictionary> forward = new ArrayList<COSDictionary>();
+        final List<COSDictionary> reverse = new ArrayList<COSDictionary>();
+        final List<Float> starts = new ArrayList<Float>();
+        final List<Float> ends = new ArrayList<Float>();
+        int last = 0;
+
+        if (ratios[0] > 0.0f) {
+            forward.add(segment(alpha, 0, 0));
+            starts.add(0.0f);
+            ends.add(ratios[0]);
+        }
+        for (int i = 1; i < ratios.length; i++) {
+            if (ratios[i] > ratios[last]) {
+                forward.add(segment(alpha, last, i));
+                starts.add(ratios[last]);
+                ends.add(ratios[i]);
+            }
+            last = i;
+        }
+        if (ratios[last] < 1.0f) {
+            forward.add(segment(alpha, last, last));
+            starts.add(ratios[last]);
+            ends.add(1.0f);
+        }
+        for (int i = forward.size() - 1; i >= 0; i--) {
+            reverse.add(segment(alpha, forward.get(i)));
+        }
+
+        final COSArray functions = new COSArray();
+        final COSArray bounds = new COSArray();
+        final COSArray encode = new COSArray();
+        final int first = radial ? 0 : -(periods / 2);
+        boolean reflected;
+        int index;
+
+        for (int period = first; period < first + periods; period++) {
+            reflected = spread == Spread.REFLECT && period % 2 != 0;
+            for (int i = 0; i < forward.size(); i++) {
+                index = reflected ? forward.size() - 1 - i : i;
+                functions.add(reflected ? reverse.get(i) : forward.get(i));
+                if (period != first || i != 0) {
+                    bounds.add(new COSFloat((period - first
+                            + (reflected ? 1.0f - ends.get(index)
+                                    : starts.get(index))) / periods));
+                }
+                encode.add(COSInteger.ZERO);
+                encode.add(COSInteger.ONE);
+            }
+        }
+
+        final COSDictionary function = new COSDictionary();
+        function.setInt(COSName.FUNCTION_TYPE, STITCHING);
+        function.setItem(COSName.DOMAIN, array(0.0f, 1.0f));
+        function.setItem(COSName.FUNCTIONS, functions);
+        function.setItem(COSName.BOUNDS, bounds);
+        function.setItem(COSName.ENCODE, encode);
+        return function;
+    }
+
+    /**
+     * Create the function that interpolates between two control points.
+     *
+     * @param alpha true if the function returns alpha levels, false if it
+     * returns colours.
+     * @param start the index of the first control point.
+     * @param end the index of the second control point.
+     * @return the function dictionary.
+     */
+    private COSDictionary segment(final boolean alpha, final int start,
+            final int end) {
+        final COSDictionary function = new COSDictionary();
+        function.setInt(COSName.FUNCTION_TYPE, EXPONENTIAL);
+        function.setItem(COSName.DOMAIN, array(0.0f, 1.0f));
+        function.setItem(COSName.C0, levels(alpha, start));
+        function.setItem(COSName.C1, levels(alpha, end));
+        function.setInt(COSName.N, 1);
+        return function;
+    }
+
+    /**
+     * Create the function that interpolates between the same control points
+     * as another function but in the opposite direction.
+     *
+     * @param alpha true if the function returns alpha levels, false if it
+     * returns colours.
+     * @param function the function to reverse.
+     * @return the function dictionary.
+     */
+    private COSDictionary segment(final boolean alpha,
+            final COSDictionary function) {
+        final COSDictionary reversed = new COSDictionary();
+        reversed.setInt(COSName.FUNCTION_TYPE, EXPONENTIAL);
+        reversed.setItem(COSName.DOMAIN, array(0.0f, 1.0f));
+        reversed.setItem(COSName.C0, function.getDictionaryObject(COSName.C1));
+        reversed.setItem(COSName.C1, function.getDictionaryObject(COSName.C0));
+        reversed.setInt(COSName.N, 1);
+        return reversed;
+    }
+
+    /**
+     * Get the levels for a control point.
+     *
+     * @param alpha true to return the alpha level, false to return the
+     * colour.
+     * @param index the index of the control point.
+     * @return an array containing the alpha level or the red, green and
+     * blue levels.
+     */
+    private COSArray levels(final boolean alpha, final int index) {
+        final int offset = index * CHANNELS;
+        final COSArray levels;
+        if (alpha) {
+            levels = array(colors[offset + ALPHA]);
+        } else {
+            levels = array(colors[offset], colors[offset + 1],
+                    colors[offset + 2]);
+        }
+        return levels;
+    }
+
+    /**
+     * Create an array of numbers.
+     * @param values the numbers.
+     * @return the array.
+     */
+    private static COSArray array(final float... values) {
+        final COSArray array = new COSArray();
+        for (final float value : values) {
+            array.add(new COSFloat(value));
+        }
+        return array;
+    }
+
+    @Override
+    public boolean equals(final Object object) {
+        boolean result;
+        GradientShading shading;
+
+        if (object == this) {
+            result = true;
+        } else if (object instanceof GradientShading) {
+            shading = (GradientShading) object;
+            result = radial == shading.radial && focus == shading.focus
+                    && spread == shading.spread
+                    && Arrays.equals(ratios, shading.ratios)
+                    && Arrays.equals(colors, shading.colors);
+        } else {
+            result = false;
+        }
+        return result;
+    }
+
+    @Override
+    public int hashCode() {
+        return ((Arrays.hashCode(ratios) * Constants.PRIME
+                + Arrays.hashCode(colors)) * Constants.PRIME
+                + spread.hashCode()) * Constants.PRIME
+                + Float.floatToIntBits(focus) + (radial ? 1 : 0);
+    }
+}
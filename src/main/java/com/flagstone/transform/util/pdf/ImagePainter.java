@@ -0,0 +1,731 @@
+/*
+ * ImagePainter.java
+ * Transform
+ *
+ * Copyright (c) 2010 Flagstone Software Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of Flagstone Software Ltd. nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package com.flagstone.transform.util.pdf;
+
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.awt.Graphics2D;
+import java.awt.LinearGradientPaint;
+import java.awt.MultipleGradientPaint;
+import java.awt.Paint;
+import java.awt.RadialGradientPaint;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.TexturePaint;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+
+import com.flagstone.transform.DefineTag;
+import com.flagstone.transform.datatype.Bounds;
+import com.flagstone.transform.datatype.Color;
+import com.flagstone.transform.datatype.ColorTransform;
+import com.flagstone.transform.datatype.CoordTransform;
+import com.flagstone.transform.fillstyle.BitmapFill;
+import com.flagstone.transform.fillstyle.FillStyle;
+import com.flagstone.transform.fillstyle.FocalGradientFill;
+import com.flagstone.transform.fillstyle.Gradient;
+import com.flagstone.transform.fillstyle.GradientFill;
+import com.flagstone.transform.fillstyle.GradientType;
+import com.flagstone.transform.fillstyle.Interpolation;
+import com.flagstone.transform.fillstyle.Spread;
+import com.flagstone.transform.linestyle.CapStyle;
+import com.flagstone.transform.linestyle.JoinStyle;
+import com.flagstone.transform.linestyle.LineStyle;
+import com.flagstone.transform.linestyle.LineStyle1;
+import com.flagstone.transform.linestyle.LineStyle2;
+import com.flagstone.transform.movieclip.DefineMovieClip;
+import com.flagstone.transform.shape.ShapeTag;
+import com.flagstone.transform.text.GlyphIndex;
+import com.flagstone.transform.text.StaticTextTag;
+import com.flagstone.transform.text.TextSpan;
+
+/**
+ * <p>
+ * ImagePainter draws shapes, static text and movie clips using Java2D. It is
+ * used by the Rasterizer to draw the objects that cannot be displayed using
+ * the vector graphics in PDF. Shapes are traced using the same ShapePath
+ * as the Painter and the glyphs for text come from the fonts in the
+ * FormCache. Gradients are drawn using the gradient paints from Java2D, so
+ * the spread and interpolation modes are reproduced exactly.
+ * </p>
+ *
+ * <p>
+ * An ImagePainter may be used by several threads, each drawing a separate
+ * tile of the same image. The images displayed by bitmap fills are decoded
+ * once and shared.
+ * </p>
+ */
+final class ImagePainter {
+
+    /** The maximum value for a colour channel. */
+    private static final int MAX_LEVEL = 255;
+    /** The maximum ratio for a control point in a gradient. */
+    private static final float MAX_RATIO = 255.0f;
+    /** The smallest gap between the control points of a gradient. */
+    private static final float MIN_GAP = 0.001f;
+    /** The maximum depth of nested movie clips that will be drawn. */
+    private static final int MAX_NESTING = 32;
+    /** Factor for converting the 8.8 fixed point miter limit. */
+    private static final float MITER_SCALE = 256.0f;
+    /** The miter limit used when the line style does not set one. */
+    private static final float DEFAULT_MITER = 10.0f;
+
+    /**
+     * AreaPath adds the outline traced by a ShapePath to a Java2D path.
+     */
+    private static final class AreaPath implements PathSink {
+        /** The path. */
+        private final transient Path2D path;
+
+        /**
+         * Create an AreaPath.
+         * @param target the path that receives the outline.
+         */
+        AreaPath(final Path2D target) {
+            path = target;
+        }
+
+        /** {@inheritDoc} */
+        public void moveTo(final int xCoord, final int yCoord) {
+            path.moveTo(xCoord, yCoord);
+        }
+
+        /** {@inheritDoc} */
+        public void lineTo(final int xCoord, final int yCoord) {
+            path.lineTo(xCoord, yCoord);
+        }
+
+        /** {@inheritDoc} */
+        public void quadTo(final int controlX, final int controlY,
+                final int anchorX, final int anchorY) {
+            path.quadTo(controlX, controlY, anchorX, anchorY);
+        }
+
+        /** {@inheritDoc} */
+        public void closePath() {
+            path.closePath();
+        }
+    }
+
+    /**
+     * Apply a colour transform to a colour.
+     *
+     * @param color the colour.
+     * @param transform the colour transform, may be null.
+     * @return the colour used by Java2D.
+     */
+    private static java.awt.Color color(final Color color,
+            final ColorTransform transform) {
+        final java.awt.Color value;
+        if (transform == null) {
+            value = new java.awt.Color(color.getRed(), color.getGreen(),
+                    color.getBlue(), color.getAlpha());
+        } else {
+            value = new java.awt.Color(
+                Painter.channel(color.getRed(), transform.getMultiplyRed(),
+                        transform.getAddRed()),
+                Painter.channel(color.getGreen(),
+                        transform.getMultiplyGreen(),
+                        transform.getAddGreen()),
+                Painter.channel(color.getBlue(), transform.getMultiplyBlue(),
+                        transform.getAddBlue()),
+                Painter.channel(color.getAlpha(),
+                        transform.getMultiplyAlpha(),
+                        transform.getAddAlpha()));
+        }
+        return value;
+    }
+
+    /**
+     * Create the paint for a gradient. The control points are spread over
+     * the gradient square, 32768 twips wide, centred on the origin.
+     *
+     * @param gradients the control points.
+     * @param transform the transform that maps the gradient square onto the
+     * shape, may be null.
+     * @param radial true for a radial gradient, false for a linear one.
+     * @param focus the focal point of a radial gradient, -1.0 to 1.0.
+     * @param spread how the area outside the gradient square is filled.
+     * @param interpolation the colour space used to blend the colours.
+     * @param color the colour transform, may be null.
+     * @return the paint or null if the gradient has no control points.
+     */
+    private static Paint gradient(final List<Gradient> gradients,
+            final CoordTransform transform, final boolean radial,
+            final float focus, final Spread spread,
+            final Interpolation interpolation, final ColorTransform color) {
+        final int size = gradients.size();
+        if (size == 0) {
+            return null;
+        }
+        float[] fractions = new float[size];
+        java.awt.Color[] colors = new java.awt.Color[size];
+        int count = 0;
+        float fraction;
+
+        for (final Gradient gradient : gradients) {
+            fraction = gradient.getRatio() / MAX_RATIO;
+            if (count > 0 && fraction < fractions[count - 1] + MIN_GAP) {
+                fraction = fractions[count - 1] + MIN_GAP;
+            }
+            if (fraction > 1.0f) {
+                colors[count - 1] = color(gradient.getColor(), color);
+            } else {
+                fractions[count] = fraction;
+                colors[count++] = color(gradient.getColor(), color);
+            }
+        }
+
+        final AffineTransform matrix = StreamPath.toTransform(transform);
+        if (count == 1 || matrix.getDeterminant() == 0) {
+            return colors[0];
+        }
+        if (count < size) {
+            final float[] usedFractions = new float[count];
+            final java.awt.Color[] usedColors = new java.awt.Color[count];
+            System.arraycopy(fractions, 0, usedFractions, 0, count);
+            System.arraycopy(colors, 0, usedColors, 0, count);
+            fractions = usedFractions;
+            colors = usedColors;
+        }
+
+        final MultipleGradientPaint.CycleMethod cycle;
+        if (spread == Spread.REFLECT) {
+            cycle = MultipleGradientPaint.CycleMethod.REFLECT;
+        } else if (spread == Spread.REPEAT) {
+            cycle = MultipleGradientPaint.CycleMethod.REPEAT;
+        } else {
+            cycle = MultipleGradientPaint.CycleMethod.NO_CYCLE;
+        }
+        final MultipleGradientPaint.ColorSpaceType space =
+            interpolation == Interpolation.LINEAR
+                ? MultipleGradientPaint.ColorSpaceType.LINEAR_RGB
+                : MultipleGradientPaint.ColorSpaceType.SRGB;
+        final float extent = GradientShading.EXTENT;
+        final Paint paint;
+
+        if (radial) {
+            paint = new RadialGradientPaint(new Point2D.Float(0, 0), extent,
+                    new Point2D.Float(focus * extent, 0), fractions, colors,
+                    cycle, space, matrix);
+        } else {
+            paint = new LinearGradientPaint(new Point2D.Float(-extent, 0),
+                    new Point2D.Float(extent, 0), fractions, colors, cycle,
+                    space, matrix);
+        }
+        return paint;
+    }
+
+    /**
+     * Convert a cap style into the value used in Java2D.
+     * @param style the cap style, may be null.
+     * @return the line cap.
+     */
+    private static int capStyle(final CapStyle style) {
+        final int cap;
+        if (style == CapStyle.NONE) {
+            cap = BasicStroke.CAP_BUTT;
+        } else if (style == CapStyle.SQUARE) {
+            cap = BasicStroke.CAP_SQUARE;
+        } else {
+            cap = BasicStroke.CAP_ROUND;
+        }
+        return cap;
+    }
+
+    /**
+     * Convert a join style into the value used in Java2D.
+     * @param style the join style, may be null.
+     * @return the line join.
+     */
+    private static int joinStyle(final JoinStyle style) {
+        final int join;
+        if (style == JoinStyle.MITER) {
+            join = BasicStroke.JOIN_MITER;
+        } else if (style == JoinStyle.BEVEL) {
+            join = BasicStroke.JOIN_BEVEL;
+        } else {
+            join = BasicStroke.JOIN_ROUND;
+        }
+        return join;
+    }
+
+    /** The cache that supplies the definitions, fonts and images. */
+    private final transient FormCache cache;
+    /** The decoded images, null if an image cannot be drawn. */
+    private final transient Map<Integer, BufferedImage> pictures;
+
+    /**
+     * Create an ImagePainter.
+     *
+     * @param formCache the cache that supplies the definitions of the
+     * objects and the fonts and images they display.
+     */
+    ImagePainter(final FormCache formCache) {
+        cache = formCache;
+        pictures = new HashMap<Integer, BufferedImage>();
+    }
+
+    /**
+     * Get the area covered by an object. The bounds from the definitions of
+     * shapes and text are used, so the area includes the width of the
+     * lines. Movie clips cover the area of the objects displayed in the
+     * first frame.
+     *
+     * @param definition the definition of the object.
+     * @param transform the transform applied to the object.
+     * @return the bounding box or null if nothing is drawn.
+     */
+    Rectangle2D getBounds(final DefineTag definition,
+            final AffineTransform transform) {
+        return getBounds(definition, transform, 0);
+    }
+
+    /**
+     * Get the area covered by an object.
+     *
+     * @param definition the definition of the object.
+     * @param transform the transform applied to the object.
+     * @param nesting the number of movie clips that contain the object.
+     * @return the bounding box or null if nothing is drawn.
+     */
+    private Rectangle2D getBounds(final DefineTag definition,
+            final AffineTransform transform, final int nesting) {
+        Bounds box = null;
+        Rectangle2D area = null;
+
+        if (definition instanceof ShapeTag) {
+            box = ((ShapeTag) definition).getBounds();
+        } else if (definition instanceof StaticTextTag) {
+            box = ((StaticTextTag) definition).getBounds();
+        } else if (definition instanceof DefineMovieClip
+                && nesting < MAX_NESTING) {
+            DefineTag child;
+            AffineTransform matrix;
+            Rectangle2D bounds;
+
+            for (final Placement placement : DisplayList.getFirstFrame(
+                    (DefineMovieClip) definition)) {
+                child = cache.getDefinition(placement.getIdentifier());
+                if (child == null || placement.getDepth() != null) {
+                    continue;
+                }
+                matrix = new AffineTransform(transform);
+                matrix.concatenate(StreamPath.toTransform(
+                        placement.getTransform()));
+                bounds = getBounds(child, matrix, nesting + 1);
+                if (bounds != null) {
+                    if (area == null) {
+                        area = bounds;
+                    } else {
+                        area.add(bounds);
+                    }
+                }
+            }
+        }
+
+        if (box != null) {
+            area = transform.createTransformedShape(new Rectangle2D.Float(
+                    box.getMinX(), box.getMinY(), box.getWidth(),
+                    box.getHeight())).getBounds2D();
+        }
+        return area;
+    }
+
+    /**
+     * Draw an object.
+     *
+     * @param graphics the graphics context, with the transform for the
+     * object already applied.
+     * @param definition the definition of the object.
+     * @param color the colour transform applied to the object, may be null.
+     * @throws IOException if the object cannot be decoded.
+     */
+    void draw(final Graphics2D graphics, final DefineTag definition,
+            final ColorTransform color) throws IOException {
+        graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                RenderingHints.VALUE_ANTIALIAS_ON);
+        graphics.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL,
+                RenderingHints.VALUE_STROKE_PURE);
+        draw(graphics, definition, color, 0);
+    }
+
+    /**
+     * Draw an object.
+     *
+     * @param graphics the graphics context.
+     * @param definition the definition of the object.
+     * @param color the colour transform applied to the object, may be null.
+     * @param nesting the number of movie clips that contain the object.
+     * @throws IOException if the object cannot be decoded.
+     */
+    private void draw(final Graphics2D graphics, final DefineTag definition,
+            final ColorTransform color, final int nesting)
+            throws IOException {
+        if (definition instanceof ShapeTag) {
+            drawShape(graphics, cache.getPath((ShapeTag) definition), color);
+        } else if (definition instanceof StaticTextTag) {
+            drawText(graphics, (StaticTextTag) definition, color);
+        } else if (definition instanceof DefineMovieClip
+                && nesting < MAX_NESTING) {
+            drawClip(graphics, DisplayList.getFirstFrame(
+                    (DefineMovieClip) definition), color, nesting + 1);
+        }
+    }
+
+    /**
+     * Draw the objects displayed by a movie clip. Clipping layers are
+     * converted into clipping paths that remain in effect until the last
+     * layer they clip has been drawn. Filters and blend modes set on the
+     * objects in the movie clip are ignored.
+     *
+     * @param graphics the graphics context.
+     * @param list the objects displayed, in layer order.
+     * @param color the colour transform applied to the movie clip, may be
+     * null.
+     * @param nesting the number of movie clips that contain the objects.
+     * @throws IOException if an object cannot be decoded.
+     */
+    private void drawClip(final Graphics2D graphics,
+            final List<Placement> list, final ColorTransform color,
+            final int nesting) throws IOException {
+        final LinkedList<Integer> depths = new LinkedList<Integer>();
+        final LinkedList<Graphics2D> clips = new LinkedList<Graphics2D>();
+        Graphics2D current = graphics;
+        Graphics2D layer;
+        DefineTag definition;
+        Path2D outline;
+
+        try {
+            for (final Placement placement : list) {
+                while (!depths.isEmpty()
+                        && placement.getLayer() > depths.peek()) {
+                    depths.pop();
+                    clips.pop().dispose();
+                    current = clips.isEmpty() ? graphics : clips.peek();
+                }
+
+                definition = cache.getDefinition(placement.getIdentifier());
+                if (definition == null) {
+                    continue;
+                }
+
+                layer = (Graphics2D) current.create();
+                if (placement.getDepth() == null) {
+                    try {
+                        layer.transform(StreamPath.toTransform(
+                                placement.getTransform()));
+                        draw(layer, definition, PageRenderer.compose(color,
+                                placement.getColorTransform()), nesting);
+                    } finally {
+                        layer.dispose();
+                    }
+                } else {
+                    outline = new Path2D.Float(Path2D.WIND_NON_ZERO);
+                    if (definition instanceof ShapeTag) {
+                        cache.getPath((ShapeTag) definition).outline(
+                                new AreaPath(outline));
+                        outline.transform(StreamPath.toTransform(
+                                placement.getTransform()));
+                    }
+                    layer.clip(outline);
+                    clips.push(layer);
+                    depths.push(placement.getDepth());
+                    current = layer;
+                }
+            }
+        } finally {
+            for (final Graphics2D clip : clips) {
+                clip.dispose();
+            }
+        }
+    }
+
+    /**
+     * Draw the areas and lines in a shape.
+     *
+     * @param graphics the graphics context.
+     * @param path the path generated for the shape.
+     * @param color the colour transform applied to the shape, may be null.
+     * @throws IOException if an image displayed by the shape cannot be
+     * decoded.
+     */
+    private void drawShape(final Graphics2D graphics, final ShapePath path,
+            final ColorTransform color) throws IOException {
+        FillStyle style;
+        Paint paint;
+        Path2D area;
+
+        for (final ShapePath.Group group : path.getGroups()) {
+            for (final Map.Entry<Integer, List<ShapePath.Edge>> entry
+                    : group.getFills().entrySet()) {
+                style = group.getFillStyle(entry.getKey());
+                area = new Path2D.Float(Path2D.WIND_NON_ZERO);
+                ShapePath.fill(entry.getValue(), new AreaPath(area));
+
+                if (style instanceof BitmapFill) {
+                    drawBitmap(graphics, (BitmapFill) style, area, color);
+                } else {
+                    paint = paint(style, color);
+                    if (paint != null) {
+                        graphics.setPaint(paint);
+                        graphics.fill(area);
+                    }
+                }
+            }
+            for (final Map.Entry<Integer, List<ShapePath.Edge>> entry
+                    : group.getLines().entrySet()) {
+                drawLines(graphics, group.getLineStyle(entry.getKey()),
+                        entry.getValue(), color);
+            }
+        }
+    }
+
+    /**
+     * Get the paint used to fill an area.
+     *
+     * @param style the fill style.
+     * @param color the colour transform, may be null.
+     * @return the paint or null if the area is not drawn.
+     */
+    private static Paint paint(final FillStyle style,
+            final ColorTransform color) {
+        final Paint paint;
+        if (style instanceof GradientFill) {
+            final GradientFill fill = (GradientFill) style;
+            paint = gradient(fill.getGradients(), fill.getTransform(),
+                    fill.getType() == GradientType.RADIAL, 0.0f,
+                    fill.getSpread(), fill.getInterpolation(), color);
+        } else if (style instanceof FocalGradientFill) {
+            final FocalGradientFill fill = (FocalGradientFill) style;
+            paint = gradient(fill.getGradients(), fill.getTransform(), true,
+                    fill.getFocalPoint(), fill.getSpread(),
+                    fill.getInterpolation(), color);
+        } else {
+            final Color fill = Painter.color(style);
+            paint = fill == null ? null : color(fill, color);
+        }
+        return paint;
+    }
+
+    /**
+     * Draw the image displayed by a bitmap fill, clipped to the area being
+     * filled. The colour transform only changes the transparency.
+     *
+     * @param graphics the graphics context.
+     * @param style the bitmap fill.
+     * @param area the area filled.
+     * @param color the colour transform, may be null.
+     * @throws IOException if the image cannot be decoded.
+     */
+    private void drawBitmap(final Graphics2D graphics,
+            final BitmapFill style, final Path2D area,
+            final ColorTransform color) throws IOException {
+        final BufferedImage picture = getPicture(style.getIdentifier());
+        final AffineTransform matrix = StreamPath.toTransform(
+                style.getTransform());
+        if (picture == null || matrix.getDeterminant() == 0) {
+            return;
+        }
+
+        final Graphics2D bitmap = (Graphics2D) graphics.create();
+        try {
+            if (color != null) {
+                bitmap.setComposite(AlphaComposite.getInstance(
+                        AlphaComposite.SRC_OVER, Painter.channel(MAX_LEVEL,
+                                color.getMultiplyAlpha(),
+                                color.getAddAlpha()) / (float) MAX_LEVEL));
+            }
+            if (style.isSmoothed()) {
+                bitmap.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                        RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            }
+            bitmap.clip(area);
+            bitmap.transform(matrix);
+            if (style.isTiled()) {
+                bitmap.setPaint(new TexturePaint(picture, new Rectangle(0, 0,
+                        picture.getWidth(), picture.getHeight())));
+                bitmap.fill(bitmap.getClip());
+            } else {
+                bitmap.drawImage(picture, 0, 0, null);
+            }
+        } finally {
+            bitmap.dispose();
+        }
+    }
+
+    /**
+     * Get the decoded image for a bitmap fill, decoding it the first time it
+     * is used.
+     *
+     * @param identifier the unique identifier of the image.
+     * @return the image or null if it cannot be drawn.
+     * @throws IOException if the image cannot be decoded.
+     */
+    private synchronized BufferedImage getPicture(final int identifier)
+            throws IOException {
+        if (!pictures.containsKey(identifier)) {
+            final PDImageXObject image = cache.getImage(identifier);
+            pictures.put(identifier, image == null ? null : image.getImage());
+        }
+        return pictures.get(identifier);
+    }
+
+    /**
+     * Stroke the lines drawn with a line style.
+     *
+     * @param graphics the graphics context.
+     * @param style the line style.
+     * @param edges the lines.
+     * @param color the colour transform, may be null.
+     * @throws IOException if the lines cannot be traced.
+     */
+    private void drawLines(final Graphics2D graphics, final LineStyle style,
+            final List<ShapePath.Edge> edges, final ColorTransform color)
+            throws IOException {
+        final Color line;
+        final int width;
+        int cap = BasicStroke.CAP_ROUND;
+        int join = BasicStroke.JOIN_ROUND;
+        float limit = DEFAULT_MITER;
+
+        if (style instanceof LineStyle1) {
+            line = ((LineStyle1) style).getColor();
+            width = ((LineStyle1) style).getWidth();
+        } else if (style instanceof LineStyle2) {
+            final LineStyle2 style2 = (LineStyle2) style;
+            line = style2.getFillStyle() == null ? style2.getColor()
+                    : Painter.color(style2.getFillStyle());
+            width = style2.getWidth();
+            cap = capStyle(style2.getStartCap());
+            join = joinStyle(style2.getJoinStyle());
+            if (join == BasicStroke.JOIN_MITER) {
+                limit = Math.max(1.0f,
+                        style2.getMiterLimit() / MITER_SCALE);
+            }
+        } else {
+            return;
+        }
+
+        if (line == null) {
+            return;
+        }
+
+        final Path2D path = new Path2D.Float();
+        ShapePath.stroke(edges, new AreaPath(path));
+        graphics.setPaint(color(line, color));
+        graphics.setStroke(new BasicStroke(width, cap, join, limit));
+        graphics.draw(path);
+    }
+
+    /**
+     * Draw the glyphs in a block of static text, positioned using the
+     * advances from the text.
+     *
+     * @param graphics the graphics context.
+     * @param text the text definition.
+     * @param color the colour transform applied to the text, may be null.
+     * @throws IOException if the glyphs cannot be decoded.
+     */
+    private void drawText(final Graphics2D graphics,
+            final StaticTextTag text, final ColorTransform color)
+            throws IOException {
+        final Graphics2D canvas = (Graphics2D) graphics.create();
+        final AffineTransform position = new AffineTransform();
+        final Path2D glyph = new Path2D.Float(Path2D.WIND_NON_ZERO);
+        final AreaPath outline = new AreaPath(glyph);
+        GlyphTable glyphs = null;
+        Color textColor = null;
+        int xCoord = 0;
+        int yCoord = 0;
+        int height = 0;
+        float scale;
+        int index;
+
+        try {
+            canvas.transform(StreamPath.toTransform(text.getTransform()));
+
+            for (final TextSpan span : text.getSpans()) {
+                if (span.getIdentifier() != null) {
+                    final Type3Font font = cache.getFont(
+                            span.getIdentifier());
+                    glyphs = font == null ? null : font.getGlyphs();
+                }
+                if (span.getColor() != null) {
+                    textColor = span.getColor();
+                }
+                if (span.getOffsetX() != null) {
+                    xCoord = span.getOffsetX();
+                }
+                if (span.getOffsetY() != null) {
+                    yCoord = span.getOffsetY();
+                }
+                if (span.getHeight() != null) {
+                    height = span.getHeight();
+                }
+
+                if (glyphs != null && textColor != null && height != 0) {
+                    canvas.setPaint(color(textColor, color));
+                    scale = height / glyphs.getEmSize();
+                } else {
+                    scale = 0.0f;
+                }
+
+                for (final GlyphIndex character : span.getCharacters()) {
+                    index = character.getGlyphIndex();
+                    if (scale != 0.0f && index < glyphs.size()) {
+                        glyph.reset();
+                        glyphs.outline(index, outline);
+                        position.setTransform(scale, 0, 0, scale, xCoord,
+                                yCoord);
+                        glyph.transform(position);
+                        canvas.fill(glyph);
+                    }
+                    xCoord += character.getAdvance();
+                }
+            }
+        } finally {
+            canvas.dispose();
+        }
+    }
+}
@@ -0,0 +1,344 @@
+/*
+ * JPEGImage.java
+ * Transform
+ *
+ * Copyright (c) 2010 Flagstone Software Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of Flagstone Software Ltd. nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package com.flagstone.transform.util.pdf;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSInteger;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.graphics.color.PDColorSpace;
+import org.apache.pdfbox.pdmodel.graphics.color.PDDeviceCMYK;
+import org.apache.pdfbox.pdmodel.graphics.color.PDDeviceGray;
+import org.apache.pdfbox.pdmodel.graphics.color.PDDeviceRGB;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+
+/**
+ * <p>
+ * JPEGImage converts the JPEG data from the image definitions in a movie
+ * into a stream that can be embedded, unchanged, in a PDF document using the
+ * DCTDecode filter. The image is never decoded: the markers are scanned to
+ * find the size of the image and the number of colour components, and the
+ * encoding tables, shared by DefineJPEGImage objects, are merged into the
+ * image data.
+ * </p>
+ *
+ * <p>
+ * The JPEG data in movies often does not form a single valid stream. Older
+ * versions of Flash wrote an end of image marker immediately followed by a
+ * start of image marker at the beginning of the data and the tables and
+ * image may be written as separate streams. All start and end of image
+ * markers before the start of the scan are removed so only one remains at
+ * each end of the merged stream.
+ * </p>
+ */
+final class JPEGImage {
+
+    /** Bit mask for the least significant byte. */
+    private static final int BYTE_MASK = 255;
+    /** The byte that starts each marker. */
+    private static final int MARKER = 0xFF;
+    /** Marks the start of an image. */
+    private static final int SOI = 0xD8;
+    /** Marks the end of an image. */
+    private static final int EOI = 0xD9;
+    /** Marks the start of a frame - baseline DCT. */
+    private static final int SOF0 = 0xC0;
+    /** Marks the start of a frame - progressive DCT. */
+    private static final int SOF2 = 0xC2;
+    /** Marks the last start of frame marker - arithmetic coding. */
+    private static final int SOF15 = 0xCF;
+    /** Marks the Huffman table, in the range used by frame markers. */
+    private static final int DHT = 0xC4;
+    /** Marks a reserved block, in the range used by frame markers. */
+    private static final int JPG = 0xC8;
+    /** Marks the arithmetic coding table, in the range used by frames. */
+    private static final int DAC = 0xCC;
+    /** Marks the start of scan. */
+    private static final int SOS = 0xDA;
+    /** Marks the application block written by Adobe applications. */
+    private static final int APP14 = 0xEE;
+    /** Marks the first restart marker, which has no length. */
+    private static final int RST0 = 0xD0;
+    /** Marks the last restart marker. */
+    private static final int RST7 = 0xD7;
+    /** Marks a marker with no parameters, used only in arithmetic coding. */
+    private static final int TEM = 0x01;
+    /** The number of colour components in a CMYK image. */
+    private static final int CMYK = 4;
+    /** The number of colour components in an RGB image. */
+    private static final int RGB = 3;
+    /** The number of bits in each alpha value. */
+    private static final int ALPHA_BITS = 8;
+    /** Offset of the precision in a start of frame block. */
+    private static final int PRECISION = 4;
+    /** Offset of the height in a start of frame block. */
+    private static final int HEIGHT = 5;
+    /** Offset of the width in a start of frame block. */
+    private static final int WIDTH = 7;
+    /** Offset of the number of components in a start of frame block. */
+    private static final int COMPONENTS = 9;
+    /** The identifier at the start of the Adobe application block. */
+    private static final String ADOBE = "Adobe";
+
+    /**
+     * Merge the encoding tables and the image data into a single JPEG stream.
+     *
+     * @param tables the encoding tables shared by the images in a movie, may
+     * be null or empty if the image contains its own tables.
+     * @param image the JPEG encoded image.
+     * @return the image or null if the data is not a JPEG image with a
+     * baseline, extended or progressive frame.
+     */
+    static JPEGImage merge(final byte[] tables, final byte[] image) {
+        final JPEGImage jpeg = new JPEGImage();
+        jpeg.data.write(MARKER);
+        jpeg.data.write(SOI);
+
+        if (tables != null && !jpeg.copy(tables)) {
+            return null;
+        }
+        if (!jpeg.copy(image) || !jpeg.scanned || jpeg.components == 0) {
+            return null;
+        }
+
+        final byte[] bytes = jpeg.data.toByteArray();
+        if ((bytes[bytes.length - 2] & BYTE_MASK) != MARKER
+                || (bytes[bytes.length - 1] & BYTE_MASK) != EOI) {
+            jpeg.data.write(MARKER);
+            jpeg.data.write(EOI);
+        }
+        return jpeg;
+    }
+
+    /** The merged stream. */
+    private final transient ByteArrayOutputStream data;
+    /** The width of the image in pixels. */
+    private transient int width;
+    /** The height of the image in pixels. */
+    private transient int height;
+    /** The number of bits in each colour component. */
+    private transient int precision;
+    /** The number of colour components. */
+    private transient int components;
+    /** Whether the image contains the Adobe application block. */
+    private transient boolean adobe;
+    /** Whether the start of the scan has been copied. */
+    private transient boolean scanned;
+
+    /** Create an empty JPEGImage. */
+    private JPEGImage() {
+        data = new ByteArrayOutputStream();
+    }
+
+    /**
+     * Get the width of the image.
+     * @return the width in pixels.
+     */
+    int getWidth() {
+        return width;
+    }
+
+    /**
+     * Get the height of the image.
+     * @return the height in pixels.
+     */
+    int getHeight() {
+        return height;
+    }
+
+    /**
+     * Get the number of colour components in the image.
+     * @return 1 for greyscale, 3 for RGB or 4 for CMYK images.
+     */
+    int getComponents() {
+        return components;
+    }
+
+    /**
+     * Get the merged JPEG stream.
+     * @return a copy of the encoded image.
+     */
+    byte[] getData() {
+        return data.toByteArray();
+    }
+
+    /**
+     * Create the image XObject that contains the JPEG stream.
+     *
+     * @param document the document that will contain the image.
+     * @param alpha the zlib compressed transparency for each pixel, used
+     * unchanged as the soft mask, may be null or empty if the image is
+     * opaque.
+     * @return the image.
+     * @throws IOException if an error occurs writing the image streams.
+     */
+    PDImageXObject createImage(final PDDocument document, final byte[] alpha)
+            throws IOException {
+        final PDColorSpace space;
+        if (components == 1) {
+            space = PDDeviceGray.INSTANCE;
+        } else if (components == CMYK) {
+            space = PDDeviceCMYK.INSTANCE;
+        } else {
+            space = PDDeviceRGB.INSTANCE;
+        }
+
+        final PDImageXObject image = new PDImageXObject(document,
+                new ByteArrayInputStream(data.toByteArray()),
+                COSName.DCT_DECODE, width, height, precision, space);
+
+        if (components == CMYK && adobe) {
+            final COSArray decode = new COSArray();
+            for (int i = 0; i < CMYK; i++) {
+                decode.add(COSInteger.ONE);
+                decode.add(COSInteger.ZERO);
+            }
+            image.setDecode(decode);
+        }
+
+        setMask(document, image, alpha);
+        return image;
+    }
+
+    /**
+     * Set the soft mask for an image using the transparency from a
+     * DefineJPEGImage3 or DefineJPEGImage4 object.
+     *
+     * @param document the document that will contain the mask.
+     * @param image the image.
+     * @param alpha the zlib compressed transparency for each pixel, used
+     * unchanged as the soft mask, may be null or empty if the image is
+     * opaque.
+     * @throws IOException if an error occurs writing the mask.
+     */
+    static void setMask(final PDDocument document,
+            final PDImageXObject image, final byte[] alpha)
+            throws IOException {
+        if (alpha != null && alpha.length > 0) {
+            final PDImageXObject mask = new PDImageXObject(document,
+                    new ByteArrayInputStream(alpha), COSName.FLATE_DECODE,
+                    image.getWidth(), image.getHeight(), ALPHA_BITS,
+                    PDDeviceGray.INSTANCE);
+            image.getCOSObject().setItem(COSName.SMASK, mask);
+        }
+    }
+
+    /**
+     * Copy the markers from a block of JPEG data, discarding the start and
+     * end of image markers. Everything from the start of the scan onwards is
+     * copied unchanged.
+     *
+     * @param bytes the JPEG data.
+     * @return false if the data does not contain valid markers or describes
+     * a frame that is not supported.
+     */
+    private boolean copy(final byte[] bytes) {
+        int index = 0;
+        int marker;
+        int length;
+
+        while (index < bytes.length && !scanned) {
+            if ((bytes[index] & BYTE_MASK) != MARKER
+                    || index + 1 == bytes.length) {
+                return false;
+            }
+            marker = bytes[index + 1] & BYTE_MASK;
+
+            if (marker == MARKER) {
+                index++;
+            } else if (marker == SOI || marker == EOI || marker == TEM
+                    || marker >= RST0 && marker <= RST7) {
+                index += 2;
+            } else if (marker == SOS) {
+                data.write(bytes, index, bytes.length - index);
+                scanned = true;
+            } else {
+                if (index + 3 >= bytes.length) {
+                    return false;
+                }
+                length = ((bytes[index + 2] & BYTE_MASK) << Byte.SIZE)
+                        | (bytes[index + 3] & BYTE_MASK);
+                if (length < 2 || index + 2 + length > bytes.length) {
+                    return false;
+                }
+                if (marker >= SOF0 && marker <= SOF2) {
+                    if (length < COMPONENTS - 1) {
+                        return false;
+                    }
+                    precision = bytes[index + PRECISION] & BYTE_MASK;
+                    height = ((bytes[index + HEIGHT] & BYTE_MASK)
+                            << Byte.SIZE)
+                            | (bytes[index + HEIGHT + 1] & BYTE_MASK);
+                    width = ((bytes[index + WIDTH] & BYTE_MASK) << Byte.SIZE)
+                            | (bytes[index + WIDTH + 1] & BYTE_MASK);
+                    components = bytes[index + COMPONENTS] & BYTE_MASK;
+                    if (components != 1 && components != RGB
+                            && components != CMYK) {
+                        return false;
+                    }
+                } else if (marker > SOF2 && marker <= SOF15
+                        && marker != DHT && marker != JPG && marker != DAC) {
+                    return false;
+                } else if (marker == APP14 && isAdobe(bytes, index + 4,
+                        length - 2)) {
+                    adobe = true;
+                }
+                data.write(bytes, index, 2 + length);
+                index += 2 + length;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check whether an application block was written by Adobe, which
+     * indicates the colour components in a CMYK image are inverted.
+     *
+     * @param bytes the JPEG data.
+     * @param offset the start of the block, after the marker and length.
+     * @param length the number of bytes in the block.
+     * @return true if the block starts with the Adobe identifier.
+     */
+    private static boolean isAdobe(final byte[] bytes, final int offset,
+            final int length) {
+        boolean result = length >= ADOBE.length();
+        for (int i = 0; result && i < ADOBE.length(); i++) {
+            result = bytes[offset + i] == ADOBE.charAt(i);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,425 @@
+/*
+ * LosslessImage.java
+ * Transform
+ *
+ * Copyright (c) 2010 Flagstone Software Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of Flagstone Software Ltd. nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package com.flagstone.transform.util.pdf;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSInteger;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSString;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.common.PDStream;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+
+import com.flagstone.transform.image.DefineImage;
+import com.flagstone.transform.image.DefineImage2;
+import com.flagstone.transform.image.ImageFormat;
+
+/**
+ * <p>
+ * LosslessImage converts the zlib compressed pixels from DefineImage and
+ * DefineImage2 objects into image XObjects that use the FlateDecode filter.
+ * </p>
+ *
+ * <p>
+ * The layout of the pixels in a movie never matches the samples in a PDF
+ * image: the colour table is compressed in the same stream as the indices,
+ * each row is padded to a 32-bit boundary and true-colour pixels contain a
+ * reserved byte or a premultiplied alpha channel. The compressed data
+ * therefore cannot be copied unchanged. Instead each row is inflated and the
+ * samples written directly to the compressed stream in the document, so the
+ * image is processed in a single pass without decoding it into a
+ * BufferedImage or holding the uncompressed pixels in memory. Indexed images
+ * keep their colour table and are written with one byte per pixel. Rows of
+ * true-colour pixels are filtered with the PNG Paeth predictor, which
+ * usually makes the compressed stream several times smaller.
+ * </p>
+ *
+ * <p>
+ * The transparency from DefineImage2 objects is written as a soft mask. The
+ * colours are divided by the alpha channel, since PDF expects colours that
+ * are not premultiplied. The mask is omitted if every pixel is opaque.
+ * </p>
+ */
+final class LosslessImage {
+
+    /** Bit mask for the least significant byte. */
+    private static final int BYTE_MASK = 255;
+    /** The value for a fully opaque pixel. */
+    private static final int OPAQUE = 255;
+    /** The number of bytes in an RGB colour. */
+    private static final int RGB = 3;
+    /** The number of bytes in an RGBA colour or 32-bit pixel. */
+    private static final int RGBA = 4;
+    /** The number of bytes in a 16-bit pixel. */
+    private static final int RGB5 = 2;
+    /** Mask used to pad rows to a 32-bit boundary. */
+    private static final int WORD_ALIGN = 3;
+    /** The number of bits in each sample written to the document. */
+    private static final int SAMPLE_BITS = 8;
+    /** Mask for a 5-bit colour channel. */
+    private static final int MASK_5BIT = 0x1F;
+    /** Shift for the red channel of a 16-bit pixel. */
+    private static final int RED_SHIFT = 10;
+    /** Shift for the green channel of a 16-bit pixel. */
+    private static final int GREEN_SHIFT = 5;
+    /** Shift to expand a 5-bit channel to 8 bits. */
+    private static final int EXPAND_SHIFT = 3;
+    /** Shift to fill the low order bits of an expanded channel. */
+    private static final int FILL_SHIFT = 2;
+    /** The PNG filter type that predicts each byte using the Paeth method. */
+    private static final int PAETH = 4;
+    /** The PDF predictor that indicates each row has a PNG filter type. */
+    private static final int PNG_PREDICTOR = 15;
+
+    /**
+     * Create the image XObject for a DefineImage object.
+     *
+     * @param document the document that will contain the image.
+     * @param definition the image definition.
+     * @return the image or null if the image data is invalid.
+     * @throws IOException if an error occurs writing the image.
+     */
+    static PDImageXObject createImage(final PDDocument document,
+            final DefineImage definition) throws IOException {
+        final ImageFormat format;
+        switch (definition.getPixelSize()) {
+        case SAMPLE_BITS:
+            format = ImageFormat.IDX8;
+            break;
+        case RGB5 * Byte.SIZE:
+            format = ImageFormat.RGB5;
+            break;
+        case RGB * Byte.SIZE:
+            format = ImageFormat.RGB8;
+            break;
+        default:
+            return null;
+        }
+        return createImage(document, definition.getImage(), format,
+                definition.getWidth(), definition.getHeight(),
+                definition.getTableSize());
+    }
+
+    /**
+     * Create the image XObject for a DefineImage2 object.
+     *
+     * @param document the document that will contain the image.
+     * @param definition the image definition.
+     * @return the image or null if the image data is invalid.
+     * @throws IOException if an error occurs writing the image.
+     */
+    static PDImageXObject createImage(final PDDocument document,
+            final DefineImage2 definition) throws IOException {
+        final ImageFormat format;
+        if (definition.getPixelSize() == SAMPLE_BITS) {
+            format = ImageFormat.IDXA;
+        } else {
+            format = ImageFormat.RGBA;
+        }
+        return createImage(document, definition.getImage(), format,
+                definition.getWidth(), definition.getHeight(),
+                definition.getTableSize());
+    }
+
+    /**
+     * Get the number of bytes in each row of an image in a movie.
+     *
+     * @param format the format of the pixels.
+     * @param width the width of the image in pixels.
+     * @return the length of a row including the padding.
+     */
+    private static int rowLength(final ImageFormat format, final int width) {
+        final int length;
+        if (format == ImageFormat.IDX8 || format == ImageFormat.IDXA) {
+            length = (width + WORD_ALIGN) & ~WORD_ALIGN;
+        } else if (format == ImageFormat.RGB5) {
+            length = (width * RGB5 + WORD_ALIGN) & ~WORD_ALIGN;
+        } else {
+            length = width * RGBA;
+        }
+        return length;
+    }
+
+    /**
+     * Divide a premultiplied colour channel by the alpha channel.
+     *
+     * @param level the value of the colour channel.
+     * @param alpha the value of the alpha channel.
+     * @return the colour channel that is not premultiplied.
+     */
+    private static byte divide(final int level, final int alpha) {
+        final int value;
+        if (alpha == 0) {
+            value = 0;
+        } else if (alpha == OPAQUE) {
+            value = level;
+        } else {
+            value = Math.min(BYTE_MASK, (level * OPAQUE + alpha / 2) / alpha);
+        }
+        return (byte) value;
+    }
+
+    /**
+     * Expand a 5-bit colour channel to 8 bits.
+     *
+     * @param level the 5-bit value.
+     * @return the 8-bit value.
+     */
+    private static byte expand(final int level) {
+        return (byte) ((level << EXPAND_SHIFT) | (level >> FILL_SHIFT));
+    }
+
+    /**
+     * Apply the PNG Paeth filter to a row of true-colour samples, writing
+     * the filter type followed by the difference between each sample and
+     * the value predicted from its neighbours.
+     *
+     * @param samples the samples in the current row.
+     * @param previous the samples in the previous row, all zero for the
+     * first row.
+     * @param filtered the row to be written, one byte longer than the
+     * samples.
+     */
+    private static void paeth(final byte[] samples, final byte[] previous,
+            final byte[] filtered) {
+        int left;
+        int above;
+        int corner;
+        int estimate;
+        int predicted;
+
+        filtered[0] = PAETH;
+        for (int i = 0; i < samples.length; i++) {
+            left = i < RGB ? 0 : samples[i - RGB] & BYTE_MASK;
+            above = previous[i] & BYTE_MASK;
+            corner = i < RGB ? 0 : previous[i - RGB] & BYTE_MASK;
+            estimate = left + above - corner;
+
+            if (Math.abs(estimate - left) <= Math.abs(estimate - above)
+                    && Math.abs(estimate - left)
+                    <= Math.abs(estimate - corner)) {
+                predicted = left;
+            } else if (Math.abs(estimate - above)
+                    <= Math.abs(estimate - corner)) {
+                predicted = above;
+            } else {
+                predicted = corner;
+            }
+            filtered[i + 1] = (byte) (samples[i] - predicted);
+        }
+    }
+
+    /**
+     * Convert the pixels from an image in a movie into an image XObject.
+     *
+     * @param document the document that will contain the image.
+     * @param data the zlib compressed colour table and pixels.
+     * @param format the format of the pixels.
+     * @param width the width of the image in pixels.
+     * @param height the height of the image in pixels.
+     * @param tableSize the number of entries in the colour table.
+     * @return the image or null if the image data is invalid.
+     * @throws IOException if an error occurs writing the image.
+     */
+    private static PDImageXObject createImage(final PDDocument document,
+            final byte[] data, final ImageFormat format, final int width,
+            final int height, final int tableSize) throws IOException {
+        if (data == null || width == 0 || height == 0) {
+            return null;
+        }
+
+        final boolean indexed = format == ImageFormat.IDX8
+                || format == ImageFormat.IDXA;
+        final DataInputStream input = new DataInputStream(
+                new InflaterInputStream(new ByteArrayInputStream(data)));
+        final PDStream pixels = new PDStream(document);
+        final PDStream mask = new PDStream(document);
+        final OutputStream out = pixels.createOutputStream(
+                COSName.FLATE_DECODE);
+        final OutputStream alphas = mask.createOutputStream(
+                COSName.FLATE_DECODE);
+        final byte[] row = new byte[rowLength(format, width)];
+        final byte[] samples = new byte[indexed ? width : width * RGB];
+        final byte[] previous = new byte[samples.length];
+        final byte[] filtered = new byte[samples.length + 1];
+        final byte[] levels = new byte[width];
+        COSBase space = COSName.DEVICERGB;
+        byte[] table = null;
+        boolean opaque = true;
+        int pixel;
+        int alpha;
+
+        try {
+            if (indexed) {
+                table = readTable(input, format, tableSize);
+                final COSArray indexedSpace = new COSArray();
+                indexedSpace.add(COSName.INDEXED);
+                indexedSpace.add(COSName.DEVICERGB);
+                indexedSpace.add(COSInteger.get(tableSize - 1));
+                indexedSpace.add(new COSString(
+                        Arrays.copyOf(table, tableSize * RGB)));
+                space = indexedSpace;
+            }
+
+            for (int y = 0; y < height; y++) {
+                input.readFully(row);
+                for (int x = 0, i = 0, j = 0; x < width; x++) {
+                    if (indexed) {
+                        pixel = row[x] & BYTE_MASK;
+                        samples[x] = (byte) pixel;
+                        alpha = pixel < tableSize
+                                ? table[tableSize * RGB + pixel] & BYTE_MASK
+                                : OPAQUE;
+                    } else if (format == ImageFormat.RGB5) {
+                        pixel = ((row[i++] & BYTE_MASK) << Byte.SIZE)
+                                | (row[i++] & BYTE_MASK);
+                        samples[j++] = expand((pixel >> RED_SHIFT)
+                                & MASK_5BIT);
+                        samples[j++] = expand((pixel >> GREEN_SHIFT)
+                                & MASK_5BIT);
+                        samples[j++] = expand(pixel & MASK_5BIT);
+                        alpha = OPAQUE;
+                    } else {
+                        alpha = format == ImageFormat.RGBA
+                                ? row[i] & BYTE_MASK : OPAQUE;
+                        i++;
+                        samples[j++] = divide(row[i++] & BYTE_MASK, alpha);
+                        samples[j++] = divide(row[i++] & BYTE_MASK, alpha);
+                        samples[j++] = divide(row[i++] & BYTE_MASK, alpha);
+                    }
+                    levels[x] = (byte) alpha;
+                    opaque &= alpha == OPAQUE;
+                }
+                if (indexed) {
+                    out.write(samples);
+                } else {
+                    paeth(samples, previous, filtered);
+                    out.write(filtered);
+                    System.arraycopy(samples, 0, previous, 0, samples.length);
+                }
+                alphas.write(levels);
+            }
+        } catch (final EOFException e) {
+            return null;
+        } catch (final ZipException e) {
+            return null;
+        } finally {
+            out.close();
+            alphas.close();
+            input.close();
+        }
+
+        final PDImageXObject image = image(pixels, width, height, space);
+        if (!indexed) {
+            final COSDictionary parameters = new COSDictionary();
+            parameters.setInt(COSName.PREDICTOR, PNG_PREDICTOR);
+            parameters.setInt(COSName.COLORS, RGB);
+            parameters.setInt(COSName.BITS_PER_COMPONENT, SAMPLE_BITS);
+            parameters.setInt(COSName.COLUMNS, width);
+            image.getCOSObject().setItem(COSName.DECODE_PARMS, parameters);
+        }
+        if (!opaque) {
+            image.getCOSObject().setItem(COSName.SMASK,
+                    image(mask, width, height, COSName.DEVICEGRAY));
+        }
+        return image;
+    }
+
+    /**
+     * Read the colour table for an indexed image. The colours are followed
+     * by the alpha level for each entry, which is fully opaque for images
+     * from DefineImage objects.
+     *
+     * @param input the stream of uncompressed data.
+     * @param format the format of the pixels, IDX8 or IDXA.
+     * @param tableSize the number of entries in the table.
+     * @return the RGB colours followed by the alpha levels.
+     * @throws IOException if the table cannot be read.
+     */
+    private static byte[] readTable(final DataInputStream input,
+            final ImageFormat format, final int tableSize)
+            throws IOException {
+        final int size = format == ImageFormat.IDXA ? RGBA : RGB;
+        final byte[] entries = new byte[tableSize * size];
+        final byte[] table = new byte[tableSize * RGBA];
+        int alpha;
+
+        input.readFully(entries);
+
+        for (int i = 0, j = 0, k = 0; i < tableSize; i++, j += size) {
+            alpha = size == RGBA ? entries[j + RGB] & BYTE_MASK : OPAQUE;
+            table[k++] = divide(entries[j] & BYTE_MASK, alpha);
+            table[k++] = divide(entries[j + 1] & BYTE_MASK, alpha);
+            table[k++] = divide(entries[j + 2] & BYTE_MASK, alpha);
+            table[tableSize * RGB + i] = (byte) alpha;
+        }
+        return table;
+    }
+
+    /**
+     * Create an image XObject with 8-bit samples from a stream.
+     *
+     * @param stream the stream containing the samples.
+     * @param width the width of the image in pixels.
+     * @param height the height of the image in pixels.
+     * @param space the colour space.
+     * @return the image.
+     * @throws IOException if the image cannot be created.
+     */
+    private static PDImageXObject image(final PDStream stream,
+            final int width, final int height, final COSBase space)
+            throws IOException {
+        final PDImageXObject image = new PDImageXObject(stream, null);
+        image.setWidth(width);
+        image.setHeight(height);
+        image.setBitsPerComponent(SAMPLE_BITS);
+        image.getCOSObject().setItem(COSName.COLORSPACE, space);
+        return image;
+    }
+
+    /** LosslessImage only contains static methods. */
+    private LosslessImage() {
+        // Private constructor
+    }
+}
@@ -0,0 +1,755 @@
+/*
+ * PDFConverter.java
+ * Transform
+ *
+ * Copyright (c) 2010 Flagstone Software Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of Flagstone Software Ltd. nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.flagstone.transform.util.pdf;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.util.Matrix;
+
+import com.flagstone.transform.Background;
+import com.flagstone.transform.DefineTag;
+import com.flagstone.transform.Movie;
+import com.flagstone.transform.MovieHeader;
+import com.flagstone.transform.MovieReader;
+import com.flagstone.transform.MovieTag;
+import com.flagstone.transform.ShowFrame;
+import com.flagstone.transform.datatype.Bounds;
+import com.flagstone.transform.datatype.Color;
+import com.flagstone.transform.exception.IllegalArgumentRangeException;
+import com.flagstone.transform.font.DefineFont;
+import com.flagstone.transform.font.DefineFont2;
+import com.flagstone.transform.font.DefineFont3;
+import com.flagstone.transform.image.ImageTag;
+import com.flagstone.transform.image.JPEGEncodingTable;
+import com.flagstone.transform.movieclip.DefineMovieClip;
+import com.flagstone.transform.shape.ShapeTag;
+import com.flagstone.transform.text.StaticTextTag;
+
+/**
+ * <p>
+ * PDFConverter converts a frame from a movie into a single page PDF document,
+ * or every frame into a separate page.
+ * </p>
+ *
+ * <p>
+ * The objects in the movie are processed in order, adding each definition to
+ * a dictionary keyed by its unique identifier and executing the Place and
+ * Remove commands to build the display list, until the selected frame is
+ * reached. Shapes, static text and movie clips on the display list are then
+ * drawn, in layer order, in a single content stream. Each shape and block of
+ * text is drawn once into a Form XObject which is reused every time the
+ * object is displayed. Text is drawn using Type 3 fonts generated from the
+ * glyphs in the movie's fonts. The page is the same size as the movie's
+ * frame, with one point for each pixel.
+ * </p>
+ *
+ * <pre>
+ * Movie movie = new Movie();
+ * movie.decodeFromFile(new File("movie.swf"));
+ *
+ * new PDFConverter().setFrame(1).convert(movie, new File("movie.pdf"));
+ * </pre>
+ *
+ * <p>
+ * When all the frames are converted, a page is added to the document each
+ * time a frame is shown. If an ExecutorService is set the pages are drawn
+ * concurrently, sharing the forms generated for the objects displayed.
+ * </p>
+ *
+ * <pre>
+ * ExecutorService executor = Executors.newFixedThreadPool(4);
+ *
+ * new PDFConverter().setAllFrames(true).setExecutor(executor)
+ *     .convert(movie, new File("slides.pdf"));
+ * </pre>
+ *
+ * <p>
+ * Very large movies can be converted as they are read, using a MovieReader,
+ * with a limit on the amount of the document held in memory. The contents
+ * of each page are written to a scratch file once the limit is reached.
+ * </p>
+ *
+ * <pre>
+ * MovieReader reader = new MovieReader(new File("movie.swf"));
+ * try {
+ *     new PDFConverter().setAllFrames(true).setMemoryLimit(16 * 1024 * 1024)
+ *         .convert(reader, new File("movie.pdf"));
+ * } finally {
+ *     reader.close();
+ * }
+ * </pre>
+ *
+ * <p>
+ * Gradients are drawn as shadings and tiled bitmaps as patterns. JPEG
+ * images displayed by bitmap fills are embedded without being decoded, with
+ * the transparency from DefineJPEGImage3 used as a soft mask, and lossless
+ * images are converted as they are decompressed. Objects placed with blur,
+ * drop shadow, glow or colour matrix filters are drawn into images, at the
+ * resolution set with setResolution(), and the filters applied to the
+ * pixels. Morph shapes, buttons and dynamic text are not drawn.
+ * </p>
+ */
+public final class PDFConverter {
+
+    /** The number of twips in a point. */
+    private static final float TWIPS_PER_POINT = 20.0f;
+    /** The maximum number of pages waiting to be drawn by the executor. */
+    private static final int MAX_PENDING = 64;
+    /** The number of twips in an inch. */
+    private static final float TWIPS_PER_INCH = 1440.0f;
+    /** The default resolution for objects drawn as images. */
+    private static final int DEFAULT_RESOLUTION = 144;
+    /** The maximum resolution for objects drawn as images. */
+    private static final int MAX_RESOLUTION = 2400;
+
+    /** The number of the frame converted. */
+    private transient int frame;
+    /** Whether every frame is converted into a page. */
+    private transient boolean allFrames;
+    /** The executor used to draw the pages concurrently. */
+    private transient ExecutorService executor;
+    /** The number of bytes of the document held in memory. */
+    private transient int memoryLimit;
+    /** The directory for the scratch file. */
+    private transient File scratchDirectory;
+    /** The resolution, in dots per inch, for objects drawn as images. */
+    private transient int resolution;
+
+    /**
+     * Create a PDFConverter that converts the first frame of a movie.
+     */
+    public PDFConverter() {
+        frame = 1;
+        memoryLimit = -1;
+        resolution = DEFAULT_RESOLUTION;
+    }
+
+    /**
+     * Get the number of the frame that will be converted.
+     *
+     * @return the frame number, starting at 1.
+     */
+    public int getFrame() {
+        return frame;
+    }
+
+    /**
+     * Set the number of the frame that will be converted. If the movie
+     * contains fewer frames then the objects displayed when the movie
+     * ends are converted.
+     *
+     * @param number the frame number, starting at 1.
+     * @return this object.
+     */
+    public PDFConverter setFrame(final int number) {
+        if (number < 1) {
+            throw new IllegalArgumentRangeException(1, Integer.MAX_VALUE,
+                    number);
+        }
+        frame = number;
+        return this;
+    }
+
+    /**
+     * Is every frame in the movie converted into a separate page.
+     *
+     * @return true if the document contains a page for each frame, false if
+     * only the frame selected with setFrame() is converted.
+     */
+    public boolean isAllFrames() {
+        return allFrames;
+    }
+
+    /**
+     * Sets whether every frame in the movie is converted into a separate
+     * page. The display list is updated as each frame is shown so each page
+     * contains the objects displayed when the Flash Player would show the
+     * frame. Objects placed after the last ShowFrame are not displayed.
+     *
+     * @param all true if the document contains a page for each frame, false
+     * if only the frame selected with setFrame() is converted.
+     * @return this object.
+     */
+    public PDFConverter setAllFrames(final boolean all) {
+        allFrames = all;
+        return this;
+    }
+
+    /**
+     * Get the executor used to draw the pages concurrently.
+     *
+     * @return the ExecutorService or null if pages are drawn by the calling
+     * thread.
+     */
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Sets the executor used to draw the pages concurrently. The executor is
+     * not shut down by the PDFConverter.
+     *
+     * @param service the ExecutorService used to draw the pages. May be null
+     * to draw all the pages using the calling thread.
+     * @return this object.
+     */
+    public PDFConverter setExecutor(final ExecutorService service) {
+        executor = service;
+        return this;
+    }
+
+    /**
+     * Get the maximum number of bytes of the document held in memory while
+     * it is generated.
+     *
+     * @return the limit in bytes or -1 if the document is held entirely in
+     * memory.
+     */
+    public int getMemoryLimit() {
+        return memoryLimit;
+    }
+
+    /**
+     * Sets the maximum number of bytes of the document held in memory while
+     * it is generated. The content streams for the pages, forms and fonts are
+     * written to a scratch file once the limit is reached so the memory used
+     * does not grow with the size of the document.
+     *
+     * @param limit the limit in bytes, zero to store the contents of the
+     * document only in the scratch file or -1 to hold the entire document in
+     * memory.
+     * @return this object.
+     */
+    public PDFConverter setMemoryLimit(final int limit) {
+        if (limit < -1) {
+            throw new IllegalArgumentRangeException(-1, Integer.MAX_VALUE,
+                    limit);
+        }
+        memoryLimit = limit;
+        return this;
+    }
+
+    /**
+     * Get the directory where the scratch file is created.
+     *
+     * @return the directory or null if the default directory for temporary
+     * files is used.
+     */
+    public File getScratchDirectory() {
+        return scratchDirectory;
+    }
+
+    /**
+     * Sets the directory where the scratch file is created when a memory
+     * limit is set.
+     *
+     * @param directory the directory, or null to use the default directory
+     * for temporary files.
+     * @return this object.
+     */
+    public PDFConverter setScratchDirectory(final File directory) {
+        scratchDirectory = directory;
+        return this;
+    }
+
+    /**
+     * Get the resolution used for objects that are drawn as images.
+     *
+     * @return the resolution in dots per inch.
+     */
+    public int getResolution() {
+        return resolution;
+    }
+
+    /**
+     * Sets the resolution used for objects that are drawn as images because
+     * the filters applied to them cannot be reproduced in PDF. The page has
+     * one point for each pixel in the movie, so the default of 144 dots per
+     * inch gives two pixels in the image for each pixel in the movie.
+     *
+     * @param dpi the resolution in dots per inch, in the range 1..2400.
+     * @return this object.
+     */
+    public PDFConverter setResolution(final int dpi) {
+        if (dpi < 1 || dpi > MAX_RESOLUTION) {
+            throw new IllegalArgumentRangeException(1, MAX_RESOLUTION, dpi);
+        }
+        resolution = dpi;
+        return this;
+    }
+
+    /**
+     * Convert a movie and write the PDF document to a file.
+     *
+     * @param movie the movie to convert.
+     * @param file the file where the document will be written.
+     * @throws IOException if an error occurs decoding the shapes or fonts in
+     * the movie or writing the document.
+     */
+    public void convert(final Movie movie, final File file)
+            throws IOException {
+        final PDDocument document = convert(movie);
+        try {
+            document.save(file);
+        } finally {
+            document.close();
+        }
+    }
+
+    /**
+     * Convert a movie and write the PDF document to a stream.
+     *
+     * @param movie the movie to convert.
+     * @param stream the stream where the document will be written.
+     * @throws IOException if an error occurs decoding the shapes or fonts in
+     * the movie or writing the document.
+     */
+    public void convert(final Movie movie, final OutputStream stream)
+            throws IOException {
+        final PDDocument document = convert(movie);
+        try {
+            document.save(stream);
+        } finally {
+            document.close();
+        }
+    }
+
+    /**
+     * Convert a movie into a PDF document. The document must be closed once
+     * it is no longer needed.
+     *
+     * @param movie the movie to convert.
+     * @return the PDF document.
+     * @throws IOException if an error occurs decoding the shapes or fonts in
+     * the movie.
+     */
+    public PDDocument convert(final Movie movie) throws IOException {
+        if (movie == null) {
+            throw new IllegalArgumentException();
+        }
+
+        final Conversion conversion = new Conversion();
+        boolean converted = false;
+
+        try {
+            for (final MovieTag tag : movie.getObjects()) {
+                if (!conversion.add(tag)) {
+                    break;
+                }
+            }
+            conversion.finish();
+            converted = true;
+        } finally {
+            if (!converted) {
+                conversion.abort();
+            }
+        }
+        return conversion.getDocument();
+    }
+
+    /**
+     * Convert a movie, as it is read, and write the PDF document to a file.
+     *
+     * @param reader the reader used to decode the movie. The reader is not
+     * closed.
+     * @param file the file where the document will be written.
+     * @throws IOException if an error occurs decoding the movie or writing
+     * the document.
+     */
+    public void convert(final MovieReader reader, final File file)
+            throws IOException {
+        final PDDocument document = convert(reader);
+        try {
+            document.save(file);
+        } finally {
+            document.close();
+        }
+    }
+
+    /**
+     * Convert a movie, as it is read, into a PDF document. Each page is drawn
+     * as soon as the frame it shows has been read, and only the definitions
+     * of objects that can be drawn are kept, so together with a memory limit
+     * large movies can be converted using a fixed amount of memory. The
+     * document must be closed once it is no longer needed.
+     *
+     * @param reader the reader used to decode the movie. The reader is not
+     * closed.
+     * @return the PDF document.
+     * @throws IOException if an error occurs decoding the movie.
+     */
+    public PDDocument convert(final MovieReader reader) throws IOException {
+        if (reader == null) {
+            throw new IllegalArgumentException();
+        }
+
+        final Conversion conversion = new Conversion();
+        boolean converted = false;
+
+        try {
+            MovieTag tag = reader.getHeader();
+            while (tag != null && conversion.add(tag)) {
+                tag = reader.read();
+            }
+            conversion.finish();
+            converted = true;
+        } finally {
+            if (!converted) {
+                conversion.abort();
+            }
+        }
+        return conversion.getDocument();
+    }
+
+    /**
+     * Get the settings that control where the contents of the document are
+     * stored while it is generated.
+     *
+     * @return the memory settings for the document.
+     */
+    private MemoryUsageSetting getMemorySetting() {
+        final MemoryUsageSetting setting;
+        if (memoryLimit < 0) {
+            setting = MemoryUsageSetting.setupMainMemoryOnly();
+        } else {
+            setting = MemoryUsageSetting.setupMixed(memoryLimit);
+        }
+        if (scratchDirectory != null) {
+            setting.setTempDir(scratchDirectory);
+        }
+        return setting;
+    }
+
+    /**
+     * Is an object drawn. The definitions of other objects are discarded.
+     *
+     * @param definition the definition of the object.
+     * @return true if the object is drawn, is a font used to draw text or
+     * an image displayed by a bitmap fill.
+     */
+    private static boolean isDrawn(final DefineTag definition) {
+        return definition instanceof ShapeTag
+                || definition instanceof ImageTag
+                || definition instanceof StaticTextTag
+                || definition instanceof DefineMovieClip
+                || definition instanceof DefineFont
+                || definition instanceof DefineFont2
+                || definition instanceof DefineFont3;
+    }
+
+    /**
+     * Wait for a page to be drawn.
+     *
+     * @param task the task drawing the page.
+     * @throws IOException if an error occurred drawing the page.
+     */
+    private static void waitFor(final Future<Object> task)
+            throws IOException {
+        try {
+            task.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (final ExecutionException e) {
+            rethrow(e);
+        }
+    }
+
+    /**
+     * Conversion holds the state of the document while the objects in a
+     * movie are processed. Definitions are added to the table of objects
+     * that can be displayed and the Place and Remove commands update the
+     * display list. When a frame is shown a page is added to the document
+     * and drawn, either directly or by the executor.
+     */
+    private final class Conversion {
+        /** The document. */
+        private final transient PDDocument document;
+        /** The definitions of the objects that can be displayed. */
+        private final transient Map<Integer, DefineTag> symbols;
+        /** The objects currently displayed. */
+        private final transient DisplayList displayList;
+        /** The forms used to draw the objects. */
+        private final transient FormCache cache;
+        /** The images for the objects that are filtered. */
+        private final transient Rasterizer rasterizer;
+        /** The pages being drawn by the executor. */
+        private final transient LinkedList<Future<Object>> tasks;
+        /** The frame size of the movie. */
+        private transient Bounds bounds;
+        /** The background colour. */
+        private transient Color background;
+        /** The number of frames shown. */
+        private transient int count;
+        /** The number of pages added to the document. */
+        private transient int pages;
+
+        /** Create a Conversion with an empty document. */
+        Conversion() {
+            document = new PDDocument(getMemorySetting());
+            symbols = new ConcurrentHashMap<Integer, DefineTag>();
+            displayList = new DisplayList();
+            cache = new FormCache(document, symbols);
+            rasterizer = new Rasterizer(document, cache,
+                    resolution / TWIPS_PER_INCH, executor);
+            tasks = new LinkedList<Future<Object>>();
+        }
+
+        /**
+         * Get the document.
+         * @return the PDF document.
+         */
+        PDDocument getDocument() {
+            return document;
+        }
+
+        /**
+         * Process the next object from the movie.
+         *
+         * @param tag the object.
+         * @return true if more objects are needed, false if the frame being
+         * converted has been drawn.
+         * @throws IOException if an error occurs drawing a page.
+         */
+        boolean add(final MovieTag tag) throws IOException {
+            boolean more = true;
+
+            if (tag instanceof MovieHeader) {
+                bounds = ((MovieHeader) tag).getFrameSize();
+            } else if (tag instanceof Background) {
+                background = ((Background) tag).getColor();
+            } else if (tag instanceof DefineTag) {
+                if (isDrawn((DefineTag) tag)) {
+                    symbols.put(((DefineTag) tag).getIdentifier(),
+                            (DefineTag) tag);
+                }
+            } else if (tag instanceof JPEGEncodingTable) {
+                cache.setEncodingTable((JPEGEncodingTable) tag);
+            } else if (tag instanceof ShowFrame) {
+                count++;
+                if (allFrames) {
+                    drawFrame();
+                } else if (count == frame) {
+                    drawFrame();
+                    more = false;
+                }
+            } else {
+                displayList.update(tag);
+            }
+            return more;
+        }
+
+        /**
+         * Draw the last frame if no pages were added then wait for the
+         * executor to finish drawing the pages.
+         *
+         * @throws IOException if an error occurs drawing a page.
+         */
+        void finish() throws IOException {
+            if (pages == 0) {
+                drawFrame();
+            }
+            while (!tasks.isEmpty()) {
+                waitFor(tasks.removeFirst());
+            }
+        }
+
+        /**
+         * Cancel the pages waiting to be drawn and close the document.
+         *
+         * @throws IOException if an error occurs closing the document.
+         */
+        void abort() throws IOException {
+            for (final Future<Object> task : tasks) {
+                task.cancel(false);
+            }
+            document.close();
+        }
+
+        /**
+         * Add a page showing the objects currently displayed.
+         *
+         * @throws IOException if an error occurs drawing the page.
+         */
+        private void drawFrame() throws IOException {
+            if (bounds == null) {
+                throw new IllegalArgumentException(
+                        "Movie does not contain a MovieHeader.");
+            }
+
+            final PDPage page = new PDPage(new PDRectangle(
+                    bounds.getWidth() / TWIPS_PER_POINT,
+                    bounds.getHeight() / TWIPS_PER_POINT));
+            document.addPage(page);
+            pages++;
+
+            if (executor == null) {
+                drawPage(document, page, cache, rasterizer, bounds,
+                        background, displayList.getPlacements());
+            } else {
+                tasks.add(executor.submit(new PageTask(document, page, cache,
+                        rasterizer, bounds, background,
+                        displayList.getPlacements())));
+                while (tasks.size() > MAX_PENDING) {
+                    waitFor(tasks.removeFirst());
+                }
+            }
+        }
+    }
+
+    /**
+     * Draw the objects displayed in a frame into the content stream of a
+     * page.
+     *
+     * @param document the document containing the page.
+     * @param page the page.
+     * @param cache the forms used to draw the objects.
+     * @param rasterizer the images for the objects that are filtered.
+     * @param bounds the frame size of the movie.
+     * @param background the background colour, may be null.
+     * @param placements the objects displayed, in layer order.
+     * @throws IOException if an error occurs writing the content stream.
+     */
+    private static void drawPage(final PDDocument document,
+            final PDPage page, final FormCache cache,
+            final Rasterizer rasterizer, final Bounds bounds,
+            final Color background, final List<Placement> placements)
+            throws IOException {
+        final PDPageContentStream stream = new PDPageContentStream(
+                document, page, PDPageContentStream.AppendMode.OVERWRITE,
+                true);
+        try {
+            stream.transform(new Matrix(1 / TWIPS_PER_POINT, 0, 0,
+                    -1 / TWIPS_PER_POINT,
+                    -bounds.getMinX() / TWIPS_PER_POINT,
+                    bounds.getMaxY() / TWIPS_PER_POINT));
+
+            if (background != null) {
+                stream.setNonStrokingColor(background.getRed(),
+                        background.getGreen(), background.getBlue());
+                stream.addRect(bounds.getMinX(), bounds.getMinY(),
+                        bounds.getWidth(), bounds.getHeight());
+                stream.fill();
+            }
+            new PageRenderer(cache, rasterizer, stream).render(placements);
+        } finally {
+            stream.close();
+        }
+    }
+
+    /**
+     * Throw the exception raised when a page was drawn by the executor.
+     *
+     * @param e the exception thrown by the task.
+     * @throws IOException if the cause was an IOException or a checked
+     * exception.
+     */
+    private static void rethrow(final ExecutionException e)
+            throws IOException {
+        final Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+            throw (IOException) cause;
+        } else if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        } else if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        throw new IOException(cause);
+    }
+
+    /**
+     * PageTask draws a page so it can be submitted to an ExecutorService.
+     */
+    private static final class PageTask implements Callable<Object> {
+        /** The document containing the page. */
+        private final transient PDDocument document;
+        /** The page. */
+        private final transient PDPage page;
+        /** The forms used to draw the objects. */
+        private final transient FormCache cache;
+        /** The images for the objects that are filtered. */
+        private final transient Rasterizer rasterizer;
+        /** The frame size of the movie. */
+        private final transient Bounds bounds;
+        /** The background colour, may be null. */
+        private final transient Color background;
+        /** The objects displayed, in layer order. */
+        private final transient List<Placement> placements;
+
+        /**
+         * Create a task to draw a page.
+         *
+         * @param pdf the document containing the page.
+         * @param target the page.
+         * @param forms the forms used to draw the objects.
+         * @param images the images for the objects that are filtered.
+         * @param frameSize the frame size of the movie.
+         * @param color the background colour, may be null.
+         * @param list the objects displayed, in layer order.
+         */
+        PageTask(final PDDocument pdf, final PDPage target,
+                final FormCache forms, final Rasterizer images,
+                final Bounds frameSize, final Color color,
+                final List<Placement> list) {
+            document = pdf;
+            page = target;
+            cache = forms;
+            rasterizer = images;
+            bounds = frameSize;
+            background = color;
+            placements = list;
+        }
+
+        /** {@inheritDoc} */
+        public Object call() throws IOException {
+            drawPage(document, page, cache, rasterizer, bounds, background,
+                    placements);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,294 @@
+/*
+ * PageRenderer.java
+ * Transform
+ *
+ * Copyright (c) 2010 Flagstone Software Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of Flagstone Software Ltd. nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.flagstone.transform.util.pdf;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
+import java.io.IOException;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
+import org.apache.pdfbox.pdmodel.graphics.state.PDExtendedGraphicsState;
+import org.apache.pdfbox.util.Matrix;
+
+import com.flagstone.transform.DefineTag;
+import com.flagstone.transform.datatype.ColorTransform;
+import com.flagstone.transform.datatype.CoordTransform;
+import com.flagstone.transform.filter.Filter;
+import com.flagstone.transform.movieclip.DefineMovieClip;
+import com.flagstone.transform.shape.ShapeTag;
+
+/**
+ * <p>
+ * PageRenderer draws the objects on a display list into the content stream
+ * of a PDF page. Shapes and static text are drawn using the Form XObjects
+ * from a FormCache, with the coordinate transform for each placement, so an
+ * object displayed several times is only written to the document once. The
+ * first frame of movie clips is drawn by rendering the display list for the
+ * clip. Clipping layers are converted into clipping paths that remain in
+ * effect until the last layer they clip has been drawn.
+ * </p>
+ *
+ * <p>
+ * Objects placed with filters are drawn as images generated by a
+ * Rasterizer. Blend modes that have an equivalent in PDF are set in the
+ * graphics state, the others are drawn normally.
+ * </p>
+ *
+ * <p>
+ * All coordinates are written in twips. The transform that converts twips
+ * into points and flips the y-axis is set once by the PDFConverter at the
+ * start of the page.
+ * </p>
+ */
+final class PageRenderer {
+
+    /** The maximum depth of nested movie clips that will be drawn. */
+    private static final int MAX_NESTING = 32;
+
+    /**
+     * Combine the colour transform applied to an object with the one applied
+     * to the movie clip that contains it.
+     *
+     * @param outer the colour transform for the movie clip, may be null.
+     * @param inner the colour transform for the object, may be null.
+     * @return the combined transform or null if neither is defined.
+     */
+    static ColorTransform compose(final ColorTransform outer,
+            final ColorTransform inner) {
+        final ColorTransform result;
+        if (outer == null) {
+            result = inner;
+        } else if (inner == null) {
+            result = outer;
+        } else {
+            result = new ColorTransform(
+                Math.round(outer.getMultiplyRed() * inner.getAddRed())
+                        + outer.getAddRed(),
+                Math.round(outer.getMultiplyGreen() * inner.getAddGreen())
+                        + outer.getAddGreen(),
+                Math.round(outer.getMultiplyBlue() * inner.getAddBlue())
+                        + outer.getAddBlue(),
+                Math.round(outer.getMultiplyAlpha() * inner.getAddAlpha())
+                        + outer.getAddAlpha(),
+                outer.getMultiplyRed() * inner.getMultiplyRed(),
+                outer.getMultiplyGreen() * inner.getMultiplyGreen(),
+                outer.getMultiplyBlue() * inner.getMultiplyBlue(),
+                outer.getMultiplyAlpha() * inner.getMultiplyAlpha());
+        }
+        return result;
+    }
+
+    /** The definitions and forms for the objects that can be displayed. */
+    private final transient FormCache cache;
+    /** The images for the objects that are filtered. */
+    private final transient Rasterizer rasterizer;
+    /** The content stream for the page. */
+    private final transient PDPageContentStream stream;
+
+    /**
+     * Create a PageRenderer.
+     *
+     * @param formCache the cache containing the definitions of the objects
+     * and the forms used to draw them.
+     * @param images the Rasterizer that generates the images for objects
+     * that are filtered.
+     * @param contents the content stream for the page.
+     */
+    PageRenderer(final FormCache formCache, final Rasterizer images,
+            final PDPageContentStream contents) {
+        cache = formCache;
+        rasterizer = images;
+        stream = contents;
+    }
+
+    /**
+     * Draw the objects on a display list.
+     *
+     * @param list the objects displayed, in layer order.
+     * @throws IOException if an error occurs writing to the content stream.
+     */
+    void render(final List<Placement> list) throws IOException {
+        render(list, null, new AffineTransform(), 0);
+    }
+
+    /**
+     * Draw the objects on a display list.
+     *
+     * @param list the objects displayed, in layer order.
+     * @param color the colour transform applied to the movie clip that
+     * contains the display list, may be null.
+     * @param base the transform from the movie clip to the page.
+     * @param nesting the number of movie clips that contain the list.
+     * @throws IOException if an error occurs writing to the content stream.
+     */
+    private void render(final List<Placement> list, final ColorTransform color,
+            final AffineTransform base, final int nesting)
+            throws IOException {
+        final LinkedList<Integer> clips = new LinkedList<Integer>();
+        DefineTag definition;
+        AffineTransform transform;
+        PDExtendedGraphicsState blend;
+
+        for (final Placement placement : list) {
+            while (!clips.isEmpty() && placement.getLayer() > clips.peek()) {
+                clips.pop();
+                stream.restoreGraphicsState();
+            }
+
+            definition = cache.getDefinition(placement.getIdentifier());
+
+            if (definition == null) {
+                continue;
+            }
+
+            if (placement.getDepth() == null) {
+                transform = new AffineTransform(base);
+                transform.concatenate(StreamPath.toTransform(
+                        placement.getTransform()));
+                stream.saveGraphicsState();
+                blend = cache.getBlend(placement.getBlend());
+                if (blend != null) {
+                    stream.setGraphicsStateParameters(blend);
+                }
+                if (Rasterizer.isFiltered(placement.getFilters())) {
+                    drawBitmap(definition,
+                            compose(color, placement.getColorTransform()),
+                            placement.getFilters(), base, transform);
+                } else {
+                    if (placement.getTransform() != null) {
+                        stream.transform(StreamPath.toMatrix(
+                                placement.getTransform()));
+                    }
+                    draw(definition,
+                            compose(color, placement.getColorTransform()),
+                            transform, nesting);
+                }
+                stream.restoreGraphicsState();
+            } else {
+                stream.saveGraphicsState();
+                clip(definition, placement.getTransform());
+                clips.push(placement.getDepth());
+            }
+        }
+
+        while (!clips.isEmpty()) {
+            clips.pop();
+            stream.restoreGraphicsState();
+        }
+    }
+
+    /**
+     * Draw an object.
+     *
+     * @param definition the definition of the object.
+     * @param color the colour transform applied to the object, may be null.
+     * @param transform the transform from the object to the page.
+     * @param nesting the number of movie clips that contain the object.
+     * @throws IOException if an error occurs writing to the content stream.
+     */
+    private void draw(final DefineTag definition, final ColorTransform color,
+            final AffineTransform transform, final int nesting)
+            throws IOException {
+        if (definition instanceof DefineMovieClip) {
+            if (nesting < MAX_NESTING) {
+                render(DisplayList.getFirstFrame(
+                        (DefineMovieClip) definition), color, transform,
+                        nesting + 1);
+            }
+        } else {
+            final PDFormXObject form = cache.getForm(definition, color);
+            if (form != null) {
+                stream.drawForm(form);
+            }
+        }
+    }
+
+    /**
+     * Draw an object as an image with its filters applied. The image is
+     * aligned with the page so the transforms of the movie clips containing
+     * the object are undone before it is drawn.
+     *
+     * @param definition the definition of the object.
+     * @param color the colour transform applied to the object, may be null.
+     * @param filters the filters applied to the object.
+     * @param base the transform from the movie clip containing the object to
+     * the page.
+     * @param transform the transform from the object to the page.
+     * @throws IOException if an error occurs writing to the content stream.
+     */
+    private void drawBitmap(final DefineTag definition,
+            final ColorTransform color, final List<Filter> filters,
+            final AffineTransform base, final AffineTransform transform)
+            throws IOException {
+        final AffineTransform inverse;
+        try {
+            inverse = base.createInverse();
+        } catch (final NoninvertibleTransformException e) {
+            return;
+        }
+        final Rasterizer.Bitmap bitmap = rasterizer.getBitmap(definition,
+                transform, color, filters);
+        if (bitmap != null) {
+            final float[] bounds = bitmap.getBounds();
+            stream.transform(new Matrix(inverse));
+            stream.drawImage(bitmap.getImage(), new Matrix(bounds[2], 0, 0,
+                    -bounds[3], (float) transform.getTranslateX() + bounds[0],
+                    (float) transform.getTranslateY() + bounds[1]
+                            + bounds[3]));
+        }
+    }
+
+    /**
+     * Set the clipping path to the outline of a shape. Objects other than
+     * shapes do not change the clipping path.
+     *
+     * @param definition the definition of the object used to clip others.
+     * @param transform the coordinate transform for the object.
+     * @throws IOException if an error occurs writing to the content stream.
+     */
+    private void clip(final DefineTag definition,
+            final CoordTransform transform) throws IOException {
+        if (definition instanceof ShapeTag) {
+            final ShapePath path = cache.getPath((ShapeTag) definition);
+            if (path.isEmpty()) {
+                stream.addRect(0, 0, 0, 0);
+            } else {
+                path.outline(new StreamPath(stream,
+                        StreamPath.matrix(transform), null));
+            }
+            stream.clip();
+        }
+    }
+}
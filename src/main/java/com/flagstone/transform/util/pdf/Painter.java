@@ -0,0 +1,689 @@
+/*
+ * Painter.java
+ * Transform
+ *
+ * Copyright (c) 2010 Flagstone Software Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of Flagstone Software Ltd. nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.flagstone.transform.util.pdf;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.graphics.color.PDColor;
+import org.apache.pdfbox.pdmodel.graphics.color.PDPattern;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.apache.pdfbox.pdmodel.graphics.pattern.PDTilingPattern;
+import org.apache.pdfbox.util.Matrix;
+
+import com.flagstone.transform.datatype.Color;
+import com.flagstone.transform.datatype.ColorTransform;
+import com.flagstone.transform.datatype.CoordTransform;
+import com.flagstone.transform.fillstyle.BitmapFill;
+import com.flagstone.transform.fillstyle.FillStyle;
+import com.flagstone.transform.fillstyle.FocalGradientFill;
+import com.flagstone.transform.fillstyle.Gradient;
+import com.flagstone.transform.fillstyle.GradientFill;
+import com.flagstone.transform.fillstyle.SolidFill;
+import com.flagstone.transform.linestyle.CapStyle;
+import com.flagstone.transform.linestyle.JoinStyle;
+import com.flagstone.transform.linestyle.LineStyle;
+import com.flagstone.transform.linestyle.LineStyle1;
+import com.flagstone.transform.linestyle.LineStyle2;
+import com.flagstone.transform.text.GlyphIndex;
+import com.flagstone.transform.text.StaticTextTag;
+import com.flagstone.transform.text.TextSpan;
+
+/**
+ * <p>
+ * Painter draws the areas and lines in a shape, or the glyphs in a block of
+ * static text, into a content stream, setting the colours, transparency and
+ * line styles as it goes. The colours are adjusted by the colour transform
+ * applied to the object so the result can be cached and reused for every
+ * placement that uses the same transform.
+ * </p>
+ *
+ * <p>
+ * Gradients are drawn by clipping to the area filled and painting a shading
+ * in the coordinates of the gradient square. Bitmaps are drawn as images,
+ * clipped to the area filled, or as tiling patterns when the bitmap is
+ * repeated.
+ * </p>
+ *
+ * <p>
+ * Painters write into the content streams of Form XObjects which are drawn
+ * with the graphics state in effect on the page. Since the page never changes
+ * the transparency, the painter starts with the alpha level fully opaque.
+ * </p>
+ */
+final class Painter {
+
+    /** The maximum value for a colour channel. */
+    private static final int MAX_LEVEL = 255;
+    /** The line cap used in PDF for CapStyle.NONE. */
+    private static final int BUTT_CAP = 0;
+    /** The line cap used in PDF for CapStyle.ROUND. */
+    private static final int ROUND_CAP = 1;
+    /** The line cap used in PDF for CapStyle.SQUARE. */
+    private static final int SQUARE_CAP = 2;
+    /** The line join used in PDF for JoinStyle.MITER. */
+    private static final int MITER_JOIN = 0;
+    /** The line join used in PDF for JoinStyle.ROUND. */
+    private static final int ROUND_JOIN = 1;
+    /** The line join used in PDF for JoinStyle.BEVEL. */
+    private static final int BEVEL_JOIN = 2;
+    /** Factor for converting the 8.8 fixed point miter limit. */
+    private static final float MITER_SCALE = 256.0f;
+    /** Units for the adjustments in a TJ operator. */
+    private static final float THOUSANDTHS = 1000.0f;
+    /** Digits used to write character codes. */
+    private static final String HEX_DIGITS = "0123456789ABCDEF";
+    /** Shift for the upper digit of a character code. */
+    private static final int NIBBLE = 4;
+    /** Mask for the lower digit of a character code. */
+    private static final int LOW_NIBBLE = 0x0F;
+
+    /**
+     * Apply a colour transform to a colour channel.
+     *
+     * @param level the value of the channel.
+     * @param multiply the multiply term of the transform.
+     * @param add the add term of the transform.
+     * @return the transformed value, clamped to the range 0..255.
+     */
+    static int channel(final int level, final float multiply,
+            final int add) {
+        final int value = Math.round(level * multiply) + add;
+        return Math.max(0, Math.min(MAX_LEVEL, value));
+    }
+
+    /**
+     * Get the colour used to fill an area or line when a gradient cannot be
+     * drawn. Gradients are drawn using the colour of the first control
+     * point.
+     *
+     * @param style the fill style.
+     * @return the colour or null if the area is not drawn.
+     */
+    static Color color(final FillStyle style) {
+        Color color = null;
+        List<Gradient> gradients = null;
+
+        if (style instanceof SolidFill) {
+            color = ((SolidFill) style).getColor();
+        } else if (style instanceof GradientFill) {
+            gradients = ((GradientFill) style).getGradients();
+        } else if (style instanceof FocalGradientFill) {
+            gradients = ((FocalGradientFill) style).getGradients();
+        }
+        if (gradients != null && !gradients.isEmpty()) {
+            color = gradients.get(0).getColor();
+        }
+        return color;
+    }
+
+    /**
+     * Convert a cap style into the value used in PDF.
+     * @param style the cap style, may be null.
+     * @return the PDF line cap.
+     */
+    private static int capStyle(final CapStyle style) {
+        final int cap;
+        if (style == CapStyle.NONE) {
+            cap = BUTT_CAP;
+        } else if (style == CapStyle.SQUARE) {
+            cap = SQUARE_CAP;
+        } else {
+            cap = ROUND_CAP;
+        }
+        return cap;
+    }
+
+    /**
+     * Convert a join style into the value used in PDF.
+     * @param style the join style, may be null.
+     * @return the PDF line join.
+     */
+    private static int joinStyle(final JoinStyle style) {
+        final int join;
+        if (style == JoinStyle.MITER) {
+            join = MITER_JOIN;
+        } else if (style == JoinStyle.BEVEL) {
+            join = BEVEL_JOIN;
+        } else {
+            join = ROUND_JOIN;
+        }
+        return join;
+    }
+
+    /** The content stream. */
+    private final transient PDPageContentStream stream;
+    /** The resources for the content stream. */
+    private final transient PDResources resources;
+    /** The cache that supplies fonts and graphics states. */
+    private final transient FormCache cache;
+    /** The area covered: min x, min y, max x, max y. */
+    private final transient float[] extent;
+    /** Path used when the points do not need to be transformed. */
+    private final transient StreamPath identity;
+    /** The width of the widest line drawn. */
+    private transient int maxWidth;
+    /** The alpha level currently set in the content stream. */
+    private transient int alpha;
+
+    /**
+     * Create a Painter.
+     *
+     * @param contents the content stream.
+     * @param dictionary the resources for the content stream.
+     * @param formCache the cache that supplies the fonts and the graphics
+     * states used to set the transparency.
+     */
+    Painter(final PDPageContentStream contents, final PDResources dictionary,
+            final FormCache formCache) {
+        stream = contents;
+        resources = dictionary;
+        cache = formCache;
+        extent = new float[] {Float.MAX_VALUE, Float.MAX_VALUE,
+                -Float.MAX_VALUE, -Float.MAX_VALUE};
+        identity = new StreamPath(stream, StreamPath.matrix(null), extent);
+        alpha = MAX_LEVEL;
+    }
+
+    /**
+     * Get the area covered by everything drawn, including the width of the
+     * lines.
+     *
+     * @return the bounding box or an empty rectangle if nothing was drawn.
+     */
+    PDRectangle getBounds() {
+        final PDRectangle bounds;
+        if (extent[0] > extent[2]) {
+            bounds = new PDRectangle(0, 0);
+        } else {
+            bounds = new PDRectangle(extent[0] - maxWidth,
+                    extent[1] - maxWidth,
+                    extent[2] - extent[0] + 2 * maxWidth,
+                    extent[3] - extent[1] + 2 * maxWidth);
+        }
+        return bounds;
+    }
+
+    /**
+     * Draw the areas and lines in a shape.
+     *
+     * @param path the path generated for the shape.
+     * @param color the colour transform applied to the shape, may be null.
+     * @throws IOException if an error occurs writing to the content stream.
+     */
+    void drawShape(final ShapePath path, final ColorTransform color)
+            throws IOException {
+        FillStyle style;
+        GradientShading gradient;
+        Color fill;
+
+        for (final ShapePath.Group group : path.getGroups()) {
+            for (final Map.Entry<Integer, List<ShapePath.Edge>> entry
+                    : group.getFills().entrySet()) {
+                style = group.getFillStyle(entry.getKey());
+                gradient = GradientShading.create(style, color);
+                if (style instanceof BitmapFill) {
+                    drawBitmap((BitmapFill) style, entry.getValue(), color);
+                } else if (gradient == null || !drawGradient(gradient,
+                        GradientShading.getTransform(style),
+                        entry.getValue())) {
+                    fill = color(style);
+                    if (fill != null) {
+                        setFillColor(fill, color);
+                        ShapePath.fill(entry.getValue(), identity);
+                        stream.fill();
+                    }
+                }
+            }
+            for (final Map.Entry<Integer, List<ShapePath.Edge>> entry
+                    : group.getLines().entrySet()) {
+                if (setLineStyle(group.getLineStyle(entry.getKey()), color)) {
+                    ShapePath.stroke(entry.getValue(), identity);
+                    stream.stroke();
+                }
+            }
+        }
+    }
+
+    /**
+     * Draw a gradient, clipped to the area being filled. If the alpha level
+     * varies between the control points a soft mask is used, otherwise the
+     * transparency is set directly.
+     *
+     * @param gradient the shading for the gradient.
+     * @param transform the transform that maps the gradient square onto the
+     * shape, may be null.
+     * @param edges the edges that enclose the area.
+     * @return false if the transform cannot be inverted so the gradient
+     * could not be drawn.
+     * @throws IOException if an error occurs writing to the content stream.
+     */
+    private boolean drawGradient(final GradientShading gradient,
+            final CoordTransform transform, final List<ShapePath.Edge> edges)
+            throws IOException {
+        final Matrix matrix = StreamPath.toMatrix(transform);
+        if (matrix.getScaleX() * matrix.getScaleY()
+                == matrix.getShearX() * matrix.getShearY()) {
+            return false;
+        }
+        final int level = alpha;
+        final int opacity = gradient.getAlpha();
+
+        stream.saveGraphicsState();
+        ShapePath.fill(edges, identity);
+        stream.clip();
+        stream.transform(matrix);
+        if (opacity < 0) {
+            setAlpha(MAX_LEVEL);
+            stream.setGraphicsStateParameters(cache.getMask(gradient));
+        } else {
+            setAlpha(opacity);
+        }
+        stream.shadingFill(cache.getShading(gradient));
+        stream.restoreGraphicsState();
+        alpha = level;
+        return true;
+    }
+
+    /**
+     * Draw the image displayed by a bitmap fill. Clipped bitmaps are drawn
+     * once, clipped to the area being filled. Tiled bitmaps are drawn by
+     * filling the area with a tiling pattern. The image occupies one twip
+     * for each pixel before the fill's coordinate transform is applied. The
+     * colour transform only changes the transparency since the image data
+     * is embedded unchanged.
+     *
+     * @param style the bitmap fill.
+     * @param edges the edges that enclose the area.
+     * @param color the colour transform, may be null.
+     * @throws IOException if an error occurs writing to the content stream.
+     */
+    private void drawBitmap(final BitmapFill style,
+            final List<ShapePath.Edge> edges, final ColorTransform color)
+            throws IOException {
+        final PDImageXObject image = cache.getImage(style.getIdentifier());
+        if (image == null) {
+            return;
+        }
+        final int level = alpha;
+
+        stream.saveGraphicsState();
+        if (color == null) {
+            setAlpha(MAX_LEVEL);
+        } else {
+            setAlpha(channel(MAX_LEVEL, color.getMultiplyAlpha(),
+                    color.getAddAlpha()));
+        }
+        ShapePath.fill(edges, identity);
+        if (style.isTiled()) {
+            stream.setNonStrokingColor(new PDColor(
+                    createPattern(image, style.getTransform()),
+                    new PDPattern(null)));
+            stream.fill();
+        } else {
+            stream.clip();
+            stream.transform(StreamPath.toMatrix(style.getTransform()));
+            stream.drawImage(image, new Matrix(image.getWidth(), 0, 0,
+                    -image.getHeight(), 0, image.getHeight()));
+        }
+        stream.restoreGraphicsState();
+        alpha = level;
+    }
+
+    /**
+     * Create a tiling pattern that repeats an image, adding it to the
+     * resources for the content stream.
+     *
+     * @param image the image.
+     * @param transform the coordinate transform from the bitmap fill, may
+     * be null.
+     * @return the name of the pattern in the resources.
+     * @throws IOException if an error occurs writing the pattern.
+     */
+    private COSName createPattern(final PDImageXObject image,
+            final CoordTransform transform) throws IOException {
+        final int width = image.getWidth();
+        final int height = image.getHeight();
+        final PDTilingPattern pattern = new PDTilingPattern();
+        final PDResources patternResources = new PDResources();
+        final COSName name = patternResources.add(image);
+
+        pattern.setPaintType(PDTilingPattern.PAINT_COLORED);
+        pattern.setTilingType(PDTilingPattern.TILING_CONSTANT_SPACING);
+        pattern.setBBox(new PDRectangle(width, height));
+        pattern.setXStep(width);
+        pattern.setYStep(height);
+        pattern.setMatrix(StreamPath.toMatrix(transform)
+                .createAffineTransform());
+        pattern.setResources(patternResources);
+
+        final OutputStream out = pattern.getContentStream()
+                .createOutputStream();
+        try {
+            out.write(String.format("q %d 0 0 %d 0 %d cm /%s Do Q\n", width,
+                    -height, height, name.getName()).getBytes("US-ASCII"));
+        } finally {
+            out.close();
+        }
+        return resources.add(pattern);
+    }
+
+    /**
+     * Draw the glyphs in a block of static text using the Type 3 fonts
+     * generated for the fonts in the movie. The position of each glyph is
+     * set explicitly, using the advances from the text, with the adjustments
+     * in a TJ operator.
+     *
+     * @param text the text definition.
+     * @param color the colour transform applied to the text, may be null.
+     * @throws IOException if an error occurs writing to the content stream.
+     */
+    @SuppressWarnings("deprecation")
+    void drawText(final StaticTextTag text, final ColorTransform color)
+            throws IOException {
+        final float[] base = StreamPath.matrix(text.getTransform());
+        final StringBuilder glyphs = new StringBuilder();
+        Type3Font font = null;
+        COSDictionary current = null;
+        COSDictionary selected;
+        Color textColor = null;
+        int xCoord = 0;
+        int yCoord = 0;
+        int height = 0;
+        float emSize = 1.0f;
+        float shift;
+        int glyph;
+        int adjust;
+        boolean open;
+
+        stream.beginText();
+
+        for (final TextSpan span : text.getSpans()) {
+            if (span.getIdentifier() != null) {
+                font = cache.getFont(span.getIdentifier());
+                emSize = font == null ? 1.0f : font.getGlyphs().getEmSize();
+            }
+            if (span.getColor() != null) {
+                textColor = span.getColor();
+            }
+            if (span.getOffsetX() != null) {
+                xCoord = span.getOffsetX();
+            }
+            if (span.getOffsetY() != null) {
+                yCoord = span.getOffsetY();
+            }
+            if (span.getHeight() != null) {
+                height = span.getHeight();
+            }
+
+            if (font == null || textColor == null || height == 0) {
+                for (final GlyphIndex index : span.getCharacters()) {
+                    xCoord += index.getAdvance();
+                }
+                continue;
+            }
+
+            setFillColor(textColor, color);
+            stream.setTextMatrix(new Matrix(base[0], base[1], base[2],
+                    base[3], base[0] * xCoord + base[2] * yCoord + base[4],
+                    base[1] * xCoord + base[3] * yCoord + base[5]));
+            current = null;
+            shift = 0.0f;
+            open = false;
+
+            for (final GlyphIndex index : span.getCharacters()) {
+                glyph = index.getGlyphIndex();
+                selected = font.getFont(glyph);
+
+                if (selected == null) {
+                    shift -= index.getAdvance() * THOUSANDTHS / height;
+                } else {
+                    if (selected != current) {
+                        if (current != null) {
+                            glyphs.append(open ? ">]TJ\n" : "]TJ\n");
+                        }
+                        glyphs.append(fontName(selected)).append(' ')
+                            .append(height).append(" Tf\n[");
+                        current = selected;
+                        open = false;
+                    }
+                    adjust = Math.round(shift);
+                    if (adjust != 0) {
+                        glyphs.append(open ? ">" : "").append(adjust)
+                            .append('<');
+                        shift -= adjust;
+                        open = true;
+                    } else if (!open) {
+                        glyphs.append('<');
+                        open = true;
+                    }
+                    hex(glyphs, font.getCode(glyph));
+                    include(font, glyph, base, xCoord, yCoord, height);
+                    shift += (font.getGlyphs().getAdvance(glyph) / emSize
+                            - (float) index.getAdvance() / height)
+                            * THOUSANDTHS;
+                }
+                xCoord += index.getAdvance();
+            }
+            if (current != null) {
+                glyphs.append(open ? ">]TJ\n" : "]TJ\n");
+                stream.appendRawCommands(glyphs.toString());
+            }
+            glyphs.setLength(0);
+        }
+        stream.endText();
+    }
+
+    /**
+     * Get the name used to select a font in the content stream, adding the
+     * font to the resources the first time it is used.
+     *
+     * @param font the font dictionary.
+     * @return the name of the font, including the leading slash.
+     */
+    private String fontName(final COSDictionary font) {
+        COSDictionary fonts = (COSDictionary) resources.getCOSObject()
+                .getDictionaryObject(COSName.FONT);
+        if (fonts == null) {
+            fonts = new COSDictionary();
+            resources.getCOSObject().setItem(COSName.FONT, fonts);
+        }
+        for (final COSName key : fonts.keySet()) {
+            if (fonts.getDictionaryObject(key) == font) {
+                return "/" + key.getName();
+            }
+        }
+        final String name = "F" + (fonts.size() + 1);
+        fonts.setItem(name, font);
+        return "/" + name;
+    }
+
+    /**
+     * Write a character code as two hexadecimal digits.
+     * @param out the buffer for the codes.
+     * @param code the character code, 0 - 255.
+     */
+    private static void hex(final StringBuilder out, final int code) {
+        out.append(HEX_DIGITS.charAt(code >>> NIBBLE))
+            .append(HEX_DIGITS.charAt(code & LOW_NIBBLE));
+    }
+
+    /**
+     * Expand the area covered to include the bounding box of a glyph.
+     *
+     * @param font the font containing the glyph.
+     * @param glyph the position of the glyph in the font.
+     * @param base the transform for the text.
+     * @param xCoord the x-coordinate of the origin of the glyph.
+     * @param yCoord the y-coordinate of the origin of the glyph.
+     * @param height the size of the font.
+     * @throws IOException if the glyph cannot be decoded.
+     */
+    private void include(final Type3Font font, final int glyph,
+            final float[] base, final int xCoord, final int yCoord,
+            final int height) throws IOException {
+        final int[] box = font.getGlyphs().getGlyph(glyph).getBounds();
+        if (box[0] < box[2]) {
+            final float scale = height / font.getGlyphs().getEmSize();
+            float xPos;
+            float yPos;
+            for (int i = 0; i < 4; i += 2) {
+                for (int j = 1; j < 4; j += 2) {
+                    xPos = xCoord + box[i] * scale;
+                    yPos = yCoord + box[j] * scale;
+                    include(base[0] * xPos + base[2] * yPos + base[4],
+                            base[1] * xPos + base[3] * yPos + base[5]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Expand the area covered to include a point.
+     * @param xCoord the x-coordinate.
+     * @param yCoord the y-coordinate.
+     */
+    private void include(final float xCoord, final float yCoord) {
+        extent[0] = Math.min(extent[0], xCoord);
+        extent[1] = Math.min(extent[1], yCoord);
+        extent[2] = Math.max(extent[2], xCoord);
+        extent[3] = Math.max(extent[3], yCoord);
+    }
+
+    /**
+     * Set the colour and transparency used to fill areas.
+     *
+     * @param fill the colour.
+     * @param color the colour transform, may be null.
+     * @throws IOException if an error occurs writing to the content stream.
+     */
+    private void setFillColor(final Color fill, final ColorTransform color)
+            throws IOException {
+        if (color == null) {
+            stream.setNonStrokingColor(fill.getRed(), fill.getGreen(),
+                    fill.getBlue());
+            setAlpha(fill.getAlpha());
+        } else {
+            stream.setNonStrokingColor(
+                channel(fill.getRed(), color.getMultiplyRed(),
+                        color.getAddRed()),
+                channel(fill.getGreen(), color.getMultiplyGreen(),
+                        color.getAddGreen()),
+                channel(fill.getBlue(), color.getMultiplyBlue(),
+                        color.getAddBlue()));
+            setAlpha(channel(fill.getAlpha(), color.getMultiplyAlpha(),
+                    color.getAddAlpha()));
+        }
+    }
+
+    /**
+     * Set the colour, transparency, width, caps and joins used to stroke
+     * lines.
+     *
+     * @param style the line style.
+     * @param color the colour transform, may be null.
+     * @return true if the lines should be drawn, false if the style is not
+     * defined or uses a fill that cannot be drawn.
+     * @throws IOException if an error occurs writing to the content stream.
+     */
+    private boolean setLineStyle(final LineStyle style,
+            final ColorTransform color) throws IOException {
+        final Color line;
+        final int width;
+        int cap = ROUND_CAP;
+        int join = ROUND_JOIN;
+        float limit = 0.0f;
+
+        if (style instanceof LineStyle1) {
+            line = ((LineStyle1) style).getColor();
+            width = ((LineStyle1) style).getWidth();
+        } else if (style instanceof LineStyle2) {
+            final LineStyle2 style2 = (LineStyle2) style;
+            line = style2.getFillStyle() == null ? style2.getColor()
+                    : color(style2.getFillStyle());
+            width = style2.getWidth();
+            cap = capStyle(style2.getStartCap());
+            join = joinStyle(style2.getJoinStyle());
+            limit = style2.getMiterLimit() / MITER_SCALE;
+        } else {
+            return false;
+        }
+
+        if (line == null) {
+            return false;
+        }
+
+        if (color == null) {
+            stream.setStrokingColor(line.getRed(), line.getGreen(),
+                    line.getBlue());
+            setAlpha(line.getAlpha());
+        } else {
+            stream.setStrokingColor(
+                channel(line.getRed(), color.getMultiplyRed(),
+                        color.getAddRed()),
+                channel(line.getGreen(), color.getMultiplyGreen(),
+                        color.getAddGreen()),
+                channel(line.getBlue(), color.getMultiplyBlue(),
+                        color.getAddBlue()));
+            setAlpha(channel(line.getAlpha(), color.getMultiplyAlpha(),
+                    color.getAddAlpha()));
+        }
+        stream.setLineWidth(width);
+        stream.setLineCapStyle(cap);
+        stream.setLineJoinStyle(join);
+        if (join == MITER_JOIN && limit >= 1.0f) {
+            stream.setMiterLimit(limit);
+        }
+        maxWidth = Math.max(maxWidth, width);
+        return true;
+    }
+
+    /**
+     * Set the transparency used for filling and stroking.
+     *
+     * @param level the alpha level, 0 - 255.
+     * @throws IOException if an error occurs writing to the content stream.
+     */
+    private void setAlpha(final int level) throws IOException {
+        if (level != alpha) {
+            stream.setGraphicsStateParameters(cache.getAlpha(level));
+            alpha = level;
+        }
+    }
+}
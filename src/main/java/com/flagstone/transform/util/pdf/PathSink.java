@@ -0,0 +1,77 @@
+/*
+ * PathSink.java
+ * Transform
+ *
+ * Copyright (c) 2010 Flagstone Software Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of Flagstone Software Ltd. nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.flagstone.transform.util.pdf;
+
+import java.io.IOException;
+
+/**
+ * PathSink receives the outline of a path traced by a ShapePath. Coordinates
+ * are specified in twips, in the coordinate space of the shape.
+ */
+interface PathSink {
+    /**
+     * Start a new sub-path at the specified point.
+     *
+     * @param xCoord the x-coordinate of the point.
+     * @param yCoord the y-coordinate of the point.
+     * @throws IOException if the path cannot be written.
+     */
+    void moveTo(int xCoord, int yCoord) throws IOException;
+
+    /**
+     * Draw a straight line from the current point.
+     *
+     * @param xCoord the x-coordinate of the end of the line.
+     * @param yCoord the y-coordinate of the end of the line.
+     * @throws IOException if the path cannot be written.
+     */
+    void lineTo(int xCoord, int yCoord) throws IOException;
+
+    /**
+     * Draw a quadratic Bezier curve from the current point.
+     *
+     * @param controlX the x-coordinate of the control point.
+     * @param controlY the y-coordinate of the control point.
+     * @param anchorX the x-coordinate of the end of the curve.
+     * @param anchorY the y-coordinate of the end of the curve.
+     * @throws IOException if the path cannot be written.
+     */
+    void quadTo(int controlX, int controlY, int anchorX, int anchorY)
+            throws IOException;
+
+    /**
+     * Close the current sub-path.
+     *
+     * @throws IOException if the path cannot be written.
+     */
+    void closePath() throws IOException;
+}
@@ -0,0 +1,163 @@
+/*
+ * Placement.java
+ * Transform
+ *
+ * Copyright (c) 2010 Flagstone Software Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of Flagstone Software Ltd. nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.flagstone.transform.util.pdf;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.flagstone.transform.datatype.Blend;
+import com.flagstone.transform.datatype.ColorTransform;
+import com.flagstone.transform.datatype.CoordTransform;
+import com.flagstone.transform.filter.Filter;
+
+/**
+ * Placement describes an object on a given layer of the display list. Objects
+ * are immutable so the display list can be copied for each frame without
+ * copying the entries.
+ */
+final class Placement {
+
+    /** The layer number. */
+    private final transient int layer;
+    /** The unique identifier of the object displayed. */
+    private final transient int identifier;
+    /** The position and orientation of the object. */
+    private final transient CoordTransform transform;
+    /** The change in colour applied to the object. */
+    private final transient ColorTransform colorTransform;
+    /** The layer number of the last object clipped by this one. */
+    private final transient Integer depth;
+    /** The filters applied to the object. */
+    private final transient List<Filter> filters;
+    /** How the object is blended with the objects below it. */
+    private final transient Blend blend;
+
+    /**
+     * Create a Placement.
+     *
+     * @param level the layer number.
+     * @param uid the unique identifier of the object displayed.
+     * @param coord the position and orientation of the object, may be null.
+     * @param color the colour transform, may be null.
+     * @param clip the layer number of the last object clipped by this one
+     * or null if the object is displayed normally.
+     */
+    Placement(final int level, final int uid, final CoordTransform coord,
+            final ColorTransform color, final Integer clip) {
+        this(level, uid, coord, color, clip, null, null);
+    }
+
+    /**
+     * Create a Placement for an object that is filtered or blended.
+     *
+     * @param level the layer number.
+     * @param uid the unique identifier of the object displayed.
+     * @param coord the position and orientation of the object, may be null.
+     * @param color the colour transform, may be null.
+     * @param clip the layer number of the last object clipped by this one
+     * or null if the object is displayed normally.
+     * @param list the filters applied to the object, may be null.
+     * @param mode the blend mode, may be null.
+     */
+    Placement(final int level, final int uid, final CoordTransform coord,
+            final ColorTransform color, final Integer clip,
+            final List<Filter> list, final Blend mode) {
+        layer = level;
+        identifier = uid;
+        transform = coord;
+        colorTransform = color;
+        depth = clip;
+        if (list == null || list.isEmpty()) {
+            filters = Collections.emptyList();
+        } else {
+            filters = list;
+        }
+        blend = mode;
+    }
+
+    /**
+     * Get the layer number.
+     * @return the layer on the display list.
+     */
+    int getLayer() {
+        return layer;
+    }
+
+    /**
+     * Get the unique identifier of the object displayed.
+     * @return the identifier of the definition.
+     */
+    int getIdentifier() {
+        return identifier;
+    }
+
+    /**
+     * Get the position and orientation of the object.
+     * @return the coordinate transform or null if none was specified.
+     */
+    CoordTransform getTransform() {
+        return transform;
+    }
+
+    /**
+     * Get the change in colour applied to the object.
+     * @return the colour transform or null if none was specified.
+     */
+    ColorTransform getColorTransform() {
+        return colorTransform;
+    }
+
+    /**
+     * Get the layer number of the last object clipped by this one.
+     * @return the depth or null if the object is not used to clip others.
+     */
+    Integer getDepth() {
+        return depth;
+    }
+
+    /**
+     * Get the filters applied to the object.
+     * @return the filters, in the order they are applied. The list is empty
+     * if the object is not filtered.
+     */
+    List<Filter> getFilters() {
+        return filters;
+    }
+
+    /**
+     * Get how the object is blended with the objects below it.
+     * @return the blend mode or null if none was specified.
+     */
+    Blend getBlend() {
+        return blend;
+    }
+}
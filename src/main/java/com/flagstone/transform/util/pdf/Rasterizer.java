@@ -0,0 +1,640 @@
+/*
+ * Rasterizer.java
+ * Transform
+ *
+ * Copyright (c) 2010 Flagstone Software Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of Flagstone Software Ltd. nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package com.flagstone.transform.util.pdf;
+
+import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.graphics.image.LosslessFactory;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+
+import com.flagstone.transform.Constants;
+import com.flagstone.transform.DefineTag;
+import com.flagstone.transform.datatype.Color;
+import com.flagstone.transform.datatype.ColorTransform;
+import com.flagstone.transform.filter.BlurFilter;
+import com.flagstone.transform.filter.ColorMatrixFilter;
+import com.flagstone.transform.filter.DropShadowFilter;
+import com.flagstone.transform.filter.Filter;
+import com.flagstone.transform.filter.FilterMode;
+import com.flagstone.transform.filter.GlowFilter;
+
+/**
+ * <p>
+ * Rasterizer draws objects that cannot be displayed using the vector
+ * graphics in PDF into images. It is used for objects placed with filters:
+ * the object is drawn using an ImagePainter, the filters are applied to the
+ * pixels and the result is added to the document as an image.
+ * </p>
+ *
+ * <p>
+ * The image covers the area of the object, expanded by the width of any
+ * blurs and shadows, in the coordinate space of the page so filters are
+ * applied along the axes of the page. The resolution is limited so the
+ * width and height are never more than 4096 pixels. Large images are drawn
+ * as a set of tiles, 256 pixels square, and if an ExecutorService is set
+ * the tiles are drawn concurrently. The thread that requested the image
+ * also draws tiles so the tiles are completed even when all the threads
+ * belonging to the executor are busy drawing pages.
+ * </p>
+ *
+ * <p>
+ * Images are cached, keyed by the identifier of the object, the scaling,
+ * rotation and shearing applied to it, the colour transform and the
+ * filters, so an object displayed on several pages, or several times on the
+ * same page, only adds one image to the document. The translation is not
+ * part of the key since it only changes where the image is drawn.
+ * </p>
+ *
+ * <p>
+ * BlurFilter, DropShadowFilter, GlowFilter and ColorMatrixFilter are
+ * supported. Other filters are ignored.
+ * </p>
+ */
+final class Rasterizer {
+
+    /** The width and height of a tile, in pixels. */
+    private static final int TILE_SIZE = 256;
+    /** The maximum width or height of an image, in pixels. */
+    private static final int MAX_SIZE = 4096;
+    /** The number of twips in a pixel on the Flash stage. */
+    private static final float TWIPS_PER_PIXEL = 20.0f;
+
+    /**
+     * Bitmap is an image generated for an object along with the area it
+     * covers.
+     */
+    static final class Bitmap {
+        /** The image. */
+        private final transient PDImageXObject image;
+        /** The area covered: min x, min y, width, height. */
+        private final transient float[] bounds;
+
+        /**
+         * Create a Bitmap.
+         *
+         * @param xobject the image.
+         * @param area the area covered by the image, in twips, relative to
+         * the origin of the object.
+         */
+        Bitmap(final PDImageXObject xobject, final Rectangle2D area) {
+            image = xobject;
+            bounds = new float[] {(float) area.getMinX(),
+                    (float) area.getMinY(), (float) area.getWidth(),
+                    (float) area.getHeight()};
+        }
+
+        /**
+         * Get the image.
+         * @return the image added to the document.
+         */
+        PDImageXObject getImage() {
+            return image;
+        }
+
+        /**
+         * Get the area covered by the image.
+         * @return an array containing the min x and min y coordinates, width
+         * and height in twips, relative to the origin of the object.
+         */
+        float[] getBounds() {
+            return bounds.clone();
+        }
+    }
+
+    /**
+     * Key identifies an image by the object drawn, the transform without
+     * the translation, the colour transform and the filters.
+     */
+    private static final class Key {
+        /** The unique identifier of the object. */
+        private final transient int identifier;
+        /** The scaling, rotation and shearing applied to the object. */
+        private final transient double[] matrix;
+        /** The colour transform, may be null. */
+        private final transient ColorTransform color;
+        /** The filters applied to the image. */
+        private final transient List<Filter> filters;
+
+        /**
+         * Create a Key.
+         *
+         * @param uid the unique identifier of the object.
+         * @param transform the transform applied to the object.
+         * @param colorTransform the colour transform, may be null.
+         * @param list the filters.
+         */
+        Key(final int uid, final AffineTransform transform,
+                final ColorTransform colorTransform, final List<Filter> list) {
+            identifier = uid;
+            matrix = new double[] {transform.getScaleX(),
+                    transform.getShearY(), transform.getShearX(),
+                    transform.getScaleY()};
+            color = colorTransform;
+            filters = list;
+        }
+
+        @Override
+        public boolean equals(final Object object) {
+            boolean result;
+            Key key;
+
+            if (object == this) {
+                result = true;
+            } else if (object instanceof Key) {
+                key = (Key) object;
+                result = identifier == key.identifier
+                        && Arrays.equals(matrix, key.matrix)
+                        && (color == null ? key.color == null
+                                : color.equals(key.color))
+                        && filters.equals(key.filters);
+            } else {
+                result = false;
+            }
+            return result;
+        }
+
+        @Override
+        public int hashCode() {
+            return ((identifier * Constants.PRIME
+                    + Arrays.hashCode(matrix)) * Constants.PRIME
+                    + (color == null ? 0 : color.hashCode())) * Constants.PRIME
+                    + filters.hashCode();
+        }
+    }
+
+    /**
+     * Does a list contain any filters that can be applied to an image.
+     *
+     * @param filters the filters set for an object.
+     * @return true if the object must be drawn as an image.
+     */
+    static boolean isFiltered(final List<Filter> filters) {
+        boolean filtered = false;
+        for (final Filter filter : filters) {
+            if (filter instanceof BlurFilter
+                    || filter instanceof DropShadowFilter
+                    || filter instanceof GlowFilter
+                    || filter instanceof ColorMatrixFilter) {
+                filtered = true;
+                break;
+            }
+        }
+        return filtered;
+    }
+
+    /**
+     * Convert the blur amount from a filter into the radius of a box
+     * filter.
+     *
+     * @param amount the width of the blur in pixels on the Flash stage.
+     * @param scale the number of pixels in the image for each pixel on the
+     * stage.
+     * @return the number of pixels on each side of a pixel that are
+     * averaged.
+     */
+    private static int radius(final float amount, final float scale) {
+        return Math.max(0, Math.round((amount * scale - 1) / 2));
+    }
+
+    /**
+     * Get the distance the area covered by an object is extended by its
+     * filters.
+     *
+     * @param filters the filters.
+     * @return the margins in the x and y directions, in twips.
+     */
+    private static float[] margins(final List<Filter> filters) {
+        final float[] margins = new float[2];
+        float distance;
+
+        for (final Filter filter : filters) {
+            if (filter instanceof BlurFilter) {
+                final BlurFilter blur = (BlurFilter) filter;
+                margins[0] += blur.getBlurX() * blur.getPasses() / 2;
+                margins[1] += blur.getBlurY() * blur.getPasses() / 2;
+            } else if (filter instanceof DropShadowFilter) {
+                final DropShadowFilter shadow = (DropShadowFilter) filter;
+                distance = Math.abs(shadow.getDistance());
+                margins[0] += shadow.getBlurX() * shadow.getPasses() / 2
+                        + distance;
+                margins[1] += shadow.getBlurY() * shadow.getPasses() / 2
+                        + distance;
+            } else if (filter instanceof GlowFilter) {
+                final GlowFilter glow = (GlowFilter) filter;
+                margins[0] += glow.getBlurX() * glow.getPasses() / 2;
+                margins[1] += glow.getBlurY() * glow.getPasses() / 2;
+            }
+        }
+        margins[0] *= TWIPS_PER_PIXEL;
+        margins[1] *= TWIPS_PER_PIXEL;
+        return margins;
+    }
+
+    /**
+     * Convert a colour into a 32-bit ARGB pixel.
+     * @param color the colour.
+     * @return the pixel, without premultiplied alpha.
+     */
+    private static int argb(final Color color) {
+        return color.getAlpha() << 24 | color.getRed() << 16
+                | color.getGreen() << 8 | color.getBlue();
+    }
+
+    /** The document that will contain the images. */
+    private final transient PDDocument document;
+    /** The cache that supplies the definitions, fonts and images. */
+    private final transient FormCache cache;
+    /** The number of pixels in an image for each twip. */
+    private final transient float resolution;
+    /** The executor used to draw tiles concurrently, may be null. */
+    private final transient ExecutorService executor;
+    /** The images generated for each object. */
+    private final transient ConcurrentMap<Key, Future<Bitmap>> bitmaps;
+
+    /**
+     * Create a Rasterizer.
+     *
+     * @param pdf the document that will contain the images.
+     * @param formCache the cache that supplies the definitions of the
+     * objects and the fonts and images they display.
+     * @param pixelsPerTwip the resolution of the images.
+     * @param service the executor used to draw tiles concurrently, may be
+     * null to draw the tiles in the calling thread.
+     */
+    Rasterizer(final PDDocument pdf, final FormCache formCache,
+            final float pixelsPerTwip, final ExecutorService service) {
+        document = pdf;
+        cache = formCache;
+        resolution = pixelsPerTwip;
+        executor = service;
+        bitmaps = new ConcurrentHashMap<Key, Future<Bitmap>>();
+    }
+
+    /**
+     * Get the image for an object, generating it the first time the object
+     * is displayed with a given transform, colour transform and filters.
+     *
+     * @param definition the definition of the object.
+     * @param transform the transform from the coordinates of the object to
+     * the coordinates of the page. Only the scaling, rotation and shearing
+     * are used.
+     * @param color the colour transform applied to the object, may be null.
+     * @param filters the filters applied to the object.
+     * @return the image or null if the object does not draw anything.
+     * @throws IOException if an error occurs drawing the object or adding
+     * the image to the document.
+     */
+    Bitmap getBitmap(final DefineTag definition,
+            final AffineTransform transform, final ColorTransform color,
+            final List<Filter> filters) throws IOException {
+        final Key key = new Key(definition.getIdentifier(), transform, color,
+                filters);
+        Future<Bitmap> task = bitmaps.get(key);
+
+        if (task == null) {
+            final FutureTask<Bitmap> created = new FutureTask<Bitmap>(
+                    new BitmapTask(definition, new AffineTransform(
+                            transform.getScaleX(), transform.getShearY(),
+                            transform.getShearX(), transform.getScaleY(),
+                            0, 0), color, filters));
+            task = bitmaps.putIfAbsent(key, created);
+            if (task == null) {
+                task = created;
+                created.run();
+            }
+        }
+
+        try {
+            return task.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (final ExecutionException e) {
+            bitmaps.remove(key, task);
+            throw FormCache.rethrow(e);
+        }
+    }
+
+    /**
+     * Draw an object into an image, apply the filters and add the image to
+     * the document.
+     *
+     * @param definition the definition of the object.
+     * @param transform the scaling, rotation and shearing applied to the
+     * object.
+     * @param color the colour transform applied to the object, may be null.
+     * @param filters the filters applied to the object.
+     * @return the image or null if the object does not draw anything.
+     * @throws IOException if an error occurs drawing the object or adding
+     * the image to the document.
+     */
+    private Bitmap createBitmap(final DefineTag definition,
+            final AffineTransform transform, final ColorTransform color,
+            final List<Filter> filters) throws IOException {
+        final ImagePainter painter = new ImagePainter(cache);
+        final Rectangle2D area = painter.getBounds(definition, transform);
+        if (area == null || area.isEmpty()) {
+            return null;
+        }
+        final float[] margins = margins(filters);
+        area.setRect(area.getMinX() - margins[0],
+                area.getMinY() - margins[1],
+                area.getWidth() + 2 * margins[0],
+                area.getHeight() + 2 * margins[1]);
+
+        final float scale = (float) Math.min(resolution,
+                MAX_SIZE / Math.max(area.getWidth(), area.getHeight()));
+        final int width = Math.max(1,
+                (int) Math.ceil(area.getWidth() * scale));
+        final int height = Math.max(1,
+                (int) Math.ceil(area.getHeight() * scale));
+        final BufferedImage image = new BufferedImage(width, height,
+                BufferedImage.TYPE_INT_ARGB_PRE);
+
+        final AffineTransform base = AffineTransform.getScaleInstance(scale,
+                scale);
+        base.translate(-area.getMinX(), -area.getMinY());
+        base.concatenate(transform);
+
+        final Tiles tiles = new Tiles(painter, image, base, definition,
+                color);
+        if (executor != null) {
+            final int helpers = Math.min(tiles.count,
+                    Runtime.getRuntime().availableProcessors()) - 1;
+            try {
+                for (int i = 0; i < helpers; i++) {
+                    executor.execute(tiles);
+                }
+            } catch (final RejectedExecutionException e) {
+                // The calling thread draws the remaining tiles.
+            }
+        }
+        tiles.run();
+        tiles.await();
+
+        filter(image, filters, scale * TWIPS_PER_PIXEL);
+
+        area.setRect(area.getMinX(), area.getMinY(), width / scale,
+                height / scale);
+        return new Bitmap(LosslessFactory.createFromImage(document, image),
+                area);
+    }
+
+    /**
+     * Apply filters to an image.
+     *
+     * @param image the image.
+     * @param filters the filters, applied in order.
+     * @param scale the number of pixels in the image for each pixel on the
+     * Flash stage.
+     */
+    private static void filter(final BufferedImage image,
+            final List<Filter> filters, final float scale) {
+        final int width = image.getWidth();
+        final int height = image.getHeight();
+        final int[] pixels = ((DataBufferInt) image.getRaster()
+                .getDataBuffer()).getData();
+        final int[] line = new int[Math.max(width, height)];
+        int[] shadow = null;
+
+        for (final Filter filter : filters) {
+            if (filter instanceof BlurFilter) {
+                final BlurFilter blur = (BlurFilter) filter;
+                FilterKernel.blur(pixels, width, height,
+                        radius(blur.getBlurX(), scale),
+                        radius(blur.getBlurY(), scale), blur.getPasses(),
+                        line);
+            } else if (filter instanceof DropShadowFilter) {
+                final DropShadowFilter drop = (DropShadowFilter) filter;
+                final double distance = drop.getDistance() * scale;
+                if (shadow == null) {
+                    shadow = new int[pixels.length];
+                }
+                FilterKernel.shadow(pixels, shadow, width, height,
+                        argb(drop.getColor()),
+                        (int) Math.round(distance * Math.cos(drop.getAngle())),
+                        (int) Math.round(distance * Math.sin(drop.getAngle())),
+                        radius(drop.getBlurX(), scale),
+                        radius(drop.getBlurY(), scale), drop.getPasses(),
+                        drop.getStrength(), drop.getMode() == FilterMode.INNER,
+                        drop.getMode() == FilterMode.KNOCKOUT, line);
+            } else if (filter instanceof GlowFilter) {
+                final GlowFilter glow = (GlowFilter) filter;
+                if (shadow == null) {
+                    shadow = new int[pixels.length];
+                }
+                FilterKernel.shadow(pixels, shadow, width, height,
+                        argb(glow.getShadow()), 0, 0,
+                        radius(glow.getBlurX(), scale),
+                        radius(glow.getBlurY(), scale), glow.getPasses(),
+                        glow.getStrength(), glow.getMode() == FilterMode.INNER,
+                        glow.getMode() == FilterMode.KNOCKOUT, line);
+            } else if (filter instanceof ColorMatrixFilter) {
+                FilterKernel.transform(pixels,
+                        ((ColorMatrixFilter) filter).getMatrix());
+            }
+        }
+    }
+
+    /**
+     * BitmapTask generates the image for an object so it can be shared by
+     * the threads that display it.
+     */
+    private final class BitmapTask implements Callable<Bitmap> {
+        /** The definition of the object. */
+        private final transient DefineTag definition;
+        /** The scaling, rotation and shearing applied to the object. */
+        private final transient AffineTransform transform;
+        /** The colour transform, may be null. */
+        private final transient ColorTransform color;
+        /** The filters applied to the image. */
+        private final transient List<Filter> filters;
+
+        /**
+         * Create a BitmapTask.
+         *
+         * @param object the definition of the object.
+         * @param matrix the transform applied to the object.
+         * @param colorTransform the colour transform, may be null.
+         * @param list the filters.
+         */
+        BitmapTask(final DefineTag object, final AffineTransform matrix,
+                final ColorTransform colorTransform, final List<Filter> list) {
+            definition = object;
+            transform = matrix;
+            color = colorTransform;
+            filters = list;
+        }
+
+        /** {@inheritDoc} */
+        public Bitmap call() throws IOException {
+            return createBitmap(definition, transform, color, filters);
+        }
+    }
+
+    /**
+     * Tiles draws an image one tile at a time. The same object is run by
+     * each thread drawing the image: the threads take the next tile that
+     * has not been drawn until all the tiles have been taken.
+     */
+    private static final class Tiles implements Runnable {
+        /** The painter that draws the object. */
+        private final transient ImagePainter painter;
+        /** The image. */
+        private final transient BufferedImage image;
+        /** The transform from the object to the pixels in the image. */
+        private final transient AffineTransform transform;
+        /** The definition of the object. */
+        private final transient DefineTag definition;
+        /** The colour transform, may be null. */
+        private final transient ColorTransform color;
+        /** The number of tiles across the image. */
+        private final transient int columns;
+        /** The number of tiles. */
+        private final transient int count;
+        /** The index of the next tile to draw. */
+        private final transient AtomicInteger next;
+        /** The number of tiles drawn. */
+        private transient int done;
+        /** The first error raised while drawing a tile. */
+        private transient Throwable error;
+
+        /**
+         * Create the set of tiles for an image.
+         *
+         * @param imagePainter the painter that draws the object.
+         * @param target the image.
+         * @param base the transform from the object to the pixels.
+         * @param object the definition of the object.
+         * @param colorTransform the colour transform, may be null.
+         */
+        Tiles(final ImagePainter imagePainter, final BufferedImage target,
+                final AffineTransform base, final DefineTag object,
+                final ColorTransform colorTransform) {
+            painter = imagePainter;
+            image = target;
+            transform = base;
+            definition = object;
+            color = colorTransform;
+            columns = (image.getWidth() + TILE_SIZE - 1) / TILE_SIZE;
+            count = columns * ((image.getHeight() + TILE_SIZE - 1)
+                    / TILE_SIZE);
+            next = new AtomicInteger();
+        }
+
+        /** {@inheritDoc} */
+        public void run() {
+            int index;
+            while ((index = next.getAndIncrement()) < count) {
+                try {
+                    draw(index);
+                } catch (final Throwable e) {
+                    synchronized (this) {
+                        if (error == null) {
+                            error = e;
+                        }
+                    }
+                } finally {
+                    synchronized (this) {
+                        if (++done == count) {
+                            notifyAll();
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Draw a tile.
+         *
+         * @param index the number of the tile, in row order.
+         * @throws IOException if an error occurs drawing the object.
+         */
+        private void draw(final int index) throws IOException {
+            final int xCoord = (index % columns) * TILE_SIZE;
+            final int yCoord = (index / columns) * TILE_SIZE;
+            final Graphics2D graphics = image.getSubimage(xCoord, yCoord,
+                    Math.min(TILE_SIZE, image.getWidth() - xCoord),
+                    Math.min(TILE_SIZE, image.getHeight() - yCoord))
+                    .createGraphics();
+            try {
+                graphics.translate(-xCoord, -yCoord);
+                graphics.transform(transform);
+                painter.draw(graphics, definition, color);
+            } finally {
+                graphics.dispose();
+            }
+        }
+
+        /**
+         * Wait for the tiles being drawn by other threads to be completed.
+         *
+         * @throws IOException if an error occurred drawing a tile.
+         */
+        synchronized void await() throws IOException {
+            while (done < count) {
+                try {
+                    wait();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+            }
+            if (error instanceof IOException) {
+                throw (IOException) error;
+            } else if (error instanceof RuntimeException) {
+                throw (RuntimeException) error;
+            } else if (error instanceof Error) {
+                throw (Error) error;
+            }
+        }
+    }
+}
@@ -0,0 +1,531 @@
+/*
+ * ShapePath.java
+ * Transform
+ *
+ * Copyright (c) 2010 Flagstone Software Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of Flagstone Software Ltd. nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.flagstone.transform.util.pdf;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.flagstone.transform.fillstyle.FillStyle;
+import com.flagstone.transform.linestyle.LineStyle;
+import com.flagstone.transform.shape.Curve;
+import com.flagstone.transform.shape.Line;
+import com.flagstone.transform.shape.Shape;
+import com.flagstone.transform.shape.ShapeData;
+import com.flagstone.transform.shape.ShapeRecord;
+import com.flagstone.transform.shape.ShapeStyle;
+import com.flagstone.transform.shape.ShapeStyle2;
+
+/**
+ * <p>
+ * ShapePath converts the records that describe a shape into closed paths
+ * that can be filled and open paths that can be stroked.
+ * </p>
+ *
+ * <p>
+ * Flash describes a shape as a set of edges with the fill style on either side
+ * of each edge. PDF, like most other graphics systems, fills closed paths. The
+ * edges are sorted by style, the edges with the style on the left reversed so
+ * all the edges that enclose an area run in the same direction, then linked
+ * together end-to-start to recreate the outline of each area.
+ * </p>
+ *
+ * <p>
+ * Shapes may define new sets of fill and line styles part way through the
+ * list of records. Each set of styles, and the edges drawn with them, forms a
+ * Group. Groups are drawn in order, with the areas in a group filled before
+ * the lines are stroked.
+ * </p>
+ */
+final class ShapePath {
+
+    /** Mask used to combine two coordinates into a single key. */
+    private static final long LOWER_WORD = 0xFFFFFFFFL;
+    /** The number of bits to shift the x-coordinate to create a key. */
+    private static final int TO_UPPER_WORD = 32;
+
+    /**
+     * Edge is a straight line or quadratic curve between two points.
+     */
+    static final class Edge {
+        /** The x-coordinate of the start of the edge. */
+        private final transient int startX;
+        /** The y-coordinate of the start of the edge. */
+        private final transient int startY;
+        /** The x-coordinate of the control point. */
+        private final transient int controlX;
+        /** The y-coordinate of the control point. */
+        private final transient int controlY;
+        /** The x-coordinate of the end of the edge. */
+        private final transient int endX;
+        /** The y-coordinate of the end of the edge. */
+        private final transient int endY;
+        /** Whether the edge is a curve. */
+        private final transient boolean curved;
+
+        /**
+         * Creates an Edge.
+         *
+         * @param x0 the x-coordinate of the start of the edge.
+         * @param y0 the y-coordinate of the start of the edge.
+         * @param cx the x-coordinate of the control point.
+         * @param cy the y-coordinate of the control point.
+         * @param x1 the x-coordinate of the end of the edge.
+         * @param y1 the y-coordinate of the end of the edge.
+         * @param curve true if the edge is a curve, false for a line.
+         */
+        Edge(final int x0, final int y0, final int cx, final int cy,
+                final int x1, final int y1, final boolean curve) {
+            startX = x0;
+            startY = y0;
+            controlX = cx;
+            controlY = cy;
+            endX = x1;
+            endY = y1;
+            curved = curve;
+        }
+
+        /**
+         * Get the same edge drawn in the opposite direction.
+         * @return the reversed edge.
+         */
+        Edge reverse() {
+            return new Edge(endX, endY, controlX, controlY,
+                    startX, startY, curved);
+        }
+
+        /**
+         * Get the key used to look up the start of the edge.
+         * @return the combined coordinates of the start point.
+         */
+        long start() {
+            return key(startX, startY);
+        }
+
+        /**
+         * Get the key used to look up the end of the edge.
+         * @return the combined coordinates of the end point.
+         */
+        long end() {
+            return key(endX, endY);
+        }
+
+        /**
+         * Draw the edge from the current point.
+         *
+         * @param sink the PathSink that receives the edge.
+         * @throws IOException if the edge cannot be drawn.
+         */
+        void draw(final PathSink sink) throws IOException {
+            if (curved) {
+                sink.quadTo(controlX, controlY, endX, endY);
+            } else {
+                sink.lineTo(endX, endY);
+            }
+        }
+    }
+
+    /**
+     * Group contains a set of fill and line styles and the edges drawn using
+     * them.
+     */
+    static final class Group {
+        /** The fill styles selected by the edges. */
+        private final transient List<FillStyle> fillStyles;
+        /** The line styles selected by the edges. */
+        private final transient List<LineStyle> lineStyles;
+        /** The edges for each fill style, in order of the style index. */
+        private final transient Map<Integer, List<Edge>> fills;
+        /** The edges for each line style, in order of the style index. */
+        private final transient Map<Integer, List<Edge>> lines;
+
+        /**
+         * Create a Group for a set of styles.
+         *
+         * @param fillList the fill styles.
+         * @param lineList the line styles.
+         */
+        Group(final List<FillStyle> fillList,
+                final List<? extends LineStyle> lineList) {
+            fillStyles = new ArrayList<FillStyle>(fillList);
+            lineStyles = new ArrayList<LineStyle>(lineList);
+            fills = new TreeMap<Integer, List<Edge>>();
+            lines = new TreeMap<Integer, List<Edge>>();
+        }
+
+        /**
+         * Get the fill style with a given index.
+         *
+         * @param index the index of the style, starting at 1.
+         * @return the style or null if the index is out of range, for
+         * example with the glyphs in a font which have no styles.
+         */
+        FillStyle getFillStyle(final int index) {
+            return index <= fillStyles.size() ? fillStyles.get(index - 1)
+                    : null;
+        }
+
+        /**
+         * Get the line style with a given index.
+         *
+         * @param index the index of the style, starting at 1.
+         * @return the style or null if the index is out of range.
+         */
+        LineStyle getLineStyle(final int index) {
+            return index <= lineStyles.size() ? lineStyles.get(index - 1)
+                    : null;
+        }
+
+        /**
+         * Get the edges for each fill style.
+         * @return a map of the fill style index to the edges that enclose
+         * the areas filled with the style.
+         */
+        Map<Integer, List<Edge>> getFills() {
+            return fills;
+        }
+
+        /**
+         * Get the edges for each line style.
+         * @return a map of the line style index to the edges that are drawn
+         * with the style.
+         */
+        Map<Integer, List<Edge>> getLines() {
+            return lines;
+        }
+
+        /**
+         * Add an edge to the list for a style.
+         *
+         * @param table the edges for each style.
+         * @param index the index of the style.
+         * @param edge the edge to add.
+         */
+        private static void add(final Map<Integer, List<Edge>> table,
+                final int index, final Edge edge) {
+            List<Edge> edges = table.get(index);
+            if (edges == null) {
+                edges = new ArrayList<Edge>();
+                table.put(index, edges);
+            }
+            edges.add(edge);
+        }
+    }
+
+    /**
+     * Combine a pair of coordinates into a key used to match the end of one
+     * edge with the start of the next.
+     *
+     * @param xCoord the x-coordinate.
+     * @param yCoord the y-coordinate.
+     * @return the key.
+     */
+    private static long key(final int xCoord, final int yCoord) {
+        return ((long) xCoord << TO_UPPER_WORD) | (yCoord & LOWER_WORD);
+    }
+
+    /**
+     * Trace the outline of the areas enclosed by a set of edges. Each edge
+     * is joined to the one that starts where it ends, closing the sub-path
+     * when it returns to the starting point.
+     *
+     * @param edges the edges enclosing the areas filled with a given style.
+     * @param sink the PathSink that receives the outline.
+     * @throws IOException if the outline cannot be drawn.
+     */
+    static void fill(final List<Edge> edges, final PathSink sink)
+            throws IOException {
+        final int count = edges.size();
+        final Map<Long, List<Integer>> starts =
+            new HashMap<Long, List<Integer>>(count);
+        List<Integer> matches;
+
+        for (int i = 0; i < count; i++) {
+            final Long start = edges.get(i).start();
+            matches = starts.get(start);
+            if (matches == null) {
+                matches = new ArrayList<Integer>(1);
+                starts.put(start, matches);
+            }
+            matches.add(i);
+        }
+
+        final boolean[] used = new boolean[count];
+        Edge edge;
+        long origin;
+        int next;
+
+        for (int i = 0; i < count; i++) {
+            if (used[i]) {
+                continue;
+            }
+            used[i] = true;
+            edge = edges.get(i);
+            origin = edge.start();
+            sink.moveTo(edge.startX, edge.startY);
+            edge.draw(sink);
+
+            while (edge.end() != origin) {
+                next = unused(starts.get(edge.end()), used);
+                if (next < 0) {
+                    break;
+                }
+                used[next] = true;
+                edge = edges.get(next);
+                edge.draw(sink);
+            }
+            sink.closePath();
+        }
+    }
+
+    /**
+     * Find the first edge in a list that has not already been drawn.
+     *
+     * @param matches the indices of the edges that start at a point.
+     * @param used flags indicating which edges have been drawn.
+     * @return the index of an edge or -1 if all the edges have been drawn.
+     */
+    private static int unused(final List<Integer> matches,
+            final boolean[] used) {
+        int index = -1;
+        if (matches != null) {
+            for (final Integer match : matches) {
+                if (!used[match]) {
+                    index = match;
+                    break;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Trace a set of edges drawn with a line style. A new sub-path is only
+     * started when an edge does not start where the previous one ended.
+     *
+     * @param edges the edges drawn with a given style.
+     * @param sink the PathSink that receives the lines.
+     * @throws IOException if the lines cannot be drawn.
+     */
+    static void stroke(final List<Edge> edges, final PathSink sink)
+            throws IOException {
+        long current = 0;
+        boolean first = true;
+
+        for (final Edge edge : edges) {
+            if (first || edge.start() != current) {
+                sink.moveTo(edge.startX, edge.startY);
+                first = false;
+            }
+            edge.draw(sink);
+            current = edge.end();
+        }
+    }
+
+    /** The sets of styles and edges, in the order they are drawn. */
+    private final transient List<Group> groups;
+
+    /**
+     * Create a ShapePath for a shape.
+     *
+     * @param fillStyles the fill styles defined for the shape.
+     * @param lineStyles the line styles defined for the shape.
+     * @param shape the shape.
+     * @throws IOException if the shape has not been decoded and an error
+     * occurs when decoding it.
+     */
+    ShapePath(final List<FillStyle> fillStyles,
+            final List<? extends LineStyle> lineStyles,
+            final Shape shape) throws IOException {
+        groups = new ArrayList<Group>();
+
+        Group group = new Group(fillStyles, lineStyles);
+        groups.add(group);
+
+        int xCoord = 0;
+        int yCoord = 0;
+        int fill0 = 0;
+        int fill1 = 0;
+        int line = 0;
+
+        Integer moveX;
+        Integer moveY;
+        Integer fillStyle;
+        Integer altFillStyle;
+        Integer lineStyle;
+        Edge edge;
+
+        for (final ShapeRecord record : records(shape)) {
+            if (record instanceof Line) {
+                final Line path = (Line) record;
+                edge = new Edge(xCoord, yCoord, 0, 0,
+                        xCoord + path.getX(), yCoord + path.getY(), false);
+            } else if (record instanceof Curve) {
+                final Curve path = (Curve) record;
+                final int controlX = xCoord + path.getControlX();
+                final int controlY = yCoord + path.getControlY();
+                edge = new Edge(xCoord, yCoord, controlX, controlY,
+                        controlX + path.getAnchorX(),
+                        controlY + path.getAnchorY(), true);
+            } else {
+                if (record instanceof ShapeStyle) {
+                    final ShapeStyle style = (ShapeStyle) record;
+                    if (!style.getFillStyles().isEmpty()
+                            || !style.getLineStyles().isEmpty()) {
+                        group = new Group(style.getFillStyles(),
+                                style.getLineStyles());
+                        groups.add(group);
+                        fill0 = 0;
+                        fill1 = 0;
+                        line = 0;
+                    }
+                    moveX = style.getMoveX();
+                    moveY = style.getMoveY();
+                    fillStyle = style.getFillStyle();
+                    altFillStyle = style.getAltFillStyle();
+                    lineStyle = style.getLineStyle();
+                } else if (record instanceof ShapeStyle2) {
+                    final ShapeStyle2 style = (ShapeStyle2) record;
+                    if (!style.getFillStyles().isEmpty()
+                            || !style.getLineStyles().isEmpty()) {
+                        group = new Group(style.getFillStyles(),
+                                style.getLineStyles());
+                        groups.add(group);
+                        fill0 = 0;
+                        fill1 = 0;
+                        line = 0;
+                    }
+                    moveX = style.getMoveX();
+                    moveY = style.getMoveY();
+                    fillStyle = style.getFillStyle();
+                    altFillStyle = style.getAltFillStyle();
+                    lineStyle = style.getLineStyle();
+                } else {
+                    continue;
+                }
+
+                if (moveX != null && moveY != null) {
+                    xCoord = moveX;
+                    yCoord = moveY;
+                }
+                if (fillStyle != null) {
+                    fill0 = fillStyle;
+                }
+                if (altFillStyle != null) {
+                    fill1 = altFillStyle;
+                }
+                if (lineStyle != null) {
+                    line = lineStyle;
+                }
+                continue;
+            }
+
+            if (fill0 != 0) {
+                Group.add(group.fills, fill0, edge.reverse());
+            }
+            if (fill1 != 0) {
+                Group.add(group.fills, fill1, edge);
+            }
+            if (line != 0) {
+                Group.add(group.lines, line, edge);
+            }
+            xCoord = edge.endX;
+            yCoord = edge.endY;
+        }
+    }
+
+    /**
+     * Get the records for a shape, decoding them if necessary.
+     *
+     * @param shape the shape.
+     * @return the list of ShapeRecords that draw the shape.
+     * @throws IOException if an error occurs decoding the shape.
+     */
+    private static List<ShapeRecord> records(final Shape shape)
+            throws IOException {
+        final List<ShapeRecord> list;
+
+        if (shape == null) {
+            list = Collections.emptyList();
+        } else if (shape.getObjects().size() == 1
+                && shape.getObjects().get(0) instanceof ShapeData) {
+            list = Shape.shapeFromData((ShapeData) shape.getObjects().get(0))
+                    .getObjects();
+        } else {
+            list = shape.getObjects();
+        }
+        return list;
+    }
+
+    /**
+     * Get the sets of styles and edges in the order they are drawn.
+     * @return the list of Groups.
+     */
+    List<Group> getGroups() {
+        return groups;
+    }
+
+    /**
+     * Trace the outline of all the filled areas in the shape, ignoring the
+     * styles. This is used for glyphs and for the shapes that define a
+     * clipping path.
+     *
+     * @param sink the PathSink that receives the outline.
+     * @throws IOException if the outline cannot be drawn.
+     */
+    void outline(final PathSink sink) throws IOException {
+        for (final Group group : groups) {
+            for (final List<Edge> edges : group.fills.values()) {
+                fill(edges, sink);
+            }
+        }
+    }
+
+    /**
+     * Is the shape empty.
+     * @return true if the shape does not contain any edges.
+     */
+    boolean isEmpty() {
+        boolean empty = true;
+        for (final Group group : groups) {
+            if (!group.fills.isEmpty() || !group.lines.isEmpty()) {
+                empty = false;
+                break;
+            }
+        }
+        return empty;
+    }
+}
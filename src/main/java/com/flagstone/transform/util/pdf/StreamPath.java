@@ -0,0 +1,203 @@
+/*
+ * StreamPath.java
+ * Transform
+ *
+ * Copyright (c) 2010 Flagstone Software Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of Flagstone Software Ltd. nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.flagstone.transform.util.pdf;
+
+import java.awt.geom.AffineTransform;
+import java.io.IOException;
+
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.util.Matrix;
+
+import com.flagstone.transform.datatype.CoordTransform;
+
+/**
+ * StreamPath writes the path traced by a ShapePath to a content stream. The
+ * points may be transformed before they are written so shapes can be drawn
+ * without changing the current transformation matrix. Quadratic curves are
+ * converted to the cubic curves supported in PDF. The area covered by the
+ * points written is recorded so the bounding box of a form can be set once
+ * it has been drawn.
+ */
+final class StreamPath implements PathSink {
+
+    /** Fraction of the distance to the control point of a cubic. */
+    private static final float TWO_THIRDS = 2.0f / 3.0f;
+    /** The number of elements in a PDF matrix. */
+    private static final int MATRIX_SIZE = 6;
+
+    /**
+     * Convert a coordinate transform into the equivalent PDF matrix.
+     *
+     * @param transform the coordinate transform, may be null.
+     * @return the elements of the matrix in the order used by PDF: scale x,
+     * shear x, shear y, scale y, translate x, translate y.
+     */
+    static float[] matrix(final CoordTransform transform) {
+        final float[] matrix;
+        if (transform == null) {
+            matrix = new float[] {1.0f, 0.0f, 0.0f, 1.0f, 0.0f, 0.0f};
+        } else {
+            matrix = new float[] {transform.getScaleX(),
+                    transform.getShearX(), transform.getShearY(),
+                    transform.getScaleY(), transform.getTranslateX(),
+                    transform.getTranslateY()};
+        }
+        return matrix;
+    }
+
+    /**
+     * Convert a coordinate transform into a PDF Matrix.
+     *
+     * @param transform the coordinate transform, may be null.
+     * @return the equivalent Matrix.
+     */
+    static Matrix toMatrix(final CoordTransform transform) {
+        final float[] matrix = matrix(transform);
+        return new Matrix(matrix[0], matrix[1], matrix[2], matrix[3],
+                matrix[4], matrix[5]);
+    }
+
+    /**
+     * Convert a coordinate transform into a Java2D AffineTransform.
+     *
+     * @param transform the coordinate transform, may be null.
+     * @return the equivalent AffineTransform.
+     */
+    static AffineTransform toTransform(final CoordTransform transform) {
+        return new AffineTransform(matrix(transform));
+    }
+
+    /** The content stream that receives the path. */
+    private final transient PDPageContentStream stream;
+    /** The transform applied to each point. */
+    private final transient float[] matrix;
+    /** The area covered: min x, min y, max x, max y. May be null. */
+    private final transient float[] extent;
+    /** The x-coordinate of the current point, after transforming. */
+    private transient float currentX;
+    /** The y-coordinate of the current point, after transforming. */
+    private transient float currentY;
+
+    /**
+     * Create a StreamPath that transforms each point.
+     *
+     * @param contents the content stream.
+     * @param transform the transform in the same order as PDF.
+     * @param area an array of four elements, min x, min y, max x and max y,
+     * that will be expanded to include each point written. May be null if the
+     * area is not needed.
+     */
+    StreamPath(final PDPageContentStream contents, final float[] transform,
+            final float[] area) {
+        stream = contents;
+        matrix = new float[MATRIX_SIZE];
+        System.arraycopy(transform, 0, matrix, 0, MATRIX_SIZE);
+        extent = area;
+    }
+
+    /** {@inheritDoc} */
+    public void moveTo(final int xCoord, final int yCoord)
+            throws IOException {
+        currentX = x(xCoord, yCoord);
+        currentY = y(xCoord, yCoord);
+        include(currentX, currentY);
+        stream.moveTo(currentX, currentY);
+    }
+
+    /** {@inheritDoc} */
+    public void lineTo(final int xCoord, final int yCoord)
+            throws IOException {
+        currentX = x(xCoord, yCoord);
+        currentY = y(xCoord, yCoord);
+        include(currentX, currentY);
+        stream.lineTo(currentX, currentY);
+    }
+
+    /** {@inheritDoc} */
+    public void quadTo(final int controlX, final int controlY,
+            final int anchorX, final int anchorY) throws IOException {
+        final float cx = x(controlX, controlY);
+        final float cy = y(controlX, controlY);
+        final float ax = x(anchorX, anchorY);
+        final float ay = y(anchorX, anchorY);
+
+        include(cx, cy);
+        include(ax, ay);
+        stream.curveTo(currentX + TWO_THIRDS * (cx - currentX),
+                currentY + TWO_THIRDS * (cy - currentY),
+                ax + TWO_THIRDS * (cx - ax),
+                ay + TWO_THIRDS * (cy - ay), ax, ay);
+        currentX = ax;
+        currentY = ay;
+    }
+
+    /** {@inheritDoc} */
+    public void closePath() throws IOException {
+        stream.closePath();
+    }
+
+    /**
+     * Transform a point and return the x-coordinate.
+     * @param xCoord the x-coordinate of the point.
+     * @param yCoord the y-coordinate of the point.
+     * @return the transformed x-coordinate.
+     */
+    private float x(final int xCoord, final int yCoord) {
+        return matrix[0] * xCoord + matrix[2] * yCoord + matrix[4];
+    }
+
+    /**
+     * Transform a point and return the y-coordinate.
+     * @param xCoord the x-coordinate of the point.
+     * @param yCoord the y-coordinate of the point.
+     * @return the transformed y-coordinate.
+     */
+    private float y(final int xCoord, final int yCoord) {
+        return matrix[1] * xCoord + matrix[3] * yCoord + matrix[5];
+    }
+
+    /**
+     * Expand the area covered to include a point. The control points of
+     * curves are included so the area always contains the curve.
+     *
+     * @param xCoord the x-coordinate of the point.
+     * @param yCoord the y-coordinate of the point.
+     */
+    private void include(final float xCoord, final float yCoord) {
+        if (extent != null) {
+            extent[0] = Math.min(extent[0], xCoord);
+            extent[1] = Math.min(extent[1], yCoord);
+            extent[2] = Math.max(extent[2], xCoord);
+            extent[3] = Math.max(extent[3], yCoord);
+        }
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * Type3Font.java
+ * Transform
+ *
+ * Copyright (c) 2010 Flagstone Software Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of Flagstone Software Ltd. nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.flagstone.transform.util.pdf;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSFloat;
+import org.apache.pdfbox.cos.COSInteger;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+/**
+ * <p>
+ * Type3Font contains the PDF Type 3 fonts generated for the glyphs of a
+ * Flash font that are used in a document. Only the glyphs referenced by the
+ * static text in the movie are included. Since a Type 3 font has at most 256
+ * character codes, fonts that use more glyphs are split across several
+ * dictionaries, each glyph being assigned a code in order of its position in
+ * the Flash font. Glyphs may be added to the subset as text is found that
+ * uses them, for example when a movie is converted as it is read, so the
+ * methods are synchronized.
+ * </p>
+ *
+ * <p>
+ * The glyph coordinates are in font units with the y-axis pointing down, the
+ * same as the text space used when the text is drawn, so the FontMatrix only
+ * scales the EM square to one unit of text space. The Widths are the advances
+ * from the Flash font, or zero if the font does not contain layout
+ * information. The advances in the text are always set explicitly when the
+ * glyphs are shown.
+ * </p>
+ */
+final class Type3Font {
+
+    /** The maximum number of character codes in a Type 3 font. */
+    static final int MAX_CODES = 256;
+    /** The number of elements in a bounding box. */
+    private static final int BOX_SIZE = 4;
+
+    /** The document that contains the fonts. */
+    private final transient PDDocument document;
+    /** The glyph procedures for the font. */
+    private final transient GlyphTable table;
+    /** The position in the subset for each glyph, -1 if not used. */
+    private final transient int[] positions;
+    /** The font dictionaries. */
+    private final transient List<COSDictionary> fonts;
+    /** The number of glyphs in the subset. */
+    private transient int count;
+
+    /**
+     * Create the fonts for the glyphs used in a document.
+     *
+     * @param pdf the document that will contain the fonts.
+     * @param glyphs the glyph procedures for the font.
+     * @param used the positions in the Flash font of the glyphs that are
+     * displayed. Glyphs outside the font are ignored.
+     * @throws IOException if the glyph procedures cannot be generated.
+     */
+    Type3Font(final PDDocument pdf, final GlyphTable glyphs,
+            final Set<Integer> used) throws IOException {
+        document = pdf;
+        table = glyphs;
+        positions = new int[glyphs.size()];
+        Arrays.fill(positions, -1);
+        fonts = new ArrayList<COSDictionary>();
+        add(used);
+    }
+
+    /**
+     * Add glyphs to the subset. Glyphs are assigned the next free character
+     * code, in order of their position in the Flash font, so the codes for
+     * the glyphs already in the subset do not change. Since the dictionaries
+     * are only written when the document is saved, glyphs can be added after
+     * the fonts have been used.
+     *
+     * @param used the positions in the Flash font of the glyphs that are
+     * displayed. Glyphs outside the font and glyphs already in the subset
+     * are ignored.
+     * @throws IOException if the glyph procedures cannot be generated.
+     */
+    synchronized void add(final Set<Integer> used) throws IOException {
+        for (int index = 0; index < positions.length; index++) {
+            if (positions[index] < 0 && used.contains(index)) {
+                if (count % MAX_CODES == 0) {
+                    fonts.add(createFont());
+                }
+                addGlyph(fonts.get(count / MAX_CODES), index,
+                        count % MAX_CODES);
+                positions[index] = count++;
+            }
+        }
+    }
+
+    /**
+     * Get the glyph procedures for the font.
+     * @return the glyph table.
+     */
+    GlyphTable getGlyphs() {
+        return table;
+    }
+
+    /**
+     * Get the font that contains a glyph.
+     *
+     * @param glyph the position of the glyph in the Flash font.
+     * @return the font dictionary or null if the glyph is not in the subset.
+     */
+    synchronized COSDictionary getFont(final int glyph) {
+        COSDictionary font = null;
+        if (glyph >= 0 && glyph < positions.length && positions[glyph] >= 0) {
+            font = fonts.get(positions[glyph] / MAX_CODES);
+        }
+        return font;
+    }
+
+    /**
+     * Get the character code for a glyph in the font that contains it.
+     *
+     * @param glyph the position of the glyph in the Flash font. The glyph
+     * must be in the subset.
+     * @return the character code, 0 - 255.
+     */
+    synchronized int getCode(final int glyph) {
+        return positions[glyph] % MAX_CODES;
+    }
+
+    /**
+     * Get the number of font dictionaries generated.
+     * @return the number of fonts.
+     */
+    synchronized int getFontCount() {
+        return fonts.size();
+    }
+
+    /**
+     * Create the dictionary for an empty Type 3 font.
+     *
+     * @return the font dictionary.
+     */
+    private COSDictionary createFont() {
+        final COSArray differences = new COSArray();
+        differences.add(COSInteger.ZERO);
+
+        final COSDictionary encoding = new COSDictionary();
+        encoding.setItem(COSName.TYPE, COSName.ENCODING);
+        encoding.setItem(COSName.DIFFERENCES, differences);
+
+        final COSFloat scale = new COSFloat(1.0f / table.getEmSize());
+        final COSArray matrix = new COSArray();
+        matrix.add(scale);
+        matrix.add(COSInteger.ZERO);
+        matrix.add(COSInteger.ZERO);
+        matrix.add(scale);
+        matrix.add(COSInteger.ZERO);
+        matrix.add(COSInteger.ZERO);
+
+        final COSArray box = new COSArray();
+        for (int i = 0; i < BOX_SIZE; i++) {
+            box.add(COSInteger.ZERO);
+        }
+
+        final COSDictionary font = new COSDictionary();
+        font.setItem(COSName.TYPE, COSName.FONT);
+        font.setItem(COSName.SUBTYPE, COSName.TYPE3);
+        font.setItem(COSName.FONT_BBOX, box);
+        font.setItem(COSName.FONT_MATRIX, matrix);
+        font.setItem(COSName.CHAR_PROCS, new COSDictionary());
+        font.setItem(COSName.ENCODING, encoding);
+        font.setInt(COSName.FIRST_CHAR, 0);
+        font.setInt(COSName.LAST_CHAR, -1);
+        font.setItem(COSName.WIDTHS, new COSArray());
+        font.setItem(COSName.RESOURCES, new COSDictionary());
+        return font;
+    }
+
+    /**
+     * Add a glyph to a font.
+     *
+     * @param font the font dictionary.
+     * @param index the position of the glyph in the Flash font.
+     * @param code the character code assigned to the glyph.
+     * @throws IOException if the glyph procedure cannot be generated.
+     */
+    private void addGlyph(final COSDictionary font, final int index,
+            final int code) throws IOException {
+        final GlyphTable.Glyph glyph = table.getGlyph(index);
+        final COSName name = COSName.getPDFName("g" + index);
+
+        final COSStream stream = document.getDocument().createCOSStream();
+        final OutputStream out = stream.createOutputStream(
+                COSName.FLATE_DECODE);
+        try {
+            out.write(glyph.getProcedure());
+        } finally {
+            out.close();
+        }
+
+        ((COSDictionary) font.getDictionaryObject(COSName.CHAR_PROCS))
+            .setItem(name, stream);
+        ((COSArray) ((COSDictionary) font.getDictionaryObject(
+            COSName.ENCODING)).getDictionaryObject(COSName.DIFFERENCES))
+            .add(name);
+        ((COSArray) font.getDictionaryObject(COSName.WIDTHS))
+            .add(COSInteger.get(table.getAdvance(index)));
+        font.setInt(COSName.LAST_CHAR, code);
+
+        final COSArray box = (COSArray) font.getDictionaryObject(
+                COSName.FONT_BBOX);
+        final int[] bounds = glyph.getBounds();
+        for (int i = 0; i < BOX_SIZE; i++) {
+            if (code == 0 || (i < 2 ? bounds[i] < box.getInt(i)
+                    : bounds[i] > box.getInt(i))) {
+                box.set(i, COSInteger.get(bounds[i]));
+            }
+        }
+    }
+}
@@ -0,0 +1,7 @@
+/**
+ * The pdf package contains classes that can be used to convert the frames
+ * of a movie into PDF documents. The shapes and text displayed in a frame are
+ * converted into vector paths so the document can be scaled and printed
+ * without any loss of quality.
+ */
+package com.flagstone.transform.util.pdf;
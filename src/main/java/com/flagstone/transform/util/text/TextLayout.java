@@ -0,0 +1,765 @@
+/*
+ * TextLayout.java
+ * Transform
+ *
+ * Copyright (c) 2010 Flagstone Software Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of Flagstone Software Ltd. nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package com.flagstone.transform.util.text;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.flagstone.transform.coder.Coder;
+import com.flagstone.transform.datatype.Bounds;
+import com.flagstone.transform.datatype.Color;
+import com.flagstone.transform.datatype.CoordTransform;
+import com.flagstone.transform.datatype.HorizontalAlign;
+import com.flagstone.transform.exception.IllegalArgumentRangeException;
+import com.flagstone.transform.font.CodeIndex;
+import com.flagstone.transform.font.DefineFont2;
+import com.flagstone.transform.font.Kerning;
+import com.flagstone.transform.text.DefineText2;
+import com.flagstone.transform.text.GlyphIndex;
+import com.flagstone.transform.text.TextSpan;
+
+/**
+ * <p>
+ * TextLayout is used to generate definitions for static text fields that
+ * display blocks of text in a font at a specific (fixed) point size. The text
+ * is divided into paragraphs by newline characters and, if a width is set,
+ * each paragraph is broken into lines at spaces so the lines fit the width.
+ * Words that are wider than a line are broken between characters. Each line
+ * is added to the text field as a TextSpan, aligned to the left, right or
+ * centre, or justified by increasing the advance of the spaces.
+ * </p>
+ *
+ * <p>
+ * Lines are filled either greedily, adding as many words as possible to each
+ * line, or optimally, choosing the breaks that minimise the sum of the
+ * squares of the space left at the end of each line, except the last, so the
+ * lines in a paragraph are of similar lengths. The advances for pairs of
+ * characters with Kerning records in the font definition are adjusted,
+ * unless kerning is turned off. The Kerning records contain character codes
+ * and pairs where either character is not in the font are ignored.
+ * </p>
+ *
+ * <p>
+ * The advances, the GlyphIndex objects for each glyph and for each pair of
+ * kerned glyphs, and the tables that map characters to glyphs and pairs of
+ * glyphs to kernings are created when the TextLayout is constructed so text
+ * is laid out using arrays of primitive values and the GlyphIndex objects
+ * are shared amongst the TextSpans generated. A TextLayout may be shared
+ * between threads provided the attributes are not changed.
+ * </p>
+ */
+public final class TextLayout {
+
+    /** Size in twips of the EM Square used for glyph coordinates. */
+    private static final float EMSQUARE = 1024.0f;
+    /** Value used to mark an empty slot in the table of kernings. */
+    private static final long EMPTY = -1L;
+    /** Multiplier used to spread pairs of glyphs across the table. */
+    private static final long HASH = 0x9E3779B97F4A7C15L;
+    /** The number of bits in a long. */
+    private static final int LONG_SIZE = 64;
+    /** The number of bits used to store each glyph in a key. */
+    private static final int GLYPH_BITS = 32;
+    /** The minimum number of bits used to index the table of kernings. */
+    private static final int MIN_BITS = 2;
+
+    /** The size, in twips, of the font. */
+    private final transient int size;
+    /** The height, in twips of the font above the baseline. */
+    private final transient int ascent;
+    /** The height, in twips of the font below the baseline. */
+    private final transient int descent;
+    /** The unique identifier of the font. */
+    private final transient int identifier;
+
+    /** The table mapping characters to the index of each glyph. */
+    private final transient CodeIndex index;
+    /** The advance, in twips, for each glyph. */
+    private final transient int[] advances;
+    /** The GlyphIndex for each glyph. */
+    private final transient GlyphIndex[] glyphs;
+    /** The index of the glyph for a space or -1 if there is no glyph. */
+    private final transient int space;
+
+    /** The pairs of glyphs with kernings, or EMPTY. */
+    private final transient long[] kernKeys;
+    /** The GlyphIndex for the left glyph in each pair, with the kerning. */
+    private final transient GlyphIndex[] kernGlyphs;
+    /** The shift applied to the hash to get a slot in the table. */
+    private final transient int kernShift;
+    /** The bit mask used to wrap the slot when probing. */
+    private final transient int kernMask;
+
+    /** The width of the lines, in twips or zero if lines are not broken. */
+    private transient int width;
+    /** The alignment of the lines. */
+    private transient HorizontalAlign alignment;
+    /** The distance between the baselines of successive lines. */
+    private transient int lineSpacing;
+    /** Whether the advances are adjusted for pairs of kerned glyphs. */
+    private transient boolean kerning;
+    /** Whether lines are broken optimally or greedily. */
+    private transient boolean optimal;
+
+    /**
+     * Creates a TextLayout for the specified font size.
+     * @param font the font definition.
+     * @param fontSize the size of the font in twips.
+     */
+    public TextLayout(final DefineFont2 font, final int fontSize) {
+
+        identifier = font.getIdentifier();
+        size = fontSize;
+        index = font.getCodeIndex();
+
+        final float scale = fontSize / EMSQUARE;
+        final int count = font.getCodes().size();
+
+        ascent = (int) (font.getAscent() * scale);
+        descent = (int) (font.getDescent() * scale);
+        lineSpacing = (int) ((font.getAscent() + font.getDescent()
+                + font.getLeading()) * scale);
+        alignment = HorizontalAlign.LEFT;
+        kerning = true;
+
+        advances = new int[count];
+        glyphs = new GlyphIndex[count];
+        for (int i = 0; i < count; i++) {
+            advances[i] = (int) (font.getAdvance(i) * scale);
+            glyphs[i] = new GlyphIndex(i, advances[i]);
+        }
+        space = index.glyphForCode(' ');
+
+        final List<Kerning> kernings = font.getKernings();
+        int bits = MIN_BITS;
+        while ((1 << bits) < kernings.size() * 2) {
+            bits++;
+        }
+        kernKeys = new long[1 << bits];
+        kernGlyphs = new GlyphIndex[1 << bits];
+        kernShift = LONG_SIZE - bits;
+        kernMask = (1 << bits) - 1;
+        Arrays.fill(kernKeys, EMPTY);
+
+        int left;
+        int right;
+        int slot;
+        for (final Kerning pair : kernings) {
+            left = index.glyphForCode(pair.getLeftGlyph());
+            right = index.glyphForCode(pair.getRightGlyph());
+            if (left >= 0 && right >= 0) {
+                slot = kernSlot(left, right);
+                kernKeys[slot] = key(left, right);
+                kernGlyphs[slot] = new GlyphIndex(left, (int) ((font
+                        .getAdvance(left) + pair.getAdjustment()) * scale));
+            }
+        }
+    }
+
+    /**
+     * Get the width of the lines.
+     * @return the width in twips or zero if paragraphs are not broken into
+     * lines.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Set the width of the lines.
+     * @param twips the width in twips or zero if paragraphs are not broken
+     * into lines. Must be in the range 0..32767.
+     */
+    public void setWidth(final int twips) {
+        if ((twips < 0) || (twips > Coder.SHORT_MAX)) {
+            throw new IllegalArgumentRangeException(0, Coder.SHORT_MAX, twips);
+        }
+        width = twips;
+    }
+
+    /**
+     * Get the alignment of the lines.
+     * @return the alignment.
+     */
+    public HorizontalAlign getAlignment() {
+        return alignment;
+    }
+
+    /**
+     * Set the alignment of the lines. If no width is set then lines are
+     * aligned with the longest line and justified lines are aligned to the
+     * left.
+     * @param align the alignment. Must not be null.
+     */
+    public void setAlignment(final HorizontalAlign align) {
+        if (align == null) {
+            throw new IllegalArgumentException();
+        }
+        alignment = align;
+    }
+
+    /**
+     * Get the distance between the baselines of successive lines.
+     * @return the line spacing in twips. The default is the sum of the ascent,
+     * descent and leading of the font.
+     */
+    public int getLineSpacing() {
+        return lineSpacing;
+    }
+
+    /**
+     * Set the distance between the baselines of successive lines.
+     * @param twips the line spacing in twips.
+     */
+    public void setLineSpacing(final int twips) {
+        lineSpacing = twips;
+    }
+
+    /**
+     * Are the advances adjusted for pairs of kerned glyphs.
+     * @return true if kerning is applied, the default.
+     */
+    public boolean isKerning() {
+        return kerning;
+    }
+
+    /**
+     * Set whether the advances are adjusted for pairs of kerned glyphs.
+     * @param apply true if kerning is applied.
+     */
+    public void setKerning(final boolean apply) {
+        kerning = apply;
+    }
+
+    /**
+     * Are lines broken optimally or greedily.
+     * @return true if the breaks are chosen so lines are similar lengths,
+     * false if each line contains as many words as possible, the default.
+     */
+    public boolean isOptimal() {
+        return optimal;
+    }
+
+    /**
+     * Set whether lines are broken optimally or greedily.
+     * @param balance true if the breaks are chosen so lines are similar
+     * lengths, false if each line contains as many words as possible.
+     */
+    public void setOptimal(final boolean balance) {
+        optimal = balance;
+    }
+
+    /**
+     * Get the width of a line of text, including the kerning.
+     * @param text the string to be displayed.
+     * @return the width in twips.
+     */
+    public int widthForText(final String text) {
+        int total = 0;
+        int glyph = -1;
+        int next;
+        for (int i = 0; i < text.length(); i++) {
+            next = glyphForCharacter(text.charAt(i));
+            if (glyph >= 0) {
+                total += advanceForPair(glyph, next);
+            }
+            glyph = next;
+        }
+        if (glyph >= 0) {
+            total += advances[glyph];
+        }
+        return total;
+    }
+
+    /**
+     * Lay out a block of text and create the spans that can be added to a
+     * static text field. The baseline of the first line is at zero.
+     *
+     * @param text the string to be displayed. Newline characters separate
+     * paragraphs.
+     * @param color the colour used to display the text.
+     * @return a TextSpan for each line of text.
+     */
+    public List<TextSpan> defineSpans(final String text, final Color color) {
+        return layout(text, color, new int[4]);
+    }
+
+    /**
+     * Create a definition for a static text field that displays a block of
+     * text in the specified font.
+     *
+     * @param uid the unique identifier that will be used to reference the
+     * text field in a flash file.
+     * @param text the string to be displayed. Newline characters separate
+     * paragraphs.
+     * @param color the colour used to display the text.
+     * @return a DefineText2 object that can be added to a Flash file.
+     */
+    public DefineText2 defineText(final int uid, final String text,
+            final Color color) {
+        final int[] box = new int[4];
+        final List<TextSpan> spans = layout(text, color, box);
+        return new DefineText2(uid, new Bounds(box[0], box[1], box[2],
+                box[3]), CoordTransform.translate(0, 0), spans);
+    }
+
+    /**
+     * Lay out a block of text.
+     * @param text the string to be displayed.
+     * @param color the colour used to display the text.
+     * @param box array updated with the minimum x, minimum y, maximum x and
+     * maximum y coordinates of the text.
+     * @return a TextSpan for each line of text.
+     */
+    private List<TextSpan> layout(final String text, final Color color,
+            final int[] box) {
+        final int length = text.length();
+        final int[] glyph = new int[length];
+        final GlyphIndex[] chosen = new GlyphIndex[length];
+        final int[] offset = new int[length + 1];
+
+        int next;
+        for (int i = 0; i < length; i++) {
+            if (text.charAt(i) == '\n') {
+                glyph[i] = -1;
+            } else {
+                glyph[i] = glyphForCharacter(text.charAt(i));
+            }
+        }
+        for (int i = 0; i < length; i++) {
+            if (glyph[i] >= 0) {
+                next = i + 1 < length ? glyph[i + 1] : -1;
+                chosen[i] = next >= 0 ? glyphForPair(glyph[i], next)
+                        : glyphs[glyph[i]];
+                offset[i + 1] = offset[i] + chosen[i].getAdvance();
+            } else {
+                offset[i + 1] = offset[i];
+            }
+        }
+
+        final Lines lines = new Lines(length + 1);
+        final int[] words = new int[2 * length + 2];
+        int start = 0;
+        for (int i = 0; i <= length; i++) {
+            if (i == length || glyph[i] < 0) {
+                breakParagraph(glyph, chosen, offset, start, i, words, lines);
+                start = i + 1;
+            }
+        }
+
+        int widest = 0;
+        for (int i = 0; i < lines.count; i++) {
+            widest = Math.max(widest, lines.width[i]);
+        }
+        final int measure = width > 0 ? width : widest;
+
+        final List<TextSpan> spans = new ArrayList<TextSpan>(lines.count);
+        int xOffset;
+        int yOffset = 0;
+
+        box[0] = 0;
+        box[1] = -ascent;
+        box[2] = 0;
+        box[3] = descent;
+
+        for (int i = 0; i < lines.count; i++) {
+            switch (alignment) {
+            case RIGHT:
+                xOffset = measure - lines.width[i];
+                break;
+            case CENTER:
+                xOffset = (measure - lines.width[i]) / 2;
+                break;
+            default:
+                xOffset = 0;
+                break;
+            }
+            final boolean justify = alignment == HorizontalAlign.JUSTIFY
+                    && width > 0 && !lines.last[i];
+
+            spans.add(new TextSpan(identifier, size, color, xOffset, yOffset,
+                    glyphsForLine(glyph, chosen, lines.start[i],
+                            lines.end[i], justify
+                            ? measure - lines.width[i] : 0)));
+
+            box[0] = Math.min(box[0], xOffset);
+            box[2] = Math.max(box[2], xOffset + (justify ? measure
+                    : lines.width[i]));
+            box[3] = yOffset + descent;
+            yOffset += lineSpacing;
+        }
+        return spans;
+    }
+
+    /**
+     * Divide a paragraph into words and break it into lines.
+     * @param glyph the glyph for each character.
+     * @param chosen the GlyphIndex for each character, including kerning.
+     * @param offset the x-coordinate of each character, measured from the
+     * start of the text.
+     * @param start the index of the first character in the paragraph.
+     * @param end the index after the last character in the paragraph.
+     * @param words array used to store the start and end of each word.
+     * @param lines the table of lines that is updated.
+     */
+    private void breakParagraph(final int[] glyph, final GlyphIndex[] chosen,
+            final int[] offset, final int start, final int end,
+            final int[] words, final Lines lines) {
+        int count = 0;
+        int pos = start;
+        int wordEnd;
+
+        while (pos < end) {
+            while (pos < end && glyph[pos] == space) {
+                pos++;
+            }
+            wordEnd = pos;
+            while (wordEnd < end && glyph[wordEnd] != space) {
+                wordEnd++;
+            }
+            while (pos < wordEnd) {
+                words[2 * count] = pos;
+                pos = fit(glyph, chosen, offset, pos, wordEnd);
+                words[2 * count + 1] = pos;
+                count++;
+            }
+        }
+
+        if (count == 0) {
+            lines.add(start, start, 0, true);
+        } else {
+            words[0] = start;
+            if (width == 0 || count == 1) {
+                addLine(glyph, chosen, offset, words, 0, count, lines, true);
+            } else if (optimal) {
+                breakOptimally(glyph, chosen, offset, words, count, lines);
+            } else {
+                breakGreedily(glyph, chosen, offset, words, count, lines);
+            }
+        }
+    }
+
+    /**
+     * Find where a word must be broken so it fits on a line.
+     * @param glyph the glyph for each character.
+     * @param chosen the GlyphIndex for each character, including kerning.
+     * @param offset the x-coordinate of each character.
+     * @param start the index of the first character in the word.
+     * @param end the index after the last character in the word.
+     * @return the index after the last character that fits on a line, which
+     * includes at least one character.
+     */
+    private int fit(final int[] glyph, final GlyphIndex[] chosen,
+            final int[] offset, final int start, final int end) {
+        int pos = end;
+        if (width > 0) {
+            pos = start + 1;
+            while (pos < end
+                    && measure(glyph, chosen, offset, start, pos + 1)
+                    <= width) {
+                pos++;
+            }
+        }
+        return pos;
+    }
+
+    /**
+     * Break a paragraph into lines, adding as many words as possible to
+     * each line.
+     * @param glyph the glyph for each character.
+     * @param chosen the GlyphIndex for each character, including kerning.
+     * @param offset the x-coordinate of each character.
+     * @param words the start and end of each word.
+     * @param count the number of words.
+     * @param lines the table of lines that is updated.
+     */
+    private void breakGreedily(final int[] glyph, final GlyphIndex[] chosen,
+            final int[] offset, final int[] words, final int count,
+            final Lines lines) {
+        int first = 0;
+        int last;
+        while (first < count) {
+            last = first + 1;
+            while (last < count && measure(glyph, chosen, offset,
+                    words[2 * first], words[2 * last + 1]) <= width) {
+                last++;
+            }
+            addLine(glyph, chosen, offset, words, first, last, lines,
+                    last == count);
+            first = last;
+        }
+    }
+
+    /**
+     * Break a paragraph into lines, minimising the sum of the squares of the
+     * space left at the end of each line except the last.
+     * @param glyph the glyph for each character.
+     * @param chosen the GlyphIndex for each character, including kerning.
+     * @param offset the x-coordinate of each character.
+     * @param words the start and end of each word.
+     * @param count the number of words.
+     * @param lines the table of lines that is updated.
+     */
+    private void breakOptimally(final int[] glyph, final GlyphIndex[] chosen,
+            final int[] offset, final int[] words, final int count,
+            final Lines lines) {
+        final long[] cost = new long[count + 1];
+        final int[] from = new int[count + 1];
+        long total;
+        int lineWidth;
+
+        for (int last = 1; last <= count; last++) {
+            cost[last] = Long.MAX_VALUE;
+            for (int first = last - 1; first >= 0; first--) {
+                lineWidth = measure(glyph, chosen, offset, words[2 * first],
+                        words[2 * last - 1]);
+                if (lineWidth > width && first < last - 1) {
+                    break;
+                }
+                total = cost[first];
+                if (last < count) {
+                    total += (long) (width - lineWidth) * (width - lineWidth);
+                }
+                if (total < cost[last]) {
+                    cost[last] = total;
+                    from[last] = first;
+                }
+            }
+        }
+
+        int lineCount = 0;
+        for (int last = count; last > 0; last = from[last]) {
+            lineCount++;
+        }
+        final int[] breaks = new int[lineCount + 1];
+        breaks[lineCount] = count;
+        for (int i = lineCount; i > 0; i--) {
+            breaks[i - 1] = from[breaks[i]];
+        }
+        for (int i = 0; i < lineCount; i++) {
+            addLine(glyph, chosen, offset, words, breaks[i], breaks[i + 1],
+                    lines, i == lineCount - 1);
+        }
+    }
+
+    /**
+     * Add a line containing a sequence of words.
+     * @param glyph the glyph for each character.
+     * @param chosen the GlyphIndex for each character, including kerning.
+     * @param offset the x-coordinate of each character.
+     * @param words the start and end of each word.
+     * @param first the index of the first word on the line.
+     * @param last the index after the last word on the line.
+     * @param lines the table of lines that is updated.
+     * @param end true if the line is the last in the paragraph.
+     */
+    private void addLine(final int[] glyph, final GlyphIndex[] chosen,
+            final int[] offset, final int[] words, final int first,
+            final int last, final Lines lines, final boolean end) {
+        final int start = words[2 * first];
+        final int stop = words[2 * last - 1];
+        lines.add(start, stop, measure(glyph, chosen, offset, start, stop),
+                end);
+    }
+
+    /**
+     * Get the width of a sequence of characters on a line. The kerning
+     * between the last character and the following one is not included.
+     * @param glyph the glyph for each character.
+     * @param chosen the GlyphIndex for each character, including kerning.
+     * @param offset the x-coordinate of each character.
+     * @param start the index of the first character.
+     * @param end the index after the last character.
+     * @return the width in twips.
+     */
+    private int measure(final int[] glyph, final GlyphIndex[] chosen,
+            final int[] offset, final int start, final int end) {
+        int total = 0;
+        if (end > start) {
+            total = offset[end] - offset[start]
+                - chosen[end - 1].getAdvance() + advances[glyph[end - 1]];
+        }
+        return total;
+    }
+
+    /**
+     * Create the list of GlyphIndex objects for a line.
+     * @param glyph the glyph for each character.
+     * @param chosen the GlyphIndex for each character, including kerning.
+     * @param start the index of the first character.
+     * @param end the index after the last character.
+     * @param extra the space added to justify the line, divided between
+     * the spaces on the line.
+     * @return the list of characters for the TextSpan.
+     */
+    private List<GlyphIndex> glyphsForLine(final int[] glyph,
+            final GlyphIndex[] chosen, final int start, final int end,
+            final int extra) {
+        final List<GlyphIndex> list = new ArrayList<GlyphIndex>(end - start);
+        int spaces = 0;
+
+        if (extra > 0) {
+            for (int i = start; i < end; i++) {
+                if (glyph[i] == space) {
+                    spaces++;
+                }
+            }
+        }
+
+        int gap = 0;
+        for (int i = start; i < end; i++) {
+            if (i == end - 1) {
+                list.add(glyphs[glyph[i]]);
+            } else if (spaces > 0 && glyph[i] == space) {
+                list.add(new GlyphIndex(space, chosen[i].getAdvance()
+                        + extra / spaces + (gap < extra % spaces ? 1 : 0)));
+                gap++;
+            } else {
+                list.add(chosen[i]);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Get the glyph for a character.
+     * @param character the character.
+     * @return the index of the glyph.
+     */
+    private int glyphForCharacter(final char character) {
+        final int glyph = index.glyphForCode(character);
+        if (glyph < 0) {
+            throw new IllegalArgumentException("No glyph for character: "
+                    + (int) character);
+        }
+        return glyph;
+    }
+
+    /**
+     * Get the advance for a glyph followed by another glyph.
+     * @param left the index of the first glyph.
+     * @param right the index of the following glyph.
+     * @return the advance, including the kerning.
+     */
+    private int advanceForPair(final int left, final int right) {
+        return glyphForPair(left, right).getAdvance();
+    }
+
+    /**
+     * Get the GlyphIndex for a glyph followed by another glyph.
+     * @param left the index of the first glyph.
+     * @param right the index of the following glyph.
+     * @return the GlyphIndex, with the advance adjusted if the pair of
+     * glyphs is kerned.
+     */
+    private GlyphIndex glyphForPair(final int left, final int right) {
+        GlyphIndex result = glyphs[left];
+        if (kerning) {
+            final int slot = kernSlot(left, right);
+            if (kernKeys[slot] != EMPTY) {
+                result = kernGlyphs[slot];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Find the slot in the table of kernings for a pair of glyphs.
+     * @param left the index of the first glyph.
+     * @param right the index of the following glyph.
+     * @return the slot containing the pair or the empty slot where the pair
+     * would be added.
+     */
+    private int kernSlot(final int left, final int right) {
+        final long key = key(left, right);
+        int slot = (int) ((key * HASH) >>> kernShift);
+        while (kernKeys[slot] != EMPTY && kernKeys[slot] != key) {
+            slot = (slot + 1) & kernMask;
+        }
+        return slot;
+    }
+
+    /**
+     * Create the key used to identify a pair of glyphs.
+     * @param left the index of the first glyph.
+     * @param right the index of the following glyph.
+     * @return the key.
+     */
+    private static long key(final int left, final int right) {
+        return ((long) left << GLYPH_BITS) | right;
+    }
+
+    /**
+     * Lines is a table of the lines of text in a block.
+     */
+    private static final class Lines {
+        /** The index of the first character on each line. */
+        private final transient int[] start;
+        /** The index after the last character on each line. */
+        private final transient int[] end;
+        /** The width of each line in twips. */
+        private final transient int[] width;
+        /** Whether each line is the last in a paragraph. */
+        private final transient boolean[] last;
+        /** The number of lines. */
+        private transient int count;
+
+        /**
+         * Create a table of lines.
+         * @param capacity the maximum number of lines.
+         */
+        Lines(final int capacity) {
+            start = new int[capacity];
+            end = new int[capacity];
+            width = new int[capacity];
+            last = new boolean[capacity];
+        }
+
+        /**
+         * Add a line.
+         * @param first the index of the first character.
+         * @param stop the index after the last character.
+         * @param lineWidth the width of the line.
+         * @param closing true if the line is the last in a paragraph.
+         */
+        void add(final int first, final int stop, final int lineWidth,
+                final boolean closing) {
+            start[count] = first;
+            end[count] = stop;
+            width[count] = lineWidth;
+            last[count] = closing;
+            count++;
+        }
+    }
+}
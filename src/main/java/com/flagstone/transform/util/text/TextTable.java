@@ -33,13 +33,12 @@ package com.flagstone.transform.util.text;
 
 import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map;
 
 import com.flagstone.transform.datatype.Bounds;
 import com.flagstone.transform.datatype.Color;
 import com.flagstone.transform.datatype.CoordTransform;
+import com.flagstone.transform.font.CodeIndex;
 import com.flagstone.transform.font.DefineFont2;
 import com.flagstone.transform.text.DefineText2;
 import com.flagstone.transform.text.GlyphIndex;
@@ -51,7 +50,8 @@ import com.flagstone.transform.text.TextSpan;
  *
  * Each instance caches a table of GlyphIndex objects with predefined advances
  * allowing the objects for each character used to be shared amongst the
- * TextSpan objects that are used to display text.
+ * TextSpan objects that are used to display text. Characters are mapped to
+ * glyphs using the CodeIndex shared with the font definition.
  */
 public final class TextTable {
 
@@ -67,11 +67,13 @@ public final class TextTable {
     /** The unique identifier of the font. */
     private final transient int identifier;
 
+    /** The table mapping characters to the index of each glyph. */
+    private final transient CodeIndex index;
     /**
-     * A table of characters and the corresponding GlyphIndex with the
-     * pre-calculated advance for the font.
+     * The GlyphIndex for each glyph with the pre-calculated advance for the
+     * font.
      */
-    private final transient Map<Character, GlyphIndex> characters;
+    private final transient GlyphIndex[] glyphs;
 
     /**
      * Creates a TextTable for the specified font size.
@@ -82,22 +84,31 @@ public final class TextTable {
 
         identifier = font.getIdentifier();
         size = fontSize;
-        characters = new LinkedHashMap<Character, GlyphIndex>();
+        index = font.getCodeIndex();
 
-        final List<Integer> codes = font.getCodes();
-        final List<Integer> advances = font.getAdvances();
         final float scale = fontSize / EMSQUARE;
-        final int count = codes.size();
+        final int count = font.getCodes().size();
 
         ascent = (int) (font.getAscent() * scale);
         descent = (int) (font.getDescent() * scale);
 
+        glyphs = new GlyphIndex[count];
         for (int i = 0; i < count; i++) {
-            characters.put((char) codes.get(i).intValue(), new GlyphIndex(i,
-                    (int) (advances.get(i) * scale)));
+            glyphs[i] = new GlyphIndex(i, (int) (font.getAdvance(i) * scale));
         }
     }
 
+    /**
+     * Get the GlyphIndex for a character.
+     * @param character the character.
+     * @return the GlyphIndex or null if the font does not contain a glyph for
+     * the character.
+     */
+    private GlyphIndex glyphForCharacter(final char character) {
+        final int glyph = index.glyphForCode(character);
+        return glyph < 0 ? null : glyphs[glyph];
+    }
+
     /**
      * Create a bound box that encloses the line of text when rendered using the
      * specified font and size.
@@ -110,7 +121,7 @@ public final class TextTable {
     public Bounds boundsForText(final String text) {
         int total = 0;
         for (int i = 0; i < text.length(); i++) {
-            total += characters.get(text.charAt(i)).getAdvance();
+            total += glyphForCharacter(text.charAt(i)).getAdvance();
         }
         return new Bounds(0, -ascent, total, descent);
     }
@@ -127,7 +138,7 @@ public final class TextTable {
     public List<GlyphIndex> charactersForText(final String text) {
         final List<GlyphIndex> list = new ArrayList<GlyphIndex>(text.length());
         for (int i = 0; i < text.length(); i++) {
-            list.add(characters.get(text.charAt(i)));
+            list.add(glyphForCharacter(text.charAt(i)));
         }
         return list;
     }
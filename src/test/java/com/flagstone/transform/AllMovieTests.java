@@ -52,6 +52,7 @@ import org.junit.runners.Suite;
     MovieDataTest.class, MovieDataCodingTest.class,
     MovieMetaDataTest.class, MovieMetaDataCodingTest.class,
     MovieObjectTest.class, MovieObjectCodingTest.class,
+    MovieTest.class,
     PathsArePostscriptTest.class, PathsArePostscriptCodingTest.class,
     PlaceTest.class, PlaceCodingTest.class,
     Place2Test.class, Place2CodingTest.class,
@@ -0,0 +1,129 @@
+/*
+ * LazyTagCodingTest.java
+ * Transform
+ *
+ * Copyright (c) 2010 Flagstone Software Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of Flagstone Software Ltd. nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.flagstone.transform;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.flagstone.transform.coder.Context;
+import com.flagstone.transform.coder.DecoderRegistry;
+import com.flagstone.transform.coder.SWFDecoder;
+
+public final class LazyTagCodingTest extends AbstractCodingTest {
+
+    private static final byte[] BINARY = new byte[] {(byte) 0xCA, 0x15,
+        0x01, 0x00, 0x00, 0x00, 0x00, 0x00, 0x01, 0x02, 0x03, 0x04};
+
+    private static final byte[] EXTENDED = new byte[] {(byte) 0xFF, 0x15,
+        0x0A, 0x00, 0x00, 0x00, 0x01, 0x00, 0x00, 0x00, 0x00, 0x00,
+        0x01, 0x02, 0x03, 0x04};
+
+    @Test
+    public void checkLazyTagIsNotDecoded() throws IOException {
+        final LazyTag object = (LazyTag) decodeLazyTag(BINARY);
+
+        assertEquals(MovieTypes.DEFINE_BINARY_DATA, object.getType());
+        assertEquals(0, object.getOffset());
+        assertEquals(10, object.getLength());
+        assertFalse(object.isDecoded());
+    }
+
+    @Test
+    public void checkLazyTagLengthForEncoding() throws IOException {
+        final MovieTag object = decodeLazyTag(BINARY);
+
+        assertEquals(CALCULATED_LENGTH, BINARY.length, prepare(object));
+    }
+
+    @Test
+    public void checkLazyTagIsEncodedUnchanged() throws IOException {
+        final MovieTag object = decodeLazyTag(BINARY);
+
+        assertArrayEquals(NOT_ENCODED, BINARY, encode(object));
+    }
+
+    @Test
+    public void checkExtendedLazyTagIsEncodedUnchanged() throws IOException {
+        final MovieTag object = decodeLazyTag(EXTENDED);
+
+        assertArrayEquals(NOT_ENCODED, EXTENDED, encode(object));
+    }
+
+    @Test
+    public void checkLazyTagIsDecoded() throws IOException {
+        final byte[] data = new byte[] {1, 2, 3, 4};
+        final LazyTag object = (LazyTag) decodeLazyTag(EXTENDED);
+        final DefineData tag = (DefineData) object.getTag();
+
+        assertTrue(object.isDecoded());
+        assertEquals(1, tag.getIdentifier());
+        assertArrayEquals(NOT_DECODED, data, tag.getData());
+        assertArrayEquals(NOT_ENCODED, BINARY, encode(object));
+    }
+
+    @Test
+    public void checkCopySharesDecodedState() throws IOException {
+        final LazyTag object = (LazyTag) decodeLazyTag(BINARY);
+        final LazyTag copy = object.copy();
+        object.getTag();
+
+        assertFalse(copy.isDecoded());
+        assertTrue(object.copy().isDecoded());
+        assertArrayEquals(NOT_ENCODED, BINARY, encode(copy));
+    }
+
+    @Test
+    public void checkShowFrameIsNotDeferred() throws IOException {
+        final byte[] binary = new byte[] {0x40, 0x00};
+
+        assertTrue(decodeLazyTag(binary) instanceof ShowFrame);
+    }
+
+    private MovieTag decodeLazyTag(final byte[] bytes) throws IOException {
+        final DecoderRegistry registry = DecoderRegistry.getDefault();
+        registry.setMovieDecoder(new LazyDecoder(registry.getMovieDecoder()));
+        final SWFDecoder decoder = new SWFDecoder(ByteBuffer.wrap(bytes));
+        final Context context = new Context();
+        context.setRegistry(registry);
+        final List<MovieTag> list = new ArrayList<MovieTag>();
+        registry.getMovieDecoder().getObject(list, decoder, context);
+        return list.get(0);
+    }
+}
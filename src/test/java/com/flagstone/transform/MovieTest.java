@@ -0,0 +1,232 @@
+/*
+ * MovieTest.java
+ * Transform
+ *
+ * Copyright (c) 2009-2010 Flagstone Software Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of Flagstone Software Ltd. nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.flagstone.transform;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.flagstone.transform.datatype.Bounds;
+import com.flagstone.transform.datatype.WebPalette;
+
+public final class MovieTest {
+
+    private transient Movie fixture;
+
+    @Before
+    public void setUp() {
+        final MovieHeader header = new MovieHeader();
+        header.setFrameRate(1.0f);
+        header.setFrameSize(new Bounds(0, 0, 100, 100));
+
+        fixture = new Movie();
+        fixture.add(header);
+        fixture.add(new Background(WebPalette.WHITE.color()));
+        fixture.add(ShowFrame.getInstance());
+    }
+
+    @Test
+    public void copyOnWriteSharesObjects() {
+        final Movie copy = fixture.copyOnWrite();
+
+        assertSame(fixture.getObjects().get(1), copy.getObjects().get(1));
+        assertTrue(copy.isShared(1));
+    }
+
+    @Test
+    public void copyOnWriteCopiesHeader() {
+        final Movie copy = fixture.copyOnWrite();
+
+        assertNotSame(fixture.getObjects().get(0), copy.getObjects().get(0));
+        assertFalse(copy.isShared(0));
+    }
+
+    @Test
+    public void copyOnWriteDoesNotShareShowFrame() {
+        final Movie copy = fixture.copyOnWrite();
+
+        assertFalse(copy.isShared(2));
+    }
+
+    @Test
+    public void editCopiesSharedObject() {
+        final Movie copy = fixture.copyOnWrite();
+        final Background background = (Background) copy.edit(1);
+        background.setColor(WebPalette.BLACK.color());
+
+        assertNotSame(fixture.getObjects().get(1), background);
+        assertSame(background, copy.getObjects().get(1));
+        assertFalse(copy.isShared(1));
+        assertEquals(WebPalette.WHITE.color(),
+                ((Background) fixture.getObjects().get(1)).getColor());
+    }
+
+    @Test
+    public void copyOnWriteSharesOriginalObjects() {
+        final Movie copy = fixture.copyOnWrite();
+
+        assertTrue(fixture.isShared(1));
+        assertNotSame(copy.getObjects().get(1), fixture.edit(1));
+        assertFalse(fixture.isShared(1));
+    }
+
+    @Test
+    public void copyOnWriteSharesEditedObjects() {
+        final Movie copy = fixture.copyOnWrite();
+        copy.edit(1);
+        final Movie second = copy.copyOnWrite();
+
+        assertTrue(copy.isShared(1));
+        assertTrue(second.isShared(1));
+    }
+
+    @Test
+    public void editCopiesObjectOnce() {
+        final Movie copy = fixture.copyOnWrite();
+
+        assertSame(copy.edit(1), copy.edit(1));
+    }
+
+    @Test
+    public void editReturnsOwnedObject() {
+        assertSame(fixture.getObjects().get(1), fixture.edit(1));
+        assertFalse(fixture.isShared(1));
+    }
+
+    @Test
+    public void copyDoesNotShareObjects() {
+        final Movie copy = fixture.copyOnWrite().copy();
+
+        assertNotSame(fixture.getObjects().get(1), copy.getObjects().get(1));
+        assertFalse(copy.isShared(1));
+    }
+
+    @Test
+    public void encodeSharedObjects() throws Exception {
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        fixture.encodeToStream(expected);
+
+        final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        fixture.copyOnWrite().encodeToStream(actual);
+
+        assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+    }
+
+    @Test
+    public void rewriteDecodedFile() throws Exception {
+        final byte[] data = new byte[100000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        ((MovieHeader) fixture.getObjects().get(0)).setCompressed(false);
+        fixture.getObjects().add(1, new DefineData(1, data));
+
+        final File file = File.createTempFile("MovieTest", ".swf");
+        try {
+            fixture.encodeToFile(file);
+
+            final Movie movie = new Movie();
+            movie.decodeFromFile(file);
+            movie.encodeToFile(file);
+
+            final Movie decoded = new Movie();
+            decoded.decodeFromFile(file);
+            assertArrayEquals(data,
+                    ((DefineData) decoded.getObjects().get(1)).getData());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void decodeMappedFile() throws Exception {
+        ((MovieHeader) fixture.getObjects().get(0)).setCompressed(false);
+        fixture.getObjects().add(1, new DefineData(1, new byte[] {1, 2, 3}));
+
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        fixture.encodeToStream(expected);
+
+        final File file = File.createTempFile("MovieTest", ".swf");
+        try {
+            fixture.encodeToFile(file);
+
+            final Movie movie = new Movie();
+            movie.setMapped(true);
+            movie.decodeFromFile(file);
+
+            final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+            movie.encodeToStream(actual);
+            assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void encodeConcurrentlySetsFrameCount() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (int run = 0; run < 50; run++) {
+                final Movie movie = new Movie();
+                movie.add(fixture.getObjects().get(0).copy());
+                for (int i = 0; i < 200; i++) {
+                    movie.add(new Background(WebPalette.WHITE.color()));
+                    movie.add(ShowFrame.getInstance());
+                }
+                movie.setExecutor(executor);
+
+                final ByteArrayOutputStream stream =
+                    new ByteArrayOutputStream();
+                movie.encodeToStream(stream);
+
+                final Movie decoded = new Movie();
+                decoded.decodeFromStream(
+                        new ByteArrayInputStream(stream.toByteArray()));
+                assertEquals(200, ((MovieHeader) decoded.getObjects().get(0))
+                        .getFrameCount());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * ContextTest.java
+ * Transform
+ *
+ * Copyright (c) 2010 Flagstone Software Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of Flagstone Software Ltd. nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.flagstone.transform.coder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public final class ContextTest {
+
+    @Test
+    public void variableIsNotSet() {
+        final Context fixture = new Context();
+
+        assertFalse(fixture.contains(Context.VERSION));
+        assertNull(fixture.get(Context.VERSION));
+        assertEquals(0, fixture.getInt(Context.VERSION));
+    }
+
+    @Test
+    public void putSetsVariable() {
+        final Context fixture = new Context();
+        fixture.put(Context.FILL_SIZE, 3);
+
+        assertTrue(fixture.contains(Context.FILL_SIZE));
+        assertEquals(3, fixture.getInt(Context.FILL_SIZE));
+        assertEquals(Integer.valueOf(3), fixture.get(Context.FILL_SIZE));
+    }
+
+    @Test
+    public void putZeroSetsVariable() {
+        final Context fixture = new Context();
+        fixture.put(Context.LINE_SIZE, 0);
+
+        assertTrue(fixture.contains(Context.LINE_SIZE));
+        assertEquals(Integer.valueOf(0), fixture.get(Context.LINE_SIZE));
+    }
+
+    @Test
+    public void removeClearsVariable() {
+        final Context fixture = new Context();
+        fixture.put(Context.TRANSPARENT, 1);
+        fixture.remove(Context.TRANSPARENT);
+
+        assertFalse(fixture.contains(Context.TRANSPARENT));
+    }
+
+    @Test
+    public void integerMethodsShareVariables() {
+        final Context fixture = new Context();
+        final Integer key = Integer.valueOf(Context.SHAPE_SIZE);
+        fixture.put(key, Integer.valueOf(2));
+
+        assertTrue(fixture.contains(key));
+        assertEquals(2, fixture.getInt(Context.SHAPE_SIZE));
+        fixture.remove(key);
+        assertFalse(fixture.contains(Context.SHAPE_SIZE));
+    }
+
+    @Test
+    public void minimumValueSetsVariable() {
+        final Context fixture = new Context();
+        fixture.put(Context.FILL_SIZE, Integer.MIN_VALUE);
+
+        assertTrue(fixture.contains(Context.FILL_SIZE));
+        assertEquals(Integer.valueOf(Integer.MIN_VALUE),
+                fixture.get(Context.FILL_SIZE));
+    }
+
+    @Test
+    public void putNullClearsVariable() {
+        final Context fixture = new Context();
+        final Integer key = Integer.valueOf(Context.LAST);
+        fixture.put(key, Integer.valueOf(1));
+        fixture.put(key, null);
+
+        assertFalse(fixture.contains(key));
+        assertNull(fixture.get(key));
+    }
+
+    @Test
+    public void otherKeysAreSupported() {
+        final Context fixture = new Context();
+        final int key = 1000;
+
+        assertFalse(fixture.contains(key));
+        fixture.put(key, 4);
+        assertTrue(fixture.contains(key));
+        assertEquals(4, fixture.getInt(key));
+        fixture.remove(key);
+        assertNull(fixture.get(key));
+    }
+}
@@ -33,9 +33,11 @@ package com.flagstone.transform.coder; // NOPMD - too many methods, etc.
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.EmptyStackException;
 
 import org.junit.Test;
@@ -294,6 +296,70 @@ public final class SWFDecoderTest {
         assertEquals(0, fixture.readBits(0, true));
     }
 
+    @Test
+    public void readWideBitsAtUnalignedOffset() throws IOException {
+        final byte[] data = new byte[] {1, (byte) 0xFF, (byte) 0xFF,
+                (byte) 0xFF, (byte) 0xFC };
+        final ByteArrayInputStream stream = new ByteArrayInputStream(data);
+        final SWFDecoder fixture = new SWFDecoder(stream);
+
+        fixture.readBits(7, false);
+        assertEquals(0x7FFFFFFF, fixture.readBits(31, false));
+        assertEquals(0, fixture.readBits(2, false));
+    }
+
+    @Test
+    public void readUnsignedBits() throws IOException {
+        final byte[] data = new byte[] {3, (byte) 0xC0 };
+        final ByteArrayInputStream stream = new ByteArrayInputStream(data);
+        final SWFDecoder fixture = new SWFDecoder(stream);
+
+        fixture.readUB(6);
+        assertEquals(15, fixture.readUB(4));
+    }
+
+    @Test
+    public void readSignedBits() throws IOException {
+        final byte[] data = new byte[] {3, (byte) 0xC0 };
+        final ByteArrayInputStream stream = new ByteArrayInputStream(data);
+        final SWFDecoder fixture = new SWFDecoder(stream);
+
+        fixture.readUB(6);
+        assertEquals(-1, fixture.readSB(4));
+    }
+
+    @Test
+    public void readFixedBits() throws IOException {
+        final byte[] data = new byte[] {(byte) 0xC0, 0, 0 };
+        final ByteArrayInputStream stream = new ByteArrayInputStream(data);
+        final SWFDecoder fixture = new SWFDecoder(stream);
+
+        assertEquals(-1.0f, fixture.readFB(18), 0.0f);
+    }
+
+    @Test
+    public void scanBitsDoesNotAdvance() throws IOException {
+        final byte[] data = new byte[] {3, (byte) 0xC0 };
+        final ByteArrayInputStream stream = new ByteArrayInputStream(data);
+        final SWFDecoder fixture = new SWFDecoder(stream);
+
+        fixture.readUB(6);
+        assertEquals(-1, fixture.scanBits(4, true));
+        assertEquals(15, fixture.readUB(4));
+    }
+
+    @Test
+    public void scanBitsBeyondPreviousField() throws IOException {
+        final byte[] data = new byte[] {0, 0, 0, 0, 0, 0, 0, 3, (byte) 0xC0 };
+        final ByteArrayInputStream stream = new ByteArrayInputStream(data);
+        final SWFDecoder fixture = new SWFDecoder(stream);
+
+        fixture.readUB(32);
+        fixture.readUB(30);
+        assertEquals(-1, fixture.scanBits(4, true));
+        assertEquals(15, fixture.readUB(4));
+    }
+
     @Test
     public void scanByte() throws IOException {
         final byte[] data = new byte[] {1, 2 };
@@ -609,4 +675,102 @@ public final class SWFDecoderTest {
 
         assertEquals(0.0, fixture.readHalf(), 0.0);
     }
+
+    @Test
+    public void decodeFromBuffer() throws IOException {
+        final byte[] data = new byte[] {1, 2, 3, 4 };
+        final SWFDecoder fixture = new SWFDecoder(ByteBuffer.wrap(data));
+
+        assertEquals(0x0201, fixture.readUnsignedShort());
+        assertEquals(0x0403, fixture.readUnsignedShort());
+    }
+
+    @Test
+    public void decodeFromBufferPosition() throws IOException {
+        final byte[] data = new byte[] {1, 2, 3, 4 };
+        final ByteBuffer buffer = ByteBuffer.wrap(data);
+        buffer.position(2);
+        final SWFDecoder fixture = new SWFDecoder(buffer);
+
+        assertEquals(0x0403, fixture.readUnsignedShort());
+        assertEquals(2, buffer.position());
+    }
+
+    @Test
+    public void readBufferSharesContents() throws IOException {
+        final byte[] data = new byte[] {1, 2, 3, 4 };
+        final SWFDecoder fixture = new SWFDecoder(ByteBuffer.wrap(data));
+
+        fixture.readByte();
+        final ByteBuffer slice = fixture.readBuffer(2);
+        data[1] = 5;
+
+        assertTrue(slice.isReadOnly());
+        assertEquals(2, slice.remaining());
+        assertEquals(5, slice.get(0));
+        assertEquals(4, fixture.readByte());
+    }
+
+    @Test
+    public void readBufferFromStream() throws IOException {
+        final byte[] data = new byte[] {1, 2, 3, 4 };
+        final SWFDecoder fixture = new SWFDecoder(
+                new ByteArrayInputStream(data));
+
+        fixture.readByte();
+        final ByteBuffer slice = fixture.readBuffer(2);
+
+        assertArrayEquals(new byte[] {2, 3}, Coder.toByteArray(slice));
+        assertEquals(4, fixture.readByte());
+    }
+
+    @Test
+    public void readBufferTracksLocation() throws IOException {
+        final byte[] data = new byte[SWFDecoder.BUFFER_SIZE * 3];
+        data[data.length - 1] = 1;
+        final SWFDecoder fixture = new SWFDecoder(ByteBuffer.wrap(data));
+
+        fixture.mark();
+        fixture.readByte();
+        fixture.readBuffer(data.length - 2);
+
+        assertEquals(data.length - 1, fixture.bytesRead());
+        assertEquals(1, fixture.readByte());
+    }
+
+    @Test
+    public void readBytesLargerThanBuffer() throws IOException {
+        final byte[] data = new byte[SWFDecoder.BUFFER_SIZE * 3];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        final SWFDecoder fixture = new SWFDecoder(ByteBuffer.wrap(data));
+        fixture.mark();
+        fixture.readByte();
+        final byte[] bytes = fixture.readBytes(new byte[data.length - 2]);
+
+        assertEquals(1, bytes[0]);
+        assertEquals(data[data.length - 2], bytes[bytes.length - 1]);
+        assertEquals(data.length - 1, fixture.bytesRead());
+        assertEquals(data[data.length - 1], (byte) fixture.readByte());
+    }
+
+    @Test
+    public void skipPastBuffer() throws IOException {
+        final byte[] data = new byte[SWFDecoder.BUFFER_SIZE * 2];
+        data[data.length - 1] = 1;
+        final SWFDecoder fixture = new SWFDecoder(ByteBuffer.wrap(data));
+
+        fixture.readByte();
+        fixture.skip(data.length - 2);
+        assertEquals(1, fixture.readByte());
+    }
+
+    @Test(expected = ArrayIndexOutOfBoundsException.class)
+    public void readBufferPastEnd() throws IOException {
+        final byte[] data = new byte[] {1, 2, 3, 4 };
+        final SWFDecoder fixture = new SWFDecoder(ByteBuffer.wrap(data));
+
+        fixture.readBuffer(5);
+    }
 }
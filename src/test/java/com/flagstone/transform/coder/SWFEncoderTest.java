@@ -36,6 +36,7 @@ import static org.junit.Assert.assertEquals;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import org.junit.Test;
 
@@ -183,6 +184,36 @@ public final class SWFEncoderTest {
         assertArrayEquals(data, stream.toByteArray());
     }
 
+    @Test
+    public void writeByteBuffer() throws IOException {
+        final byte[] data = new byte[] {1, 2, 3, 4, 5, 6, 7, 8 };
+        final ByteBuffer buffer = ByteBuffer.wrap(data);
+        buffer.position(2);
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        final SWFEncoder encoder = new SWFEncoder(stream);
+
+        assertEquals(6, encoder.writeBytes(buffer));
+        encoder.flush();
+
+        assertEquals(2, buffer.position());
+        assertArrayEquals(new byte[] {3, 4, 5, 6, 7, 8 }, stream.toByteArray());
+    }
+
+    @Test
+    public void writeByteBufferLargerThanBuffer() throws IOException {
+        final byte[] data = new byte[] {1, 2, 3, 4, 5, 6, 7, 8 };
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        final SWFEncoder encoder = new SWFEncoder(stream, 4);
+
+        encoder.writeByte(0);
+        encoder.writeBytes(ByteBuffer.wrap(data).asReadOnlyBuffer());
+        encoder.writeByte(9);
+        encoder.flush();
+
+        assertArrayEquals(new byte[] {0, 1, 2, 3, 4, 5, 6, 7, 8, 9 },
+                stream.toByteArray());
+    }
+
     @Test
     public void writeString() throws IOException {
         final byte[] data = new byte[] {0x31, 0x32, 0x33, 0x00 };
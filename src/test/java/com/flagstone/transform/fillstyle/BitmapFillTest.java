@@ -33,8 +33,10 @@ package com.flagstone.transform.fillstyle;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -75,6 +77,17 @@ public final class BitmapFillTest {
         fixture = new BitmapFill(TILED, SMOOTHED, 1, null);
     }
 
+    @Test
+    public void checkAccessorForTiledAndSmoothed() {
+        fixture = new BitmapFill(true, true, IDENTIFIER, TRANSFORM);
+        assertTrue(fixture.isTiled());
+        assertTrue(fixture.isSmoothed());
+        fixture.setTiled(false);
+        fixture.setSmoothed(false);
+        assertFalse(fixture.isTiled());
+        assertFalse(fixture.isSmoothed());
+    }
+
     @Test
     public void checkCopy() {
         fixture = new BitmapFill(TILED, SMOOTHED, IDENTIFIER, TRANSFORM);
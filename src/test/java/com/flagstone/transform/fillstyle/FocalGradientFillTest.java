@@ -49,6 +49,7 @@ import com.flagstone.transform.coder.Context;
 import com.flagstone.transform.coder.SWFDecoder;
 import com.flagstone.transform.coder.SWFEncoder;
 import com.flagstone.transform.datatype.Color;
+import com.flagstone.transform.datatype.CoordTransform;
 
 public final class FocalGradientFillTest {
 
@@ -66,6 +67,15 @@ public final class FocalGradientFillTest {
 
     private final transient byte[] encoded = new byte[] {};
 
+    @Test
+    public void checkConstructorSetsGradients() {
+        fixture = new FocalGradientFill(CoordTransform.translate(1, 2),
+                Spread.PAD, Interpolation.NORMAL, 0.5f, list);
+
+        assertEquals(list, fixture.getGradients());
+        assertEquals(0.5f, fixture.getFocalPoint(), 0.0f);
+    }
+
     @Test
     @Ignore
     public void checkCopy() {
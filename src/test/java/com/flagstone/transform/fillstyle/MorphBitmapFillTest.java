@@ -33,7 +33,9 @@ package com.flagstone.transform.fillstyle;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -81,6 +83,18 @@ public final class MorphBitmapFillTest {
         fixture = new MorphBitmapFill(TILED, SMOOTHED, 1, START, null);
     }
 
+    @Test
+    public void checkAccessorForTiledAndSmoothed() {
+        fixture = new MorphBitmapFill(true, true, IDENTIFIER,
+                START, END);
+        assertTrue(fixture.isTiled());
+        assertTrue(fixture.isSmoothed());
+        fixture.setTiled(false);
+        fixture.setSmoothed(false);
+        assertFalse(fixture.isTiled());
+        assertFalse(fixture.isSmoothed());
+    }
+
     @Test
     public void checkCopy() {
         fixture = new MorphBitmapFill(TILED, SMOOTHED, IDENTIFIER, START, END);
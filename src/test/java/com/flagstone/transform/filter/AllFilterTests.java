@@ -38,6 +38,7 @@ import org.junit.runners.Suite;
 @Suite.SuiteClasses({
     BevelFilterTest.class, BlurFilterTest.class,
     ColorMatrixFilterTest.class, ConvolutionFilterTest.class,
+    DropShadowFilterTest.class, GlowFilterTest.class,
     GradientGlowFilterTest.class })
 public final class AllFilterTests { //NOPMD class for defining test suite
 }
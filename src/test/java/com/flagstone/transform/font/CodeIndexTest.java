@@ -0,0 +1,149 @@
+/*
+ * CodeIndexTest.java
+ * Transform
+ *
+ * Copyright (c) 2010 Flagstone Software Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of Flagstone Software Ltd. nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+
+package com.flagstone.transform.font;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.flagstone.transform.shape.Shape;
+
+public final class CodeIndexTest {
+
+    @Test
+    public void checkGlyphForCode() {
+        final int[] codes = new int[] {32, 65, 66, 1024, 65535};
+        final CodeIndex index = new CodeIndex(codes);
+
+        assertEquals(codes.length, index.size());
+        for (int i = 0; i < codes.length; i++) {
+            assertEquals(i, index.glyphForCode(codes[i]));
+        }
+        assertEquals(-1, index.glyphForCode(67));
+        assertEquals(-1, index.glyphForCode(-1));
+    }
+
+    @Test
+    public void checkLastDuplicateIsUsed() {
+        final CodeIndex index = new CodeIndex(new int[] {65, 66, 65});
+
+        assertEquals(2, index.size());
+        assertEquals(2, index.glyphForCode(65));
+    }
+
+    @Test
+    public void checkAllCodes() {
+        final int[] codes = new int[65536];
+        for (int i = 0; i < codes.length; i++) {
+            codes[i] = codes.length - 1 - i;
+        }
+        final CodeIndex index = new CodeIndex(codes);
+
+        for (int i = 0; i < codes.length; i++) {
+            assertEquals(i, index.glyphForCode(codes[i]));
+        }
+    }
+
+    @Test
+    public void checkIndexForFont() {
+        final DefineFont2 font = new DefineFont2(1, "font");
+        font.addGlyph(65, new Shape());
+        font.addGlyph(66, new Shape());
+        font.addAdvance(100);
+        font.addAdvance(200);
+
+        final CodeIndex index = font.getCodeIndex();
+
+        assertSame(index, font.getCodeIndex());
+        assertEquals(1, index.glyphForCode(66));
+        assertEquals(66, font.getCode(1));
+        assertEquals(200, font.getAdvance(1));
+        assertEquals(Arrays.asList(65, 66), font.getCodes());
+    }
+
+    @Test
+    public void checkIndexIsUpdated() {
+        final DefineFont2 font = new DefineFont2(1, "font");
+        font.addGlyph(65, new Shape());
+        final CodeIndex index = font.getCodeIndex();
+
+        font.getCodes().set(0, 67);
+
+        assertNotSame(index, font.getCodeIndex());
+        assertEquals(0, font.getCodeIndex().glyphForCode(67));
+        assertEquals(-1, font.getCodeIndex().glyphForCode(65));
+    }
+
+    @Test
+    public void checkIndexAfterSetCodes() {
+        final DefineFont2 font = new DefineFont2(1, "x");
+        final CodeIndex index = font.getCodeIndex();
+
+        font.setCodes(Arrays.asList(65, 66, 67));
+
+        assertNotSame(index, font.getCodeIndex());
+        assertEquals(3, font.getCodeIndex().size());
+        assertEquals(1, font.getCodeIndex().glyphForCode('B'));
+    }
+
+    @Test
+    public void checkIndexAfterSetCodesForFont3() {
+        final DefineFont3 font = new DefineFont3(1, "x");
+        font.getCodeIndex();
+
+        font.setCodes(Arrays.asList(65, 66, 67));
+
+        assertEquals(3, font.getCodeIndex().size());
+        assertEquals(2, font.getCodeIndex().glyphForCode('C'));
+    }
+
+    @Test
+    public void checkCopiedCodes() {
+        final DefineFont3 font = new DefineFont3(1, "font");
+        font.setCodes(Arrays.asList(65, 66, 67));
+        font.setAdvances(Arrays.asList(10, 20, 30));
+
+        final DefineFont3 copy = font.copy();
+        copy.getCodes().remove(0);
+
+        assertEquals(3, font.getCodes().size());
+        assertEquals(Arrays.asList(66, 67), copy.getCodes());
+        assertEquals(2, copy.getCodeIndex().size());
+        assertEquals(30, copy.getAdvance(2));
+    }
+}
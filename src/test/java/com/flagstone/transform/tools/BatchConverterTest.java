@@ -0,0 +1,180 @@
+/*
+ * BatchConverterTest.java
+ * Transform
+ *
+ * Copyright (c) 2010 Flagstone Software Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of Flagstone Software Ltd. nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package com.flagstone.transform.tools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DataFormatException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.flagstone.transform.Background;
+import com.flagstone.transform.Movie;
+import com.flagstone.transform.MovieHeader;
+import com.flagstone.transform.ShowFrame;
+import com.flagstone.transform.datatype.Bounds;
+import com.flagstone.transform.datatype.Color;
+import com.flagstone.transform.exception.IllegalArgumentRangeException;
+
+public final class BatchConverterTest {
+
+    private transient File directory;
+
+    @Before
+    public void setUp() throws IOException, DataFormatException {
+        directory = File.createTempFile("batch", "");
+        directory.delete();
+        directory.mkdir();
+
+        for (int i = 0; i < 3; i++) {
+            final MovieHeader header = new MovieHeader();
+            header.setFrameSize(new Bounds(0, 0, 8000, 6000));
+            final Movie movie = new Movie();
+            movie.add(header);
+            movie.add(new Background(new Color(255, 255, 255)));
+            for (int j = 0; j <= i; j++) {
+                movie.add(ShowFrame.getInstance());
+            }
+            movie.encodeToFile(new File(directory, "movie" + i + ".swf"));
+        }
+        final FileOutputStream stream = new FileOutputStream(
+                new File(directory, "invalid.swf"));
+        try {
+            stream.write(new byte[] {1, 2, 3});
+        } finally {
+            stream.close();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        for (final File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void directoryIsSearched() {
+        final List<File> files = new ArrayList<File>();
+        BatchConverter.find(directory, files);
+
+        assertEquals(4, files.size());
+        assertEquals("invalid.swf", files.get(0).getName());
+    }
+
+    @Test
+    public void metricsAreWrittenForEachFile() throws InterruptedException {
+        final List<File> files = new ArrayList<File>();
+        BatchConverter.find(directory, files);
+        final StringWriter writer = new StringWriter();
+
+        final int failed = new BatchConverter().setThreads(2)
+                .setOpenFiles(1).setEncodeMovie(true)
+                .convert(files, writer);
+        final String[] lines = writer.toString().split("\n");
+
+        assertEquals(1, failed);
+        assertEquals(4, lines.length);
+        for (final String line : lines) {
+            assertTrue(line.startsWith("{\"file\":"));
+            assertTrue(line.endsWith("}"));
+            if (line.contains("movie2")) {
+                assertTrue(line.contains("\"frames\":3"));
+                assertTrue(line.contains("\"tags\":{\"Background\":1,"
+                        + "\"MovieHeader\":1,\"ShowFrame\":3}"));
+            }
+        }
+        assertTrue(new File(directory, "movie2.pdf").exists());
+        assertTrue(new File(directory, "movie2-copy.swf").exists());
+        assertTrue(!new File(directory, "invalid.pdf").exists());
+    }
+
+    @Test
+    public void errorIsReportedAndThrown() throws InterruptedException {
+        final Error error = new AssertionError("test");
+        final List<File> files = new ArrayList<File>();
+        files.add(new File(directory, "movie0.swf") {
+            private static final long serialVersionUID = 1L;
+            @Override
+            public File getParentFile() {
+                throw error;
+            }
+        });
+        final StringWriter writer = new StringWriter();
+        final Throwable[] thrown = new Throwable[1];
+        final CountDownLatch latch = new CountDownLatch(1);
+        final Thread.UncaughtExceptionHandler handler =
+            Thread.getDefaultUncaughtExceptionHandler();
+
+        Thread.setDefaultUncaughtExceptionHandler(
+                new Thread.UncaughtExceptionHandler() {
+                    public void uncaughtException(final Thread thread,
+                            final Throwable throwable) {
+                        thrown[0] = throwable;
+                        latch.countDown();
+                    }
+                });
+        try {
+            assertEquals(1, new BatchConverter().convert(files, writer));
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        } finally {
+            Thread.setDefaultUncaughtExceptionHandler(handler);
+        }
+        assertSame(error, thrown[0]);
+        assertTrue(writer.toString().contains("\"status\":\"error\","
+                + "\"error\":\"java.lang.AssertionError: test\"}"));
+    }
+
+    @Test(expected = IllegalArgumentRangeException.class)
+    public void checkAccessorForThreadsWithLowerBound() {
+        new BatchConverter().setThreads(0);
+    }
+
+    @Test(expected = IllegalArgumentRangeException.class)
+    public void checkAccessorForOpenFilesWithLowerBound() {
+        new BatchConverter().setOpenFiles(0);
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * FontCacheTest.java
+ * Transform
+ *
+ * Copyright (c) 2010 Flagstone Software Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of Flagstone Software Ltd. nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+
+package com.flagstone.transform.util.font;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.flagstone.transform.exception.IllegalArgumentRangeException;
+import com.flagstone.transform.font.DefineFont2;
+
+public final class FontCacheTest {
+
+    private static final File VERA =
+        new File("src/test/resources/ttf-reference/Vera.ttf");
+
+    private transient File file;
+
+    @Before
+    public void setUp() throws IOException {
+        FontCache.clear();
+        FontCache.setMaxFonts(32);
+        FontCache.setMaxDefinitions(1024);
+
+        file = File.createTempFile("FontCacheTest", ".ttf");
+        final InputStream in = new FileInputStream(VERA);
+        final OutputStream out = new FileOutputStream(file);
+        try {
+            final byte[] buffer = new byte[4096];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
+            }
+        } finally {
+            in.close();
+            out.close();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        FontCache.clear();
+        FontCache.setMaxFonts(32);
+        FontCache.setMaxDefinitions(1024);
+        file.delete();
+    }
+
+    @Test
+    public void fileIsDecodedOnce() throws IOException, DataFormatException {
+        final List<Font> first = FontCache.getFonts(file);
+        final List<Font> second = FontCache.getFonts(file);
+
+        assertSame(first, second);
+        assertEquals(1, FontCache.getFontMisses());
+        assertEquals(1, FontCache.getFontHits());
+    }
+
+    @Test
+    public void modifiedFileIsDecodedAgain() throws IOException,
+            DataFormatException {
+        final List<Font> first = FontCache.getFonts(file);
+        file.setLastModified(file.lastModified() - 10000);
+        final List<Font> second = FontCache.getFonts(file);
+
+        assertNotSame(first, second);
+        assertEquals(2, FontCache.getFontMisses());
+    }
+
+    @Test
+    public void fileUrlIsTreatedAsFile() throws IOException,
+            DataFormatException {
+        final List<Font> first = FontCache.getFonts(file);
+
+        assertSame(first, FontCache.getFonts(file.toURI().toURL()));
+        assertEquals(1, FontCache.getFontMisses());
+    }
+
+    @Test
+    public void urlIsOnlyOpenedWhenDecoded() throws IOException,
+            DataFormatException {
+        final int[] opened = new int[1];
+        final URLStreamHandler handler = new URLStreamHandler() {
+            @Override
+            protected URLConnection openConnection(final URL target) {
+                opened[0]++;
+                return new FontConnection(target, file);
+            }
+        };
+        final URL url = new URL(null, "test:/Vera.ttf", handler);
+
+        final List<Font> first = FontCache.getFonts(url);
+        final int count = opened[0];
+
+        assertSame(first, FontCache.getFonts(url));
+        assertEquals(count, opened[0]);
+        assertEquals(1, FontCache.getFontHits());
+    }
+
+    private static final class FontConnection extends URLConnection {
+        private final transient File file;
+
+        FontConnection(final URL url, final File font) {
+            super(url);
+            file = font;
+        }
+
+        @Override
+        public void connect() {
+            connected = true;
+        }
+
+        @Override
+        public int getContentLength() {
+            return (int) file.length();
+        }
+
+        @Override
+        public String getContentType() {
+            return "ttf";
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return new FileInputStream(file);
+        }
+    }
+
+    @Test
+    public void definitionIsGeneratedOnce() throws IOException,
+            DataFormatException {
+        final Font font = FontCache.getFonts(file).get(0);
+        final DefineFont2 first = FontCache.defineFont(font, 1,
+                Arrays.asList('b', 'a', 'c'));
+        final DefineFont2 second = FontCache.defineFont(font, 2,
+                Arrays.asList('c', 'a', 'b', 'a'));
+
+        assertEquals(1, FontCache.getDefinitionMisses());
+        assertEquals(1, FontCache.getDefinitionHits());
+        assertEquals(1, first.getIdentifier());
+        assertEquals(2, second.getIdentifier());
+        assertEquals(Arrays.asList(97, 98, 99), second.getCodes());
+        assertEquals(first.getAdvances(), second.getAdvances());
+        assertSame(first.getShapes().get(0), second.getShapes().get(0));
+    }
+
+    @Test
+    public void definitionMatchesFont() throws IOException,
+            DataFormatException {
+        final Font font = FontCache.getFonts(file).get(0);
+        final List<Character> chars = Arrays.asList('a', 'b', 'c');
+
+        assertEquals(font.defineFont(1, chars).toString(),
+                FontCache.defineFont(font, 1, chars).toString());
+    }
+
+    @Test
+    public void leastRecentlyUsedIsEvicted() throws IOException,
+            DataFormatException {
+        final Font font = FontCache.getFonts(file).get(0);
+        FontCache.setMaxDefinitions(2);
+
+        FontCache.defineFont(font, 1, Arrays.asList('a'));
+        FontCache.defineFont(font, 1, Arrays.asList('b'));
+        FontCache.defineFont(font, 1, Arrays.asList('a'));
+        FontCache.defineFont(font, 1, Arrays.asList('c'));
+        FontCache.defineFont(font, 1, Arrays.asList('a'));
+        FontCache.defineFont(font, 1, Arrays.asList('b'));
+
+        assertEquals(2, FontCache.getDefinitionCount());
+        assertEquals(2, FontCache.getDefinitionHits());
+        assertEquals(4, FontCache.getDefinitionMisses());
+    }
+
+    @Test(expected = IllegalArgumentRangeException.class)
+    public void checkMaxFontsWithLowerBound() {
+        FontCache.setMaxFonts(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void checkGetFontsWithNull() throws IOException,
+            DataFormatException {
+        FontCache.getFonts((File) null);
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * TTFDecoderTest.java
+ * Transform
+ *
+ * Copyright (c) 2010 Flagstone Software Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of Flagstone Software Ltd. nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+
+package com.flagstone.transform.util.font;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.DataFormatException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.flagstone.transform.font.DefineFont2;
+import com.flagstone.transform.util.text.CharacterSet;
+
+public final class TTFDecoderTest {
+
+    private static final File FILE =
+        new File("src/test/resources/ttf-reference/Vera.ttf");
+
+    /** Includes accented characters which are composite glyphs. */
+    private static final String TEXT = "Hello, World \u00E9\u00C5\u00FC";
+
+    private transient CharacterSet set;
+
+    @Before
+    public void setUp() {
+        set = new CharacterSet();
+        set.add(TEXT);
+    }
+
+    private Font decode(final boolean lazy) throws IOException,
+            DataFormatException {
+        final TTFDecoder decoder = new TTFDecoder();
+        decoder.setLazy(lazy);
+        decoder.read(FILE);
+        return decoder.getFonts().get(0);
+    }
+
+    private void assertSameFont(final DefineFont2 eager,
+            final DefineFont2 lazy) {
+        assertEquals(eager.getName(), lazy.getName());
+        assertEquals(eager.getAscent(), lazy.getAscent());
+        assertEquals(eager.getDescent(), lazy.getDescent());
+        assertEquals(eager.getLeading(), lazy.getLeading());
+        assertEquals(eager.getCodes(), lazy.getCodes());
+        assertEquals(eager.getAdvances(), lazy.getAdvances());
+        assertEquals(eager.getBounds().toString(),
+                lazy.getBounds().toString());
+        assertEquals(eager.getShapes().toString(),
+                lazy.getShapes().toString());
+    }
+
+    @Test
+    public void lazyFontDefinesSameGlyphs() throws IOException,
+            DataFormatException {
+        assertSameFont(decode(false).defineFont(1, set.getCharacters()),
+                decode(true).defineFont(1, set.getCharacters()));
+    }
+
+    @Test
+    public void lazyFontReadFromStream() throws IOException,
+            DataFormatException {
+        final TTFDecoder decoder = new TTFDecoder();
+        decoder.setLazy(true);
+        final InputStream stream = new FileInputStream(FILE);
+        try {
+            decoder.read(stream);
+        } finally {
+            stream.close();
+        }
+        assertSameFont(decode(false).defineFont(1, set.getCharacters()),
+                decoder.getFonts().get(0).defineFont(1,
+                        set.getCharacters()));
+    }
+
+    @Test
+    public void glyphsAreLoadedWhenUsed() throws IOException,
+            DataFormatException {
+        final Font eager = decode(false);
+        final Font font = decode(true);
+        final int index = eager.glyphForCharacter('\u00E9');
+
+        assertEquals(eager.getNumberOfGlyphs(), font.getNumberOfGlyphs());
+        assertNull(font.getGlyph(index));
+        assertTrue(font.canDisplay('\u00E9'));
+        assertEquals(index, font.glyphForCharacter('\u00E9'));
+        assertNotNull(font.getGlyph(index));
+        assertEquals(eager.advanceForCharacter('\u00E9'),
+                font.advanceForCharacter('\u00E9'));
+    }
+
+    @Test
+    public void missingCharacterIsNotDisplayed() throws IOException,
+            DataFormatException {
+        final Font font = decode(true);
+
+        assertFalse(font.canDisplay('\u4E00'));
+        assertEquals(-1, font.canDisplay(TEXT));
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * DisplayListTest.java
+ * Transform
+ *
+ * Copyright (c) 2010 Flagstone Software Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of Flagstone Software Ltd. nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.flagstone.transform.util.pdf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.flagstone.transform.MovieTag;
+import com.flagstone.transform.Place;
+import com.flagstone.transform.Place2;
+import com.flagstone.transform.Place3;
+import com.flagstone.transform.Remove;
+import com.flagstone.transform.Remove2;
+import com.flagstone.transform.ShowFrame;
+import com.flagstone.transform.datatype.Blend;
+import com.flagstone.transform.datatype.ColorTransform;
+import com.flagstone.transform.datatype.CoordTransform;
+import com.flagstone.transform.filter.BlurFilter;
+import com.flagstone.transform.movieclip.DefineMovieClip;
+
+public final class DisplayListTest {
+
+    private transient DisplayList list;
+
+    @Before
+    public void setUp() {
+        list = new DisplayList();
+    }
+
+    @Test
+    public void placementsAreSortedByLayer() {
+        list.update(Place2.show(1, 3, 0, 0));
+        list.update(Place2.show(2, 1, 0, 0));
+        list.update(new Place(3, 2, CoordTransform.translate(0, 0)));
+
+        final List<Placement> placements = list.getPlacements();
+
+        assertEquals(3, placements.size());
+        assertEquals(2, placements.get(0).getIdentifier());
+        assertEquals(3, placements.get(1).getIdentifier());
+        assertEquals(1, placements.get(2).getIdentifier());
+    }
+
+    @Test
+    public void modifyKeepsObject() {
+        final ColorTransform color = new ColorTransform(1, 2, 3, 4);
+        final Place2 show = Place2.show(1, 1, 0, 0);
+        show.setColorTransform(color);
+        list.update(show);
+        list.update(Place2.move(1, 100, 200));
+
+        final Placement placement = list.getPlacements().get(0);
+
+        assertEquals(1, placement.getIdentifier());
+        assertEquals(100, placement.getTransform().getTranslateX());
+        assertSame(color, placement.getColorTransform());
+    }
+
+    @Test
+    public void replaceKeepsPosition() {
+        list.update(Place2.show(1, 1, 100, 200));
+        list.update(Place2.replace(2, 1));
+
+        final Placement placement = list.getPlacements().get(0);
+
+        assertEquals(2, placement.getIdentifier());
+        assertEquals(200, placement.getTransform().getTranslateY());
+    }
+
+    @Test
+    public void placementsAreNotChanged() {
+        list.update(Place2.show(1, 1, 100, 200));
+        final List<Placement> before = list.getPlacements();
+        list.update(Place2.move(1, 0, 0));
+
+        assertEquals(100, before.get(0).getTransform().getTranslateX());
+    }
+
+    @Test
+    public void clipDepth() {
+        final Place2 mask = Place2.show(1, 1, 0, 0);
+        mask.setDepth(3);
+        list.update(mask);
+        list.update(Place2.show(2, 2, 0, 0));
+
+        assertEquals(Integer.valueOf(3),
+                list.getPlacements().get(0).getDepth());
+        assertNull(list.getPlacements().get(1).getDepth());
+    }
+
+    @Test
+    public void removeObjects() {
+        list.update(Place2.show(1, 1, 0, 0));
+        list.update(Place2.show(2, 2, 0, 0));
+        list.update(new Remove(1, 1));
+        list.update(new Remove2(2));
+
+        assertTrue(list.getPlacements().isEmpty());
+    }
+
+    @Test
+    public void modifyKeepsFiltersAndBlend() {
+        final Place3 show = Place3.show(1, 1, 0, 0);
+        show.add(new BlurFilter(4, 4, 1));
+        show.setBlend(Blend.MULTIPLY);
+        list.update(show);
+        list.update(Place3.move(1, 100, 200));
+
+        final Placement placement = list.getPlacements().get(0);
+
+        assertEquals(1, placement.getFilters().size());
+        assertEquals(Blend.MULTIPLY, placement.getBlend());
+    }
+
+    @Test
+    public void place2HasNoFilters() {
+        list.update(Place2.show(1, 1, 0, 0));
+
+        assertTrue(list.getPlacements().get(0).getFilters().isEmpty());
+        assertNull(list.getPlacements().get(0).getBlend());
+    }
+
+    @Test
+    public void firstFrameOfMovieClip() {
+        final List<MovieTag> objects = new ArrayList<MovieTag>();
+        objects.add(Place2.show(1, 1, 0, 0));
+        objects.add(ShowFrame.getInstance());
+        objects.add(Place2.show(2, 2, 0, 0));
+
+        assertEquals(1, DisplayList.getFirstFrame(
+                new DefineMovieClip(3, objects)).size());
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * FilterKernelTest.java
+ * Transform
+ *
+ * Copyright (c) 2010 Flagstone Software Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of Flagstone Software Ltd. nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package com.flagstone.transform.util.pdf;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public final class FilterKernelTest {
+
+    private static final int SIZE = 9;
+    private static final int OPAQUE_RED = 0xFFFF0000;
+
+    private int[] dot() {
+        final int[] pixels = new int[SIZE * SIZE];
+        pixels[(SIZE / 2) * SIZE + SIZE / 2] = OPAQUE_RED;
+        return pixels;
+    }
+
+    @Test
+    public void blurSpreadsPixels() {
+        final int[] pixels = dot();
+        FilterKernel.blur(pixels, SIZE, SIZE, 1, 1, 1, new int[SIZE]);
+
+        final int centre = (SIZE / 2) * SIZE + SIZE / 2;
+        assertEquals(pixels[centre], pixels[centre - SIZE - 1]);
+        assertEquals(0, pixels[centre - 2]);
+        assertTrue(pixels[centre] >>> 24 > 0);
+    }
+
+    @Test
+    public void blurWithZeroRadiusDoesNothing() {
+        final int[] pixels = dot();
+        FilterKernel.blur(pixels, SIZE, SIZE, 0, 0, 3, new int[SIZE]);
+
+        assertArrayEquals(dot(), pixels);
+    }
+
+    @Test
+    public void identityMatrixDoesNothing() {
+        final int[] pixels = {OPAQUE_RED, 0x80402010, 0};
+        final float[] identity = {1, 0, 0, 0, 0, 0, 1, 0, 0, 0,
+                0, 0, 1, 0, 0, 0, 0, 0, 1, 0};
+        FilterKernel.transform(pixels, identity);
+
+        assertArrayEquals(new int[] {OPAQUE_RED, 0x80402010, 0}, pixels);
+    }
+
+    @Test
+    public void matrixSwapsChannels() {
+        final int[] pixels = {OPAQUE_RED};
+        final float[] swap = {0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+                1, 0, 0, 0, 0, 0, 0, 0, 1, 0};
+        FilterKernel.transform(pixels, swap);
+
+        assertEquals(0xFF0000FF, pixels[0]);
+    }
+
+    @Test
+    public void shadowIsOffsetBehindImage() {
+        final int[] pixels = dot();
+        FilterKernel.shadow(pixels, new int[pixels.length], SIZE, SIZE,
+                0xFF000000, 1, 1, 0, 0, 1, 1.0f, false, false,
+                new int[SIZE]);
+
+        final int centre = (SIZE / 2) * SIZE + SIZE / 2;
+        assertEquals(OPAQUE_RED, pixels[centre]);
+        assertEquals(0xFF000000, pixels[centre + SIZE + 1]);
+        assertEquals(0, pixels[centre - SIZE - 1]);
+    }
+
+    @Test
+    public void knockoutRemovesImage() {
+        final int[] pixels = dot();
+        FilterKernel.shadow(pixels, new int[pixels.length], SIZE, SIZE,
+                0xFF000000, 1, 0, 0, 0, 1, 1.0f, false, true,
+                new int[SIZE]);
+
+        final int centre = (SIZE / 2) * SIZE + SIZE / 2;
+        assertEquals(0, pixels[centre]);
+        assertEquals(0xFF000000, pixels[centre + 1]);
+    }
+}
@@ -0,0 +1,320 @@
+/*
+ * FormCacheTest.java
+ * Transform
+ *
+ * Copyright (c) 2010 Flagstone Software Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of Flagstone Software Ltd. nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.flagstone.transform.util.pdf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.flagstone.transform.DefineTag;
+import com.flagstone.transform.MovieTag;
+import com.flagstone.transform.datatype.Bounds;
+import com.flagstone.transform.datatype.Color;
+import com.flagstone.transform.datatype.ColorTransform;
+import com.flagstone.transform.datatype.CoordTransform;
+import com.flagstone.transform.fillstyle.BitmapFill;
+import com.flagstone.transform.fillstyle.FillStyle;
+import com.flagstone.transform.fillstyle.Gradient;
+import com.flagstone.transform.fillstyle.GradientFill;
+import com.flagstone.transform.fillstyle.GradientType;
+import com.flagstone.transform.fillstyle.SolidFill;
+import com.flagstone.transform.font.DefineFont2;
+import com.flagstone.transform.image.DefineJPEGImage2;
+import com.flagstone.transform.linestyle.LineStyle;
+import com.flagstone.transform.linestyle.LineStyle1;
+import com.flagstone.transform.movieclip.DefineMovieClip;
+import com.flagstone.transform.shape.DefineShape;
+import com.flagstone.transform.shape.Line;
+import com.flagstone.transform.shape.Shape;
+import com.flagstone.transform.shape.ShapeStyle;
+import com.flagstone.transform.text.DefineText;
+import com.flagstone.transform.text.GlyphIndex;
+import com.flagstone.transform.text.TextSpan;
+
+public final class FormCacheTest {
+
+    private transient PDDocument document;
+    private transient Map<Integer, DefineTag> symbols;
+
+    @Before
+    public void setUp() {
+        document = new PDDocument();
+        symbols = new HashMap<Integer, DefineTag>();
+        symbols.put(1, square(1));
+        symbols.put(2, square(2));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        document.close();
+    }
+
+    private DefineShape square(final int identifier) {
+        final List<FillStyle> fills = new ArrayList<FillStyle>();
+        fills.add(new SolidFill(new Color(255, 0, 0)));
+        final List<LineStyle> lines = new ArrayList<LineStyle>();
+        lines.add(new LineStyle1(20, new Color(0, 0, 0)));
+
+        final Shape shape = new Shape();
+        shape.add(new ShapeStyle().setMove(0, 0).setAltFillStyle(1)
+                .setLineStyle(1));
+        shape.add(new Line(100, 0));
+        shape.add(new Line(0, 100));
+        shape.add(new Line(-100, 0));
+        shape.add(new Line(0, -100));
+
+        return new DefineShape(identifier, new Bounds(0, 0, 100, 100),
+                fills, lines, shape);
+    }
+
+    @Test
+    public void formIsReused() throws IOException {
+        final FormCache cache = new FormCache(document, symbols);
+        final PDFormXObject form = cache.getForm(symbols.get(1), null);
+
+        assertSame(form, cache.getForm(symbols.get(1), null));
+    }
+
+    @Test
+    public void formIsCreatedForColorTransform() throws IOException {
+        final FormCache cache = new FormCache(document, symbols);
+        final PDFormXObject form = cache.getForm(symbols.get(1), null);
+        final ColorTransform color = new ColorTransform(1, 2, 3, 4);
+
+        assertNotSame(form, cache.getForm(symbols.get(1), color));
+        assertSame(cache.getForm(symbols.get(1), color),
+                cache.getForm(symbols.get(1),
+                        new ColorTransform(1, 2, 3, 4)));
+    }
+
+    @Test
+    public void boundsIncludeLines() throws IOException {
+        final FormCache cache = new FormCache(document, symbols);
+        final PDRectangle bounds = cache.getForm(symbols.get(1), null)
+                .getBBox();
+
+        assertEquals(-20.0f, bounds.getLowerLeftX(), 0.0f);
+        assertEquals(140.0f, bounds.getWidth(), 0.0f);
+    }
+
+    @Test
+    public void formIsKeptForDocument() throws IOException {
+        final FormCache cache = new FormCache(document, symbols);
+        final PDFormXObject form = cache.getForm(symbols.get(1), null);
+
+        for (int i = 0; i < 100; i++) {
+            cache.getForm(symbols.get(2), new ColorTransform(i, 0, 0, 0));
+        }
+        assertSame(form, cache.getForm(symbols.get(1), null));
+    }
+
+    @Test
+    public void movieClipHasNoForm() throws IOException {
+        final FormCache cache = new FormCache(document, symbols);
+
+        assertNull(cache.getForm(new DefineMovieClip(3,
+                new ArrayList<MovieTag>()), null));
+    }
+
+    @Test
+    public void textUsesSubsetOfFont() throws IOException {
+        final DefineFont2 font = new DefineFont2(3, "Square");
+        for (int i = 0; i < 4; i++) {
+            font.addGlyph(i, ((DefineShape) symbols.get(1)).getShape());
+            font.addAdvance(1024);
+        }
+        final List<GlyphIndex> glyphs = new ArrayList<GlyphIndex>();
+        glyphs.add(new GlyphIndex(2, 240));
+        glyphs.add(new GlyphIndex(2, 240));
+        final List<TextSpan> spans = new ArrayList<TextSpan>();
+        spans.add(new TextSpan(3, 240, new Color(0, 0, 0), 0, 0, glyphs));
+
+        symbols.put(3, font);
+        symbols.put(4, new DefineText(4, new Bounds(0, 0, 480, 240),
+                CoordTransform.translate(0, 0), spans));
+
+        final FormCache cache = new FormCache(document, symbols);
+        final PDFormXObject form = cache.getForm(symbols.get(4), null);
+        final COSDictionary fonts = (COSDictionary) form.getResources()
+                .getCOSObject().getDictionaryObject(COSName.FONT);
+
+        assertEquals(1, fonts.size());
+        assertSame(cache.getFont(3).getFont(2),
+                fonts.getDictionaryObject(COSName.getPDFName("F1")));
+        assertEquals(0, cache.getFont(3).getFont(2)
+                .getInt(COSName.LAST_CHAR));
+        assertEquals(240 + 100 * 240 / 1024.0f,
+                form.getBBox().getUpperRightX(), 0.001f);
+    }
+
+    @Test
+    public void bitmapFillDrawsImage() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB),
+                "jpg", out);
+        final List<FillStyle> fills = new ArrayList<FillStyle>();
+        fills.add(new BitmapFill(false, true, 3,
+                CoordTransform.scale(25, 25)));
+        final DefineShape square = square(4);
+        square.setFillStyles(fills);
+
+        symbols.put(3, new DefineJPEGImage2(3, out.toByteArray()));
+        symbols.put(4, square);
+
+        final FormCache cache = new FormCache(document, symbols);
+        final PDFormXObject form = cache.getForm(square, null);
+        final PDImageXObject image = cache.getImage(3);
+        final COSDictionary xobjects = (COSDictionary) form.getResources()
+                .getCOSObject().getDictionaryObject(COSName.XOBJECT);
+
+        assertEquals(COSName.DCT_DECODE, image.getCOSObject()
+                .getDictionaryObject(COSName.FILTER));
+        assertSame(image, cache.getImage(3));
+        assertEquals(1, xobjects.size());
+        assertSame(image.getCOSObject(), xobjects.getDictionaryObject(
+                xobjects.keySet().iterator().next()));
+    }
+
+    @Test
+    public void pngImageIsDecoded() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(4, 3, BufferedImage.TYPE_INT_ARGB),
+                "png", out);
+        symbols.put(3, new DefineJPEGImage2(3, out.toByteArray()));
+
+        final PDImageXObject image = new FormCache(document, symbols)
+                .getImage(3);
+
+        assertEquals(4, image.getWidth());
+        assertEquals(3, image.getHeight());
+        assertNotNull(image.getCOSObject().getDictionaryObject(
+                COSName.SMASK));
+    }
+
+    @Test
+    public void gifImageIsDecoded() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(4, 3,
+                BufferedImage.TYPE_BYTE_INDEXED), "gif", out);
+        symbols.put(3, new DefineJPEGImage2(3, out.toByteArray()));
+
+        final PDImageXObject image = new FormCache(document, symbols)
+                .getImage(3);
+
+        assertEquals(4, image.getWidth());
+        assertEquals(3, image.getHeight());
+    }
+
+    @Test
+    public void unknownImageIsNotDrawn() throws IOException {
+        final FormCache cache = new FormCache(document, symbols);
+
+        assertNull(cache.getImage(1));
+        assertNull(cache.getImage(3));
+    }
+
+    @Test
+    public void gradientShadingIsShared() throws IOException {
+        final List<Gradient> gradients = new ArrayList<Gradient>();
+        gradients.add(new Gradient(0, new Color(255, 0, 0)));
+        gradients.add(new Gradient(255, new Color(0, 0, 255)));
+        final DefineShape first = square(4);
+        final DefineShape second = square(5);
+        final List<FillStyle> fills = new ArrayList<FillStyle>();
+        fills.add(new GradientFill(GradientType.LINEAR,
+                CoordTransform.scale(0.5f, 0.5f), gradients));
+        first.setFillStyles(fills);
+        fills.set(0, new GradientFill(GradientType.LINEAR,
+                CoordTransform.rotate(90), gradients));
+        second.setFillStyles(fills);
+
+        final FormCache cache = new FormCache(document, symbols);
+        final COSDictionary shadings = (COSDictionary) cache
+                .getForm(first, null).getResources().getCOSObject()
+                .getDictionaryObject(COSName.SHADING);
+        final COSDictionary others = (COSDictionary) cache
+                .getForm(second, null).getResources().getCOSObject()
+                .getDictionaryObject(COSName.SHADING);
+
+        assertEquals(1, shadings.size());
+        assertEquals(1, others.size());
+        assertSame(shadings.getDictionaryObject(
+                shadings.keySet().iterator().next()),
+                others.getDictionaryObject(others.keySet().iterator().next()));
+    }
+
+    @Test
+    public void tiledBitmapIsDrawnWithPattern() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB),
+                "jpg", out);
+        final List<FillStyle> fills = new ArrayList<FillStyle>();
+        fills.add(new BitmapFill(true, true, 3,
+                CoordTransform.scale(5, 5)));
+        final DefineShape square = square(4);
+        square.setFillStyles(fills);
+
+        symbols.put(3, new DefineJPEGImage2(3, out.toByteArray()));
+        symbols.put(4, square);
+
+        final FormCache cache = new FormCache(document, symbols);
+        final COSDictionary resources = cache.getForm(square, null)
+                .getResources().getCOSObject();
+        final COSDictionary patterns = (COSDictionary) resources
+                .getDictionaryObject(COSName.PATTERN);
+
+        assertNull(resources.getDictionaryObject(COSName.XOBJECT));
+        assertEquals(1, patterns.size());
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * GradientShadingTest.java
+ * Transform
+ *
+ * Copyright (c) 2010 Flagstone Software Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of Flagstone Software Ltd. nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package com.flagstone.transform.util.pdf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.junit.Test;
+
+import com.flagstone.transform.datatype.Color;
+import com.flagstone.transform.datatype.CoordTransform;
+import com.flagstone.transform.fillstyle.Gradient;
+import com.flagstone.transform.fillstyle.GradientFill;
+import com.flagstone.transform.fillstyle.GradientType;
+import com.flagstone.transform.fillstyle.Interpolation;
+import com.flagstone.transform.fillstyle.SolidFill;
+import com.flagstone.transform.fillstyle.Spread;
+
+public final class GradientShadingTest {
+
+    private static final CoordTransform TRANSFORM = CoordTransform
+            .scale(0.5f, 0.5f);
+
+    private List<Gradient> gradients(final int alpha) {
+        final List<Gradient> list = new ArrayList<Gradient>();
+        list.add(new Gradient(0, new Color(255, 0, 0, 255)));
+        list.add(new Gradient(255, new Color(0, 0, 255, alpha)));
+        return list;
+    }
+
+    private GradientShading shading(final Spread spread, final int alpha) {
+        return GradientShading.create(new GradientFill(GradientType.LINEAR,
+                TRANSFORM, spread, Interpolation.NORMAL, gradients(alpha)),
+                null);
+    }
+
+    private COSDictionary function(final COSDictionary shading) {
+        return (COSDictionary) shading.getDictionaryObject(
+                COSName.FUNCTION);
+    }
+
+    @Test
+    public void solidFillHasNoShading() {
+        assertNull(GradientShading.create(
+                new SolidFill(new Color(0, 0, 0)), null));
+    }
+
+    @Test
+    public void transformIsIgnoredWhenCompared() {
+        final GradientShading shading = shading(Spread.PAD, 255);
+        final GradientShading other = GradientShading.create(
+                new GradientFill(GradientType.LINEAR, CoordTransform.rotate(45),
+                        gradients(255)), null);
+
+        assertEquals(shading, other);
+        assertEquals(shading.hashCode(), other.hashCode());
+        assertFalse(shading.equals(shading(Spread.REPEAT, 255)));
+    }
+
+    @Test
+    public void uniformAlphaIsReturned() {
+        assertEquals(255, shading(Spread.PAD, 255).getAlpha());
+        assertEquals(-1, shading(Spread.PAD, 128).getAlpha());
+    }
+
+    @Test
+    public void padDrawsOnePeriod() {
+        final COSDictionary function = function(
+                shading(Spread.PAD, 255).createShading());
+
+        assertEquals(1, ((COSArray) function.getDictionaryObject(
+                COSName.FUNCTIONS)).size());
+        assertEquals(0, ((COSArray) function.getDictionaryObject(
+                COSName.BOUNDS)).size());
+    }
+
+    @Test
+    public void reflectRepeatsPeriods() {
+        final COSDictionary shading = shading(Spread.REFLECT, 255)
+                .createShading();
+        final COSArray functions = (COSArray) function(shading)
+                .getDictionaryObject(COSName.FUNCTIONS);
+
+        assertEquals(17, functions.size());
+        assertFalse(functions.getObject(0).equals(functions.getObject(1)));
+        assertEquals(functions.getObject(0), functions.getObject(2));
+    }
+
+    @Test
+    public void maskUsesGrayLevels() {
+        final COSDictionary mask = shading(Spread.PAD, 128).createMask();
+
+        assertEquals(COSName.DEVICEGRAY, mask.getDictionaryObject(
+                COSName.COLORSPACE));
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * JPEGImageTest.java
+ * Transform
+ *
+ * Copyright (c) 2010 Flagstone Software Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of Flagstone Software Ltd. nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package com.flagstone.transform.util.pdf;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.Deflater;
+
+import javax.imageio.ImageIO;
+
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public final class JPEGImageTest {
+
+    private static final int WIDTH = 16;
+    private static final int HEIGHT = 8;
+
+    private static byte[] jpeg;
+
+    @BeforeClass
+    public static void encode() throws IOException {
+        final BufferedImage image = new BufferedImage(WIDTH, HEIGHT,
+                BufferedImage.TYPE_INT_RGB);
+        for (int i = 0; i < WIDTH; i++) {
+            image.setRGB(i, i % HEIGHT, 0xFF8000);
+        }
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", out);
+        jpeg = out.toByteArray();
+    }
+
+    private static int scanStart(final byte[] bytes) {
+        int index = 2;
+        while ((bytes[index + 1] & 0xFF) != 0xDA) {
+            index += 2 + (((bytes[index + 2] & 0xFF) << 8)
+                    | (bytes[index + 3] & 0xFF));
+        }
+        return index;
+    }
+
+    private static byte[] concat(final byte[]... blocks) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (final byte[] block : blocks) {
+            out.write(block, 0, block.length);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] range(final byte[] bytes, final int start,
+            final int end) {
+        final byte[] result = new byte[end - start];
+        System.arraycopy(bytes, start, result, 0, result.length);
+        return result;
+    }
+
+    @Test
+    public void sizeAndComponentsAreFound() {
+        final JPEGImage image = JPEGImage.merge(null, jpeg);
+
+        assertEquals(WIDTH, image.getWidth());
+        assertEquals(HEIGHT, image.getHeight());
+        assertEquals(3, image.getComponents());
+        assertArrayEquals(jpeg, image.getData());
+    }
+
+    @Test
+    public void erroneousHeaderIsRemoved() {
+        final byte[] header = {(byte) 0xFF, (byte) 0xD9, (byte) 0xFF,
+                (byte) 0xD8};
+
+        assertArrayEquals(jpeg,
+                JPEGImage.merge(null, concat(header, jpeg)).getData());
+    }
+
+    @Test
+    public void tablesAreMerged() throws IOException {
+        final byte[] soi = {(byte) 0xFF, (byte) 0xD8};
+        final byte[] eoi = {(byte) 0xFF, (byte) 0xD9};
+        final int scan = scanStart(jpeg);
+        final byte[] tables = concat(range(jpeg, 0, scan), eoi);
+        final byte[] image = concat(soi, range(jpeg, scan, jpeg.length));
+
+        final JPEGImage merged = JPEGImage.merge(tables, image);
+
+        assertArrayEquals(jpeg, merged.getData());
+        assertNotNull(ImageIO.read(new ByteArrayInputStream(
+                merged.getData())));
+    }
+
+    @Test
+    public void otherFormatsAreRejected() {
+        assertNull(JPEGImage.merge(null, new byte[] {(byte) 0x89, 'P',
+                'N', 'G'}));
+        assertNull(JPEGImage.merge(null, range(jpeg, 0, scanStart(jpeg))));
+    }
+
+    @Test
+    public void imageIsNotDecoded() throws IOException {
+        final PDDocument document = new PDDocument();
+        try {
+            final PDImageXObject image = JPEGImage.merge(null, jpeg)
+                    .createImage(document, null);
+
+            assertEquals(COSName.DCT_DECODE, image.getCOSObject()
+                    .getDictionaryObject(COSName.FILTER));
+            assertEquals(WIDTH, image.getWidth());
+            assertEquals(8, image.getBitsPerComponent());
+            assertNull(image.getSoftMask());
+        } finally {
+            document.close();
+        }
+    }
+
+    @Test
+    public void alphaIsSoftMask() throws IOException {
+        final Deflater deflater = new Deflater();
+        deflater.setInput(new byte[WIDTH * HEIGHT]);
+        deflater.finish();
+        final byte[] buffer = new byte[WIDTH * HEIGHT];
+        final byte[] alpha = range(buffer, 0, deflater.deflate(buffer));
+
+        final PDDocument document = new PDDocument();
+        try {
+            final PDImageXObject mask = JPEGImage.merge(null, jpeg)
+                    .createImage(document, alpha).getSoftMask();
+
+            assertEquals(COSName.FLATE_DECODE, mask.getCOSObject()
+                    .getDictionaryObject(COSName.FILTER));
+            assertEquals(HEIGHT, mask.getHeight());
+            assertEquals(WIDTH * HEIGHT, mask.getStream().toByteArray()
+                    .length);
+        } finally {
+            document.close();
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * LosslessImageTest.java
+ * Transform
+ *
+ * Copyright (c) 2010 Flagstone Software Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of Flagstone Software Ltd. nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package com.flagstone.transform.util.pdf;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.DeflaterOutputStream;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSString;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.flagstone.transform.image.DefineImage;
+import com.flagstone.transform.image.DefineImage2;
+
+public final class LosslessImageTest {
+
+    private transient PDDocument document;
+
+    @Before
+    public void setUp() {
+        document = new PDDocument();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        document.close();
+    }
+
+    private static byte[] zip(final int... values) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final DeflaterOutputStream zip = new DeflaterOutputStream(out);
+        for (final int value : values) {
+            zip.write(value);
+        }
+        zip.close();
+        return out.toByteArray();
+    }
+
+    private static byte[] samples(final PDImageXObject image)
+            throws IOException {
+        return image.getStream().toByteArray();
+    }
+
+    @Test
+    public void indexedImageKeepsColourTable() throws IOException {
+        final PDImageXObject image = LosslessImage.createImage(document,
+                new DefineImage(1, 3, 2, 2, zip(255, 0, 0, 0, 0, 255,
+                        0, 1, 0, 9, 1, 1, 0, 9)));
+        final COSArray space = (COSArray) image.getCOSObject()
+                .getDictionaryObject(COSName.COLORSPACE);
+
+        assertEquals(COSName.FLATE_DECODE, image.getCOSObject()
+                .getDictionaryObject(COSName.FILTER));
+        assertEquals(COSName.INDEXED, space.getObject(0));
+        assertEquals(1, space.getInt(2));
+        assertArrayEquals(new byte[] {(byte) 255, 0, 0, 0, 0, (byte) 255},
+                ((COSString) space.getObject(3)).getBytes());
+        assertArrayEquals(new byte[] {0, 1, 0, 1, 1, 0}, samples(image));
+        assertNull(image.getSoftMask());
+    }
+
+    @Test
+    public void rgb5IsExpanded() throws IOException {
+        final PDImageXObject image = LosslessImage.createImage(document,
+                new DefineImage(1, 1, 1, zip(0x7C, 0x1F, 0, 0), 16));
+
+        assertEquals(COSName.DEVICERGB, image.getCOSObject()
+                .getDictionaryObject(COSName.COLORSPACE));
+        assertArrayEquals(new byte[] {(byte) 255, 0, (byte) 255},
+                samples(image));
+    }
+
+    @Test
+    public void rgb8DropsReservedByte() throws IOException {
+        final PDImageXObject image = LosslessImage.createImage(document,
+                new DefineImage(1, 2, 1, zip(0, 1, 2, 3, 0, 4, 5, 6), 24));
+
+        assertEquals(8, image.getBitsPerComponent());
+        assertArrayEquals(new byte[] {1, 2, 3, 4, 5, 6}, samples(image));
+        assertNull(image.getSoftMask());
+    }
+
+    @Test
+    public void alphaIsSoftMask() throws IOException {
+        final PDImageXObject image = LosslessImage.createImage(document,
+                new DefineImage2(1, 2, 1, zip(128, 64, 32, 128,
+                        255, 1, 2, 3)));
+
+        assertArrayEquals(new byte[] {(byte) 128, 64, (byte) 255, 1, 2, 3},
+                samples(image));
+        assertArrayEquals(new byte[] {(byte) 128, (byte) 255},
+                samples(image.getSoftMask()));
+    }
+
+    @Test
+    public void indexedAlphaIsSoftMask() throws IOException {
+        final PDImageXObject image = LosslessImage.createImage(document,
+                new DefineImage2(1, 2, 1, 2, zip(0, 0, 0, 0,
+                        10, 20, 30, 255, 0, 1, 0, 0)));
+
+        assertArrayEquals(new byte[] {0, 1}, samples(image));
+        assertArrayEquals(new byte[] {0, (byte) 255},
+                samples(image.getSoftMask()));
+    }
+
+    @Test
+    public void truncatedImageIsNotDrawn() throws IOException {
+        assertNull(LosslessImage.createImage(document,
+                new DefineImage(1, 2, 2, zip(0, 1, 2, 3), 24)));
+        assertNull(LosslessImage.createImage(document,
+                new DefineImage(1, 2, 2, new byte[] {1, 2, 3}, 24)));
+    }
+}
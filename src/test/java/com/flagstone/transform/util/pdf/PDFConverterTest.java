@@ -0,0 +1,272 @@
+/*
+ * PDFConverterTest.java
+ * Transform
+ *
+ * Copyright (c) 2010 Flagstone Software Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of Flagstone Software Ltd. nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.flagstone.transform.util.pdf;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.DataFormatException;
+
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.junit.Test;
+
+import com.flagstone.transform.Background;
+import com.flagstone.transform.Movie;
+import com.flagstone.transform.MovieHeader;
+import com.flagstone.transform.MovieReader;
+import com.flagstone.transform.MovieTag;
+import com.flagstone.transform.Place2;
+import com.flagstone.transform.Place3;
+import com.flagstone.transform.Remove2;
+import com.flagstone.transform.ShowFrame;
+import com.flagstone.transform.datatype.Bounds;
+import com.flagstone.transform.datatype.Color;
+import com.flagstone.transform.exception.IllegalArgumentRangeException;
+import com.flagstone.transform.fillstyle.FillStyle;
+import com.flagstone.transform.filter.BlurFilter;
+import com.flagstone.transform.fillstyle.SolidFill;
+import com.flagstone.transform.linestyle.LineStyle;
+import com.flagstone.transform.shape.DefineShape;
+import com.flagstone.transform.shape.Line;
+import com.flagstone.transform.shape.Shape;
+import com.flagstone.transform.shape.ShapeStyle;
+
+public final class PDFConverterTest {
+
+    private static final int FRAMES = 20;
+
+    private Movie movie() {
+        final List<FillStyle> fills = new ArrayList<FillStyle>();
+        fills.add(new SolidFill(new Color(255, 0, 0)));
+
+        final Shape shape = new Shape();
+        shape.add(new ShapeStyle().setMove(0, 0).setAltFillStyle(1));
+        shape.add(new Line(100, 0));
+        shape.add(new Line(0, 100));
+        shape.add(new Line(-100, 0));
+        shape.add(new Line(0, -100));
+
+        final MovieHeader header = new MovieHeader();
+        header.setFrameSize(new Bounds(0, 0, 8000, 6000));
+
+        final Movie movie = new Movie();
+        movie.add(header);
+        movie.add(new Background(new Color(255, 255, 255)));
+
+        for (int i = 0; i < FRAMES; i++) {
+            movie.add(new DefineShape(i + 1, new Bounds(0, 0, 100, 100),
+                    fills, new ArrayList<LineStyle>(), shape));
+            movie.add(Place2.show(i + 1, i + 1, i * 200, i * 100));
+            if (i > 0) {
+                movie.add(new Remove2(i));
+            }
+            movie.add(ShowFrame.getInstance());
+        }
+        return movie;
+    }
+
+    private byte[] contents(final PDDocument document, final int index)
+            throws IOException {
+        final InputStream stream = document.getPage(index).getContents();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[1024];
+        int count;
+        try {
+            while ((count = stream.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
+            }
+        } finally {
+            stream.close();
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void frameIsConvertedToOnePage() throws IOException {
+        final PDDocument document = new PDFConverter().setFrame(5)
+                .convert(movie());
+        try {
+            assertEquals(1, document.getNumberOfPages());
+        } finally {
+            document.close();
+        }
+    }
+
+    @Test
+    public void allFramesAreConvertedToPages() throws IOException {
+        final PDDocument document = new PDFConverter().setAllFrames(true)
+                .convert(movie());
+        try {
+            assertEquals(FRAMES, document.getNumberOfPages());
+        } finally {
+            document.close();
+        }
+    }
+
+    @Test
+    public void pageShowsFrameDisplayList() throws IOException {
+        final PDDocument single = new PDFConverter().setFrame(5)
+                .convert(movie());
+        final PDDocument all = new PDFConverter().setAllFrames(true)
+                .convert(movie());
+        try {
+            assertArrayEquals(contents(single, 0), contents(all, 4));
+        } finally {
+            single.close();
+            all.close();
+        }
+    }
+
+    @Test
+    public void executorDrawsSamePages() throws IOException {
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        final PDDocument expected = new PDFConverter().setAllFrames(true)
+                .convert(movie());
+        final PDDocument actual = new PDFConverter().setAllFrames(true)
+                .setExecutor(executor).convert(movie());
+        try {
+            assertEquals(FRAMES, actual.getNumberOfPages());
+            for (int i = 0; i < FRAMES; i++) {
+                assertArrayEquals(contents(expected, i), contents(actual, i));
+            }
+        } finally {
+            executor.shutdown();
+            expected.close();
+            actual.close();
+        }
+    }
+
+    @Test
+    public void readerDrawsSamePages() throws IOException,
+            DataFormatException {
+        final ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        movie().encodeToStream(encoded);
+
+        final MovieReader reader = new MovieReader(
+                new ByteArrayInputStream(encoded.toByteArray()));
+        final PDDocument expected = new PDFConverter().setAllFrames(true)
+                .convert(movie());
+        final PDDocument actual;
+        try {
+            actual = new PDFConverter().setAllFrames(true).convert(reader);
+        } finally {
+            reader.close();
+        }
+        try {
+            assertEquals(FRAMES, actual.getNumberOfPages());
+            for (int i = 0; i < FRAMES; i++) {
+                assertArrayEquals(contents(expected, i), contents(actual, i));
+            }
+        } finally {
+            expected.close();
+            actual.close();
+        }
+    }
+
+    @Test
+    public void scratchFileDrawsSamePages() throws IOException {
+        final PDDocument expected = new PDFConverter().setAllFrames(true)
+                .convert(movie());
+        final PDDocument actual = new PDFConverter().setAllFrames(true)
+                .setMemoryLimit(0).convert(movie());
+        try {
+            for (int i = 0; i < FRAMES; i++) {
+                assertArrayEquals(contents(expected, i), contents(actual, i));
+            }
+        } finally {
+            expected.close();
+            actual.close();
+        }
+    }
+
+    @Test(expected = IllegalArgumentRangeException.class)
+    public void checkAccessorForMemoryLimitWithLowerBound() {
+        new PDFConverter().setMemoryLimit(-2);
+    }
+
+    @Test
+    public void filteredObjectIsDrawnAsSharedImage() throws IOException {
+        final List<MovieTag> objects = movie().getObjects();
+        final Movie movie = new Movie();
+        movie.setObjects(new ArrayList<MovieTag>(objects.subList(0, 3)));
+
+        for (int i = 0; i < 2; i++) {
+            final Place3 place = Place3.show(1, 1, i * 1000, 0);
+            place.add(new BlurFilter(4, 4, 1));
+            if (i > 0) {
+                movie.add(new Remove2(1));
+            }
+            movie.add(place);
+            movie.add(ShowFrame.getInstance());
+        }
+
+        final PDDocument document = new PDFConverter().setAllFrames(true)
+                .setResolution(72).convert(movie);
+        try {
+            final COSDictionary first = (COSDictionary) document.getPage(0)
+                    .getResources().getCOSObject()
+                    .getDictionaryObject(COSName.XOBJECT);
+            final COSDictionary second = (COSDictionary) document.getPage(1)
+                    .getResources().getCOSObject()
+                    .getDictionaryObject(COSName.XOBJECT);
+
+            assertEquals(1, first.size());
+            assertSame(first.getDictionaryObject(
+                    first.keySet().iterator().next()),
+                    second.getDictionaryObject(
+                            second.keySet().iterator().next()));
+        } finally {
+            document.close();
+        }
+    }
+
+    @Test(expected = IllegalArgumentRangeException.class)
+    public void checkAccessorForResolutionWithLowerBound() {
+        new PDFConverter().setResolution(0);
+    }
+
+    @Test(expected = IllegalArgumentRangeException.class)
+    public void checkAccessorForResolutionWithUpperBound() {
+        new PDFConverter().setResolution(2401);
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * ShapePathTest.java
+ * Transform
+ *
+ * Copyright (c) 2010 Flagstone Software Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of Flagstone Software Ltd. nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.flagstone.transform.util.pdf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.flagstone.transform.datatype.Color;
+import com.flagstone.transform.fillstyle.FillStyle;
+import com.flagstone.transform.fillstyle.SolidFill;
+import com.flagstone.transform.linestyle.LineStyle;
+import com.flagstone.transform.linestyle.LineStyle1;
+import com.flagstone.transform.shape.Curve;
+import com.flagstone.transform.shape.Line;
+import com.flagstone.transform.shape.Shape;
+import com.flagstone.transform.shape.ShapeStyle;
+
+public final class ShapePathTest {
+
+    private static final class Recorder implements PathSink {
+        private final transient StringBuilder builder = new StringBuilder();
+
+        public void moveTo(final int xCoord, final int yCoord) {
+            builder.append("M").append(xCoord).append(',').append(yCoord);
+        }
+
+        public void lineTo(final int xCoord, final int yCoord) {
+            builder.append("L").append(xCoord).append(',').append(yCoord);
+        }
+
+        public void quadTo(final int controlX, final int controlY,
+                final int anchorX, final int anchorY) {
+            builder.append("Q").append(controlX).append(',').append(controlY)
+                .append(',').append(anchorX).append(',').append(anchorY);
+        }
+
+        public void closePath() {
+            builder.append("Z");
+        }
+
+        @Override
+        public String toString() {
+            return builder.toString();
+        }
+    }
+
+    private transient List<FillStyle> fills;
+    private transient List<LineStyle> lines;
+    private transient Recorder recorder;
+
+    @Before
+    public void setUp() {
+        fills = new ArrayList<FillStyle>();
+        fills.add(new SolidFill(new Color(0, 0, 0)));
+        lines = new ArrayList<LineStyle>();
+        lines.add(new LineStyle1(20, new Color(0, 0, 0)));
+        recorder = new Recorder();
+    }
+
+    @Test
+    public void fillOnRight() throws IOException {
+        final Shape shape = new Shape();
+        shape.add(new ShapeStyle().setMove(0, 0).setAltFillStyle(1));
+        shape.add(new Line(100, 0));
+        shape.add(new Line(0, 100));
+        shape.add(new Line(-100, 0));
+        shape.add(new Line(0, -100));
+
+        final ShapePath path = new ShapePath(fills, lines, shape);
+        path.outline(recorder);
+
+        assertEquals("M0,0L100,0L100,100L0,100L0,0Z", recorder.toString());
+    }
+
+    @Test
+    public void fillOnLeftIsReversed() throws IOException {
+        final Shape shape = new Shape();
+        shape.add(new ShapeStyle().setMove(0, 0).setFillStyle(1));
+        shape.add(new Line(100, 0));
+        shape.add(new Line(0, 100));
+        shape.add(new Line(-100, 0));
+        shape.add(new Line(0, -100));
+
+        final ShapePath path = new ShapePath(fills, lines, shape);
+        path.outline(recorder);
+
+        assertEquals("M100,0L0,0L0,100L100,100L100,0Z", recorder.toString());
+    }
+
+    @Test
+    public void edgesAreJoined() throws IOException {
+        final Shape shape = new Shape();
+        shape.add(new ShapeStyle().setMove(100, 0).setAltFillStyle(1));
+        shape.add(new Line(0, 100));
+        shape.add(new ShapeStyle().setMove(0, 0));
+        shape.add(new Line(100, 0));
+        shape.add(new ShapeStyle().setMove(100, 100));
+        shape.add(new Line(-100, 0));
+        shape.add(new Line(0, -100));
+
+        final ShapePath path = new ShapePath(fills, lines, shape);
+        path.outline(recorder);
+
+        assertEquals("M100,0L100,100L0,100L0,0L100,0Z", recorder.toString());
+    }
+
+    @Test
+    public void curvesAreAbsolute() throws IOException {
+        final Shape shape = new Shape();
+        shape.add(new ShapeStyle().setMove(0, 0).setLineStyle(1));
+        shape.add(new Curve(50, 0, 50, 50));
+
+        final ShapePath path = new ShapePath(fills, lines, shape);
+        ShapePath.stroke(path.getGroups().get(0).getLines().get(1),
+                recorder);
+
+        assertEquals("M0,0Q50,0,100,50", recorder.toString());
+    }
+
+    @Test
+    public void connectedLinesShareSubPath() throws IOException {
+        final Shape shape = new Shape();
+        shape.add(new ShapeStyle().setMove(0, 0).setLineStyle(1));
+        shape.add(new Line(100, 0));
+        shape.add(new Line(0, 100));
+        shape.add(new ShapeStyle().setMove(0, 200));
+        shape.add(new Line(100, 0));
+
+        final ShapePath path = new ShapePath(fills, lines, shape);
+        ShapePath.stroke(path.getGroups().get(0).getLines().get(1),
+                recorder);
+
+        assertEquals("M0,0L100,0L100,100M0,200L100,200", recorder.toString());
+    }
+
+    @Test
+    public void newStylesStartGroup() throws IOException {
+        final List<FillStyle> styles = new ArrayList<FillStyle>();
+        styles.add(new SolidFill(new Color(255, 0, 0)));
+
+        final Shape shape = new Shape();
+        shape.add(new ShapeStyle().setMove(0, 0).setAltFillStyle(1));
+        shape.add(new Line(100, 0));
+        shape.add(new ShapeStyle().setFillStyles(styles).setMove(0, 0)
+                .setLineStyle(1));
+        shape.add(new Line(100, 0));
+
+        final ShapePath path = new ShapePath(fills, lines, shape);
+
+        assertEquals(2, path.getGroups().size());
+        assertEquals(1, path.getGroups().get(0).getFills().size());
+        assertTrue(path.getGroups().get(1).getFills().isEmpty());
+        assertEquals(styles.get(0),
+                path.getGroups().get(1).getFillStyle(1));
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Type3FontTest.java
+ * Transform
+ *
+ * Copyright (c) 2010 Flagstone Software Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of Flagstone Software Ltd. nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.flagstone.transform.util.pdf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.flagstone.transform.font.DefineFont2;
+import com.flagstone.transform.shape.Line;
+import com.flagstone.transform.shape.Shape;
+import com.flagstone.transform.shape.ShapeStyle;
+
+public final class Type3FontTest {
+
+    private transient PDDocument document;
+
+    @Before
+    public void setUp() {
+        document = new PDDocument();
+        FontCache.clear();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        document.close();
+    }
+
+    private Shape square(final int size) {
+        final Shape shape = new Shape();
+        shape.add(new ShapeStyle().setMove(0, 0).setAltFillStyle(1));
+        shape.add(new Line(size, 0));
+        shape.add(new Line(0, -size));
+        shape.add(new Line(-size, 0));
+        shape.add(new Line(0, size));
+        return shape;
+    }
+
+    private DefineFont2 font(final int identifier, final int count,
+            final int advance) {
+        final DefineFont2 font = new DefineFont2(identifier, "Square");
+        for (int i = 0; i < count; i++) {
+            font.addGlyph(i, square(i + 1));
+            font.addAdvance(advance);
+        }
+        return font;
+    }
+
+    private Set<Integer> glyphs(final int... indices) {
+        final Set<Integer> set = new HashSet<Integer>();
+        for (final int index : indices) {
+            set.add(index);
+        }
+        return set;
+    }
+
+    @Test
+    public void procedureSetsAdvanceAndBounds() throws IOException {
+        final GlyphTable table = FontCache.getGlyphs(font(1, 100, 512));
+        final String procedure = new String(
+                table.getGlyph(99).getProcedure(), "US-ASCII");
+
+        assertTrue(procedure.startsWith("512 0 0 -100 100 0 d1\n0 0 m\n"));
+        assertTrue(procedure.endsWith("h\nf\n"));
+    }
+
+    @Test
+    public void emptyGlyphHasNoPath() throws IOException {
+        final DefineFont2 font = new DefineFont2(1, "Space");
+        font.addGlyph(32, new Shape());
+        font.addAdvance(256);
+        final GlyphTable table = FontCache.getGlyphs(font);
+
+        assertEquals("256 0 0 0 0 0 d1\n", new String(
+                table.getGlyph(0).getProcedure(), "US-ASCII"));
+    }
+
+    @Test
+    public void identicalFontsAreShared() throws IOException {
+        final GlyphTable table = FontCache.getGlyphs(font(1, 4, 512));
+
+        assertSame(table, FontCache.getGlyphs(font(2, 4, 512)));
+        assertEquals(1, FontCache.size());
+    }
+
+    @Test
+    public void differentAdvancesAreNotShared() throws IOException {
+        final GlyphTable table = FontCache.getGlyphs(font(1, 4, 512));
+
+        assertNotSame(table, FontCache.getGlyphs(font(1, 4, 256)));
+        assertEquals(2, FontCache.size());
+    }
+
+    @Test
+    public void subsetContainsGlyphsUsed() throws IOException {
+        final Type3Font font = new Type3Font(document,
+                FontCache.getGlyphs(font(1, 4, 512)), glyphs(1, 3));
+        final COSDictionary dict = font.getFont(1);
+
+        assertNull(font.getFont(0));
+        assertSame(dict, font.getFont(3));
+        assertEquals(0, font.getCode(1));
+        assertEquals(1, font.getCode(3));
+        assertEquals(1, dict.getInt(COSName.LAST_CHAR));
+        assertEquals(2, ((COSDictionary) dict.getDictionaryObject(
+                COSName.CHAR_PROCS)).size());
+    }
+
+    @Test
+    public void largeSubsetIsSplit() throws IOException {
+        final Set<Integer> used = new HashSet<Integer>();
+        for (int i = 0; i < 300; i++) {
+            used.add(i);
+        }
+        final Type3Font font = new Type3Font(document,
+                FontCache.getGlyphs(font(1, 300, 512)), used);
+
+        assertEquals(2, font.getFontCount());
+        assertNotNull(font.getFont(256));
+        assertNotSame(font.getFont(255), font.getFont(256));
+        assertEquals(255, font.getCode(255));
+        assertEquals(0, font.getCode(256));
+        assertEquals(43, font.getFont(299).getInt(COSName.LAST_CHAR));
+    }
+
+    @Test
+    public void glyphsAreAddedWithNewCodes() throws IOException {
+        final Type3Font font = new Type3Font(document,
+                FontCache.getGlyphs(font(1, 4, 512)), glyphs(2));
+        font.add(glyphs(0, 2));
+
+        assertEquals(0, font.getCode(2));
+        assertEquals(1, font.getCode(0));
+        assertEquals(1, font.getFont(0).getInt(COSName.LAST_CHAR));
+        assertEquals(1, font.getFontCount());
+    }
+}
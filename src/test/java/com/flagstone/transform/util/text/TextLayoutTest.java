@@ -0,0 +1,221 @@
+/*
+ * TextLayoutTest.java
+ * Transform
+ *
+ * Copyright (c) 2010 Flagstone Software Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of Flagstone Software Ltd. nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+
+package com.flagstone.transform.util.text;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.flagstone.transform.datatype.Bounds;
+import com.flagstone.transform.datatype.HorizontalAlign;
+import com.flagstone.transform.datatype.WebPalette;
+import com.flagstone.transform.exception.IllegalArgumentRangeException;
+import com.flagstone.transform.font.DefineFont2;
+import com.flagstone.transform.font.Kerning;
+import com.flagstone.transform.shape.Shape;
+import com.flagstone.transform.text.DefineText2;
+import com.flagstone.transform.text.GlyphIndex;
+import com.flagstone.transform.text.TextSpan;
+
+public final class TextLayoutTest {
+
+    /** Font size where the advances in twips equal the font units. */
+    private static final int SIZE = 1024;
+    private static final String CODES = " abcd";
+
+    private transient DefineFont2 font;
+    private transient TextLayout layout;
+
+    @Before
+    public void setUp() {
+        font = new DefineFont2(1, "font");
+        for (int i = 0; i < CODES.length(); i++) {
+            font.addGlyph(CODES.charAt(i), new Shape());
+            font.addAdvance(100);
+        }
+        font.setAscent(800);
+        font.setDescent(200);
+        final List<Kerning> kernings = new ArrayList<Kerning>();
+        kernings.add(new Kerning('a', 'b', -20));
+        font.setKernings(kernings);
+
+        layout = new TextLayout(font, SIZE);
+        layout.setKerning(false);
+    }
+
+    private String textForSpan(final TextSpan span) {
+        final StringBuilder builder = new StringBuilder();
+        for (final GlyphIndex glyph : span.getCharacters()) {
+            builder.append(CODES.charAt(glyph.getGlyphIndex()));
+        }
+        return builder.toString();
+    }
+
+    private List<String> lines(final String text) {
+        final List<String> list = new ArrayList<String>();
+        for (final TextSpan span : layout.defineSpans(text,
+                WebPalette.BLACK.color())) {
+            list.add(textForSpan(span));
+        }
+        return list;
+    }
+
+    @Test
+    public void checkKerning() {
+        assertEquals(300, layout.widthForText("abc"));
+        layout.setKerning(true);
+        assertEquals(280, layout.widthForText("abc"));
+        assertEquals(200, layout.widthForText("ba"));
+
+        final TextSpan span = layout.defineSpans("ab",
+                WebPalette.BLACK.color()).get(0);
+        assertEquals(80, span.getCharacters().get(0).getAdvance());
+        assertEquals(100, span.getCharacters().get(1).getAdvance());
+    }
+
+    @Test
+    public void checkKerningForMissingCharacter() {
+        font.getKernings().add(new Kerning('z', 'a', -50));
+        font.getKernings().add(new Kerning(1, 2, -50));
+        layout = new TextLayout(font, SIZE);
+
+        assertEquals(280, layout.widthForText("abc"));
+        assertEquals(200, layout.widthForText(" a"));
+    }
+
+    @Test
+    public void checkSharedGlyphs() {
+        final List<TextSpan> spans = layout.defineSpans("aba",
+                WebPalette.BLACK.color());
+        final List<GlyphIndex> glyphs = spans.get(0).getCharacters();
+        assertSame(glyphs.get(0), glyphs.get(2));
+    }
+
+    @Test
+    public void checkParagraphs() {
+        final List<TextSpan> spans = layout.defineSpans("ab\n\ncd",
+                WebPalette.BLACK.color());
+
+        assertEquals(3, spans.size());
+        assertEquals(Integer.valueOf(0), spans.get(0).getOffsetY());
+        assertEquals(Integer.valueOf(1000), spans.get(1).getOffsetY());
+        assertEquals(Integer.valueOf(2000), spans.get(2).getOffsetY());
+        assertEquals("cd", textForSpan(spans.get(2)));
+    }
+
+    @Test
+    public void checkGreedyBreaks() {
+        layout.setWidth(600);
+        final List<String> expected = new ArrayList<String>();
+        expected.add("aaa bb");
+        expected.add("cc");
+        expected.add("ddddd");
+
+        assertEquals(expected, lines("aaa bb cc ddddd"));
+    }
+
+    @Test
+    public void checkOptimalBreaks() {
+        layout.setWidth(600);
+        layout.setOptimal(true);
+        final List<String> expected = new ArrayList<String>();
+        expected.add("aaa");
+        expected.add("bb cc");
+        expected.add("ddddd");
+
+        assertEquals(expected, lines("aaa bb cc ddddd"));
+    }
+
+    @Test
+    public void checkLongWordIsBroken() {
+        layout.setWidth(300);
+        final List<String> expected = new ArrayList<String>();
+        expected.add("aaa");
+        expected.add("aa");
+        expected.add("b");
+
+        assertEquals(expected, lines("aaaaa b"));
+    }
+
+    @Test
+    public void checkAlignment() {
+        layout.setWidth(600);
+        layout.setAlignment(HorizontalAlign.RIGHT);
+        assertEquals(Integer.valueOf(400), layout.defineSpans("ab",
+                WebPalette.BLACK.color()).get(0).getOffsetX());
+
+        layout.setAlignment(HorizontalAlign.CENTER);
+        assertEquals(Integer.valueOf(200), layout.defineSpans("ab",
+                WebPalette.BLACK.color()).get(0).getOffsetX());
+    }
+
+    @Test
+    public void checkJustify() {
+        layout.setWidth(800);
+        layout.setAlignment(HorizontalAlign.JUSTIFY);
+        final List<TextSpan> spans = layout.defineSpans("a b c dddd",
+                WebPalette.BLACK.color());
+        final List<GlyphIndex> first = spans.get(0).getCharacters();
+
+        assertEquals(2, spans.size());
+        assertEquals(250, first.get(1).getAdvance());
+        assertEquals(250, first.get(3).getAdvance());
+        assertEquals(100, spans.get(1).getCharacters().get(0).getAdvance());
+    }
+
+    @Test
+    public void checkDefineText() {
+        layout.setWidth(300);
+        final DefineText2 text = layout.defineText(2, "ab cd",
+                WebPalette.BLACK.color());
+
+        assertEquals(2, text.getSpans().size());
+        assertEquals(new Bounds(0, -800, 200, 1200), text.getBounds());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void checkMissingCharacter() {
+        layout.widthForText("e");
+    }
+
+    @Test(expected = IllegalArgumentRangeException.class)
+    public void checkWidthWithLowerBound() {
+        layout.setWidth(-1);
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * ConcurrentEncodeIT.java
+ * Transform
+ *
+ * Copyright (c) 2010 Flagstone Software Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of Flagstone Software Ltd. nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package integration;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import com.flagstone.transform.Movie;
+import com.flagstone.transform.MovieHeader;
+
+/**
+ * ConcurrentEncodeIT verifies that encoding a movie using an ExecutorService
+ * generates the same data as encoding the movie using a single thread.
+ */
+@RunWith(Parameterized.class)
+public final class ConcurrentEncodeIT {
+
+    private static final int THREADS = 4;
+
+    private static ExecutorService executor;
+
+    @BeforeClass
+    public static void start() {
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @AfterClass
+    public static void stop() {
+        executor.shutdown();
+    }
+
+    @Parameters
+    public static Collection<Object[]>  files() {
+
+        File srcDir;
+
+        if (System.getProperty("test.suite") == null) {
+            srcDir = new File("src/test/resources/swf-reference");
+        } else {
+            srcDir = new File(System.getProperty("test.suite"));
+        }
+
+        final FilenameFilter filter = new FilenameFilter() {
+            @Override
+            public boolean accept(final File directory, final String name) {
+                return name.endsWith(".swf");
+            }
+        };
+
+        final String[] files = srcDir.list(filter);
+        final Object[][] collection = new Object[files.length][1];
+
+        for (int i = 0; i < files.length; i++) {
+            collection[i][0] = new File(srcDir, files[i]);
+        }
+        return Arrays.asList(collection);
+    }
+
+    private final transient File file;
+
+    public ConcurrentEncodeIT(final File movieFile) {
+        file = movieFile;
+    }
+
+    @Test
+    public void encodeCompressed() {
+        encode(true);
+    }
+
+    @Test
+    public void encodeUncompressed() {
+        encode(false);
+    }
+
+    private void encode(final boolean compressed) {
+        try {
+            final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            decode(compressed).encodeToStream(expected);
+
+            final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+            final Movie movie = decode(compressed);
+            movie.setExecutor(executor);
+            movie.encodeToStream(actual);
+
+            assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+        } catch (Exception e) {
+            if (System.getProperty("test.trace") != null) {
+                e.printStackTrace(); //NOPMD
+            }
+            fail(file.getPath());
+        }
+    }
+
+    private Movie decode(final boolean compressed) throws Exception {
+        final Movie movie = new Movie();
+        movie.decodeFromFile(file);
+        ((MovieHeader) movie.getObjects().get(0)).setCompressed(compressed);
+        return movie;
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * CopyOnWriteIT.java
+ * Transform
+ *
+ * Copyright (c) 2010 Flagstone Software Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of Flagstone Software Ltd. nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package integration;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import com.flagstone.transform.Movie;
+
+/**
+ * CopyOnWriteIT verifies that movies which share objects with a template can
+ * be encoded at the same time and generate the same data as the template.
+ */
+@RunWith(Parameterized.class)
+public final class CopyOnWriteIT {
+
+    private static final int THREADS = 4;
+
+    private static ExecutorService executor;
+
+    @BeforeClass
+    public static void start() {
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @AfterClass
+    public static void stop() {
+        executor.shutdown();
+    }
+
+    @Parameters
+    public static Collection<Object[]>  files() {
+
+        File srcDir;
+
+        if (System.getProperty("test.suite") == null) {
+            srcDir = new File("src/test/resources/swf-reference");
+        } else {
+            srcDir = new File(System.getProperty("test.suite"));
+        }
+
+        final FilenameFilter filter = new FilenameFilter() {
+            @Override
+            public boolean accept(final File directory, final String name) {
+                return name.endsWith(".swf");
+            }
+        };
+
+        final String[] files = srcDir.list(filter);
+        final Object[][] collection = new Object[files.length][1];
+
+        for (int i = 0; i < files.length; i++) {
+            collection[i][0] = new File(srcDir, files[i]);
+        }
+        return Arrays.asList(collection);
+    }
+
+    private final transient File file;
+
+    public CopyOnWriteIT(final File movieFile) {
+        file = movieFile;
+    }
+
+    @Test
+    public void encodeCopies() {
+        try {
+            final Movie template = new Movie();
+            template.decodeFromFile(file);
+
+            final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            template.encodeToStream(expected);
+
+            final List<Future<byte[]>> results =
+                new ArrayList<Future<byte[]>>();
+
+            // The template and copies of a copy are encoded at the same
+            // time as the copies of the template.
+            final List<Movie> movies = new ArrayList<Movie>();
+            movies.add(template);
+            for (int i = 0; i < THREADS; i++) {
+                final Movie copy = template.copyOnWrite();
+                movies.add(copy);
+                movies.add(copy.copyOnWrite());
+            }
+
+            for (final Movie movie : movies) {
+                results.add(executor.submit(new Callable<byte[]>() {
+                    public byte[] call() throws Exception {
+                        final ByteArrayOutputStream out =
+                            new ByteArrayOutputStream();
+                        movie.encodeToStream(out);
+                        return out.toByteArray();
+                    }
+                }));
+            }
+
+            for (Future<byte[]> result : results) {
+                assertArrayEquals(expected.toByteArray(), result.get());
+            }
+        } catch (Exception e) {
+            if (System.getProperty("test.trace") != null) {
+                e.printStackTrace(); //NOPMD
+            }
+            fail(file.getPath());
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * LazyDecoderIT.java
+ * Transform
+ *
+ * Copyright (c) 2010 Flagstone Software Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of Flagstone Software Ltd. nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package integration;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.util.Arrays;
+import java.util.Collection;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import com.flagstone.transform.LazyDecoder;
+import com.flagstone.transform.LazyTag;
+import com.flagstone.transform.Movie;
+import com.flagstone.transform.MovieTag;
+import com.flagstone.transform.coder.DecoderRegistry;
+
+/**
+ * LazyDecoderIT verifies that movies decoded using a LazyDecoder are encoded
+ * in the same way as movies where all the objects were decoded, whether or
+ * not the LazyTags were accessed.
+ */
+@RunWith(Parameterized.class)
+public final class LazyDecoderIT {
+
+    @Parameters
+    public static Collection<Object[]>  files() {
+
+        File srcDir;
+
+        if (System.getProperty("test.suite") == null) {
+            srcDir = new File("src/test/resources/swf-reference");
+        } else {
+            srcDir = new File(System.getProperty("test.suite"));
+        }
+
+        final FilenameFilter filter = new FilenameFilter() {
+            @Override
+            public boolean accept(final File directory, final String name) {
+                return name.endsWith(".swf");
+            }
+        };
+
+        final String[] files = srcDir.list(filter);
+        final Object[][] collection = new Object[files.length][1];
+
+        for (int i = 0; i < files.length; i++) {
+            collection[i][0] = new File(srcDir, files[i]);
+        }
+        return Arrays.asList(collection);
+    }
+
+    private final transient File file;
+
+    public LazyDecoderIT(final File movieFile) {
+        file = movieFile;
+    }
+
+    @Test
+    public void encodeWithoutDecoding() {
+        try {
+            final byte[] expected = encode(decode(file));
+
+            final Movie movie = new Movie();
+            movie.setRegistry(lazyRegistry());
+            movie.decodeFromFile(file);
+
+            final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            movie.encodeToStream(stream);
+
+            final Movie copy = new Movie();
+            copy.decodeFromStream(
+                    new ByteArrayInputStream(stream.toByteArray()));
+
+            assertArrayEquals(expected, encode(copy));
+        } catch (Exception e) {
+            if (System.getProperty("test.trace") != null) {
+                e.printStackTrace(); //NOPMD
+            }
+            fail(file.getPath());
+        }
+    }
+
+    @Test
+    public void encodeAfterDecoding() {
+        try {
+            final byte[] expected = encode(decode(file));
+
+            final Movie movie = new Movie();
+            movie.setRegistry(lazyRegistry());
+            movie.decodeFromFile(file);
+
+            for (final MovieTag tag : movie.getObjects()) {
+                if (tag instanceof LazyTag) {
+                    ((LazyTag) tag).getTag();
+                    assertTrue(((LazyTag) tag).isDecoded());
+                }
+            }
+            assertArrayEquals(expected, encode(movie));
+        } catch (Exception e) {
+            if (System.getProperty("test.trace") != null) {
+                e.printStackTrace(); //NOPMD
+            }
+            fail(file.getPath());
+        }
+    }
+
+    private DecoderRegistry lazyRegistry() {
+        final DecoderRegistry registry = DecoderRegistry.getDefault();
+        registry.setMovieDecoder(new LazyDecoder(registry.getMovieDecoder()));
+        return registry;
+    }
+
+    private Movie decode(final File movieFile) throws Exception {
+        final Movie movie = new Movie();
+        movie.decodeFromFile(movieFile);
+        return movie;
+    }
+
+    private byte[] encode(final Movie movie) throws Exception {
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        movie.encodeToStream(stream);
+        return stream.toByteArray();
+    }
+}